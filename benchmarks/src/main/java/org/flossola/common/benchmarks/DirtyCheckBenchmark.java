@@ -0,0 +1,112 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.benchmarks;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.io.WKBWriter;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import org.flossola.common.benchmarks.model.BenchParcel;
+import org.flossola.common.services.repository.CommonSqlProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the dirty check performed on each entity during save. The parcel is
+ * loaded and then has its geometry replaced with an identical copy of the WKB
+ * bytes, as occurs when the entity is mapped from a transfer object, so the
+ * geometry comparison exercises the byte comparison rather than the reference
+ * check. The {@code buildUpdateSql} benchmark measures generating the UPDATE
+ * statement for a parcel with a single modified column.
+ *
+ * @author soladev
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DirtyCheckBenchmark {
+
+    private BenchParcel unchanged;
+    private BenchParcel changed;
+
+    @Setup
+    public void setup() {
+        Coordinate[] ring = new Coordinate[101];
+        for (int i = 0; i < 100; i++) {
+            double angle = 2 * Math.PI * i / 100;
+            ring[i] = new Coordinate(1000 + Math.cos(angle) * 50, 2000 + Math.sin(angle) * 50);
+        }
+        ring[100] = ring[0];
+        byte[] wkb = new WKBWriter().write(new GeometryFactory().createPolygon(
+                new GeometryFactory().createLinearRing(ring), null));
+        unchanged = createLoadedParcel(wkb);
+        changed = createLoadedParcel(wkb);
+        changed.setOfficialArea(new BigDecimal(750));
+    }
+
+    private BenchParcel createLoadedParcel(byte[] wkb) {
+        BenchParcel parcel = new BenchParcel();
+        parcel.setId("parcel-1");
+        parcel.setNameFirstpart("1");
+        parcel.setNameLastpart("DP 1");
+        parcel.setLandUseCode("residential");
+        parcel.setOfficialArea(new BigDecimal(500));
+        parcel.setGeomPolygon(wkb);
+        parcel.setChangeUser("bench");
+        parcel.setLoaded(true);
+        parcel.setGeomPolygon(wkb.clone());
+        return parcel;
+    }
+
+    @Benchmark
+    public boolean isModifiedUnchanged() {
+        return unchanged.isModified();
+    }
+
+    @Benchmark
+    public boolean isModifiedChanged() {
+        return changed.isModified();
+    }
+
+    @Benchmark
+    public String buildUpdateSql() {
+        return CommonSqlProvider.buildUpdateSql(changed);
+    }
+}
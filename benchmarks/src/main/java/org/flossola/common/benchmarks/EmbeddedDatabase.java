@@ -0,0 +1,118 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.benchmarks;
+
+import java.sql.SQLException;
+import org.flossola.common.services.repository.perf.PerfDatabase;
+
+/**
+ * In memory HSQLDB database used by the benchmarks that execute queries
+ * through the repository. The data source, the lower case column names and
+ * the repository are provided by the {@linkplain PerfDatabase} used by the
+ * repository load tests. This class only adds the schemas used by the
+ * benchmarks.
+ *
+ * @author soladev
+ */
+public class EmbeddedDatabase extends PerfDatabase {
+
+    /**
+     * Creates a new in memory database.
+     *
+     * @param name The name of the database. Each name identifies a separate in
+     * memory database.
+     */
+    public EmbeddedDatabase(String name) {
+        super(name);
+    }
+
+    /**
+     * Creates the bench schema along with the party, rrr and party_for_rrr
+     * tables.
+     *
+     * @throws SQLException
+     */
+    public void createRightsSchema() throws SQLException {
+        String versionColumns = ", rowidentifier VARCHAR(40), rowversion INTEGER DEFAULT 0, "
+                + "change_user VARCHAR(50)";
+        execute("CREATE SCHEMA bench AUTHORIZATION DBA",
+                "CREATE TABLE bench.party (id VARCHAR(40) PRIMARY KEY, name VARCHAR(255), "
+                + "type_code VARCHAR(20)" + versionColumns + ")",
+                "CREATE TABLE bench.rrr (id VARCHAR(40) PRIMARY KEY, type_code VARCHAR(20)"
+                + versionColumns + ")",
+                "CREATE TABLE bench.party_for_rrr (party_id VARCHAR(40), rrr_id VARCHAR(40)"
+                + versionColumns + ", PRIMARY KEY (party_id, rrr_id))",
+                "CREATE INDEX party_for_rrr_rrr_id_ind ON bench.party_for_rrr (rrr_id)");
+    }
+
+    /**
+     * Creates the system.language table with English, French and Spanish and
+     * the bench.land_use_type code table. Also creates a get_translation
+     * function that resolves localized values in the database in the same way
+     * as the SOLA get_translation function (see
+     * {@linkplain #getTranslation(String, String)}).
+     *
+     * @throws SQLException
+     */
+    public void createLocalizationSchema() throws SQLException {
+        execute("CREATE SCHEMA system AUTHORIZATION DBA",
+                "CREATE SCHEMA bench AUTHORIZATION DBA",
+                "CREATE TABLE system.language (code VARCHAR(7) PRIMARY KEY, item_order INTEGER, "
+                + "is_default BOOLEAN)",
+                "INSERT INTO system.language VALUES ('en', 1, TRUE)",
+                "INSERT INTO system.language VALUES ('fr', 2, FALSE)",
+                "INSERT INTO system.language VALUES ('es', 3, FALSE)",
+                "CREATE ALIAS get_translation FOR \""
+                + EmbeddedDatabase.class.getName() + ".getTranslation\"",
+                "CREATE TABLE bench.land_use_type (code VARCHAR(20) PRIMARY KEY, "
+                + "display_value VARCHAR(500), description VARCHAR(1000), status CHAR(1), "
+                + "rowidentifier VARCHAR(40), rowversion INTEGER DEFAULT 0, change_user VARCHAR(50))");
+    }
+
+    /**
+     * Implementation of the get_translation database function used by the
+     * embedded database. Like the PostgreSQL function, it looks up the item
+     * order of the language and splits the localized value for every call.
+     *
+     * @param mixedValue The localized value
+     * @param languageCode The language code
+     * @return The value for the language
+     */
+    public static String getTranslation(String mixedValue, String languageCode) {
+        if (mixedValue == null) {
+            return null;
+        }
+        String[] parts = mixedValue.split("::::", -1);
+        int index = "fr".equals(languageCode) ? 2 : "es".equals(languageCode) ? 3 : 1;
+        String result = index <= parts.length ? parts[index - 1] : "";
+        if (result.isEmpty()) {
+            result = parts[0].isEmpty() ? mixedValue : parts[0];
+        }
+        return result;
+    }
+}
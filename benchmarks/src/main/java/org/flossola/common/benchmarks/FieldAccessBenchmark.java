@@ -0,0 +1,117 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.benchmarks;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.flossola.common.benchmarks.model.BenchParcel;
+import org.flossola.common.services.repository.entities.ColumnInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares reading and writing all column values of an entity using the cached
+ * field accessors (i.e. getEntityFieldValue and setEntityFieldValue) against
+ * the original reflective approach that looked up the getter or setter method
+ * for every call.
+ *
+ * @author soladev
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FieldAccessBenchmark {
+
+    private BenchParcel parcel;
+    private List<ColumnInfo> columns;
+    private Object[] values;
+
+    @Setup
+    public void setup() {
+        parcel = new BenchParcel();
+        parcel.setNameFirstpart("1234");
+        parcel.setNameLastpart("DP 5678");
+        parcel.setStatusCode("current");
+        parcel.setLandUseCode("residential");
+        parcel.setOfficialArea(new BigDecimal("1024.5"));
+        parcel.setGeomPolygon(new byte[]{1, 2, 3, 4});
+        columns = parcel.getColumns();
+        values = new Object[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            values[i] = parcel.getEntityFieldValue(columns.get(i));
+        }
+    }
+
+    @Benchmark
+    public void getAccessor(Blackhole bh) {
+        for (ColumnInfo columnInfo : columns) {
+            bh.consume(parcel.getEntityFieldValue(columnInfo));
+        }
+    }
+
+    @Benchmark
+    public void getReflective(Blackhole bh) throws Exception {
+        for (ColumnInfo columnInfo : columns) {
+            Method getter = parcel.getClass().getMethod(columnInfo.getterName());
+            bh.consume(getter.invoke(parcel));
+        }
+    }
+
+    @Benchmark
+    public BenchParcel setAccessor() {
+        for (int i = 0; i < columns.size(); i++) {
+            parcel.setEntityFieldValue(columns.get(i), values[i]);
+        }
+        return parcel;
+    }
+
+    @Benchmark
+    public BenchParcel setReflective() throws Exception {
+        for (int i = 0; i < columns.size(); i++) {
+            ColumnInfo columnInfo = columns.get(i);
+            Method setter = parcel.getClass().getMethod(columnInfo.setterName(),
+                    columnInfo.getFieldType());
+            setter.invoke(parcel, values[i]);
+        }
+        return parcel;
+    }
+}
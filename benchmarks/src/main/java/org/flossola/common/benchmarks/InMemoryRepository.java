@@ -0,0 +1,100 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.ibatis.session.SqlSession;
+import org.flossola.common.services.repository.CommonMapper;
+import org.flossola.common.services.repository.CommonRepositoryImpl;
+import org.flossola.common.services.repository.CommonSqlProvider;
+
+/**
+ * Repository that returns canned result rows instead of querying a database.
+ * Allows the benchmarks to measure the repository pipeline (i.e. mapping the
+ * result rows to entities, marking them as loaded and loading their children)
+ * without the cost of the JDBC driver and database dominating the result.
+ * <p>
+ * The rows returned for a query are selected using the entity class of the
+ * query. The where clause of the query is ignored.</p>
+ *
+ * @author soladev
+ */
+public class InMemoryRepository extends CommonRepositoryImpl {
+
+    private final Map<Class<?>, List<HashMap>> rows = new HashMap<Class<?>, List<HashMap>>();
+
+    public InMemoryRepository() {
+        super((org.flossola.common.services.repository.DatabaseConnectionManager) null);
+    }
+
+    /**
+     * Sets the rows to return for queries of the entity class.
+     */
+    public void setRows(Class<?> entityClass, List<HashMap> entityRows) {
+        rows.put(entityClass, entityRows);
+    }
+
+    @Override
+    protected SqlSession getSqlSession() {
+        return (SqlSession) Proxy.newProxyInstance(SqlSession.class.getClassLoader(),
+                new Class<?>[]{SqlSession.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        // The session is only closed by the repository
+                        return null;
+                    }
+                });
+    }
+
+    @Override
+    protected CommonMapper getMapper(SqlSession session) {
+        CommonMapper mapper = (CommonMapper) Proxy.newProxyInstance(CommonMapper.class.getClassLoader(),
+                new Class<?>[]{CommonMapper.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        List<HashMap> result = null;
+                        if (args != null && args.length == 1 && args[0] instanceof Map) {
+                            result = rows.get(((Map) args[0]).get(CommonSqlProvider.PARAM_ENTITY_CLASS));
+                        }
+                        result = result == null ? new ArrayList<HashMap>() : result;
+                        if ("getEntity".equals(method.getName())) {
+                            return result.isEmpty() ? null : result.get(0);
+                        }
+                        return new ArrayList<HashMap>(result);
+                    }
+                });
+        // Include the cost of the mapper monitoring used in production
+        return getMapperMonitor().wrap(mapper, CommonMapper.class);
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.benchmarks;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.flossola.common.benchmarks.model.BenchLandUseType;
+import org.flossola.common.services.repository.CommonRepositoryImpl;
+import org.flossola.common.services.repository.CommonSqlProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares resolving localized values in the database using get_translation
+ * with resolving them in Java (see
+ * {@linkplain CommonRepositoryImpl#setJavaLocalization(boolean)}) when loading
+ * a code list in French from an embedded database. Every second code has no
+ * Spanish value and every tenth code has no French value so the fall back to
+ * the default language is also exercised.
+ *
+ * @author soladev
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LocalizationBenchmark {
+
+    @Param({"100", "10000"})
+    public int codeCount;
+    @Param({"false", "true"})
+    public boolean javaLocalization;
+    private EmbeddedDatabase db;
+    private CommonRepositoryImpl repository;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        db = new EmbeddedDatabase("localization" + codeCount + javaLocalization);
+        db.createLocalizationSchema();
+        Connection conn = db.getConnection();
+        try {
+            conn.setAutoCommit(false);
+            PreparedStatement code = conn.prepareStatement("INSERT INTO bench.land_use_type "
+                    + "(code, display_value, description, status) VALUES (?, ?, ?, 'c')");
+            for (int i = 0; i < codeCount; i++) {
+                code.setString(1, "code" + i);
+                code.setString(2, "Land use " + i + "::::" + (i % 10 == 0 ? "" : "Utilisation " + i)
+                        + "::::" + (i % 2 == 0 ? "" : "Uso " + i));
+                code.setString(3, "Description of land use " + i + "::::Description de l'utilisation "
+                        + i + "::::Descripción del uso " + i);
+                code.addBatch();
+            }
+            code.executeBatch();
+            conn.commit();
+        } finally {
+            conn.close();
+        }
+        repository = db.getRepository();
+        repository.setJavaLocalization(javaLocalization);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        db.shutdown();
+    }
+
+    @Benchmark
+    public List<BenchLandUseType> loadCodeList() {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(CommonSqlProvider.PARAM_LANGUAGE_CODE, "fr");
+        return repository.getEntityList(BenchLandUseType.class, params);
+    }
+}
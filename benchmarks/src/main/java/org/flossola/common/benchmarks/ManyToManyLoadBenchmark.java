@@ -0,0 +1,153 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.benchmarks;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.flossola.common.benchmarks.model.BenchRight;
+import org.flossola.common.services.repository.CommonRepositoryImpl;
+import org.flossola.common.services.repository.CommonSqlProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the nested {@code IN (SELECT ...)} strategy for loading many to many
+ * child lists with the join strategy (see
+ * {@linkplain CommonRepositoryImpl#setManyToManyJoinLoading(boolean)}) using an
+ * embedded database. Each right has two right holders, so the number of rights
+ * and parties is half the size of the join table.
+ * <p>
+ * {@code loadOneRight} loads the right holders for a single right and
+ * {@code loadPageOfRights} loads a page of 100 rights with batch child loading
+ * enabled.</p>
+ *
+ * @author soladev
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ManyToManyLoadBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+    @Param({"1000", "10000", "100000"})
+    public int joinTableSize;
+    @Param({"false", "true"})
+    public boolean joinLoading;
+    private EmbeddedDatabase db;
+    private CommonRepositoryImpl repository;
+    private int rightCount;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        db = new EmbeddedDatabase("m2m" + joinTableSize + joinLoading);
+        db.createRightsSchema();
+        rightCount = joinTableSize / 2;
+        Connection conn = db.getConnection();
+        try {
+            conn.setAutoCommit(false);
+            PreparedStatement party = conn.prepareStatement(
+                    "INSERT INTO bench.party (id, name, type_code) VALUES (?, ?, 'naturalPerson')");
+            PreparedStatement rrr = conn.prepareStatement(
+                    "INSERT INTO bench.rrr (id, type_code) VALUES (?, 'ownership')");
+            PreparedStatement link = conn.prepareStatement(
+                    "INSERT INTO bench.party_for_rrr (party_id, rrr_id) VALUES (?, ?)");
+            for (int i = 0; i < rightCount; i++) {
+                party.setString(1, partyId(i));
+                party.setString(2, "Party " + i);
+                party.addBatch();
+                rrr.setString(1, rightId(i));
+                rrr.addBatch();
+                // Each right is held by two parties and each party holds two rights
+                link.setString(1, partyId(i));
+                link.setString(2, rightId(i));
+                link.addBatch();
+                link.setString(1, partyId((i + 1) % rightCount));
+                link.setString(2, rightId(i));
+                link.addBatch();
+            }
+            party.executeBatch();
+            rrr.executeBatch();
+            link.executeBatch();
+            conn.commit();
+        } finally {
+            conn.close();
+        }
+        repository = db.getRepository();
+        repository.setBatchChildLoading(true);
+        repository.setManyToManyJoinLoading(joinLoading);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        db.shutdown();
+    }
+
+    private static String rightId(int i) {
+        return String.format("r%07d", i);
+    }
+
+    private static String partyId(int i) {
+        return String.format("p%07d", i);
+    }
+
+    @Benchmark
+    public BenchRight loadOneRight() {
+        next = (next + 1) % rightCount;
+        return repository.getEntity(BenchRight.class, rightId(next));
+    }
+
+    @Benchmark
+    public List<BenchRight> loadPageOfRights() {
+        next = (next + PAGE_SIZE) % (rightCount - PAGE_SIZE);
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(CommonSqlProvider.PARAM_WHERE_PART, "id >= #{fromId}");
+        params.put(CommonSqlProvider.PARAM_ORDER_BY_PART, "id");
+        params.put(CommonSqlProvider.PARAM_LIMIT_PART, PAGE_SIZE);
+        params.put("fromId", rightId(next));
+        return repository.getEntityList(BenchRight.class, params);
+    }
+}
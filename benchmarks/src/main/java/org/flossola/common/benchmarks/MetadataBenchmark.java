@@ -0,0 +1,101 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.flossola.common.benchmarks.model.BenchParcel;
+import org.flossola.common.services.repository.RepositoryUtility;
+import org.flossola.common.services.repository.entities.ColumnInfo;
+import org.flossola.common.services.repository.entities.EntityMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the cost of the entity metadata registry. Compares the constant
+ * time column lookup of the registry against the linear equalsIgnoreCase scan
+ * previously used by RepositoryUtility.getColumnInfo and measures the cost of
+ * building the metadata for an entity class (i.e. the startup cost).
+ *
+ * @author soladev
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetadataBenchmark {
+
+    private static final String[] NAMES = {"id", "name_firstpart", "nameLastpart",
+        "land_use_code", "officialArea", "geom_polygon", "rowVersion", "unknown"};
+    private List<ColumnInfo> columns;
+
+    @Setup
+    public void setup() {
+        RepositoryUtility.registerEntityClasses(BenchParcel.class);
+        columns = RepositoryUtility.getColumns(BenchParcel.class);
+    }
+
+    @Benchmark
+    public void lookupRegistry(Blackhole bh) {
+        for (String name : NAMES) {
+            bh.consume(RepositoryUtility.getColumnInfo(BenchParcel.class, name));
+        }
+    }
+
+    @Benchmark
+    public void lookupLinearScan(Blackhole bh) {
+        for (String name : NAMES) {
+            ColumnInfo result = null;
+            for (ColumnInfo columnInfo : columns) {
+                if (columnInfo.getFieldName().equalsIgnoreCase(name)
+                        || (columnInfo.getColumnName() != null
+                        && columnInfo.getColumnName().equalsIgnoreCase(name))) {
+                    result = columnInfo;
+                    break;
+                }
+            }
+            bh.consume(result);
+        }
+    }
+
+    @Benchmark
+    public EntityMetadata buildMetadata() {
+        return RepositoryUtility.buildMetadata(BenchParcel.class);
+    }
+}
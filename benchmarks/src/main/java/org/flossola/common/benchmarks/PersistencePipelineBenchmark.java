@@ -0,0 +1,195 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.benchmarks;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.io.WKBWriter;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.flossola.common.benchmarks.model.BenchCadastreObject;
+import org.flossola.common.benchmarks.model.BenchSpatialValueArea;
+import org.flossola.common.services.repository.CommonSqlProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the hot methods of the entity mapping and persistence pipeline
+ * using {@linkplain BenchCadastreObject}, which has a localized column, a
+ * geometry and a one to many child list.
+ * <ul>
+ * <li>{@code mapEntityList} loads a page of cadastre objects and their spatial
+ * value areas through the {@linkplain InMemoryRepository}, i.e.
+ * mapToEntityList, markAsLoaded and batch child loading without a database.
+ * Results are reported per page.</li>
+ * <li>{@code isModifiedUnchanged} and {@code isModifiedChanged} measure the
+ * dirty check made when the entity is saved.</li>
+ * <li>{@code hashCodeAndEquals} adds a page of entities to a HashSet and checks
+ * each is contained in the set.</li>
+ * <li>{@code getEntityListSql}, {@code insertSql} and {@code updateSql} measure
+ * the CommonSqlProvider builders for the entity.</li>
+ * </ul>
+ *
+ * @author soladev
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PersistencePipelineBenchmark {
+
+    private static final int AREAS_PER_OBJECT = 2;
+    @Param({"10", "100", "1000"})
+    public int pageSize;
+    private InMemoryRepository repository;
+    private List<BenchCadastreObject> loaded;
+    private BenchCadastreObject unchanged;
+    private BenchCadastreObject changed;
+
+    @Setup
+    public void setup() {
+        byte[] wkb = createPolygon();
+        List<HashMap> objectRows = new ArrayList<HashMap>();
+        List<HashMap> areaRows = new ArrayList<HashMap>();
+        for (int i = 0; i < pageSize; i++) {
+            HashMap<String, Object> row = new HashMap<String, Object>();
+            row.put("id", "co-" + i);
+            row.put("type_code", "parcel");
+            row.put("name_firstpart", Integer.toString(i));
+            row.put("name_lastpart", "DP " + (i / 10));
+            row.put("status_code", "current");
+            row.put("description", "Lot " + i + " in deposited plan " + (i / 10));
+            row.put("geom_polygon", wkb.clone());
+            row.put("rowidentifier", "row-co-" + i);
+            row.put("rowversion", 1);
+            row.put("change_user", "bench");
+            objectRows.add(row);
+            for (int j = 0; j < AREAS_PER_OBJECT; j++) {
+                HashMap<String, Object> area = new HashMap<String, Object>();
+                area.put("id", "area-" + i + "-" + j);
+                area.put("spatial_unit_id", "co-" + i);
+                area.put("type_code", j == 0 ? "officialArea" : "calculatedArea");
+                area.put("size", new BigDecimal(500 + i));
+                area.put("rowidentifier", "row-area-" + i + "-" + j);
+                area.put("rowversion", 1);
+                area.put("change_user", "bench");
+                areaRows.add(area);
+            }
+        }
+        repository = new InMemoryRepository();
+        repository.setBatchChildLoading(true);
+        repository.setRows(BenchCadastreObject.class, objectRows);
+        repository.setRows(BenchSpatialValueArea.class, areaRows);
+
+        loaded = mapEntityList();
+        unchanged = loaded.get(0);
+        // Replace the geometry with an identical copy as occurs when the entity
+        // is mapped from a transfer object
+        unchanged.setGeomPolygon(unchanged.getGeomPolygon().clone());
+        changed = loaded.get(loaded.size() - 1);
+        changed.setDescription("Updated description");
+    }
+
+    private static byte[] createPolygon() {
+        Coordinate[] ring = new Coordinate[101];
+        for (int i = 0; i < 100; i++) {
+            double angle = 2 * Math.PI * i / 100;
+            ring[i] = new Coordinate(1000 + Math.cos(angle) * 50, 2000 + Math.sin(angle) * 50);
+        }
+        ring[100] = ring[0];
+        return new WKBWriter().write(new GeometryFactory().createPolygon(
+                new GeometryFactory().createLinearRing(ring), null));
+    }
+
+    @Benchmark
+    public List<BenchCadastreObject> mapEntityList() {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(CommonSqlProvider.PARAM_LANGUAGE_CODE, "en");
+        return repository.getEntityList(BenchCadastreObject.class, params);
+    }
+
+    @Benchmark
+    public boolean isModifiedUnchanged() {
+        return unchanged.isModified();
+    }
+
+    @Benchmark
+    public boolean isModifiedChanged() {
+        return changed.isModified();
+    }
+
+    @Benchmark
+    public int hashCodeAndEquals() {
+        Set<BenchCadastreObject> set = new HashSet<BenchCadastreObject>(loaded.size() * 2);
+        set.addAll(loaded);
+        int found = 0;
+        for (BenchCadastreObject object : loaded) {
+            if (set.contains(object)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public String getEntityListSql() {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(CommonSqlProvider.PARAM_ENTITY_CLASS, BenchCadastreObject.class);
+        params.put(CommonSqlProvider.PARAM_WHERE_PART, "name_lastpart = #{lastPart}");
+        params.put(CommonSqlProvider.PARAM_LANGUAGE_CODE, "en");
+        params.put("lastPart", "DP 1");
+        return CommonSqlProvider.buildGetEntityListSql(params);
+    }
+
+    @Benchmark
+    public String insertSql() {
+        return CommonSqlProvider.buildInsertSql(changed);
+    }
+
+    @Benchmark
+    public String updateSql() {
+        return CommonSqlProvider.buildUpdateSql(changed);
+    }
+}
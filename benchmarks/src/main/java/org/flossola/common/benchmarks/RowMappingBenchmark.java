@@ -0,0 +1,126 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.flossola.common.benchmarks.model.BenchParcel;
+import org.flossola.common.services.repository.RepositoryUtility;
+import org.flossola.common.services.repository.RowMappingPlan;
+import org.flossola.common.services.repository.entities.ColumnInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares mapping result rows to entities using the {@linkplain RowMappingPlan}
+ * against the original approach that lower cased each column name and probed
+ * the row map twice for every column of every row. Results are reported per
+ * mapped row. Run with the GC profiler to track the allocation per mapped row,
+ * e.g.
+ * <pre>java -jar target/benchmarks.jar RowMappingBenchmark -prof gc</pre>
+ * and check the gc.alloc.rate.norm values.
+ *
+ * @author soladev
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RowMappingBenchmark {
+
+    private static final int ROWS = 100;
+    private List<Map<String, Object>> rows;
+    private List<ColumnInfo> columns;
+    private RowMappingPlan plan;
+
+    @Setup
+    public void setup() {
+        rows = new ArrayList<Map<String, Object>>();
+        for (int i = 0; i < ROWS; i++) {
+            // Mybatis omits null columns from the row so leave land_use_code out
+            // of every second row
+            Map<String, Object> row = new HashMap<String, Object>();
+            row.put("id", "parcel-" + i);
+            row.put("name_firstpart", Integer.toString(i));
+            row.put("name_lastpart", "DP " + i);
+            row.put("status_code", "current");
+            if (i % 2 == 0) {
+                row.put("land_use_code", "residential");
+            }
+            row.put("official_area", new BigDecimal(i * 10));
+            row.put("geom_polygon", new byte[]{1, 2, 3, 4});
+            row.put("rowidentifier", "row-" + i);
+            row.put("rowversion", 1);
+            row.put("change_user", "bench");
+            rows.add(row);
+        }
+        columns = RepositoryUtility.getColumns(BenchParcel.class);
+        plan = RepositoryUtility.getRowMappingPlan(BenchParcel.class);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void mapWithPlan(Blackhole bh) {
+        for (Map<String, Object> row : rows) {
+            BenchParcel parcel = new BenchParcel();
+            plan.mapRow(parcel, row);
+            bh.consume(parcel);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void mapPerColumnLookup(Blackhole bh) {
+        for (Map<String, Object> row : rows) {
+            BenchParcel parcel = new BenchParcel();
+            for (ColumnInfo columnInfo : columns) {
+                if (row.containsKey(columnInfo.getColumnName().toLowerCase())) {
+                    Object value = row.get(columnInfo.getColumnName().toLowerCase());
+                    parcel.setEntityFieldValue(columnInfo, value);
+                }
+            }
+            bh.consume(parcel);
+        }
+    }
+}
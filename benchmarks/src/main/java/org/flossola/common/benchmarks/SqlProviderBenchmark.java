@@ -0,0 +1,106 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.flossola.common.benchmarks.model.BenchParcel;
+import org.flossola.common.services.repository.CommonSqlProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the number of SQL statements per second generated by
+ * {@linkplain CommonSqlProvider} with the SQL template cache enabled and
+ * disabled (i.e. the original SqlBuilder behaviour).
+ *
+ * @author soladev
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SqlProviderBenchmark {
+
+    @Param({"true", "false"})
+    public boolean templateCache;
+    private BenchParcel parcel;
+
+    @Setup
+    public void setup() {
+        CommonSqlProvider.setTemplateCacheEnabled(templateCache);
+        parcel = new BenchParcel();
+        parcel.setNameFirstpart("1234");
+        parcel.setNameLastpart("DP 5678");
+        parcel.setLandUseCode("residential");
+        parcel.setOfficialArea(new BigDecimal("1024.5"));
+        parcel.setGeomPolygon(new byte[]{1, 2, 3, 4});
+    }
+
+    private Map<String, Object> listParams() {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(CommonSqlProvider.PARAM_ENTITY_CLASS, BenchParcel.class);
+        params.put(CommonSqlProvider.PARAM_WHERE_PART, "name_firstpart = #{firstPart}");
+        params.put(CommonSqlProvider.PARAM_LANGUAGE_CODE, "en");
+        params.put("firstPart", "1234");
+        return params;
+    }
+
+    @Benchmark
+    public String getEntityListSql() {
+        return CommonSqlProvider.buildGetEntityListSql(listParams());
+    }
+
+    @Benchmark
+    public String insertSql() {
+        return CommonSqlProvider.buildInsertSql(parcel);
+    }
+
+    @Benchmark
+    public String updateSql() {
+        return CommonSqlProvider.buildUpdateSql(parcel);
+    }
+
+    @Benchmark
+    public String deleteSql() {
+        return CommonSqlProvider.buildDeleteSql(parcel);
+    }
+}
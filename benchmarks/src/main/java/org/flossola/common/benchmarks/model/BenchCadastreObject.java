@@ -0,0 +1,139 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.benchmarks.model;
+
+import java.util.List;
+import javax.persistence.Column;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import org.flossola.common.services.repository.AccessFunctions;
+import org.flossola.common.services.repository.ChildEntityList;
+import org.flossola.common.services.repository.Localized;
+import org.flossola.common.services.repository.entities.AbstractVersionedEntity;
+
+/**
+ * Synthetic cadastre object used by the persistence pipeline benchmarks. Unlike
+ * {@linkplain BenchParcel}, the cadastre object has a localized column and a
+ * one to many list of {@linkplain BenchSpatialValueArea} so that it exercises
+ * all of the metadata used when mapping and saving a typical SOLA entity.
+ *
+ * @author soladev
+ */
+@Table(schema = "bench", name = "cadastre_object")
+public class BenchCadastreObject extends AbstractVersionedEntity {
+
+    @Id
+    @Column(name = "id")
+    private String id;
+    @Column(name = "type_code")
+    private String typeCode;
+    @Column(name = "name_firstpart")
+    private String nameFirstpart;
+    @Column(name = "name_lastpart")
+    private String nameLastpart;
+    @Column(name = "status_code", insertable = false, updatable = false)
+    private String statusCode;
+    @Localized
+    @Column(name = "description")
+    private String description;
+    @Column(name = "geom_polygon")
+    @AccessFunctions(onSelect = "st_asewkb(geom_polygon)",
+            onChange = "get_geometry_with_srid(#{geomPolygon})")
+    private byte[] geomPolygon;
+    @ChildEntityList(parentIdField = "spatialUnitId")
+    private List<BenchSpatialValueArea> spatialValueAreas;
+
+    public BenchCadastreObject() {
+        super();
+    }
+
+    public String getId() {
+        id = id == null ? generateId() : id;
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getTypeCode() {
+        return typeCode;
+    }
+
+    public void setTypeCode(String typeCode) {
+        this.typeCode = typeCode;
+    }
+
+    public String getNameFirstpart() {
+        return nameFirstpart;
+    }
+
+    public void setNameFirstpart(String nameFirstpart) {
+        this.nameFirstpart = nameFirstpart;
+    }
+
+    public String getNameLastpart() {
+        return nameLastpart;
+    }
+
+    public void setNameLastpart(String nameLastpart) {
+        this.nameLastpart = nameLastpart;
+    }
+
+    public String getStatusCode() {
+        return statusCode;
+    }
+
+    public void setStatusCode(String statusCode) {
+        this.statusCode = statusCode;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public byte[] getGeomPolygon() {
+        return geomPolygon;
+    }
+
+    public void setGeomPolygon(byte[] geomPolygon) {
+        this.geomPolygon = geomPolygon;
+    }
+
+    public List<BenchSpatialValueArea> getSpatialValueAreas() {
+        return spatialValueAreas;
+    }
+
+    public void setSpatialValueAreas(List<BenchSpatialValueArea> spatialValueAreas) {
+        this.spatialValueAreas = spatialValueAreas;
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.benchmarks.model;
+
+import java.math.BigDecimal;
+import javax.persistence.Column;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import org.flossola.common.services.repository.AccessFunctions;
+import org.flossola.common.services.repository.entities.AbstractVersionedEntity;
+
+/**
+ * Synthetic parcel entity used by the benchmarks. The entity is modeled on the
+ * typical SOLA cadastre object and includes a geometry column.
+ *
+ * @author soladev
+ */
+@Table(schema = "bench", name = "parcel")
+public class BenchParcel extends AbstractVersionedEntity {
+
+    @Id
+    @Column(name = "id")
+    private String id;
+    @Column(name = "name_firstpart")
+    private String nameFirstpart;
+    @Column(name = "name_lastpart")
+    private String nameLastpart;
+    @Column(name = "status_code", insertable = false, updatable = false)
+    private String statusCode;
+    @Column(name = "land_use_code")
+    private String landUseCode;
+    @Column(name = "official_area")
+    private BigDecimal officialArea;
+    @Column(name = "geom_polygon")
+    @AccessFunctions(onSelect = "st_asewkb(geom_polygon)",
+            onChange = "get_geometry_with_srid(#{geomPolygon})")
+    private byte[] geomPolygon;
+
+    public BenchParcel() {
+        super();
+    }
+
+    public String getId() {
+        id = id == null ? generateId() : id;
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getNameFirstpart() {
+        return nameFirstpart;
+    }
+
+    public void setNameFirstpart(String nameFirstpart) {
+        this.nameFirstpart = nameFirstpart;
+    }
+
+    public String getNameLastpart() {
+        return nameLastpart;
+    }
+
+    public void setNameLastpart(String nameLastpart) {
+        this.nameLastpart = nameLastpart;
+    }
+
+    public String getStatusCode() {
+        return statusCode;
+    }
+
+    public void setStatusCode(String statusCode) {
+        this.statusCode = statusCode;
+    }
+
+    public String getLandUseCode() {
+        return landUseCode;
+    }
+
+    public void setLandUseCode(String landUseCode) {
+        this.landUseCode = landUseCode;
+    }
+
+    public BigDecimal getOfficialArea() {
+        return officialArea;
+    }
+
+    public void setOfficialArea(BigDecimal officialArea) {
+        this.officialArea = officialArea;
+    }
+
+    public byte[] getGeomPolygon() {
+        return geomPolygon;
+    }
+
+    public void setGeomPolygon(byte[] geomPolygon) {
+        this.geomPolygon = geomPolygon;
+    }
+}
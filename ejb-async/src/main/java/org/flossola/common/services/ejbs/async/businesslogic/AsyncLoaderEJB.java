@@ -0,0 +1,86 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.ejbs.async.businesslogic;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import javax.annotation.Resource;
+import javax.ejb.AsyncResult;
+import javax.ejb.Asynchronous;
+import javax.ejb.EJB;
+import javax.ejb.EJBException;
+import javax.ejb.SessionContext;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+
+/**
+ * Stateless EJB used by the repository to load data on a container managed
+ * thread. Primarily intended to load the child entities obtained from other
+ * EJBs in parallel.
+ *
+ * Asynchronous methods do not join the transaction of the caller, so each task
+ * runs in a new transaction. The transaction is always rolled back when the
+ * task completes so that a task can only be used to read data.
+ *
+ * The number of concurrent tasks is limited by the asynchronous thread pool of
+ * the container.
+ *
+ * @author soladev
+ */
+@Stateless
+@EJB(name = "java:app/AsyncLoaderEJBLocal", beanInterface = AsyncLoaderEJBLocal.class)
+public class AsyncLoaderEJB implements AsyncLoaderEJBLocal {
+
+    @Resource
+    private SessionContext sessionContext;
+
+    /**
+     * Runs the task on a container managed thread.
+     *
+     * @param task The task to run.
+     * @return The future used to obtain the result of the task. Any exception
+     * raised by the task is reported as the cause of the ExecutionException
+     * thrown by the future.
+     */
+    @Override
+    @Asynchronous
+    @TransactionAttribute(TransactionAttributeType.REQUIRED)
+    public <T> Future<T> load(Callable<T> task) {
+        try {
+            return new AsyncResult<T>(task.call());
+        } catch (RuntimeException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new EJBException(ex);
+        } finally {
+            // Discard anything the task may have written
+            sessionContext.setRollbackOnly();
+        }
+    }
+}
@@ -27,8 +27,10 @@
  */
 package org.flossola.common.services.ejbs.cache.businesslogic;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -51,10 +53,16 @@ import org.flossola.common.utilities.logging.LogUtility;
  * Cacheable Java Persistence Annotation. Primarily intended to cache lists of
  * reference codes.
  *
- * No support is provided to cache individual entities. Care should be taken if
- * individual entities are cached as the cache key is based on the entity class.
- * Attempting to cache individual entities my result it cache entries being
- * overwritten by mistake.
+ * A cached list can also have an index (e.g. from reference code to code
+ * entity) that is held under the same key as the list and is removed whenever
+ * the list is removed or replaced.
+ *
+ * The database row of individual entities can be cached by id using
+ * {@linkplain #putEntityRow(Class, String, String, Map, int, int) putEntityRow}.
+ * The rows are held separately from the cached lists with a maximum number of
+ * entries and an expiry time for each entity class. Each caller maps the row
+ * to its own entity instance, so cached rows are never shared as mutable
+ * entities.
  *
  * Uses Container Concurrency to ensure each method is managed with READ
  * (multiple access) or WRITE (single access) locks
@@ -70,8 +78,25 @@ import org.flossola.common.utilities.logging.LogUtility;
 public class CacheEJB implements CacheEJBLocal {
 
     Map<String, Object> cache = new HashMap<String, Object>();
+    Map<String, Map<String, ?>> indexCache = new HashMap<String, Map<String, ?>>();
+    Map<String, Map<String, CachedRow>> entityCache = new HashMap<String, Map<String, CachedRow>>();
     private static final String KEY_DIVIDER = "_";
 
+    /**
+     * An entity row held in the by id entity cache along with the time the
+     * entry expires.
+     */
+    private static final class CachedRow {
+
+        private final Map<String, Object> row;
+        private final long expiresAt;
+
+        CachedRow(Map<String, Object> row, long expiresAt) {
+            this.row = row;
+            this.expiresAt = expiresAt;
+        }
+    }
+
     /**
      * Determines the key to use for the entity using the class name and a
      * suffix. In most cases the suffix should be the language code, so that the
@@ -146,6 +171,42 @@ public class CacheEJB implements CacheEJBLocal {
         cache.put(key, list);
     }
 
+    /**
+     * Retrieves the index for a cached list.
+     *
+     * @param <T>
+     * @param entityClass The entity class of the list
+     * @param key Cache key determined using the
+     * {@linkplain #getKey(java.lang.Class, java.lang.String) getKey} method
+     * @return The index or null if the list has not been indexed.
+     */
+    @Override
+    public <T> Map<String, T> getListIndex(Class<T> entityClass, String key) {
+        return StringUtility.isEmpty(key) ? null : (Map<String, T>) indexCache.get(key);
+    }
+
+    /**
+     * Stores an index for a cached list. This method creates a WRITE lock
+     * blocking all other access until it is completed.
+     *
+     * The index is only stored if the list it was built from is still the list
+     * held in the cache for the key. This ensures the index cannot become out
+     * of step with the cached list.
+     *
+     * @param <T>
+     * @param key Cache key determined using the
+     * {@linkplain #getKey(java.lang.Class, java.lang.String) getKey} method
+     * @param list The cached list the index was built from
+     * @param index The index to store.
+     */
+    @Lock(LockType.WRITE)
+    @Override
+    public <T> void putListIndex(String key, List<T> list, Map<String, T> index) {
+        if (list != null && isCachedList(key) && cache.get(key) == list) {
+            indexCache.put(key, index);
+        }
+    }
+
     /**
      * Removes a specific entry as identified by the key from the cache. This
      * method has been extracted from the
@@ -160,6 +221,7 @@ public class CacheEJB implements CacheEJBLocal {
             LogUtility.log("Removing from cache > " + key, Level.INFO);
             cache.remove(key);
         }
+        indexCache.remove(key);
     }
 
     /**
@@ -199,11 +261,110 @@ public class CacheEJB implements CacheEJBLocal {
                 if (className.equals(tmpKey.split(KEY_DIVIDER)[0])) {
                     LogUtility.log("Removing from cache > " + tmpKey, Level.INFO);
                     it.remove();
+                    indexCache.remove(tmpKey);
                 }
             }
         }
     }
 
+    /**
+     * Retrieves an entity row from the by id entity cache.
+     *
+     * @param entityClass The class of the entity
+     * @param id The id of the entity
+     * @param languageCode The language code used to load the entity
+     * @return The cached row (which cannot be modified) or null if the row is
+     * not cached or its cache entry has expired.
+     */
+    @Override
+    public Map<String, Object> getEntityRow(Class<?> entityClass, String id, String languageCode) {
+        Map<String, CachedRow> entities = entityCache.get(entityClass.getName());
+        CachedRow cached = entities == null ? null : entities.get(getEntityKey(id, languageCode));
+        if (cached == null || cached.expiresAt < System.currentTimeMillis()) {
+            return null;
+        }
+        return cached.row;
+    }
+
+    private String getEntityKey(String id, String languageCode) {
+        return (StringUtility.isEmpty(languageCode) ? "ALL" : languageCode) + KEY_DIVIDER + id;
+    }
+
+    /**
+     * Stores an entity row in the by id entity cache. A copy of the row is
+     * cached. This method creates a WRITE lock blocking all other access until
+     * it is completed.
+     *
+     * If the number of rows cached for the entity class exceeds maxEntries,
+     * the row that was added to the cache first is removed.
+     *
+     * @param entityClass The class of the entity
+     * @param id The id of the entity
+     * @param languageCode The language code used to load the entity
+     * @param row The database row of the entity to cache
+     * @param maxEntries The maximum number of entities to cache for the entity
+     * class. Entities are not cached if this value is less than 1.
+     * @param expirySeconds The number of seconds the entity can be held in the
+     * cache.
+     */
+    @Lock(LockType.WRITE)
+    @Override
+    public void putEntityRow(Class<?> entityClass, String id, String languageCode,
+            Map<String, Object> row, final int maxEntries, int expirySeconds) {
+        if (maxEntries < 1 || row == null) {
+            return;
+        }
+        Map<String, CachedRow> entities = entityCache.get(entityClass.getName());
+        if (entities == null) {
+            entities = new LinkedHashMap<String, CachedRow>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedRow> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+            entityCache.put(entityClass.getName(), entities);
+        }
+        String key = getEntityKey(id, languageCode);
+        // Remove any existing entry so the row is treated as the most recent entry
+        entities.remove(key);
+        entities.put(key, new CachedRow(Collections.unmodifiableMap(new HashMap<String, Object>(row)),
+                System.currentTimeMillis() + SECONDS.toMillis(expirySeconds)));
+    }
+
+    /**
+     * Removes all rows of the entity class from the by id entity cache. Used
+     * to ensure the cache does not return stale rows after an entity of the
+     * class is saved.
+     *
+     * This method creates a WRITE lock blocking all other access until it is
+     * completed.
+     *
+     * @param entityClass The entity class to remove from the entity cache.
+     */
+    @Lock(LockType.WRITE)
+    @Override
+    public void clearEntities(Class entityClass) {
+        if (entityClass != null && entityCache.remove(entityClass.getName()) != null) {
+            LogUtility.log("Removing entities from cache > " + entityClass.getName(), Level.INFO);
+        }
+    }
+
+    /**
+     * Removes all rows from the by id entity cache. Used when the tables
+     * modified by a statement cannot be determined (e.g. a bulk update).
+     *
+     * This method creates a WRITE lock blocking all other access until it is
+     * completed.
+     */
+    @Lock(LockType.WRITE)
+    @Override
+    public void clearAllEntities() {
+        if (!entityCache.isEmpty()) {
+            entityCache.clear();
+            LogUtility.log("Removing all entities from cache", Level.INFO);
+        }
+    }
+
     /**
      * Completely clears the cache of all entries. Includes a default schedule
      * so that the cache is cleared regularly each day at 5am. More complex
@@ -218,6 +379,8 @@ public class CacheEJB implements CacheEJBLocal {
     public void clearAll() {
         LogUtility.log("Empty cache", Level.INFO);
         cache.clear();
+        indexCache.clear();
+        entityCache.clear();
     }
 
 }
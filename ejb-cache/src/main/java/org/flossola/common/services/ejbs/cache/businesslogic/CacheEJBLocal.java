@@ -28,6 +28,7 @@
 package org.flossola.common.services.ejbs.cache.businesslogic;
 
 import java.util.List;
+import java.util.Map;
 import javax.ejb.Local;
 
 /**
@@ -45,8 +46,21 @@ public interface CacheEJBLocal {
 
     <T> void putList(String key, List<T> list);
 
+    <T> Map<String, T> getListIndex(Class<T> entityClass, String key);
+
+    <T> void putListIndex(String key, List<T> list, Map<String, T> index);
+
     void clearEntityLists(Class entityClass);
 
+    Map<String, Object> getEntityRow(Class<?> entityClass, String id, String languageCode);
+
+    void putEntityRow(Class<?> entityClass, String id, String languageCode, Map<String, Object> row,
+            int maxEntries, int expirySeconds);
+
+    void clearEntities(Class entityClass);
+
+    void clearAllEntities();
+
     void clear(String key);
 
     void clearAll();
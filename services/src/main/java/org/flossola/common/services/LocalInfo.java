@@ -71,23 +71,48 @@ public final class LocalInfo {
     public static final String TRANSACTION_ID = "Local.TransactionId";
     public static String BASE_URL = "Local.BaseUrl";
     public static final String SESSION_CONTEXT = "Local.SessionContext";
+    /**
+     * The Transaction Synchronization Registry obtained from JNDI. The registry
+     * is a singleton provided by the JEE container, so it is only looked up
+     * once.
+     */
+    private static volatile TransactionSynchronizationRegistry transactionRegistry;
+    /**
+     * Set on threads where the lookup of the Transaction Synchronization
+     * Registry has failed (e.g. tests run outside of a JEE container) so the
+     * lookup is not repeated for every call. The flag is held per thread as the
+     * lookup can also fail on threads that are not managed by the container.
+     */
+    private static final ThreadLocal<Boolean> registryUnavailable = new ThreadLocal<Boolean>();
+    private static volatile boolean registryWarningLogged = false;
 
     /**
      * @return The Transaction Synchronization Registry from the JEE container
-     * or null if it is not available.
+     * or null if it is not available or there is no transaction associated
+     * with the registry.
      */
-    private static TransactionSynchronizationRegistry getTransactionRegistry() {
-        TransactionSynchronizationRegistry registry = null;
+    public static TransactionSynchronizationRegistry getTransactionRegistry() {
+        TransactionSynchronizationRegistry registry = transactionRegistry;
+        if (registry != null) {
+            // Make sure a transaction is associated with the registry
+            return registry.getTransactionStatus() == Status.STATUS_NO_TRANSACTION ? null : registry;
+        }
+        if (registryUnavailable.get() != null) {
+            return null;
+        }
         try {
             Context context = new InitialContext();
             registry = (TransactionSynchronizationRegistry) context.lookup("java:comp/TransactionSynchronizationRegistry");
+            transactionRegistry = registry;
         } catch (NamingException ex) {
             // Unable to obtain a Transaction Local storage area - possibly this is a test that is 
             // not being run in the context of a JEE container. Use Thread Local Storage instead. 
-            LogUtility.log("Failed to lookup java:comp/TransactionSynchronizationRegistry. "
-                    + "Will use Thread Local storage instead.", Level.WARNING);
-            System.out.println("Warning: Failed to lookup java:comp/TransactionSynchronizationRegistry."
-                    + "Will use Thread Local storage instead.");
+            registryUnavailable.set(Boolean.TRUE);
+            if (!registryWarningLogged) {
+                registryWarningLogged = true;
+                LogUtility.log("Failed to lookup java:comp/TransactionSynchronizationRegistry. "
+                        + "Will use Thread Local storage instead.", Level.WARNING);
+            }
         }
         // Make sure a transaction is associated with the registry
         if (registry != null && registry.getTransactionStatus() == Status.STATUS_NO_TRANSACTION) {
@@ -96,6 +121,17 @@ public final class LocalInfo {
         return registry;
     }
 
+    /**
+     * Replaces the Transaction Synchronization Registry used by LocalInfo.
+     * Supports testing transaction scoped behaviour outside of a JEE
+     * container. Setting null reverts to the registry obtained from JNDI.
+     *
+     * @param registry The registry to use or null.
+     */
+    public static void setTransactionRegistry(TransactionSynchronizationRegistry registry) {
+        transactionRegistry = registry;
+    }
+
     /**
      * Obtains the name of the currently logged in user or null if this is not
      * set.
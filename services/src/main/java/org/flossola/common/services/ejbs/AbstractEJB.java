@@ -29,6 +29,7 @@ package org.flossola.common.services.ejbs;
 
 import java.net.URL;
 import java.util.List;
+import java.util.Map;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
@@ -37,6 +38,8 @@ import javax.annotation.security.RolesAllowed;
 import javax.ejb.SessionContext;
 import javax.interceptor.AroundInvoke;
 import javax.interceptor.InvocationContext;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
 import org.flossola.common.utilities.constants.RolesConstants;
 import org.flossola.common.utilities.exceptions.SOLAException;
 import org.flossola.common.messaging.CommonMessage;
@@ -46,7 +49,10 @@ import org.flossola.common.services.repository.entities.AbstractCodeEntity;
 import org.flossola.common.services.repository.CommonRepository;
 import org.flossola.common.services.repository.CommonRepositoryImpl;
 import org.flossola.common.services.repository.DatabaseConnectionManager;
+import org.flossola.common.services.repository.MapperStatistics;
+import org.flossola.common.services.repository.RepositoryUtility;
 import org.flossola.common.services.repository.entities.AbstractEntity;
+import org.flossola.common.services.repository.entities.AbstractReadOnlyEntity;
 
 @DeclareRoles({
     RolesConstants.DASHBOARD_VIEW_ASSIGNED_APPS,
@@ -114,6 +120,8 @@ public abstract class AbstractEJB implements AbstractEJBLocal {
     private SessionContext sessionContext;
     private CommonRepository repository;
     private String entityPackage;
+    private String applicationName;
+    private String moduleName;
 
     /**
      * Returns name of entities package. Should be set explicitely.
@@ -133,6 +141,20 @@ public abstract class AbstractEJB implements AbstractEJBLocal {
         return cnt;
     }
     
+    /**
+     * Returns the number of entities matching the WHERE clause using a COUNT query rather than
+     * loading the entities. See
+     * {@linkplain CommonRepository#getEntityListCount(Class, String, Map)}.
+     *
+     * @param entityClass The class of the entities to count.
+     * @param whereClause The WHERE clause for the query. Can be null to count all entities.
+     * @param params The parameters for the SQL query.
+     */
+    public <T extends AbstractReadOnlyEntity> long getEntityListCount(Class<T> entityClass,
+            String whereClause, Map params) {
+        return getRepository().getEntityListCount(entityClass, whereClause, params);
+    }
+
     /**
      * Sets name of the entities package.
      */
@@ -183,9 +205,37 @@ public abstract class AbstractEJB implements AbstractEJBLocal {
     private void onPostConstruct() {
         URL connectConfigFileUrl = this.getClass().getResource(CommonRepository.CONNECT_CONFIG_FILE_NAME);
         repository = new CommonRepositoryImpl(connectConfigFileUrl);
+        RepositoryUtility.registerEntityClasses(getEntityClasses());
+        applicationName = lookupName("java:app/AppName");
+        moduleName = lookupName("java:module/ModuleName");
+        MapperStatistics.getInstance().register(applicationName, moduleName);
         postConstruct();
     }
 
+    /**
+     * Looks up the application or module name from JNDI. Used to identify the
+     * {@linkplain MapperStatistics} of this application in JMX.
+     *
+     * @param jndiName The JNDI name of the application or module name.
+     * @return The name or "unknown" if it is not available.
+     */
+    private static String lookupName(String jndiName) {
+        try {
+            return (String) new InitialContext().lookup(jndiName);
+        } catch (NamingException ex) {
+            return "unknown";
+        }
+    }
+
+    /**
+     * Returns the entity classes used by the EJB so their metadata can be
+     * registered when the EJB is created rather than on first use. Returns null
+     * by default. Can be overridden in descendent EJB classes.
+     */
+    protected Class<?>[] getEntityClasses() {
+        return null;
+    }
+
     /**
      * This method has no implementation and can be overridden in descendent EJB
      * classes to perform setup actions following the injection of resources
@@ -239,6 +289,7 @@ public abstract class AbstractEJB implements AbstractEJBLocal {
     @PreDestroy
     private void onPreDestroy() {
         preDestroy();
+        MapperStatistics.getInstance().unregister(applicationName, moduleName);
         LocalInfo.remove();
     }
 
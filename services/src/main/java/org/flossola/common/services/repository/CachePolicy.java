@@ -0,0 +1,71 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Custom SOLA annotation that can be applied to entities marked with the
+ * {@linkplain javax.persistence.Cacheable} annotation to configure the
+ * capacity and expiry of the by id entity cache for the entity class. If an
+ * entity class is cacheable but does not have this annotation, the default
+ * values are used. The by id entity cache is used by
+ * {@linkplain CommonRepository#getEntity(Class, String)} and
+ * {@linkplain CommonRepository#getEntity(Class, String, String)}. Only the
+ * database row of the entity is cached. The child entities are loaded each time
+ * the entity is requested.
+ *
+ * @author soladev
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+public @interface CachePolicy {
+
+    int DEFAULT_MAX_ENTRIES = 1000;
+    int DEFAULT_EXPIRY_SECONDS = 3600;
+
+    /**
+     * Optional. The maximum number of entities of the class that are cached
+     * by id. Once this number is reached, the oldest entity is removed from the
+     * cache when a new entity is added. Set to 0 to disable the by id cache for
+     * the entity class. Default is {@linkplain #DEFAULT_MAX_ENTRIES}.
+     */
+    int maxEntries() default DEFAULT_MAX_ENTRIES;
+
+    /**
+     * Optional. The number of seconds an entity is held in the by id cache
+     * before it must be reloaded from the database. Default is
+     * {@linkplain #DEFAULT_EXPIRY_SECONDS}.
+     */
+    int expirySeconds() default DEFAULT_EXPIRY_SECONDS;
+}
@@ -86,4 +86,14 @@ public @interface ChildEntityList {
      * Default false.  
      */
     boolean readOnly() default false; 
+
+    /**
+     * Flag to indicate the child list should not be loaded with the parent entity. Instead the 
+     * list is loaded when it is first accessed. If the parent was loaded as part of a list, the 
+     * child lists of all parents in the list are loaded together. The field must be declared as 
+     * a List. The list must be accessed in the same transaction and by the same user that 
+     * loaded the parent. Lists of cached entities are always loaded. Optional for One to Many 
+     * and Many to Many relationships. Default false. See {@linkplain LazyEntityList}.
+     */
+    boolean lazy() default false; 
 }
@@ -32,6 +32,7 @@ import java.util.HashMap;
 import java.util.Map;
 import org.apache.ibatis.annotations.DeleteProvider;
 import org.apache.ibatis.annotations.InsertProvider;
+import org.apache.ibatis.annotations.Options;
 import org.apache.ibatis.annotations.SelectProvider;
 import org.apache.ibatis.annotations.UpdateProvider;
 import org.flossola.common.services.repository.entities.AbstractEntity;
@@ -42,6 +43,12 @@ import org.flossola.common.services.repository.entities.AbstractEntity;
  */
 public interface CommonMapper {
 
+    /**
+     * The number of rows fetched from the database at a time by
+     * {@linkplain #streamEntityList(Map)}.
+     */
+    public static final int STREAM_FETCH_SIZE = 500;
+
     /**
      * Refer to {@linkplain CommonSqlProvider#buildInsertSql}.
      */
@@ -72,6 +79,18 @@ public interface CommonMapper {
     @SelectProvider(type = CommonSqlProvider.class, method = "buildGetEntityListSql")
     ArrayList<HashMap> getEntityList(Map params);
 
+    /**
+     * Refer to {@linkplain CommonSqlProvider#buildGetEntityListSql}. Variation of
+     * {@linkplain #getEntityList(Map)} that sets a fetch size for the JDBC statement. This method
+     * is intended to be executed with {@linkplain org.apache.ibatis.session.SqlSession#select(
+     * String, Object, org.apache.ibatis.session.ResultHandler)} so that each row can be processed
+     * as it is read from the database. See
+     * {@linkplain CommonRepository#streamEntityList(Class, Map, EntityHandler)}.
+     */
+    @SelectProvider(type = CommonSqlProvider.class, method = "buildGetEntityListSql")
+    @Options(fetchSize = CommonMapper.STREAM_FETCH_SIZE)
+    ArrayList<HashMap> streamEntityList(Map params);
+
     /**
      * Refer to {@linkplain CommonSqlProvider#buildSelectSql}.
      */
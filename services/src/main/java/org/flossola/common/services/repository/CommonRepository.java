@@ -83,6 +83,20 @@ public interface CommonRepository {
     <T extends AbstractReadOnlyEntity> List<T> getEntityList(Class<T> entityClass,
             String whereClause, Map params);
 
+    <T extends AbstractReadOnlyEntity> long getEntityListCount(Class<T> entityClass, Map params);
+
+    <T extends AbstractReadOnlyEntity> long getEntityListCount(Class<T> entityClass,
+            String whereClause, Map params);
+
+    <T extends AbstractReadOnlyEntity> EntityPage<T> getEntityPage(Class<T> entityClass,
+            String whereClause, Map params, int pageSize, String pageToken);
+
+    <T extends AbstractReadOnlyEntity> int streamEntityList(Class<T> entityClass, Map params,
+            EntityHandler<? super T> handler);
+
+    <T extends AbstractReadOnlyEntity> int streamEntityList(Class<T> entityClass,
+            String whereClause, Map params, EntityHandler<? super T> handler);
+
     <T extends AbstractReadOnlyEntity, V extends AbstractReadOnlyEntity> List<V> getChildEntityList(
             T parentEntity, Class<V> childEntityClass, ChildEntityInfo childInfo);
 
@@ -102,6 +116,8 @@ public interface CommonRepository {
 
     void setLoadInhibitors(Class<?>[] entityClasses);
 
+    LoadInhibitorScope inhibitLoad(Class<?>... entityClasses);
+
     ArrayList<HashMap> executeFunction(Map params);
 
     <T extends AbstractReadOnlyEntity> List<T> executeFunction(Map params, Class<T> entityClass);
@@ -111,4 +127,32 @@ public interface CommonRepository {
     int bulkUpdate(Map params);
 
     CacheEJBLocal getCache();
+
+    boolean isBatchChildLoading();
+
+    void setBatchChildLoading(boolean batchChildLoading);
+
+    boolean isManyToManyJoinLoading();
+
+    void setManyToManyJoinLoading(boolean manyToManyJoinLoading);
+
+    boolean isIdentityMapEnabled();
+
+    void setIdentityMapEnabled(boolean identityMapEnabled);
+
+    boolean isJavaLocalization();
+
+    void setJavaLocalization(boolean javaLocalization);
+
+    boolean isBatchSave();
+
+    void setBatchSave(boolean batchSave);
+
+    boolean isAsyncExternalLoading();
+
+    void setAsyncExternalLoading(boolean asyncExternalLoading);
+
+    long getQueryCount();
+
+    void resetQueryCount();
 }
@@ -27,17 +27,35 @@
  */
 package org.flossola.common.services.repository;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.net.URL;
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import javax.persistence.OptimisticLockException;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.SqlSession;
 import org.flossola.common.utilities.exceptions.SOLAException;
 import org.flossola.common.utilities.StringUtility;
+import org.flossola.common.utilities.logging.LogUtility;
 import org.flossola.common.messaging.CommonMessage;
 import org.flossola.common.services.EntityAction;
 import org.flossola.common.services.LocalInfo;
@@ -50,6 +68,7 @@ import org.flossola.common.services.repository.entities.AbstractReadOnlyEntity;
 import org.flossola.common.services.repository.entities.AbstractVersionedEntity;
 import org.flossola.common.services.repository.entities.ChildEntityInfo;
 import org.flossola.common.services.repository.entities.ColumnInfo;
+import org.flossola.common.services.ejbs.async.businesslogic.AsyncLoaderEJBLocal;
 import org.flossola.common.services.ejbs.cache.businesslogic.CacheEJBLocal;
 
 /**
@@ -60,13 +79,33 @@ import org.flossola.common.services.ejbs.cache.businesslogic.CacheEJBLocal;
  */
 public class CommonRepositoryImpl implements CommonRepository {
 
+    /**
+     * The maximum number of parent keys to include in the IN clause of a
+     * single batch child load query.
+     */
+    public static final int BATCH_LOAD_SIZE = 1000;
+    /**
+     * Alias of the column holding the parent id (i.e. the join key) when many
+     * to many children are loaded using a join on the many to many table.
+     */
+    public static final String JOIN_KEY_COLUMN = "sola_join_key";
+    private static final String JOIN_CHILD_ID_COLUMN = "sola_child_id";
+    private static final String JOIN_ALIAS = "sola_j";
     /**
      * The default name of the mybatis configuation file -
      * mybatisConnectionConfig.xml
      */
-    private static final String LOAD_INHIBITORS = "Repository.loadInhibitors";
     private DatabaseConnectionManager dbConnectionManager = null;
+    private final MapperMonitor mapperMonitor = new MapperMonitor();
+    private boolean batchChildLoading = false;
+    private boolean batchSave = false;
+    private boolean manyToManyJoinLoading = false;
+    private boolean identityMapEnabled = false;
+    private boolean javaLocalization = false;
+    private boolean asyncExternalLoading = false;
+    private final LocalizedValueResolver localizedValueResolver = new LocalizedValueResolver();
     CacheEJBLocal cache;
+    AsyncLoaderEJBLocal asyncLoader;
 
     /**
      * Loads the myBatis configuration file and initializes a connection to the
@@ -86,6 +125,17 @@ public class CommonRepositoryImpl implements CommonRepository {
                 CommonMapper.class);
     }
 
+    /**
+     * Creates the repository using an existing
+     * {@linkplain DatabaseConnectionManager}. Useful for testing and
+     * benchmarking the repository outside of the JEE container.
+     *
+     * @param dbConnectionManager The connection manager to use
+     */
+    public CommonRepositoryImpl(DatabaseConnectionManager dbConnectionManager) {
+        this.dbConnectionManager = dbConnectionManager;
+    }
+
     /**
      * Returns the {@linkplain DatabaseConnectionManager} used for this instance
      * of the repository.
@@ -132,7 +182,243 @@ public class CommonRepositoryImpl implements CommonRepository {
      * {@linkplain DatabaseConnectionManager}
      */
     protected CommonMapper getMapper(SqlSession session) {
-        return session.getMapper(getDbConnectionManager().getMapperClass());
+        Class<? extends CommonMapper> mapperClass = getDbConnectionManager().getMapperClass();
+        return mapperMonitor.wrap(session.getMapper(mapperClass), mapperClass);
+    }
+
+    /**
+     * Returns the monitor used to record the mapper calls made by this
+     * repository.
+     */
+    public MapperMonitor getMapperMonitor() {
+        return mapperMonitor;
+    }
+
+    /**
+     * Returns the number of queries (i.e. mapper calls) executed by this
+     * repository since it was created or {@linkplain #resetQueryCount()} was
+     * last called.
+     */
+    @Override
+    public long getQueryCount() {
+        return mapperMonitor.getQueryCount();
+    }
+
+    /**
+     * Resets the query count for the repository to zero.
+     */
+    @Override
+    public void resetQueryCount() {
+        mapperMonitor.resetQueryCount();
+    }
+
+    /**
+     * Indicates if batch loading of child entities is enabled for this
+     * repository. See {@linkplain #setBatchChildLoading(boolean)}.
+     */
+    @Override
+    public boolean isBatchChildLoading() {
+        return batchChildLoading;
+    }
+
+    /**
+     * Enables or disables batch loading of child entities. Default is false.
+     * <p>
+     * By default, the children of each entity in a list are loaded with
+     * separate queries (i.e. one query per child field per entity). When batch
+     * loading is enabled, each child relationship is loaded for all entities in
+     * the list with a single query (or one query per
+     * {@linkplain #BATCH_LOAD_SIZE} entities) and the child entities are
+     * matched to their parents using the foreign key values. Children that use
+     * customized join criteria (see
+     * {@linkplain AbstractReadOnlyEntity#getChildJoinSqlParams}) and external
+     * entities are still loaded individually for each parent. Many to many
+     * lists are also loaded individually unless join loading is enabled (see
+     * {@linkplain #setManyToManyJoinLoading(boolean)}).</p>
+     *
+     * @param batchChildLoading true to enable batch loading.
+     */
+    @Override
+    public void setBatchChildLoading(boolean batchChildLoading) {
+        this.batchChildLoading = batchChildLoading;
+    }
+
+    /**
+     * Indicates if many to many child lists are loaded using a join on the
+     * many to many table. See {@linkplain #setManyToManyJoinLoading(boolean)}.
+     */
+    @Override
+    public boolean isManyToManyJoinLoading() {
+        return manyToManyJoinLoading;
+    }
+
+    /**
+     * Enables or disables join loading of many to many child lists. Default is
+     * false.
+     * <p>
+     * By default, a many to many child list is loaded with a nested
+     * {@code IN (SELECT ...)} on the many to many table for each parent. When
+     * join loading is enabled, the child table is joined directly to the rows
+     * of the many to many table that reference the parent(s) and the parent id
+     * is returned as the {@linkplain #JOIN_KEY_COLUMN} so the children can be
+     * grouped by parent. If batch child loading is also enabled, the many to
+     * many children of all parents in a list are loaded with a single query
+     * (or one query per {@linkplain #BATCH_LOAD_SIZE} parents). </p>
+     *
+     * @param manyToManyJoinLoading true to enable join loading.
+     */
+    @Override
+    public void setManyToManyJoinLoading(boolean manyToManyJoinLoading) {
+        this.manyToManyJoinLoading = manyToManyJoinLoading;
+    }
+
+    /**
+     * Indicates if entities loaded by id are held in the transaction identity
+     * map. See {@linkplain #setIdentityMapEnabled(boolean)}.
+     */
+    @Override
+    public boolean isIdentityMapEnabled() {
+        return identityMapEnabled;
+    }
+
+    /**
+     * Enables or disables the transaction identity map. Default is false.
+     * <p>
+     * When enabled, entities loaded with {@linkplain #getEntity(Class, String)}
+     * or {@linkplain #getEntity(Class, String, String)} are held in the
+     * {@linkplain TransactionIdentityMap} and the same instance is returned if
+     * the entity is requested again within the same transaction. One to one
+     * children that are read only and referenced by id from the parent are
+     * also loaded through the identity map. Other children are not shared
+     * between parents as they are saved with their parent. The identity map is
+     * cleared when an entity is saved or dynamic SQL is executed. It is not
+     * used while load inhibitors are active (see
+     * {@linkplain #inhibitLoad(Class[])}) as the entities loaded may be
+     * missing some children. </p>
+     *
+     * @param identityMapEnabled true to enable the identity map.
+     */
+    @Override
+    public void setIdentityMapEnabled(boolean identityMapEnabled) {
+        this.identityMapEnabled = identityMapEnabled;
+    }
+
+    /**
+     * Indicates if localized values are resolved in Java. See
+     * {@linkplain #setJavaLocalization(boolean)}.
+     */
+    @Override
+    public boolean isJavaLocalization() {
+        return javaLocalization;
+    }
+
+    /**
+     * Enables or disables the resolution of localized values in Java. Default
+     * is false.
+     * <p>
+     * By default, columns annotated with {@linkplain Localized} are selected
+     * using the get_translation database function, which parses the localized
+     * value for every row. When enabled, the localized columns are selected
+     * as is and the value for the language code of the query is resolved using
+     * the {@linkplain LocalizedValueResolver}, which caches the parsed values.
+     * The languages are loaded from the system.language table the first time
+     * they are required and again once they are older than the language
+     * refresh interval of the resolver. Queries with a WHERE or ORDER BY
+     * clause that references a localized column continue to use
+     * get_translation so they filter and sort on the translated values.</p>
+     *
+     * @param javaLocalization true to resolve localized values in Java.
+     */
+    @Override
+    public void setJavaLocalization(boolean javaLocalization) {
+        this.javaLocalization = javaLocalization;
+    }
+
+    /**
+     * Returns the resolver used to resolve localized values when Java
+     * localization is enabled. See {@linkplain #setJavaLocalization(boolean)}.
+     */
+    public LocalizedValueResolver getLocalizedValueResolver() {
+        return localizedValueResolver;
+    }
+
+    /**
+     * Indicates if JDBC batching is used when saving entities. See
+     * {@linkplain #setBatchSave(boolean)}.
+     */
+    @Override
+    public boolean isBatchSave() {
+        return batchSave;
+    }
+
+    /**
+     * Enables or disables JDBC batching for {@linkplain #saveEntity(AbstractEntity)}.
+     * Default is false.
+     * <p>
+     * When enabled, the save uses a Mybatis batch session and consecutive
+     * insert, update or delete statements with the same SQL (i.e. the same
+     * table and column set) are sent to the database as a single JDBC batch.
+     * The order of the statements is preserved so that foreign key constraints
+     * are still satisfied. The batch is flushed before any other database
+     * query is executed, before saving external entities and at the end of
+     * the save. Refreshes required for database default values are deferred
+     * until the batch is flushed and are performed with one query per entity
+     * class. </p>
+     * <p>
+     * The update count for each row is checked when the batch is flushed. Any
+     * optimistic locking failure raised by the database for a row in the batch
+     * is reported as an {@linkplain OptimisticLockException} that identifies
+     * the entity that failed.</p>
+     *
+     * @param batchSave true to enable batch saves.
+     */
+    @Override
+    public void setBatchSave(boolean batchSave) {
+        this.batchSave = batchSave;
+    }
+
+    /**
+     * Indicates if child entities obtained from other EJBs are loaded
+     * asynchronously. See {@linkplain #setAsyncExternalLoading(boolean)}.
+     */
+    @Override
+    public boolean isAsyncExternalLoading() {
+        return asyncExternalLoading;
+    }
+
+    /**
+     * Enables or disables the asynchronous load of child entities obtained
+     * from other EJBs (see {@linkplain ExternalEJB}). Default is false.
+     * <p>
+     * When enabled and the {@linkplain AsyncLoaderEJBLocal} is deployed, the
+     * external children of an entity are loaded in parallel with each other
+     * and with the children loaded from this database. The time to load an
+     * entity with several external children approaches the time of the
+     * slowest child rather than the sum for all children. Each load runs in
+     * its own read only transaction with the LocalInfo context of the caller
+     * (see {@linkplain ExternalEntityLoad}). External children are loaded on
+     * the calling thread once the transaction has saved entities or executed
+     * other SQL that can modify the database, as the other transactions would
+     * not see those changes. </p>
+     *
+     * @param asyncExternalLoading true to load external children
+     * asynchronously.
+     */
+    @Override
+    public void setAsyncExternalLoading(boolean asyncExternalLoading) {
+        this.asyncExternalLoading = asyncExternalLoading;
+    }
+
+    /**
+     * Retrieves the EJB used to load external entities asynchronously.
+     *
+     * @return The EJB or null if it is not deployed.
+     */
+    private AsyncLoaderEJBLocal getAsyncLoader() {
+        if (asyncLoader == null && RepositoryUtility.isAsyncLoaderDeployed()) {
+            asyncLoader = RepositoryUtility.getEJB(AsyncLoaderEJBLocal.class);
+        }
+        return asyncLoader;
     }
 
     /**
@@ -174,9 +460,7 @@ public class CommonRepositoryImpl implements CommonRepository {
      */
     @Override
     public void clearLoadInhibitors() {
-        if (LocalInfo.get(LOAD_INHIBITORS) != null) {
-            LocalInfo.set(LOAD_INHIBITORS, null, true);
-        }
+        LoadInhibitorScope.setInhibitors(null);
     }
 
     /**
@@ -193,29 +477,44 @@ public class CommonRepositoryImpl implements CommonRepository {
      * Once set, the load inhibitors remain set until the developer calls the {@linkplain
      * #clearLoadInhibitors()} method. This is to ensure any level of the child
      * hierarchy can be inhibited, but also means that the clear method should
-     * be called once the necessary loading is complete </p>
+     * be called once the necessary loading is complete. Use
+     * {@linkplain #inhibitLoad(Class[])} to have the load inhibitors cleared
+     * automatically.</p>
      *
      * @param entityClasses The array of child entity classes that should not be
      * loaded.
      */
     @Override
     public void setLoadInhibitors(Class<?>[] entityClasses) {
-        LocalInfo.set(LOAD_INHIBITORS, Arrays.asList(entityClasses));
+        // Existing load inhibitors are not replaced until they are cleared
+        if (entityClasses != null && LoadInhibitorScope.getInhibitors().isEmpty()) {
+            LoadInhibitorScope.setInhibitors(new HashSet<Class<?>>(Arrays.asList(entityClasses)));
+        }
     }
 
     /**
-     * Checks if the entity class has been flagged as load inhibited.
+     * Inhibits the load of the entity classes until the returned scope is
+     * closed (see {@linkplain LoadInhibitorScope}). The entity classes are
+     * added to any load inhibitors that are already set and the original load
+     * inhibitors are restored when the scope is closed.
      *
-     * @param entityClass The entity class to check
-     * @return true if load of the entity class is inhibited, false otherwise.
+     * @param entityClasses The child entity classes that should not be loaded.
+     * @return The scope to close once the necessary loading is complete.
      */
-    private Boolean isInhibitLoad(Class<?> entityClass) {
-        Boolean result = false;
-        List<Class<?>> inhibitors = LocalInfo.get(LOAD_INHIBITORS, List.class);
-        if (inhibitors != null && !inhibitors.isEmpty()) {
-            result = inhibitors.contains(entityClass);
-        }
-        return result;
+    @Override
+    public LoadInhibitorScope inhibitLoad(Class<?>... entityClasses) {
+        return new LoadInhibitorScope(entityClasses);
+    }
+
+    /**
+     * Returns the set of entity classes flagged as load inhibited. Obtained
+     * once for each load of child entities so that checking each child entity
+     * class does not require a LocalInfo lookup.
+     *
+     * @return The load inhibitors. Never null.
+     */
+    private Set<Class<?>> getLoadInhibitors() {
+        return LoadInhibitorScope.getInhibitors();
     }
 
     /**
@@ -274,7 +573,19 @@ public class CommonRepositoryImpl implements CommonRepository {
                 loadChild = true;
             }
         }
-        if (loadChild) {
+        if (loadChild && isIdentityMapEnabled() && childInfo.isReadOnly()
+                && childInfo.isInsertBeforeParent() && params.containsKey("childId")) {
+            // Read only children referenced by id can be shared with other parents
+            String childId = (String) params.get("childId");
+            String lang = (String) LocalInfo.get(CommonSqlProvider.PARAM_LANGUAGE_CODE);
+            child = TransactionIdentityMap.get(childEntityClass, childId, lang);
+            if (child == null) {
+                child = getEntity(childEntityClass, params, mapper);
+                if (child != null) {
+                    TransactionIdentityMap.put(childEntityClass, childId, lang, child);
+                }
+            }
+        } else if (loadChild) {
             child = getEntity(childEntityClass, params, mapper);
         }
         return child;
@@ -294,30 +605,19 @@ public class CommonRepositoryImpl implements CommonRepository {
      * @return The entity with its field values populated from the row map
      */
     private <T extends AbstractReadOnlyEntity> T mapToEntity(T entity, Map<String, Object> row) {
-        if (row != null && !row.isEmpty()) {
-
-            // Ticket #3. Check if the user has the appropraite security clearance
-            // to view this record. If not, do not load the entity.
-            String classificationCode = (String) row.get(AbstractReadOnlyEntity.CLASSIFICATION_CODE_COLUMN_NAME);
-            if (entity.hasSecurityClearance(classificationCode)) {
-                // Ticket #3. Obtain the redact code for this entity
-                String redactCode = (String) row.get(AbstractReadOnlyEntity.REDACT_CODE_COLUMN_NAME);
-                entity.setRedacted(false);
-                for (ColumnInfo columnInfo : entity.getColumns()) {
-                    // Note that the row map only contains columns with non-null values
-                    if (row.containsKey(columnInfo.getColumnName().toLowerCase())) {
-                        Object value = row.get(columnInfo.getColumnName().toLowerCase());
-                        if (entity.isRedactRequired(columnInfo, redactCode)) {
-                            // The field must have its value redacted
-                            value = entity.getRedactedValue(columnInfo);
-                            entity.setRedacted(true);
-                        }
-                        setEntityRedactCode(entity, columnInfo, redactCode);
-                        entity.setEntityFieldValue(columnInfo, value);
-                    }
-                }
-                markAsLoaded(entity);
-            }
+        return mapToEntity(entity, row, RepositoryUtility.getRowMappingPlan(entity.getClass()));
+    }
+
+    /**
+     * Overloaded version of
+     * {@linkplain #mapToEntity(.AbstractReadOnlyEntity, Map)} that uses a
+     * mapping plan resolved by the caller. Allows the plan to be resolved once
+     * per result set.
+     */
+    private <T extends AbstractReadOnlyEntity> T mapToEntity(T entity, Map<String, Object> row,
+            RowMappingPlan plan) {
+        if (plan.mapRow(entity, row)) {
+            markAsLoaded(entity);
         }
         return entity;
     }
@@ -367,14 +667,17 @@ public class CommonRepositoryImpl implements CommonRepository {
      * @return The entity with its field values populated from the row map
      */
     private <T extends AbstractReadOnlyEntity> T mapToEntity(Class<T> entityClass, Map<String, Object> row) {
-        T entity = null;
-        try {
-            entity = mapToEntity(entityClass.newInstance(), row);
-        } catch (Exception ex) {
-            throw new SOLAException(CommonMessage.GENERAL_UNEXPECTED,
-                    // Capture the specific details so they are added to the log
-                    new Object[]{"Failed to map entity to result " + entityClass.getSimpleName()}, ex);
-        }
+        return mapToEntity(entityClass, row, RepositoryUtility.getRowMappingPlan(entityClass));
+    }
+
+    /**
+     * Overloaded version of {@linkplain #mapToEntity(Class, Map)} that uses a
+     * mapping plan resolved by the caller.
+     */
+    private <T extends AbstractReadOnlyEntity> T mapToEntity(Class<T> entityClass, Map<String, Object> row,
+            RowMappingPlan plan) {
+        // The entity factory reports any failure to create the entity
+        T entity = mapToEntity((T) plan.newEntity(), row, plan);
         return entity.isLoaded() ? entity : null;
     }
 
@@ -393,14 +696,20 @@ public class CommonRepositoryImpl implements CommonRepository {
     private <T extends AbstractReadOnlyEntity> List<T> mapToEntityList(
             Class<T> entityClass, ArrayList<HashMap> resultList) {
 
-        List<T> entityList = new ArrayList<T>();
+        List<T> entityList;
         if (resultList != null && !resultList.isEmpty()) {
+            // Size the list for the number of rows in the result set
+            entityList = new ArrayList<T>(resultList.size());
+            // Resolve the mapping plan once for the result set
+            RowMappingPlan plan = RepositoryUtility.getRowMappingPlan(entityClass);
             for (Map<String, Object> row : resultList) {
-                T entity = mapToEntity(entityClass, row);
+                T entity = mapToEntity(entityClass, row, plan);
                 if (entity != null) {
                     entityList.add(entity);
                 }
             }
+        } else {
+            entityList = new ArrayList<T>();
         }
         return entityList;
     }
@@ -446,20 +755,35 @@ public class CommonRepositoryImpl implements CommonRepository {
             entity.resetEntityAction();
         }
 
+        if (entity.isCacheable() && (entity.toInsert() || entity.toUpdate() || entity.toDelete()
+                || entity.isUpdateBeforeDelete())) {
+            // Make sure the entity cache does not return stale entities of this class
+            clearEntityCache(entity.getClass());
+        }
         if (entity.toInsert()) {
             int rowsInserted = mapper.insert(entity);
             loaded = rowsInserted > 0;
         }
         if (entity.toUpdate() || entity.isUpdateBeforeDelete()) {
-            int rowsUpdated = mapper.update(entity);
-            loaded = rowsUpdated > 0;
+            // Skip the update if none of the modified columns can be updated by the user
+            if (CommonSqlProvider.hasUpdateColumns(entity)) {
+                int rowsUpdated = mapper.update(entity);
+                loaded = rowsUpdated > 0;
+            }
             entity.setUpdateBeforeDelete(false);
         }
         if (entity.toDelete()) {
             mapper.delete(entity);
         }
 
-        if (entity.isForceRefresh()) {
+        BatchSaveHandler batch = getBatchSaveHandler(mapper);
+        if (entity.isForceRefresh() && batch != null) {
+            // The statement for this entity has been added to a batch, so the refresh
+            // must wait until the batch is flushed. 
+            if (!entity.toDelete()) {
+                batch.deferRefresh(entity);
+            }
+        } else if (entity.isForceRefresh()) {
             // Entity may have had some DB default values assigned so refresh the entity from
             // the database.  refreshEntity resets the entity action so need to do some extra 
             // steps to ensure the entity action is persisted after the refresh for subsequent
@@ -471,6 +795,11 @@ public class CommonRepositoryImpl implements CommonRepository {
         entity.setRemoved(entity.toRemove());
         saveChildren(entity, mapper, false);
         entity.postSave();
+        if (batch != null && batch.isNotSaved(entity)) {
+            // The batch was flushed while saving the children and the statement for
+            // the entity did not affect any rows. 
+            loaded = false;
+        }
         // Set the loaded flag and snapshot the field values after the postSave so that the
         // snapshot includes any fields updated by the postSave (e.g. RowVersion). 
         entity.setLoaded(loaded);
@@ -480,6 +809,20 @@ public class CommonRepositoryImpl implements CommonRepository {
         return entity.isRemoved() ? null : entity;
     }
 
+    /**
+     * Removes the rows of the entity class from the by id entity cache. If there
+     * is a transaction, the rows are removed again once the transaction
+     * completes (see {@linkplain EntityCacheSynchronization}) as the old row can
+     * be added back to the cache by other transactions until the save is
+     * committed.
+     *
+     * @param entityClass The class of the entity being saved
+     */
+    private void clearEntityCache(Class<?> entityClass) {
+        getCache().clearEntities(entityClass);
+        EntityCacheSynchronization.register(LocalInfo.getTransactionRegistry(), getCache(), entityClass);
+    }
+
     /**
      * Processes all child entities of the parent saving them as appropriate.
      * Child entities are identified using the {@linkplain ChildEntity} and
@@ -509,6 +852,12 @@ public class CommonRepositoryImpl implements CommonRepository {
                 // not have privileges to view. 
                 continue;
             }
+            Object childValue = entity.getEntityFieldValue(childInfo);
+            if (childValue instanceof LazyEntityList && !((LazyEntityList) childValue).isLoaded()
+                    && !entity.toDelete()) {
+                // The lazy child list has not been accessed, so it cannot have been changed. 
+                continue;
+            }
             if (AbstractEntity.class.isAssignableFrom(childInfo.getEntityClass())) {
                 if (childInfo.isListField() && !childInfo.isManyToMany()) {
                     // One to many child list
@@ -524,6 +873,7 @@ public class CommonRepositoryImpl implements CommonRepository {
                 // This child entity or entity list may be a read only entity or it may not
                 // be a descendent of SOLA repository abstract entities. Redirect the save so that
                 // alternative save logic can be implemented in a descendent repository.
+                flushBatch(mapper);
                 saveOtherEntity(entity, childInfo, beforeSave, mapper);
             }
         }
@@ -572,7 +922,7 @@ public class CommonRepositoryImpl implements CommonRepository {
                 }
                 if (childInfo.isExternalEntity()) {
                     if (!childInfo.getSaveMethod().isEmpty()) {
-                        child = saveExternalEntity(child, childInfo);
+                        child = saveExternalEntity(child, childInfo, mapper);
                     }
                 } else {
                     child = saveEntity(child, mapper);
@@ -659,7 +1009,7 @@ public class CommonRepositoryImpl implements CommonRepository {
 
                     if (childInfo.isExternalEntity()) {
                         if (!childInfo.getSaveMethod().isEmpty()) {
-                            child = saveExternalEntity(child, childInfo);
+                            child = saveExternalEntity(child, childInfo, mapper);
                         }
                     } else {
                         child = saveEntity(child, mapper);
@@ -736,7 +1086,7 @@ public class CommonRepositoryImpl implements CommonRepository {
             if (!beforeSave) {
                 // Get the list of child ids from the many to many table in the database to make it
                 // easier to determine whether a new association entity needs to be ceated or not. 
-                childIdList = getChildIdList(childInfo, entity.getEntityId());
+                childIdList = getChildIdList(childInfo, entity.getEntityId(), mapper);
             }
 
             ListIterator<AbstractEntity> it = childList.listIterator();
@@ -767,7 +1117,7 @@ public class CommonRepositoryImpl implements CommonRepository {
                         // Update / delete the child entity. 
                         if (childInfo.isExternalEntity()) {
                             if (!childInfo.getSaveMethod().isEmpty()) {
-                                child = saveExternalEntity(child, childInfo);
+                                child = saveExternalEntity(child, childInfo, mapper);
                             }
                         } else {
                             child = saveEntity(child, mapper);
@@ -816,7 +1166,7 @@ public class CommonRepositoryImpl implements CommonRepository {
                         it.remove();
                         if (childInfo.isExternalEntity()) {
                             if (!childInfo.getSaveMethod().isEmpty()) {
-                                child = saveExternalEntity(child, childInfo);
+                                child = saveExternalEntity(child, childInfo, mapper);
                             }
                         } else {
                             child = saveEntity(child, mapper);
@@ -844,10 +1194,13 @@ public class CommonRepositoryImpl implements CommonRepository {
      * @param childEntity The child entity to save using the external EJB
      * @param childInfo Details of the child entity (or entity list) that can be
      * used to obtain the external EJB name and save method details
+     * @param mapper The Mybatis mapper class used for this save process. Any
+     * pending batch statements are flushed before the external EJB is called.
      * @return The saved child entity.
      */
     private <T extends AbstractReadOnlyEntity> T saveExternalEntity(
-            T childEntity, ChildEntityInfo childInfo) {
+            T childEntity, ChildEntityInfo childInfo, CommonMapper mapper) {
+        flushBatch(mapper);
         AbstractEJBLocal ejb = RepositoryUtility.getEJB(childInfo.getEJBLocalClass());
         try {
             Method saveMethod = null;
@@ -947,14 +1300,25 @@ public class CommonRepositoryImpl implements CommonRepository {
     @Override
     public <T extends AbstractEntity> T saveEntity(T entity) {
         if (entity != null) {
-            SqlSession session = getSqlSession();
+            // The save may change any entity held in the identity map
+            TransactionIdentityMap.clear();
+            ExternalEntityLoad.setWritePerformed();
+            SqlSession session = isBatchSave()
+                    ? getDbConnectionManager().getSqlSession(ExecutorType.BATCH) : getSqlSession();
             try {
                 if (entity.isCacheable()) {
                     // Check if the entity is cacheable before saving as the
                     // entity can be null after the save due to deletion. 
                     getCache().clearEntityLists(entity.getClass());
                 }
-                entity = saveEntity(entity, getMapper(session));
+                if (isBatchSave()) {
+                    BatchSaveHandler batch = new BatchSaveHandler(session, getMapper(session));
+                    entity = saveEntity(entity, batch.getMapper());
+                    // Any statements not flushed would be discarded when the session closes
+                    batch.flush();
+                } else {
+                    entity = saveEntity(entity, getMapper(session));
+                }
             } finally {
                 session.close();
             }
@@ -962,6 +1326,285 @@ public class CommonRepositoryImpl implements CommonRepository {
         return entity;
     }
 
+    /**
+     * Returns the {@linkplain BatchSaveHandler} for the mapper or null if the
+     * mapper is not being used for a batch save.
+     */
+    private BatchSaveHandler getBatchSaveHandler(CommonMapper mapper) {
+        if (mapper != null && Proxy.isProxyClass(mapper.getClass())
+                && Proxy.getInvocationHandler(mapper) instanceof BatchSaveHandler) {
+            return (BatchSaveHandler) Proxy.getInvocationHandler(mapper);
+        }
+        return null;
+    }
+
+    /**
+     * Flushes any pending batch statements if the mapper is being used for a
+     * batch save. Must be called before any database operation that does not
+     * use the mapper (e.g. saving an external entity) so that the operation can
+     * see the effect of the pending statements.
+     *
+     * @param mapper The Mybatis mapper used for the save process.
+     */
+    protected void flushBatch(CommonMapper mapper) {
+        BatchSaveHandler batch = getBatchSaveHandler(mapper);
+        if (batch != null) {
+            batch.flush();
+        }
+    }
+
+    /**
+     * Invocation handler for the mapper proxy used during batch saves (see
+     * {@linkplain #setBatchSave(boolean)}). Insert, update and delete calls
+     * for entities are added to the batch of the Mybatis batch session.
+     * Consecutive calls that generate the same SQL (i.e. that have the same
+     * SQL template key, see
+     * {@linkplain CommonSqlProvider#getStatementKey(String, AbstractEntity)})
+     * are grouped into one JDBC batch. All other mapper calls flush the pending statements before they
+     * execute.
+     */
+    private class BatchSaveHandler implements InvocationHandler {
+
+        private final SqlSession session;
+        private final CommonMapper target;
+        private final CommonMapper proxy;
+        private final List<AbstractEntity> pending = new ArrayList<AbstractEntity>();
+        private final List<AbstractEntity> refreshList = new ArrayList<AbstractEntity>();
+        private final Map<AbstractEntity, Object> notSaved = new IdentityHashMap<AbstractEntity, Object>();
+        private String pendingMethod = null;
+        private Object pendingKey = null;
+
+        BatchSaveHandler(SqlSession session, CommonMapper target) {
+            this.session = session;
+            this.target = target;
+            Class<? extends CommonMapper> mapperClass = getDbConnectionManager().getMapperClass();
+            this.proxy = (CommonMapper) Proxy.newProxyInstance(mapperClass.getClassLoader(),
+                    new Class<?>[]{mapperClass}, this);
+        }
+
+        /**
+         * @return The mapper proxy to use for the batch save.
+         */
+        CommonMapper getMapper() {
+            return proxy;
+        }
+
+        /**
+         * @return true if the insert or update statement for the entity has
+         * been flushed and did not affect any rows.
+         */
+        boolean isNotSaved(AbstractEntity entity) {
+            return notSaved.containsKey(entity);
+        }
+
+        /**
+         * Flags the entity to be refreshed from the database once the pending
+         * statements have been flushed.
+         */
+        void deferRefresh(AbstractEntity entity) {
+            refreshList.add(entity);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return invokeTarget(method, args);
+            }
+            String methodName = method.getName();
+            if (method.getDeclaringClass() == CommonMapper.class && args != null && args.length == 1
+                    && args[0] instanceof AbstractEntity && ("insert".equals(methodName)
+                    || "update".equals(methodName) || "delete".equals(methodName))) {
+                AbstractEntity entity = (AbstractEntity) args[0];
+                Object key = CommonSqlProvider.getStatementKey(methodName, entity);
+                if (!pending.isEmpty() && !key.equals(pendingKey)) {
+                    // Different statement, so send the current batch to the database. 
+                    flushStatements();
+                }
+                invokeTarget(method, args);
+                pending.add(entity);
+                pendingMethod = methodName;
+                pendingKey = key;
+                // The row count is checked when the batch is flushed
+                return 1;
+            }
+
+            // Any other mapper method may query or update data affected by the 
+            // pending statements, so flush the batch before executing the method. 
+            flush();
+            Object result = invokeTarget(method, args);
+            // If the method executed an update (e.g. bulkUpdate), the statement will have
+            // been added to the batch, so execute it now to obtain the update count. 
+            List<BatchResult> results = session.flushStatements();
+            if (!results.isEmpty() && (method.getReturnType() == int.class
+                    || method.getReturnType() == Integer.class)) {
+                int count = 0;
+                for (BatchResult batchResult : results) {
+                    for (int rows : batchResult.getUpdateCounts()) {
+                        count += rows > 0 ? rows : 0;
+                    }
+                }
+                result = count;
+            }
+            return result;
+        }
+
+        private Object invokeTarget(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+
+        /**
+         * Executes any pending batch statements and performs any deferred
+         * entity refreshes.
+         */
+        void flush() {
+            flushStatements();
+            while (!refreshList.isEmpty()) {
+                List<AbstractEntity> entities = new ArrayList<AbstractEntity>(refreshList);
+                refreshList.clear();
+                refreshEntities(entities, target);
+            }
+        }
+
+        /**
+         * Executes the pending batch statements and checks the update count
+         * for each row. As with the non batch save, an insert or update that
+         * does not affect any rows leaves the entity flagged as not loaded. The
+         * entity is also recorded as not saved in case the batch is flushed
+         * before the save of the entity completes.
+         */
+        private void flushStatements() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            List<BatchResult> results;
+            try {
+                results = session.flushStatements();
+            } catch (RuntimeException ex) {
+                RuntimeException failure = getBatchFailure(ex, pending, pendingMethod);
+                pending.clear();
+                refreshList.clear();
+                throw failure;
+            }
+            int i = 0;
+            for (BatchResult batchResult : results) {
+                for (int rows : batchResult.getUpdateCounts()) {
+                    if (i < pending.size() && rows == 0 && !"delete".equals(pendingMethod)) {
+                        pending.get(i).setLoaded(false);
+                        notSaved.put(pending.get(i), Boolean.TRUE);
+                    }
+                    i++;
+                }
+            }
+            pending.clear();
+        }
+    }
+
+    /**
+     * Determines the entity that caused a batch save to fail. Optimistic
+     * locking failures are reported with an OptimisticLockException that
+     * references the entity. Any other failure is logged with the details of
+     * the entity and returned unchanged.
+     *
+     * @param ex The exception raised when the batch was flushed.
+     * @param pending The entities in the order their statements were added to
+     * the batch.
+     * @param method The mapper method used for the statements in the batch.
+     * @return The exception to throw.
+     */
+    static RuntimeException getBatchFailure(RuntimeException ex,
+            List<? extends AbstractEntity> pending, String method) {
+        int index = -1;
+        String messages = FaultUtility.getStackTraceAsString(ex);
+        Throwable t = ex;
+        while (t != null && index < 0) {
+            if (t instanceof BatchUpdateException) {
+                int[] counts = ((BatchUpdateException) t).getUpdateCounts();
+                index = counts == null ? 0 : counts.length;
+                for (int i = 0; counts != null && i < counts.length; i++) {
+                    if (counts[i] == Statement.EXECUTE_FAILED) {
+                        index = i;
+                        break;
+                    }
+                }
+                // The database error for the failed row may only be available from 
+                // the chained SQL exceptions. 
+                SQLException next = ((BatchUpdateException) t).getNextException();
+                while (next != null) {
+                    messages = messages + " " + next.getMessage();
+                    next = next.getNextException();
+                }
+            }
+            t = t.getCause();
+        }
+        AbstractEntity entity = index >= 0 && index < pending.size() ? pending.get(index) : null;
+        String msg = "Batch " + method + " failed for " + (entity == null
+                ? pending.size() + " entities" : entity.getClass().getSimpleName()
+                + " with id " + entity.getEntityId());
+        if (FaultUtility.isOptimisticLocking(ex, messages)) {
+            return new OptimisticLockException(msg, ex, entity);
+        }
+        LogUtility.log(msg, ex);
+        return ex;
+    }
+
+    /**
+     * Refreshes a list of entities from the database. Entities with a single
+     * id column are refreshed with one query per entity class. Other entities
+     * are refreshed individually using
+     * {@linkplain #refreshEntity(AbstractReadOnlyEntity, CommonMapper)}.
+     *
+     * @param entities The entities to refresh.
+     * @param mapper The Mybatis mapper to use for the refresh
+     */
+    private void refreshEntities(List<AbstractEntity> entities, CommonMapper mapper) {
+        Map<Class<?>, List<AbstractEntity>> byClass = new LinkedHashMap<Class<?>, List<AbstractEntity>>();
+        for (AbstractEntity entity : entities) {
+            if (entity.getIdColumns().size() != 1) {
+                refreshEntity(entity, mapper);
+            } else {
+                List<AbstractEntity> classList = byClass.get(entity.getClass());
+                if (classList == null) {
+                    classList = new ArrayList<AbstractEntity>();
+                    byClass.put(entity.getClass(), classList);
+                }
+                classList.add(entity);
+            }
+        }
+        for (List<AbstractEntity> classList : byClass.values()) {
+            ColumnInfo idColumn = classList.get(0).getIdColumns().get(0);
+            for (int start = 0; start < classList.size(); start += BATCH_LOAD_SIZE) {
+                Map<String, AbstractEntity> byId = new HashMap<String, AbstractEntity>();
+                for (AbstractEntity entity : classList.subList(start,
+                        Math.min(start + BATCH_LOAD_SIZE, classList.size()))) {
+                    // Set loaded to false before refresh so that any locked fields are updated  
+                    entity.setLoaded(false);
+                    byId.put(entity.getEntityId(), entity);
+                }
+                Map<String, Object> params = new HashMap<String, Object>();
+                params.put(CommonSqlProvider.PARAM_WHERE_PART, idColumn.getColumnName() + " IN ("
+                        + CommonSqlProvider.prepareBatchListParams(new ArrayList<String>(byId.keySet()), params)
+                        + ")");
+                params.put(CommonSqlProvider.PARAM_ENTITY_CLASS, classList.get(0).getClass());
+                ArrayList<HashMap> resultList = mapper.getEntityList(params);
+                if (resultList != null) {
+                    RowMappingPlan plan = RepositoryUtility.getRowMappingPlan(classList.get(0).getClass());
+                    String idKey = idColumn.getColumnName().toLowerCase();
+                    for (Map<String, Object> row : resultList) {
+                        Object id = row.get(idKey);
+                        AbstractEntity entity = id == null ? null : byId.get(id.toString());
+                        if (entity != null) {
+                            mapToEntity(entity, row, plan);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Executes an SQL query against the database that returns a single
      * primative type value E.g. String, boolean, integer, etc.
@@ -1089,39 +1732,90 @@ public class CommonRepositoryImpl implements CommonRepository {
 
     @Override
     public <T extends AbstractReadOnlyEntity> T getEntity(Class<T> entityClass, String id) {
-
-        ArrayList<ColumnInfo> ids = (ArrayList<ColumnInfo>) RepositoryUtility.getIdColumns(entityClass, RepositoryUtility.getColumns(entityClass));
-
-        HashMap<String, Object> params = new HashMap<String, Object>();
-        String whereClause = ids.get(0).getColumnName() + " = #{idValue}";
-        params.put(CommonSqlProvider.PARAM_WHERE_PART, whereClause);
-        params.put("idValue", id);
-        return getEntity(entityClass, params);
+        return getEntityById(entityClass, id,
+                (String) LocalInfo.get(CommonSqlProvider.PARAM_LANGUAGE_CODE), false);
     }
 
     @Override
     public <T extends AbstractReadOnlyEntity> T getEntity(Class<T> entityClass, String id, String lang) {
+        return getEntityById(entityClass, id, lang, true);
+    }
+
+    /**
+     * Loads the entity by id, using the identity map if it is enabled. If the
+     * entity class is cacheable, the database row for the entity is obtained
+     * from the by id entity cache (see {@linkplain CachePolicy}) if possible.
+     * Only the row is cached. A new entity is created from the row for each
+     * call and its children are loaded as normal, so the children respect the
+     * current load inhibitors and are never stale. Entities that have a
+     * security classification or that are subject to redaction are not added
+     * to the entity cache as the cache is shared by all users.
+     *
+     * @param lang The language code for the entity
+     * @param setLang If true, the language code is passed as a parameter for
+     * the query. If false, the language code is obtained from
+     * {@linkplain LocalInfo}.
+     */
+    private <T extends AbstractReadOnlyEntity> T getEntityById(Class<T> entityClass, String id,
+            String lang, boolean setLang) {
+
+        T entity = isIdentityMapEnabled() ? TransactionIdentityMap.get(entityClass, id, lang) : null;
+        if (entity != null) {
+            return entity;
+        }
 
-        ArrayList<ColumnInfo> ids = (ArrayList<ColumnInfo>) RepositoryUtility.getIdColumns(entityClass, RepositoryUtility.getColumns(entityClass));
+        List<ColumnInfo> ids = RepositoryUtility.getIdColumns(entityClass);
 
         HashMap<String, Object> params = new HashMap<String, Object>();
         String whereClause = ids.get(0).getColumnName() + " = #{idValue}";
         params.put(CommonSqlProvider.PARAM_WHERE_PART, whereClause);
         params.put("idValue", id);
-        params.put(CommonSqlProvider.PARAM_LANGUAGE_CODE, lang);
-        return getEntity(entityClass, params);
-    }
-
-    @Override
-    public <T extends AbstractReadOnlyEntity> T getEntity(Class<T> entityClass,
-            String whereClause, Map params) {
-
-        params = params == null ? new HashMap<String, Object>() : params;
-
-        params.put(CommonSqlProvider.PARAM_WHERE_PART, whereClause);
-        return getEntity(entityClass, params);
-    }
-
+        if (setLang) {
+            params.put(CommonSqlProvider.PARAM_LANGUAGE_CODE, lang);
+        }
+        CachePolicy policy = RepositoryUtility.isCachable(entityClass)
+                ? RepositoryUtility.getCachePolicy(entityClass) : null;
+        if (policy != null && policy.maxEntries() > 0) {
+            params.put(CommonSqlProvider.PARAM_ENTITY_CLASS, entityClass);
+            SqlSession session = getSqlSession();
+            try {
+                CommonMapper mapper = getMapper(session);
+                Map<String, Object> row = getCache().getEntityRow(entityClass, id, lang);
+                boolean cached = row != null;
+                if (!cached) {
+                    row = getEntityRow(entityClass, params, mapper);
+                }
+                entity = mapToEntity(entityClass, row == null ? null : new HashMap<String, Object>(row));
+                if (entity != null && !cached && StringUtility.isEmpty(entity.getClassificationCode())
+                        && StringUtility.isEmpty(entity.getRedactCode()) && !entity.isRedacted()) {
+                    getCache().putEntityRow(entityClass, id, lang, row, policy.maxEntries(),
+                            policy.expirySeconds());
+                }
+                if (entity != null) {
+                    loadChildren(entity, mapper);
+                }
+            } finally {
+                session.close();
+            }
+        } else {
+            entity = getEntity(entityClass, params);
+        }
+        if (entity != null && isIdentityMapEnabled()) {
+            TransactionIdentityMap.put(entityClass, id, lang, entity);
+        }
+        return entity;
+    }
+
+    @Override
+    public <T extends AbstractReadOnlyEntity> T getEntity(Class<T> entityClass,
+            String whereClause, Map params) {
+
+        params = params == null ? new HashMap<String, Object>() : params;
+
+        params.put(CommonSqlProvider.PARAM_WHERE_PART, whereClause);
+        return getEntity(entityClass, params);
+    }
+
     @Override
     public <T extends AbstractReadOnlyEntity> T getEntity(Class<T> entityClass,
             Map params) {
@@ -1141,8 +1835,23 @@ public class CommonRepositoryImpl implements CommonRepository {
     private <T extends AbstractReadOnlyEntity, U extends CommonMapper> T getEntity(Class<T> entityClass,
             Map params, U mapper) {
 
+        T entity = mapToEntity(entityClass, getEntityRow(entityClass, params, mapper));
+        if (entity != null) {
+            loadChildren(entity, mapper,
+                    (List<String>) params.get(CommonSqlProvider.PARAM_INCLUDE_LIST));
+        }
+        return entity;
+    }
+
+    /**
+     * Executes the query for a single entity and returns the database row with
+     * any localized values resolved, but does not map the row to the entity or
+     * load its children.
+     */
+    private <T extends AbstractReadOnlyEntity, U extends CommonMapper> HashMap<String, Object> getEntityRow(
+            Class<T> entityClass, Map params, U mapper) {
+
         HashMap<String, Object> result = null;
-        T entity = null;
         params.put(CommonSqlProvider.PARAM_ENTITY_CLASS, entityClass);
         // Make sure the Language Code is passed to all children if it has been set
         if (LocalInfo.get(CommonSqlProvider.PARAM_LANGUAGE_CODE) != null
@@ -1154,13 +1863,10 @@ public class CommonRepositoryImpl implements CommonRepository {
             LocalInfo.set(CommonSqlProvider.PARAM_LANGUAGE_CODE,
                     params.get(CommonSqlProvider.PARAM_LANGUAGE_CODE), true);
         }
+        prepareLocalization(params);
         result = mapper.getEntity(params);
-        entity = mapToEntity(entityClass, result);
-        if (entity != null) {
-            loadChildren(entity, mapper);
-        }
-
-        return entity;
+        resolveLocalizedValues(entityClass, params, result, mapper);
+        return result;
     }
 
     /**
@@ -1183,21 +1889,47 @@ public class CommonRepositoryImpl implements CommonRepository {
         return getEntityList(codeListClass, params);
     }
 
+    /**
+     * Retrieves a single code from the code list. For cacheable code lists, a
+     * hash index from code to code entity is held in the cache with the code
+     * list so the code can be located without scanning the list. The index is
+     * removed whenever the cached code list is cleared or replaced.
+     */
     @Override
     public <T extends AbstractCodeEntity> T getCode(Class<T> codeListClass,
             String entityCode, String languageCode) {
 
-        T result = null;
-        // Obtain the code list from the cache and then locate the specific
-        // entity code. 
-        List<T> list = getCodeList(codeListClass, languageCode);
-        for (T code : list) {
-            if (code.getCode().equals(entityCode)) {
-                result = code;
-                break;
+        if (entityCode == null) {
+            return null;
+        }
+        if (!RepositoryUtility.isCachable(codeListClass)) {
+            // No cache to hold an index, so locate the code in the list
+            for (T code : getCodeList(codeListClass, languageCode)) {
+                if (entityCode.equals(code.getCode())) {
+                    return code;
+                }
             }
+            return null;
         }
-        return result;
+
+        // Use the same language code as getEntityList so the index matches
+        // the cached code list.
+        String lang = languageCode != null ? languageCode
+                : (String) LocalInfo.get(CommonSqlProvider.PARAM_LANGUAGE_CODE);
+        String key = getCache().getKey(codeListClass, lang);
+        Map<String, T> index = getCache().getListIndex(codeListClass, key);
+        if (index == null) {
+            List<T> list = getCodeList(codeListClass, languageCode);
+            index = new HashMap<String, T>((int) (list.size() / 0.75f) + 1);
+            for (T code : list) {
+                // Keep the first match to be consistent with a linear search
+                if (code.getCode() != null && !index.containsKey(code.getCode())) {
+                    index.put(code.getCode(), code);
+                }
+            }
+            getCache().putListIndex(key, list, index);
+        }
+        return index.get(entityCode);
     }
 
     @Override
@@ -1228,9 +1960,11 @@ public class CommonRepositoryImpl implements CommonRepository {
 
         }
 
-        // Determine the cache key
+        // Determine the cache key. Projections of the entity are not cached. 
         String key = null;
-        if (RepositoryUtility.isCachable(entityClass)) {
+        boolean cacheable = RepositoryUtility.isCachable(entityClass)
+                && !params.containsKey(CommonSqlProvider.PARAM_INCLUDE_LIST);
+        if (cacheable) {
             key = getCache().getKey(entityClass,
                     (String) params.get(CommonSqlProvider.PARAM_LANGUAGE_CODE));
         }
@@ -1245,7 +1979,9 @@ public class CommonRepositoryImpl implements CommonRepository {
             } finally {
                 session.close();
             }
-            if (RepositoryUtility.isCachable(entityClass)) {
+            if (cacheable) {
+                // Cached entities are shared, so they must not hold lazy lists
+                loadLazyLists(entityList, new IdentityHashMap<Object, Object>());
                 getCache().putList(key, entityList);
             }
         }
@@ -1257,8 +1993,22 @@ public class CommonRepositoryImpl implements CommonRepository {
 
         List<T> entityList = null;
         ArrayList<HashMap> resultList = null;
+        prepareEntityListParams(entityClass, params);
+        resultList = mapper.getEntityList(params);
+        resolveLocalizedValues(entityClass, params, resultList, mapper);
+        entityList = mapToEntityList(entityClass, resultList);
+        loadChildrenForList(entityList, mapper,
+                (List<String>) params.get(CommonSqlProvider.PARAM_INCLUDE_LIST));
+
+        return entityList;
+    }
+
+    /**
+     * Sets the entity class parameter and makes sure the Language Code is
+     * passed to all children if it has been set.
+     */
+    private void prepareEntityListParams(Class<?> entityClass, Map params) {
         params.put(CommonSqlProvider.PARAM_ENTITY_CLASS, entityClass);
-        // Make sure the Language Code is passed to all children if it has been set
         if (LocalInfo.get(CommonSqlProvider.PARAM_LANGUAGE_CODE) != null
                 && !params.containsKey(CommonSqlProvider.PARAM_LANGUAGE_CODE)) {
             params.put(CommonSqlProvider.PARAM_LANGUAGE_CODE,
@@ -1268,15 +2018,388 @@ public class CommonRepositoryImpl implements CommonRepository {
             LocalInfo.set(CommonSqlProvider.PARAM_LANGUAGE_CODE,
                     params.get(CommonSqlProvider.PARAM_LANGUAGE_CODE), true);
         }
-        resultList = mapper.getEntityList(params);
-        entityList = mapToEntityList(entityClass, resultList);
+        prepareLocalization(params);
+    }
+
+    /**
+     * Flags the query to select the localized columns without the
+     * get_translation function if Java localization is enabled and the query
+     * has a language code. See {@linkplain #setJavaLocalization(boolean)}.
+     */
+    private void prepareLocalization(Map params) {
+        if (isJavaLocalization() && params.get(CommonSqlProvider.PARAM_LANGUAGE_CODE) != null) {
+            params.put(CommonSqlProvider.PARAM_RAW_LOCALIZED, true);
+        }
+    }
+
+    /**
+     * Resolves the localized values in the result row if the query selected
+     * the localized columns without the get_translation function.
+     */
+    private <U extends CommonMapper> void resolveLocalizedValues(
+            Class<? extends AbstractReadOnlyEntity> entityClass, Map params, Map<String, Object> row,
+            U mapper) {
+        if (row != null && Boolean.TRUE.equals(params.get(CommonSqlProvider.PARAM_RAW_LOCALIZED))) {
+            if (!localizedValueResolver.hasLanguages()) {
+                loadLanguages(mapper);
+            }
+            localizedValueResolver.resolveRow(entityClass, row,
+                    (String) params.get(CommonSqlProvider.PARAM_LANGUAGE_CODE));
+        }
+    }
+
+    /**
+     * Overloaded version of
+     * {@linkplain #resolveLocalizedValues(Class, Map, Map, CommonMapper)} that
+     * resolves the localized values for each row in the result list.
+     */
+    private <U extends CommonMapper> void resolveLocalizedValues(
+            Class<? extends AbstractReadOnlyEntity> entityClass, Map params, List<HashMap> rows,
+            U mapper) {
+        if (rows != null && Boolean.TRUE.equals(params.get(CommonSqlProvider.PARAM_RAW_LOCALIZED))) {
+            for (HashMap row : rows) {
+                resolveLocalizedValues(entityClass, params, row, mapper);
+            }
+        }
+    }
+
+    /**
+     * Loads the item order of each language from the system.language table
+     * for the {@linkplain LocalizedValueResolver}.
+     */
+    private <U extends CommonMapper> void loadLanguages(U mapper) {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(CommonSqlProvider.PARAM_QUERY,
+                "SELECT code, item_order, is_default FROM system.language");
+        Map<String, Integer> itemOrders = new HashMap<String, Integer>();
+        String defaultCode = null;
+        List<HashMap> rows = mapper.executeSql(params);
+        if (rows != null) {
+            for (HashMap row : rows) {
+                String code = (String) row.get("code");
+                Object itemOrder = row.get("item_order");
+                if (code != null && itemOrder instanceof Number) {
+                    itemOrders.put(code, ((Number) itemOrder).intValue());
+                    if (Boolean.TRUE.equals(row.get("is_default"))) {
+                        defaultCode = code;
+                    }
+                }
+            }
+        }
+        localizedValueResolver.setLanguages(itemOrders, defaultCode);
+    }
+
+    /**
+     * Loads the children for each entity in the list, using batch loading if
+     * it is enabled.
+     */
+    private <T extends AbstractReadOnlyEntity, U extends CommonMapper> void loadChildrenForList(
+            List<T> entityList, U mapper) {
+        loadChildrenForList(entityList, mapper, null);
+    }
+
+    /**
+     * Overloaded version of {@linkplain #loadChildrenForList(List, CommonMapper)}
+     * that only loads the children included in the projection.
+     */
+    private <T extends AbstractReadOnlyEntity, U extends CommonMapper> void loadChildrenForList(
+            List<T> entityList, U mapper, List<String> includeList) {
         if (entityList != null && !entityList.isEmpty()) {
-            for (T entity : entityList) {
-                loadChildren(entity, mapper);
+            if (isBatchChildLoading()) {
+                loadChildren(entityList, mapper, includeList);
+            } else {
+                // Share the lazy load groups so that the lazy child lists of the entities
+                // are loaded together
+                Map<String, LazyLoadGroup> lazyGroups = new HashMap<String, LazyLoadGroup>();
+                for (T entity : entityList) {
+                    loadChildren(entity, mapper, includeList, lazyGroups);
+                }
             }
         }
+    }
 
-        return entityList;
+    /**
+     * Counts the number of entities that would be returned by
+     * {@linkplain #getEntityList(Class, Map)} for the same parameters using a
+     * single {@code SELECT COUNT(*)} query. The WHERE clause, FROM clause and
+     * query parameters are used as is, but the ORDER BY and LIMIT clauses are
+     * ignored so the count can be used to determine the number of pages of
+     * results available. Rows the user does not have security clearance to
+     * view are excluded from the count using a condition on the
+     * classification_code column (see
+     * {@linkplain RepositoryUtility#getSecurityClearanceCondition(Class, Map)})
+     * so the count matches the number of entities returned by getEntityList.
+     * Entities that override
+     * {@linkplain AbstractReadOnlyEntity#hasSecurityClearance(String)} are
+     * counted using the default rules. If a full query has been provided with
+     * {@linkplain CommonSqlProvider#PARAM_QUERY}, the rows returned by that
+     * query are counted and the classification condition is applied to the
+     * classification_code column of the query results. A query for an entity
+     * class with a classification_code column must therefore select that
+     * column unless the user has Top Secret clearance. The params Map is not
+     * modified.
+     *
+     * @param <T> The generic type of the entity being counted. Must be a
+     * descendent of {@linkplain AbstractReadOnlyEntity}
+     * @param entityClass The class of the entities to count.
+     * @param params The parameters for the SQL query.
+     * @return The number of entities matching the query.
+     * @throws SOLAException if the query provided with PARAM_QUERY does not
+     * select the classification_code column and the user does not have
+     * clearance to view all rows.
+     */
+    @Override
+    public <T extends AbstractReadOnlyEntity> long getEntityListCount(Class<T> entityClass,
+            Map params) {
+        Map<String, Object> countParams = params == null ? new HashMap<String, Object>()
+                : new HashMap<String, Object>(params);
+        String query = (String) countParams.get(CommonSqlProvider.PARAM_QUERY);
+        if (!StringUtility.isEmpty(query)) {
+            String clearanceCondition = RepositoryUtility.getSecurityClearanceCondition(
+                    entityClass, countParams);
+            if (clearanceCondition != null && !query.toLowerCase(Locale.ENGLISH).contains(
+                    AbstractReadOnlyEntity.CLASSIFICATION_CODE_COLUMN_NAME)) {
+                // The rows the user cannot view would be counted
+                throw new SOLAException(CommonMessage.GENERAL_UNEXPECTED,
+                        new Object[]{"Unable to count " + entityClass.getSimpleName()
+                            + " entities. The query must select the "
+                            + AbstractReadOnlyEntity.CLASSIFICATION_CODE_COLUMN_NAME + " column."});
+            }
+            countParams.put(CommonSqlProvider.PARAM_QUERY,
+                    "SELECT COUNT(*) FROM (" + query + ") sola_count"
+                    + (clearanceCondition == null ? "" : " WHERE " + clearanceCondition));
+        } else {
+            countParams.put(CommonSqlProvider.PARAM_SELECT_PART, "COUNT(*)");
+            if (StringUtility.isEmpty((String) countParams.get(CommonSqlProvider.PARAM_FROM_PART))) {
+                countParams.put(CommonSqlProvider.PARAM_FROM_PART,
+                        RepositoryUtility.getTableName(entityClass));
+            }
+            countParams.remove(CommonSqlProvider.PARAM_ORDER_BY_PART);
+            countParams.remove(CommonSqlProvider.PARAM_LIMIT_PART);
+            String clearanceCondition = RepositoryUtility.getSecurityClearanceCondition(
+                    entityClass, countParams);
+            if (clearanceCondition != null) {
+                String whereClause = (String) countParams.get(CommonSqlProvider.PARAM_WHERE_PART);
+                countParams.put(CommonSqlProvider.PARAM_WHERE_PART, StringUtility.isEmpty(whereClause)
+                        ? clearanceCondition : "(" + whereClause + ") AND " + clearanceCondition);
+            }
+        }
+        Object result = getScalar(Object.class, countParams);
+        return result == null ? 0 : ((Number) result).longValue();
+    }
+
+    /**
+     * Overloaded version of {@linkplain #getEntityListCount(Class, Map)} that
+     * sets the WHERE clause for the query.
+     *
+     * @param <T> The generic type of the entity being counted. Must be a
+     * descendent of {@linkplain AbstractReadOnlyEntity}
+     * @param entityClass The class of the entities to count.
+     * @param whereClause The WHERE clause for the query
+     * @param params The parameters for the SQL query.
+     * @return The number of entities matching the query.
+     */
+    @Override
+    public <T extends AbstractReadOnlyEntity> long getEntityListCount(Class<T> entityClass,
+            String whereClause, Map params) {
+        Map<String, Object> countParams = params == null ? new HashMap<String, Object>()
+                : new HashMap<String, Object>(params);
+        countParams.put(CommonSqlProvider.PARAM_WHERE_PART, whereClause);
+        return getEntityListCount(entityClass, countParams);
+    }
+
+    /**
+     * Retrieves a page of entities using keyset pagination. The entities are
+     * sorted using the {@linkplain DefaultSorter} for the entity class followed
+     * by the id columns. Rather than skipping the rows of the previous pages
+     * with an OFFSET, the page token identifies the sort values of the last
+     * row on the previous page and the query seeks directly to the next row,
+     * so the cost of retrieving a page does not depend on how deep the
+     * page is. Refer to {@linkplain KeysetSort} for the restrictions on the
+     * sort expression.
+     * <p>
+     * Each entity is processed in the same way as for
+     * {@linkplain #getEntityList(Class, Map)}, however the entity list cache is
+     * not used. As rows the user does not have security clearance to view are
+     * not returned, a page may hold fewer than pageSize entities (or none)
+     * even if there is a next page. The params Map is not modified.</p>
+     *
+     * @param <T> The generic type of the entity being loaded. Must be a
+     * descendent of {@linkplain AbstractReadOnlyEntity}
+     * @param entityClass The class of the entities to load.
+     * @param whereClause The WHERE clause for the query. Can be null.
+     * @param params The parameters for the SQL query.
+     * @param pageSize The maximum number of entities to return in the page.
+     * @param pageToken The token from the previous page or null to retrieve the
+     * first page.
+     * @return The page of entities along with the token for the next page.
+     */
+    @Override
+    public <T extends AbstractReadOnlyEntity> EntityPage<T> getEntityPage(Class<T> entityClass,
+            String whereClause, Map params, int pageSize, String pageToken) {
+        if (pageSize < 1) {
+            throw new SOLAException(CommonMessage.GENERAL_UNEXPECTED,
+                    new Object[]{"Page size must be greater than zero", "pageSize=" + pageSize});
+        }
+        KeysetSort sort = KeysetSort.forEntity(entityClass);
+        Map<String, Object> pageParams = params == null ? new HashMap<String, Object>()
+                : new HashMap<String, Object>(params);
+        String where = StringUtility.isEmpty(whereClause) ? null : whereClause;
+        if (!StringUtility.isEmpty(pageToken)) {
+            sort.putSeekParams(pageToken, pageParams);
+            where = where == null ? sort.getSeekCondition()
+                    : "(" + where + ") AND (" + sort.getSeekCondition() + ")";
+        }
+        pageParams.put(CommonSqlProvider.PARAM_WHERE_PART, where);
+        pageParams.put(CommonSqlProvider.PARAM_ORDER_BY_PART, sort.getOrderBy());
+        // Select one more row than the page size to determine if there is a next page
+        pageParams.put(CommonSqlProvider.PARAM_LIMIT_PART, pageSize + 1);
+
+        List<T> entityList;
+        String nextPageToken = null;
+        SqlSession session = getSqlSession();
+        try {
+            CommonMapper mapper = getMapper(session);
+            prepareEntityListParams(entityClass, pageParams);
+            ArrayList<HashMap> resultList = mapper.getEntityList(pageParams);
+            resolveLocalizedValues(entityClass, pageParams, resultList, mapper);
+            if (resultList != null && resultList.size() > pageSize) {
+                // Remove the extra row before the entities and their children are loaded. 
+                // The token is created from the last row rather than the last entity as 
+                // the rows the user cannot view are not mapped to entities. 
+                resultList.remove(pageSize);
+                nextPageToken = sort.createToken(resultList.get(pageSize - 1));
+            }
+            entityList = mapToEntityList(entityClass, resultList);
+            loadChildrenForList(entityList, mapper,
+                    (List<String>) pageParams.get(CommonSqlProvider.PARAM_INCLUDE_LIST));
+        } finally {
+            session.close();
+        }
+        return new EntityPage<T>(entityList, nextPageToken);
+    }
+
+    /**
+     * Executes the entity list query and passes each entity to the handler as
+     * it is read from the database rather than returning a list of entities.
+     * This allows very large result sets (e.g. for exports and reports) to be
+     * processed without holding the complete result set in memory.
+     * <p>
+     * Each entity is processed in the same way as for
+     * {@linkplain #getEntityList(Class, Map)}. i.e. security classification
+     * and redaction are applied to each row and the child entities of each
+     * entity are loaded before the entity is passed to the handler. If batch
+     * child loading is enabled (see {@linkplain #setBatchChildLoading(boolean)}),
+     * the entities are passed to the handler in groups of
+     * {@linkplain #BATCH_LOAD_SIZE} once the children for the group have been
+     * loaded. The entity list cache is not used for streamed queries.</p>
+     *
+     * @param <T> The generic type of the entity being loaded. Must be a
+     * descendent of {@linkplain AbstractReadOnlyEntity}
+     * @param entityClass The class of the entities to load.
+     * @param params The parameters for the SQL query.
+     * @param handler The handler to process each entity.
+     * @return The number of entities passed to the handler.
+     */
+    @Override
+    public <T extends AbstractReadOnlyEntity> int streamEntityList(final Class<T> entityClass,
+            Map params, final EntityHandler<? super T> handler) {
+
+        params = params == null ? new HashMap<String, Object>() : params;
+        params.put(CommonSqlProvider.PARAM_ENTITY_CLASS, entityClass);
+        if (LocalInfo.get(CommonSqlProvider.PARAM_LANGUAGE_CODE) != null
+                && !params.containsKey(CommonSqlProvider.PARAM_LANGUAGE_CODE)) {
+            params.put(CommonSqlProvider.PARAM_LANGUAGE_CODE,
+                    LocalInfo.get(CommonSqlProvider.PARAM_LANGUAGE_CODE));
+
+        } else if (params.containsKey(CommonSqlProvider.PARAM_LANGUAGE_CODE)) {
+            LocalInfo.set(CommonSqlProvider.PARAM_LANGUAGE_CODE,
+                    params.get(CommonSqlProvider.PARAM_LANGUAGE_CODE), true);
+        }
+
+        prepareLocalization(params);
+        final Map queryParams = params;
+        final int[] count = {0};
+        final List<T> buffer = new ArrayList<T>();
+        final List<String> includeList = (List<String>) params.get(CommonSqlProvider.PARAM_INCLUDE_LIST);
+        SqlSession session = getSqlSession();
+        try {
+            final CommonMapper mapper = getMapper(session);
+            final RowMappingPlan plan = RepositoryUtility.getRowMappingPlan(entityClass);
+            String statement = getDbConnectionManager().getMapperClass().getName() + ".streamEntityList";
+            mapperMonitor.recordQuery();
+            // The time recorded for the stream includes the time taken to handle 
+            // each entity as the rows are read while the handler is processing. 
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                session.select(statement, params, new ResultHandler() {
+                    @Override
+                    public void handleResult(ResultContext context) {
+                        Map<String, Object> row = (Map<String, Object>) context.getResultObject();
+                        resolveLocalizedValues(entityClass, queryParams, row, mapper);
+                        T entity = mapToEntity(entityClass, row, plan);
+                        if (entity != null) {
+                            count[0]++;
+                            if (isBatchChildLoading()) {
+                                buffer.add(entity);
+                                if (buffer.size() >= BATCH_LOAD_SIZE) {
+                                    handleEntities(buffer, handler, mapper, includeList);
+                                }
+                            } else {
+                                loadChildren(entity, mapper, includeList);
+                                handler.handleEntity(entity);
+                            }
+                        }
+                    }
+                });
+                handleEntities(buffer, handler, mapper, includeList);
+                failed = false;
+            } finally {
+                long nanos = System.nanoTime() - start;
+                mapperMonitor.recordStatement("streamEntityList", entityClass, nanos, count[0], failed);
+                SlowQueryRecorder.getInstance().record(statement, params, nanos, count[0], failed);
+            }
+        } finally {
+            session.close();
+        }
+        return count[0];
+    }
+
+    /**
+     * Overloaded version of
+     * {@linkplain #streamEntityList(Class, Map, EntityHandler)} that sets the
+     * WHERE clause for the query.
+     *
+     * @param <T> The generic type of the entity being loaded. Must be a
+     * descendent of {@linkplain AbstractReadOnlyEntity}
+     * @param entityClass The class of the entities to load.
+     * @param whereClause The WHERE clause for the query
+     * @param params The parameters for the SQL query.
+     * @param handler The handler to process each entity.
+     * @return The number of entities passed to the handler.
+     */
+    @Override
+    public <T extends AbstractReadOnlyEntity> int streamEntityList(Class<T> entityClass,
+            String whereClause, Map params, EntityHandler<? super T> handler) {
+        params = params == null ? new HashMap<String, Object>() : params;
+        params.put(CommonSqlProvider.PARAM_WHERE_PART, whereClause);
+        return streamEntityList(entityClass, params, handler);
+    }
+
+    /**
+     * Loads the children for a group of streamed entities and passes each
+     * entity to the handler. The group is cleared once processed.
+     */
+    private <T extends AbstractReadOnlyEntity> void handleEntities(List<T> entities,
+            EntityHandler<? super T> handler, CommonMapper mapper, List<String> includeList) {
+        if (!entities.isEmpty()) {
+            loadChildren(entities, mapper, includeList);
+            for (T entity : entities) {
+                handler.handleEntity(entity);
+            }
+            entities.clear();
+        }
     }
 
     /**
@@ -1413,6 +2536,14 @@ public class CommonRepositoryImpl implements CommonRepository {
 
         // Determine if the parent has customized join criteria for the child list. 
         Map<String, Object> params = parentEntity.getChildJoinSqlParams(childInfo);
+        if (params == null && childInfo.isManyToMany() && isManyToManyJoinLoading()) {
+            List<V> result = null;
+            if (parentEntity.getEntityId() != null) {
+                result = getManyToManyChildren(Arrays.asList(parentEntity.getEntityId()),
+                        childEntityClass, childInfo, mapper).get(parentEntity.getEntityId());
+            }
+            return result == null ? new ArrayList<V>() : result;
+        }
         if (params == null) {
             // Use the default child join critiera (i.e. where FK column = parentId)
             params = new HashMap<String, Object>();
@@ -1467,8 +2598,43 @@ public class CommonRepositoryImpl implements CommonRepository {
      * @param mapper The Mybatis mapper class used for this loading process.
      */
     public <T extends AbstractReadOnlyEntity, U extends CommonMapper> void loadChildren(T entity, U mapper) {
+        loadChildren(entity, mapper, null);
+    }
+
+    /**
+     * Overloaded version of
+     * {@linkplain #loadChildren(AbstractReadOnlyEntity, CommonMapper)} that
+     * only loads the children included in the projection (see
+     * {@linkplain CommonSqlProvider#PARAM_INCLUDE_LIST}).
+     *
+     * @param includeList The names of the fields included in the projection or
+     * null to load all children.
+     */
+    private <T extends AbstractReadOnlyEntity, U extends CommonMapper> void loadChildren(T entity,
+            U mapper, List<String> includeList) {
+        loadChildren(entity, mapper, includeList, null);
+    }
+
+    /**
+     * Overloaded version of
+     * {@linkplain #loadChildren(AbstractReadOnlyEntity, CommonMapper, List)}
+     * that adds the lazy child lists of the entity to the lazy load groups
+     * shared with the other entities in the same result.
+     *
+     * @param lazyGroups The lazy load groups by child field name or null if the
+     * lazy child lists of the entity should be loaded on their own.
+     */
+    private <T extends AbstractReadOnlyEntity, U extends CommonMapper> void loadChildren(T entity,
+            U mapper, List<String> includeList, Map<String, LazyLoadGroup> lazyGroups) {
         String redactCode = entity.getRedactCode();
+        Set<Class<?>> inhibitors = getLoadInhibitors();
+        List<ExternalEntityLoad> asyncLoads = isAsyncExternalLoading()
+                ? new ArrayList<ExternalEntityLoad>() : null;
         for (ChildEntityInfo childInfo : entity.getChildEntityInfo()) {
+            if (includeList != null && !includeList.contains(childInfo.getFieldName())) {
+                // The child is not part of the projection
+                continue;
+            }
             if (AbstractReadOnlyEntity.class.isAssignableFrom(childInfo.getEntityClass())) {
                 Class<? extends AbstractReadOnlyEntity> childEntityClass
                         = (Class<? extends AbstractReadOnlyEntity>) childInfo.getEntityClass();
@@ -1476,19 +2642,21 @@ public class CommonRepositoryImpl implements CommonRepository {
                 // Determine if this child entity is being redacted. If so, do not load it. 
                 boolean redactRequired = entity.isRedactRequired(childInfo, redactCode);
                 // Check to determine if loading of this child class should be skipped or not
-                if (!isInhibitLoad(childEntityClass) && !redactRequired) {
-                    Object child;
-                    if (childInfo.isExternalEntity()) {
-                        // External Entity
-                        child = getExternalEntity(entity, childInfo, mapper);
-                    } else if (childInfo.isListField()) {
-                        // Load the child list for the one to many or many to many list. 
-                        child = getChildEntityList(entity, childEntityClass, childInfo, mapper);
-                    } else {
-                        // One to One relationship, so load the child
-                        child = getChildEntity(entity, childEntityClass, childInfo, mapper);
+                if (!inhibitors.contains(childEntityClass) && !redactRequired) {
+                    if (isLazyLoad(childInfo)) {
+                        LazyLoadGroup group = lazyGroups == null ? null
+                                : lazyGroups.get(childInfo.getFieldName());
+                        if (group == null) {
+                            group = createLazyLoadGroup(childEntityClass, childInfo);
+                            if (lazyGroups != null) {
+                                lazyGroups.put(childInfo.getFieldName(), group);
+                            }
+                        }
+                        group.add(entity);
+                    } else if (!submitExternalEntity(entity, childInfo, mapper, asyncLoads)) {
+                        entity.setEntityFieldValue(childInfo,
+                                loadChild(entity, childEntityClass, childInfo, mapper));
                     }
-                    entity.setEntityFieldValue(childInfo, child);
                 }
                 entity.setRedacted(redactRequired || entity.isRedacted());
                 setEntityRedactCode(entity, childInfo, redactCode);
@@ -1499,6 +2667,427 @@ public class CommonRepositoryImpl implements CommonRepository {
                 loadOtherEntity(entity, childInfo, mapper);
             }
         }
+        completeExternalEntities(asyncLoads);
+    }
+
+    /**
+     * Loads the child entity or child entity list for a single child field of
+     * the parent entity.
+     *
+     * @param <T> The generic type of the parent entity. Must be a descendent of
+     * {@linkplain AbstractReadOnlyEntity}
+     * @param <U> The generic type of the mapper. Must be a descendent of
+     * {@linkplain CommonMapper}
+     * @param entity The parent entity that references the child entity or child
+     * entity list to load
+     * @param childEntityClass The class of the child entity to load.
+     * @param childInfo Details of the child entity (or entity list) to load.
+     * @param mapper The Mybatis mapper class used for this loading process.
+     * @return The child entity or child entity list.
+     */
+    private <T extends AbstractReadOnlyEntity, U extends CommonMapper> Object loadChild(T entity,
+            Class<? extends AbstractReadOnlyEntity> childEntityClass, ChildEntityInfo childInfo, U mapper) {
+        Object child;
+        if (childInfo.isExternalEntity()) {
+            // External Entity
+            child = getExternalEntity(entity, childInfo, mapper);
+        } else if (childInfo.isListField()) {
+            // Load the child list for the one to many or many to many list. 
+            child = getChildEntityList(entity, childEntityClass, childInfo, mapper);
+        } else {
+            // One to One relationship, so load the child
+            child = getChildEntity(entity, childEntityClass, childInfo, mapper);
+        }
+        return child;
+    }
+
+    /**
+     * Batch version of {@linkplain #loadChildren(AbstractReadOnlyEntity, CommonMapper)}
+     * that loads the children for a list of parent entities of the same class.
+     * Each child relationship is loaded with one query for all parents (see
+     * {@linkplain #setBatchChildLoading(boolean)}) and the child entities are
+     * matched to their parent using the foreign key values. The load
+     * inhibitor and redaction checks are applied to each parent entity in the
+     * same way as for the non batch load.
+     *
+     * @param <T> The generic type of the parent entity. Must be a descendent of
+     * {@linkplain AbstractReadOnlyEntity}
+     * @param <U> The generic type of the mapper. Must be a descendent of
+     * {@linkplain CommonMapper}
+     * @param entities The list of parent entities to load the children for.
+     * @param mapper The Mybatis mapper class used for this loading process.
+     */
+    protected <T extends AbstractReadOnlyEntity, U extends CommonMapper> void loadChildren(List<T> entities,
+            U mapper) {
+        loadChildren(entities, mapper, null);
+    }
+
+    /**
+     * Overloaded version of {@linkplain #loadChildren(List, CommonMapper)}
+     * that only loads the children included in the projection (see
+     * {@linkplain CommonSqlProvider#PARAM_INCLUDE_LIST}).
+     *
+     * @param includeList The names of the fields included in the projection or
+     * null to load all children.
+     */
+    private <T extends AbstractReadOnlyEntity, U extends CommonMapper> void loadChildren(List<T> entities,
+            U mapper, List<String> includeList) {
+        if (entities == null || entities.isEmpty()) {
+            return;
+        }
+        if (entities.size() == 1) {
+            loadChildren(entities.get(0), mapper, includeList);
+            return;
+        }
+        // Capture the redact code of each parent before processing any children as 
+        // the redact code of the parent can be updated by the child processing. 
+        Set<Class<?>> inhibitors = getLoadInhibitors();
+        List<ExternalEntityLoad> asyncLoads = isAsyncExternalLoading()
+                ? new ArrayList<ExternalEntityLoad>() : null;
+        String[] redactCodes = new String[entities.size()];
+        for (int i = 0; i < entities.size(); i++) {
+            redactCodes[i] = entities.get(i).getRedactCode();
+        }
+        for (ChildEntityInfo childInfo : entities.get(0).getChildEntityInfo()) {
+            if (includeList != null && !includeList.contains(childInfo.getFieldName())) {
+                // The child is not part of the projection
+                continue;
+            }
+            if (AbstractReadOnlyEntity.class.isAssignableFrom(childInfo.getEntityClass())) {
+                Class<? extends AbstractReadOnlyEntity> childEntityClass
+                        = (Class<? extends AbstractReadOnlyEntity>) childInfo.getEntityClass();
+                boolean inhibitLoad = inhibitors.contains(childEntityClass);
+                LazyLoadGroup lazyGroup = isLazyLoad(childInfo)
+                        ? createLazyLoadGroup(childEntityClass, childInfo) : null;
+                List<T> batchParents = new ArrayList<T>();
+                for (int i = 0; i < entities.size(); i++) {
+                    T entity = entities.get(i);
+                    boolean redactRequired = entity.isRedactRequired(childInfo, redactCodes[i]);
+                    if (!inhibitLoad && !redactRequired) {
+                        if (lazyGroup != null) {
+                            lazyGroup.add(entity);
+                        } else if (isBatchLoadable(entity, childInfo)) {
+                            batchParents.add(entity);
+                        } else if (!submitExternalEntity(entity, childInfo, mapper, asyncLoads)) {
+                            entity.setEntityFieldValue(childInfo,
+                                    loadChild(entity, childEntityClass, childInfo, mapper));
+                        }
+                    }
+                    entity.setRedacted(redactRequired || entity.isRedacted());
+                    setEntityRedactCode(entity, childInfo, redactCodes[i]);
+                }
+                if (!batchParents.isEmpty()) {
+                    loadChildBatch(batchParents, childEntityClass, childInfo, mapper);
+                }
+            } else {
+                for (T entity : entities) {
+                    loadOtherEntity(entity, childInfo, mapper);
+                }
+            }
+        }
+        completeExternalEntities(asyncLoads);
+    }
+
+    /**
+     * Determines if the child list should be loaded when it is first accessed
+     * (see {@linkplain ChildEntityList#lazy()}). Lazy loading only applies to
+     * child lists that are loaded by this repository and that are declared with
+     * a field type that can hold a {@linkplain LazyEntityList}.
+     */
+    private boolean isLazyLoad(ChildEntityInfo childInfo) {
+        return childInfo.isLazy() && childInfo.isListField() && !childInfo.isExternalEntity()
+                && childInfo.getFieldType().isAssignableFrom(LazyEntityList.class);
+    }
+
+    /**
+     * Creates the group used to load the lazy child lists for a set of parent
+     * entities. The children are loaded using the same SqlSession as the
+     * transaction if the lists are accessed within the transaction that
+     * loaded the parents. Children of parents that can be batch loaded are
+     * loaded together.
+     */
+    private LazyLoadGroup createLazyLoadGroup(
+            final Class<? extends AbstractReadOnlyEntity> childEntityClass,
+            final ChildEntityInfo childInfo) {
+        return new LazyLoadGroup(childInfo) {
+            @Override
+            protected void loadChildren(List<AbstractReadOnlyEntity> parents) {
+                SqlSession session = getSqlSession();
+                try {
+                    CommonMapper mapper = getMapper(session);
+                    List<AbstractReadOnlyEntity> batchParents = new ArrayList<AbstractReadOnlyEntity>();
+                    for (AbstractReadOnlyEntity parent : parents) {
+                        if (parents.size() > 1 && isBatchLoadable(parent, childInfo)) {
+                            batchParents.add(parent);
+                        } else {
+                            parent.setEntityFieldValue(childInfo,
+                                    loadChild(parent, childEntityClass, childInfo, mapper));
+                        }
+                    }
+                    if (!batchParents.isEmpty()) {
+                        loadChildBatch(batchParents, childEntityClass, childInfo, mapper);
+                    }
+                } finally {
+                    session.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * Loads any lazy child lists in the entity graphs of the entities that
+     * have not been accessed and replaces each lazy list with its loaded list.
+     * Used before entities are shared through the cache as a lazy list cannot
+     * be loaded outside of the context that loaded its parent (see
+     * {@linkplain LazyLoadGroup}). The lists of the entities loaded together
+     * are loaded as a group.
+     *
+     * @param entities The entities to check
+     * @param visited The entities already checked.
+     */
+    private void loadLazyLists(List<? extends AbstractReadOnlyEntity> entities,
+            Map<Object, Object> visited) {
+        if (entities == null) {
+            return;
+        }
+        for (AbstractReadOnlyEntity entity : entities) {
+            if (entity == null || visited.put(entity, entity) != null) {
+                continue;
+            }
+            for (ChildEntityInfo childInfo : entity.getChildEntityInfo()) {
+                Object value = entity.getEntityFieldValue(childInfo);
+                if (value instanceof LazyEntityList) {
+                    value = ((LazyEntityList) value).getDelegate();
+                    entity.setEntityFieldValue(childInfo, value);
+                }
+                if (value instanceof List) {
+                    List<AbstractReadOnlyEntity> children = new ArrayList<AbstractReadOnlyEntity>();
+                    for (Object child : (List) value) {
+                        if (child instanceof AbstractReadOnlyEntity) {
+                            children.add((AbstractReadOnlyEntity) child);
+                        }
+                    }
+                    loadLazyLists(children, visited);
+                } else if (value instanceof AbstractReadOnlyEntity) {
+                    loadLazyLists(Arrays.asList((AbstractReadOnlyEntity) value), visited);
+                }
+            }
+        }
+    }
+
+    /**
+     * Determines if the child entity for the parent can be loaded as part of a
+     * batch. External entities and children loaded with customized join
+     * criteria must be loaded separately. Many to many lists can only be batch
+     * loaded if join loading is enabled.
+     */
+    private <T extends AbstractReadOnlyEntity> boolean isBatchLoadable(T entity,
+            ChildEntityInfo childInfo) {
+        return !childInfo.isExternalEntity()
+                && !(childInfo.isListField() && childInfo.isManyToMany() && !isManyToManyJoinLoading())
+                && entity.getChildJoinSqlParams(childInfo) == null;
+    }
+
+    /**
+     * Loads the child entity or child entity list for all of the parent
+     * entities using IN queries on the foreign key column. The children are
+     * grouped by foreign key value and assigned to the matching parent. If more
+     * than one parent references the same one to one child, the child is
+     * loaded separately for the additional parents to avoid sharing the same
+     * child instance between parents.
+     *
+     * @param <T> The generic type of the parent entity. Must be a descendent of
+     * {@linkplain AbstractReadOnlyEntity}
+     * @param <U> The generic type of the mapper. Must be a descendent of
+     * {@linkplain CommonMapper}
+     * @param <V> The generic type of the child entity. Must be a descendent of
+     * {@linkplain AbstractReadOnlyEntity}.
+     * @param parents The parent entities to load the child for.
+     * @param childEntityClass The class of the child entity to load.
+     * @param childInfo Details of the child entity (or entity list) to load.
+     * @param mapper The Mybatis mapper class used for this loading process.
+     */
+    private <T extends AbstractReadOnlyEntity, U extends CommonMapper, V extends AbstractReadOnlyEntity> void loadChildBatch(
+            List<T> parents, Class<V> childEntityClass, ChildEntityInfo childInfo, U mapper) {
+
+        if (childInfo.isListField() && childInfo.isManyToMany()) {
+            loadManyToManyBatch(parents, childEntityClass, childInfo, mapper);
+            return;
+        }
+
+        // If the parent holds the id of the child, query the child on its id. Otherwise
+        // the child references the parent, so query the child using the parent id column. 
+        boolean parentHoldsChildId = !childInfo.isListField() && childInfo.isInsertBeforeParent();
+        ColumnInfo parentIdColumn = null;
+        String keyColumnName = "id";
+        if (!parentHoldsChildId) {
+            parentIdColumn = RepositoryUtility.getColumnInfo(childEntityClass, childInfo.getParentIdField());
+            keyColumnName = parentIdColumn.getColumnName();
+        }
+
+        String[] parentKeys = new String[parents.size()];
+        Set<String> keys = new LinkedHashSet<String>();
+        for (int i = 0; i < parents.size(); i++) {
+            T parent = parents.get(i);
+            Object key = parentHoldsChildId
+                    ? parent.getEntityFieldValue(parent.getColumnInfo(childInfo.getChildIdField()))
+                    : parent.getEntityId();
+            if (key != null) {
+                parentKeys[i] = key.toString();
+                keys.add(parentKeys[i]);
+            }
+        }
+
+        // Load the children in chunks of BATCH_LOAD_SIZE and group them by key
+        Map<String, List<V>> children = new HashMap<String, List<V>>();
+        List<String> keyList = new ArrayList<String>(keys);
+        for (int start = 0; start < keyList.size(); start += BATCH_LOAD_SIZE) {
+            List<String> chunk = keyList.subList(start, Math.min(start + BATCH_LOAD_SIZE, keyList.size()));
+            Map<String, Object> params = new HashMap<String, Object>();
+            params.put(CommonSqlProvider.PARAM_WHERE_PART, keyColumnName + " IN ("
+                    + CommonSqlProvider.prepareBatchListParams(chunk, params) + ")");
+            for (V child : getEntityList(childEntityClass, params, mapper)) {
+                Object key = parentHoldsChildId ? child.getEntityId()
+                        : child.getEntityFieldValue(parentIdColumn);
+                if (key != null) {
+                    List<V> childList = children.get(key.toString());
+                    if (childList == null) {
+                        childList = new ArrayList<V>();
+                        children.put(key.toString(), childList);
+                    }
+                    childList.add(child);
+                }
+            }
+        }
+
+        // Assign the children to each parent
+        Set<String> assigned = new LinkedHashSet<String>();
+        for (int i = 0; i < parents.size(); i++) {
+            T parent = parents.get(i);
+            List<V> childList = parentKeys[i] == null ? null : children.get(parentKeys[i]);
+            if (parentKeys[i] != null && !assigned.add(parentKeys[i])) {
+                // The children for this key have already been assigned to another parent. 
+                parent.setEntityFieldValue(childInfo, loadChild(parent, childEntityClass, childInfo, mapper));
+            } else if (childInfo.isListField()) {
+                parent.setEntityFieldValue(childInfo, childList == null ? new ArrayList<V>() : childList);
+            } else {
+                parent.setEntityFieldValue(childInfo, childList == null ? null : childList.get(0));
+            }
+        }
+    }
+
+    /**
+     * Loads the many to many child list for all of the parent entities using
+     * {@linkplain #getManyToManyChildren}. If more than one parent has the same
+     * id, the list is loaded separately for the additional parents to avoid
+     * sharing the same child instances between parents.
+     *
+     * @param <T> The generic type of the parent entity. Must be a descendent of
+     * {@linkplain AbstractReadOnlyEntity}
+     * @param <U> The generic type of the mapper. Must be a descendent of
+     * {@linkplain CommonMapper}
+     * @param <V> The generic type of the child entity. Must be a descendent of
+     * {@linkplain AbstractReadOnlyEntity}.
+     * @param parents The parent entities to load the child list for.
+     * @param childEntityClass The class of the child entity to load.
+     * @param childInfo Details of the many to many child list to load.
+     * @param mapper The Mybatis mapper class used for this loading process.
+     */
+    private <T extends AbstractReadOnlyEntity, U extends CommonMapper, V extends AbstractReadOnlyEntity> void loadManyToManyBatch(
+            List<T> parents, Class<V> childEntityClass, ChildEntityInfo childInfo, U mapper) {
+        Set<String> parentIds = new LinkedHashSet<String>();
+        for (T parent : parents) {
+            if (parent.getEntityId() != null) {
+                parentIds.add(parent.getEntityId());
+            }
+        }
+        Map<String, List<V>> children = getManyToManyChildren(new ArrayList<String>(parentIds),
+                childEntityClass, childInfo, mapper);
+        Set<String> assigned = new LinkedHashSet<String>();
+        for (T parent : parents) {
+            String parentId = parent.getEntityId();
+            if (parentId != null && !assigned.add(parentId)) {
+                // The children for this parent id have already been assigned to another parent. 
+                parent.setEntityFieldValue(childInfo, loadChild(parent, childEntityClass, childInfo, mapper));
+            } else {
+                List<V> childList = parentId == null ? null : children.get(parentId);
+                parent.setEntityFieldValue(childInfo, childList == null ? new ArrayList<V>() : childList);
+            }
+        }
+    }
+
+    /**
+     * Loads the many to many children for a list of parent ids by joining the
+     * child table to the rows of the many to many table that reference the
+     * parents. e.g.
+     * <pre>
+     * SELECT c.*, sola_j.sola_join_key FROM child_table c
+     * INNER JOIN (SELECT a.child_id AS sola_child_id, a.parent_id AS sola_join_key
+     * FROM many_to_many_table a WHERE a.parent_id IN (...)) sola_j
+     * ON sola_j.sola_child_id = child_table.id
+     * </pre> The many to many table is wrapped in a sub query so that its
+     * columns do not conflict with the columns of the child table. The parent
+     * ids are processed in chunks of {@linkplain #BATCH_LOAD_SIZE}. The children
+     * of the child entities are also loaded.
+     *
+     * @param <U> The generic type of the mapper. Must be a descendent of
+     * {@linkplain CommonMapper}
+     * @param <V> The generic type of the child entity. Must be a descendent of
+     * {@linkplain AbstractReadOnlyEntity}.
+     * @param parentIds The ids of the parent entities
+     * @param childEntityClass The class of the child entity to load.
+     * @param childInfo Details of the many to many child list to load.
+     * @param mapper The Mybatis mapper class used for this loading process.
+     * @return The child entities grouped by parent id.
+     */
+    private <U extends CommonMapper, V extends AbstractReadOnlyEntity> Map<String, List<V>> getManyToManyChildren(
+            List<String> parentIds, Class<V> childEntityClass, ChildEntityInfo childInfo, U mapper) {
+
+        Class<? extends AbstractEntity> manyToManyClass
+                = (Class<? extends AbstractEntity>) childInfo.getManyToManyClass();
+        String parentIdColumn = RepositoryUtility.getColumnInfo(manyToManyClass,
+                childInfo.getParentIdField()).getColumnName();
+        String childIdColumn = RepositoryUtility.getColumnInfo(manyToManyClass,
+                childInfo.getChildIdField()).getColumnName();
+        String childTableName = RepositoryUtility.getTableName(childEntityClass);
+        String childPKColumnName = RepositoryUtility.getIdColumns(childEntityClass).get(0).getColumnName();
+
+        Map<String, List<V>> children = new HashMap<String, List<V>>();
+        List<V> allChildren = new ArrayList<V>();
+        RowMappingPlan plan = RepositoryUtility.getRowMappingPlan(childEntityClass);
+        for (int start = 0; start < parentIds.size(); start += BATCH_LOAD_SIZE) {
+            List<String> chunk = parentIds.subList(start, Math.min(start + BATCH_LOAD_SIZE, parentIds.size()));
+            Map<String, Object> params = new HashMap<String, Object>();
+            params.put(CommonSqlProvider.PARAM_FROM_PART, childTableName
+                    + " INNER JOIN (SELECT a." + childIdColumn + " AS " + JOIN_CHILD_ID_COLUMN
+                    + ", a." + parentIdColumn + " AS " + JOIN_KEY_COLUMN
+                    + " FROM " + RepositoryUtility.getTableName(manyToManyClass) + " a"
+                    + " WHERE a." + parentIdColumn + " IN ("
+                    + CommonSqlProvider.prepareBatchListParams(chunk, params) + ")) " + JOIN_ALIAS
+                    + " ON " + JOIN_ALIAS + "." + JOIN_CHILD_ID_COLUMN + " = "
+                    + childTableName + "." + childPKColumnName);
+            params.put(CommonSqlProvider.PARAM_ADDITIONAL_SELECT_PART, JOIN_ALIAS + "." + JOIN_KEY_COLUMN);
+            prepareEntityListParams(childEntityClass, params);
+            ArrayList<HashMap> resultList = mapper.getEntityList(params);
+            resolveLocalizedValues(childEntityClass, params, resultList, mapper);
+            if (resultList != null) {
+                for (Map<String, Object> row : resultList) {
+                    Object key = row.get(JOIN_KEY_COLUMN);
+                    V child = mapToEntity(childEntityClass, row, plan);
+                    if (key != null && child != null) {
+                        List<V> childList = children.get(key.toString());
+                        if (childList == null) {
+                            childList = new ArrayList<V>();
+                            children.put(key.toString(), childList);
+                        }
+                        childList.add(child);
+                        allChildren.add(child);
+                    }
+                }
+            }
+        }
+        loadChildrenForList(allChildren, mapper);
+        return children;
     }
 
     /**
@@ -1519,7 +3108,27 @@ public class CommonRepositoryImpl implements CommonRepository {
      */
     private <T extends AbstractReadOnlyEntity, U extends CommonMapper> Object getExternalEntity(
             T entity, ChildEntityInfo childInfo, U mapper) {
-        Object child = null;
+        return createExternalEntityLoad(entity, childInfo, mapper).load();
+    }
+
+    /**
+     * Determines the EJB and the argument required to load a child entity or
+     * entity list from another EJB. Any list of child ids is obtained from
+     * this database using the mapper of the calling thread.
+     *
+     * @param <T> The generic type of the parent entity. Must be a descendent of
+     * {@linkplain AbstractReadOnlyEntity}
+     * @param <U> The generic type of the mapper. Must be a descendent of
+     * {@linkplain CommonMapper}
+     * @param entity The parent entity that references the child entity or child
+     * entity list to load
+     * @param childInfo Details of the child entity (or entity list) that can be
+     * used to identify the child entity to be processed.
+     * @param mapper The Mybatis mapper class used for this loading process.
+     * @return The load for the external entity.
+     */
+    private <T extends AbstractReadOnlyEntity, U extends CommonMapper> ExternalEntityLoad createExternalEntityLoad(
+            T entity, ChildEntityInfo childInfo, U mapper) {
         Class<?> argType = null;
         Object argValue = null;
         AbstractEJBLocal ejb = RepositoryUtility.getEJB(childInfo.getEJBLocalClass());
@@ -1542,18 +3151,58 @@ public class CommonRepositoryImpl implements CommonRepository {
             }
             argType = String.class;
         }
-        try {
-            Method loadMethod = ejb.getClass().getMethod(childInfo.getLoadMethod(), argType);
-            child = loadMethod.invoke(ejb, argValue);
-        } catch (Exception ex) {
-            throw new SOLAException(CommonMessage.GENERAL_UNEXPECTED,
-                    // Capture the specific details so they are added to the log. Note that
-                    // any exception raised when invoking the ejb method will be wrapped in an
-                    // InvocationTargetException. The true cause can be masked by this exception.
-                    new Object[]{"Unable to invoke method " + childInfo.getLoadMethod(),
-                        FaultUtility.getStackTraceAsString(ex)});
+        return new ExternalEntityLoad(entity, childInfo, ejb, argType, argValue);
+    }
+
+    /**
+     * Submits the load of an external child entity or entity list to the
+     * {@linkplain AsyncLoaderEJBLocal} if asynchronous loading is enabled
+     * (see {@linkplain #setAsyncExternalLoading(boolean)}). The child is
+     * assigned to the parent by
+     * {@linkplain #completeExternalEntities(List)}.
+     *
+     * @param entity The parent entity that references the child.
+     * @param childInfo Details of the child entity (or entity list) to load.
+     * @param mapper The Mybatis mapper class used for this loading process.
+     * @param asyncLoads The list to add the submitted load to or null if
+     * asynchronous loading is not enabled.
+     * @return true if the load was submitted or the child has been loaded. If
+     * false, the child must be loaded with
+     * {@linkplain #loadChild(AbstractReadOnlyEntity, Class, ChildEntityInfo, CommonMapper)}.
+     */
+    private <T extends AbstractReadOnlyEntity, U extends CommonMapper> boolean submitExternalEntity(
+            T entity, ChildEntityInfo childInfo, U mapper, List<ExternalEntityLoad> asyncLoads) {
+        if (asyncLoads == null || !childInfo.isExternalEntity() || !ExternalEntityLoad.isAsyncAllowed()) {
+            return false;
+        }
+        AsyncLoaderEJBLocal loader = getAsyncLoader();
+        if (loader == null) {
+            return false;
+        }
+        ExternalEntityLoad load = createExternalEntityLoad(entity, childInfo, mapper);
+        if (!load.submit(loader)) {
+            // Load the child now rather than create the load again 
+            entity.setEntityFieldValue(childInfo, load.load());
+            return true;
+        }
+        asyncLoads.add(load);
+        return true;
+    }
+
+    /**
+     * Waits for the external entities submitted by
+     * {@linkplain #submitExternalEntity(AbstractReadOnlyEntity, ChildEntityInfo, CommonMapper, List)}
+     * to load and assigns each child to its parent entity.
+     *
+     * @param asyncLoads The submitted loads. May be null.
+     */
+    private void completeExternalEntities(List<ExternalEntityLoad> asyncLoads) {
+        if (asyncLoads == null) {
+            return;
+        }
+        for (ExternalEntityLoad load : asyncLoads) {
+            load.getEntity().setEntityFieldValue(load.getChildInfo(), load.getResult());
         }
-        return child;
     }
 
     /**
@@ -1617,6 +3266,14 @@ public class CommonRepositoryImpl implements CommonRepository {
             });
         }
 
+        // The SQL may modify entities held in the identity map
+        TransactionIdentityMap.clear();
+        String query = (String) params.get(CommonSqlProvider.PARAM_QUERY);
+        if (query == null || !query.trim().toLowerCase(Locale.ENGLISH).startsWith("select")) {
+            // The SQL may modify tables of cached entities
+            clearEntityCache();
+            ExternalEntityLoad.setWritePerformed();
+        }
         ArrayList<HashMap> result = null;
         SqlSession session = getSqlSession();
         try {
@@ -1627,6 +3284,19 @@ public class CommonRepositoryImpl implements CommonRepository {
         return result;
     }
 
+    /**
+     * Removes all rows from the by id entity cache. Used after executing
+     * dynamic SQL that may modify any table. If there is a transaction, the
+     * rows are removed again once the transaction completes (see
+     * {@linkplain EntityCacheSynchronization}).
+     */
+    private void clearEntityCache() {
+        if (RepositoryUtility.isCacheDeployed()) {
+            getCache().clearAllEntities();
+            EntityCacheSynchronization.register(LocalInfo.getTransactionRegistry(), getCache(), null);
+        }
+    }
+
     /**
      * Issue #248 Add Bulk Update capability to the repository. Executes a
      * dynamic bulk update command using the specified parameters.
@@ -1644,6 +3314,9 @@ public class CommonRepositoryImpl implements CommonRepository {
             });
         }
 
+        TransactionIdentityMap.clear();
+        clearEntityCache();
+        ExternalEntityLoad.setWritePerformed();
         int result = 0;
         SqlSession session = getSqlSession();
         try {
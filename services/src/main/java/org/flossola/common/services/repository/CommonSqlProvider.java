@@ -34,18 +34,42 @@ package org.flossola.common.services.repository;
 import org.flossola.common.utilities.exceptions.SOLAException;
 import org.flossola.common.messaging.CommonMessage;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
 import org.flossola.common.services.repository.entities.AbstractReadOnlyEntity;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 import org.flossola.common.services.repository.entities.ColumnInfo;
 import org.flossola.common.services.repository.entities.AbstractEntity;
 import static org.apache.ibatis.jdbc.SqlBuilder.*;
 import org.flossola.common.services.LocalInfo;
+import org.flossola.common.utilities.logging.LogUtility;
 
 /**
  * Provides methods for generating common SQL statements that can be used in
  * Mybatis mapper classes through Provider annotations. The SQL statements are
  * created using the Mybatis SqlBuilder methods.
+ * <p>
+ * The SQL text generated for each entity is cached in a process wide template
+ * cache. The cache key captures the entity class, the kind of statement and the
+ * shape of the statement (e.g. the WHERE, ORDER BY and LIMIT parts along with
+ * the set of columns included in an INSERT or UPDATE) so that repeat requests
+ * for the same statement shape can skip the SqlBuilder processing entirely.
+ * Note that the WHERE parts used by the repository are expected to use Mybatis
+ * parameters (e.g. #{id}) rather than literal values. WHERE parts containing
+ * literal values will still be cached. The cache holds at most
+ * {@linkplain #MAX_CACHED_TEMPLATES} templates and discards some of the cached
+ * templates once it is full, so such statements cannot fill the cache
+ * permanently. Templates in use are simply added again the next time they are
+ * generated. The cache can be read by many threads at once without
+ * locking.</p>
  *
  * @author soladev
  */
@@ -53,13 +77,201 @@ public class CommonSqlProvider {
 
     public static final String PARAM_ENTITY_CLASS = "sql_param_entityClass";
     public static final String PARAM_EXCLUDE_LIST = "sql_param_excludeList";
+    /**
+     * The names of the fields to select for the entity. If set, the SELECT
+     * clause only includes these fields along with the fields required for
+     * security and optimistic locking (see
+     * {@linkplain RepositoryUtility#getProjectedFields(Class, java.util.Collection)}).
+     * Child entities are only loaded if their field is in the list.
+     */
+    public static final String PARAM_INCLUDE_LIST = "sql_param_includeList";
     public static final String PARAM_LANGUAGE_CODE = "sql_param_languageCode";
+    /**
+     * If set to true, the columns annotated with {@linkplain Localized} are
+     * selected without the get_translation function even if a language code is
+     * set, so the localized values can be resolved in Java (see
+     * {@linkplain LocalizedValueResolver}). The flag is reset to false by the
+     * SELECT statement builder if the WHERE or ORDER BY clause references a
+     * localized column as those clauses must use the translated value.
+     */
+    public static final String PARAM_RAW_LOCALIZED = "sql_param_rawLocalized";
     public static final String PARAM_WHERE_PART = "sql_param_where";
     public static final String PARAM_LIMIT_PART = "sql_param.limit";
     public static final String PARAM_ORDER_BY_PART = "sql_param_orderBy";
     public static final String PARAM_SELECT_PART = "sql_param_select";
+    /**
+     * Additional columns or expressions to select along with the entity
+     * columns. e.g. a join key used to group the entities in the result.
+     */
+    public static final String PARAM_ADDITIONAL_SELECT_PART = "sql_param_additionalSelect";
     public static final String PARAM_FROM_PART = "sql_param_from";
     public static final String PARAM_QUERY = "sql_param_query";
+    /**
+     * The maximum number of SQL templates that will be held in the template
+     * cache. Once this limit is reached, {@linkplain #TEMPLATE_EVICTION_COUNT}
+     * templates are removed before the next template is added. The limit may
+     * be briefly exceeded while templates are added by several threads.
+     */
+    public static final int MAX_CACHED_TEMPLATES = 5000;
+    /**
+     * The number of templates removed from the template cache when it is full.
+     */
+    public static final int TEMPLATE_EVICTION_COUNT = MAX_CACHED_TEMPLATES / 10;
+    private static final AtomicLong templateEvictions = new AtomicLong();
+    private static final AtomicBoolean evictingTemplates = new AtomicBoolean(false);
+    private static final ConcurrentMap<TemplateKey, String> templateCache
+            = new ConcurrentHashMap<TemplateKey, String>(256);
+    private static volatile boolean templateCacheEnabled = true;
+
+    /**
+     * The kinds of SQL statement generated by this provider.
+     */
+    private enum StatementKind {
+
+        SELECT_ENTITY, SELECT, INSERT, UPDATE, DELETE
+    }
+
+    /**
+     * Key used for the SQL template cache. Combines the entity class, the kind
+     * of statement and any values that determine the shape of the generated
+     * SQL text.
+     */
+    private static final class TemplateKey {
+
+        private final Class<?> entityClass;
+        private final StatementKind kind;
+        private final Object[] shape;
+        private final int hash;
+
+        TemplateKey(Class<?> entityClass, StatementKind kind, Object... shape) {
+            this.entityClass = entityClass;
+            this.kind = kind;
+            this.shape = shape;
+            int h = entityClass == null ? 0 : entityClass.hashCode();
+            h = 31 * h + kind.hashCode();
+            this.hash = 31 * h + Arrays.deepHashCode(shape);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof TemplateKey)) {
+                return false;
+            }
+            TemplateKey other = (TemplateKey) obj;
+            return hash == other.hash && entityClass == other.entityClass
+                    && kind == other.kind && Arrays.deepEquals(shape, other.shape);
+        }
+    }
+
+    /**
+     * Retrieves the SQL template for the key from the template cache.
+     *
+     * @param key The template key
+     * @return The cached SQL or null if the SQL is not cached or the template
+     * cache is disabled.
+     */
+    private static String getTemplate(TemplateKey key) {
+        return templateCacheEnabled ? templateCache.get(key) : null;
+    }
+
+    /**
+     * Adds the SQL template to the template cache unless the cache is disabled.
+     * If the cache already holds {@linkplain #MAX_CACHED_TEMPLATES} entries,
+     * some templates are removed first (see {@linkplain #evictTemplates()}).
+     *
+     * @param key The template key
+     * @param sql The SQL generated for the key.
+     */
+    private static void putTemplate(TemplateKey key, String sql) {
+        if (templateCacheEnabled) {
+            if (templateCache.size() >= MAX_CACHED_TEMPLATES) {
+                evictTemplates();
+            }
+            templateCache.putIfAbsent(key, sql);
+        }
+    }
+
+    /**
+     * Removes {@linkplain #TEMPLATE_EVICTION_COUNT} templates from the
+     * template cache. The templates removed are not chosen by use as the cache
+     * does not track the order the templates are used. Only one thread removes
+     * templates at a time. Other threads that find the cache full while
+     * templates are being removed add their template without waiting.
+     */
+    private static void evictTemplates() {
+        if (!evictingTemplates.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (templateEvictions.get() == 0) {
+                LogUtility.log("SQL template cache is full (" + MAX_CACHED_TEMPLATES
+                        + " templates). Templates will be discarded to make room for new templates. "
+                        + "Check for WHERE or ORDER BY parts that contain literal values.",
+                        Level.WARNING);
+            }
+            int removed = 0;
+            Iterator<TemplateKey> it = templateCache.keySet().iterator();
+            while (removed < TEMPLATE_EVICTION_COUNT && it.hasNext()) {
+                it.next();
+                it.remove();
+                removed++;
+            }
+            templateEvictions.addAndGet(removed);
+        } finally {
+            evictingTemplates.set(false);
+        }
+    }
+
+    /**
+     * Indicates if the SQL template cache is enabled. Default is true.
+     */
+    public static boolean isTemplateCacheEnabled() {
+        return templateCacheEnabled;
+    }
+
+    /**
+     * Enables or disables the SQL template cache. Disabling the cache also
+     * clears any cached templates. Primarily intended to support testing and
+     * benchmarking of the SQL generation.
+     *
+     * @param enabled true to enable the template cache.
+     */
+    public static void setTemplateCacheEnabled(boolean enabled) {
+        templateCacheEnabled = enabled;
+        if (!enabled) {
+            clearTemplateCache();
+        }
+    }
+
+    /**
+     * Removes all SQL templates from the template cache.
+     */
+    public static void clearTemplateCache() {
+        templateCache.clear();
+    }
+
+    /**
+     * @return The number of SQL templates currently held in the template cache.
+     */
+    public static int getTemplateCacheSize() {
+        return templateCache.size();
+    }
+
+    /**
+     * @return The number of SQL templates that have been removed from the
+     * template cache because the cache was full.
+     */
+    public static long getTemplateCacheEvictions() {
+        return templateEvictions.get();
+    }
 
     /**
      * Uses the column information from the entityClass to generate the
@@ -83,13 +295,38 @@ public class CommonSqlProvider {
      */
     public static <T extends AbstractReadOnlyEntity> void buildSelectClauseSql(Class<T> entityClass,
             Boolean localized, List<String> excludeList) {
+        buildSelectClauseSql(entityClass, localized, excludeList, null);
+    }
+
+    /**
+     * Overloaded version of
+     * {@linkplain #buildSelectClauseSql(Class, Boolean, List)} that restricts
+     * the SELECT clause to a projection of the entity fields.
+     *
+     * @param <T> Generic type for the entity. It must extent
+     * {@linkplain AbstractReadOnlyEntity}.
+     * @param entityClass The entity class to build the select for.
+     * @param localized If true, the call to the get_translation function will
+     * be included for any columns annotated with the {@linkplain Localized}
+     * annotation.
+     * @param excludeList A list of field names to exclude from the SELECT
+     * clause.
+     * @param includeList A list of field names to include in the SELECT
+     * clause. If null, all fields that are not excluded are selected. See
+     * {@linkplain #PARAM_INCLUDE_LIST}.
+     */
+    public static <T extends AbstractReadOnlyEntity> void buildSelectClauseSql(Class<T> entityClass,
+            Boolean localized, List<String> excludeList, List<String> includeList) {
 
         if (excludeList == null) {
             excludeList = new ArrayList<String>();
         }
+        Set<String> projection = includeList == null ? null
+                : RepositoryUtility.getProjectedFields(entityClass, includeList);
 
         for (ColumnInfo columnInfo : RepositoryUtility.getColumns(entityClass)) {
-            if (!excludeList.contains(columnInfo.getFieldName())) {
+            if (!excludeList.contains(columnInfo.getFieldName())
+                    && (projection == null || projection.contains(columnInfo.getFieldName()))) {
                 if (localized && columnInfo.isLocalized()) {
                     SELECT("get_translation(" + columnInfo.getColumnName() + ", #{"
                             + PARAM_LANGUAGE_CODE + "}) as " + columnInfo.getColumnName().toLowerCase());
@@ -106,7 +343,15 @@ public class CommonSqlProvider {
      * Creates the UPDATE command based on the column information of the entity.
      * Fields that are marked with {@code updatable = false} in the
      * {@linkplain javax.persistence.Column} annotation are excluded from the
-     * UPDATE statement.
+     * UPDATE statement. If the entity was loaded from the database, only the
+     * columns that have been modified (see
+     * {@linkplain AbstractEntity#getModifiedColumns()}) and the columns that
+     * are always updated (see
+     * {@linkplain AbstractEntity#isAlwaysUpdated(ColumnInfo)}) are included.
+     * Columns marked with {@linkplain AlwaysUpdated} or that have an
+     * {@linkplain AccessFunctions#onChange()} function are always updated.
+     * The entity must have at least one column to update (see
+     * {@linkplain #hasUpdateColumns(AbstractEntity)}).
      * <p>
      * The where clause in the UPDATE statement in constrained using all id
      * columns (i.e. columns marked with the {@linkplain javax.persistence.Id}
@@ -118,23 +363,106 @@ public class CommonSqlProvider {
      * @return The UPDATE statement to execute for the entity.
      */
     public static <T extends AbstractEntity> String buildUpdateSql(T entity) {
-
-        BEGIN();
-        UPDATE(entity.getTableName());
-        for (ColumnInfo columnInfo : entity.getColumns()) {
-            if (entity.isUpdatable(columnInfo)) {
-                if (columnInfo.getOnChangeFunction() == null) {
-                    SET(columnInfo.getColumnName() + "=#{" + columnInfo.getFieldName() + "}");
-                } else {
-                    // Use the specified database function to update the data for this field.
-                    SET(columnInfo.getColumnName() + " = " + columnInfo.getOnChangeFunction());
+        TemplateKey key = getUpdateKey(entity);
+        BitSet updatable = (BitSet) key.shape[0];
+        List<ColumnInfo> columns = entity.getColumns();
+        String sql = getTemplate(key);
+        if (sql == null) {
+            BEGIN();
+            UPDATE(entity.getTableName());
+            for (int i = 0; i < columns.size(); i++) {
+                ColumnInfo columnInfo = columns.get(i);
+                if (updatable.get(i)) {
+                    if (columnInfo.getOnChangeFunction() == null) {
+                        SET(columnInfo.getColumnName() + "=#{" + columnInfo.getFieldName() + "}");
+                    } else {
+                        // Use the specified database function to update the data for this field.
+                        SET(columnInfo.getColumnName() + " = " + columnInfo.getOnChangeFunction());
+                    }
                 }
             }
+            for (ColumnInfo idColumnInfo : entity.getIdColumns()) {
+                WHERE(idColumnInfo.getColumnName() + "=#{" + idColumnInfo.getFieldName() + "}");
+            }
+            sql = SQL();
+            putTemplate(key, sql);
+        }
+        return sql;
+    }
+
+    /**
+     * Determines the template key of the UPDATE statement for the entity. The
+     * columns to include in the update can vary based on the redaction and
+     * security settings of the entity and the columns that have been modified,
+     * so these are captured in the key.
+     */
+    private static TemplateKey getUpdateKey(AbstractEntity entity) {
+        List<ColumnInfo> columns = entity.getColumns();
+        BitSet modified = entity.getModifiedColumns();
+        BitSet updatable = new BitSet(columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            if (entity.isUpdatable(columns.get(i))
+                    && (modified.get(i) || entity.isAlwaysUpdated(columns.get(i)))) {
+                updatable.set(i);
+            }
+        }
+        return new TemplateKey(entity.getClass(), StatementKind.UPDATE, updatable);
+    }
+
+    /**
+     * Determines the template key of the INSERT statement for the entity. The
+     * key captures the columns that can be inserted. If any column is omitted,
+     * the entity is flagged to force refresh after the insert.
+     */
+    private static TemplateKey getInsertKey(AbstractEntity entity) {
+        List<ColumnInfo> columns = entity.getColumns();
+        BitSet insertable = new BitSet(columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            if (entity.isInsertable(columns.get(i))) {
+                insertable.set(i);
+            } else {
+                // There may be database defaults set for some values, so force refresh of the 
+                // entity after the save has completed. 
+                entity.setForceRefresh(true);
+            }
+        }
+        return new TemplateKey(entity.getClass(), StatementKind.INSERT, insertable);
+    }
+
+    /**
+     * Indicates if the UPDATE statement for the entity would set any columns.
+     * There are no columns to set if none of the modified columns can be
+     * updated by the user (e.g. the classification code was modified by a user
+     * without the {@linkplain org.flossola.common.utilities.constants.RolesConstants#CLASSIFICATION_CHANGE_CLASS} role)
+     * and the entity has no columns that are always updated. The other columns
+     * are not used in this case as they may not have been selected when the
+     * entity was loaded (see {@linkplain #PARAM_INCLUDE_LIST}).
+     *
+     * @param entity The entity to update
+     * @return true if the UPDATE statement has at least one column to set.
+     */
+    public static boolean hasUpdateColumns(AbstractEntity entity) {
+        return !((BitSet) getUpdateKey(entity).shape[0]).isEmpty();
+    }
+
+    /**
+     * Returns the template key of the INSERT, UPDATE or DELETE statement for
+     * the entity without generating the SQL. Statements with equal keys have
+     * the same SQL text, so the key can be used to group statements into JDBC
+     * batches.
+     *
+     * @param methodName The mapper method, i.e. insert, update or delete
+     * @param entity The entity to save
+     * @return The template key for the statement.
+     */
+    static Object getStatementKey(String methodName, AbstractEntity entity) {
+        if ("insert".equals(methodName)) {
+            return getInsertKey(entity);
         }
-        for (ColumnInfo idColumnInfo : entity.getIdColumns()) {
-            WHERE(idColumnInfo.getColumnName() + "=#{" + idColumnInfo.getFieldName() + "}");
+        if ("update".equals(methodName)) {
+            return getUpdateKey(entity);
         }
-        return SQL();
+        return new TemplateKey(entity.getClass(), StatementKind.DELETE);
     }
 
     /**
@@ -156,24 +484,28 @@ public class CommonSqlProvider {
      * @return The INSERT statement to execute for the entity.
      */
     public static <T extends AbstractEntity> String buildInsertSql(T entity) {
-
-        BEGIN();
-        INSERT_INTO(entity.getTableName());
-        for (ColumnInfo columnInfo : entity.getColumns()) {
-            if (entity.isInsertable(columnInfo)) {
-                if (columnInfo.getOnChangeFunction() == null) {
-                    VALUES(columnInfo.getColumnName(), "#{" + columnInfo.getFieldName() + "}");
-                } else {
-                    // Use the specified database function to insert the data for this field.
-                    VALUES(columnInfo.getColumnName(), columnInfo.getOnChangeFunction());
+        TemplateKey key = getInsertKey(entity);
+        BitSet insertable = (BitSet) key.shape[0];
+        List<ColumnInfo> columns = entity.getColumns();
+        String sql = getTemplate(key);
+        if (sql == null) {
+            BEGIN();
+            INSERT_INTO(entity.getTableName());
+            for (int i = 0; i < columns.size(); i++) {
+                ColumnInfo columnInfo = columns.get(i);
+                if (insertable.get(i)) {
+                    if (columnInfo.getOnChangeFunction() == null) {
+                        VALUES(columnInfo.getColumnName(), "#{" + columnInfo.getFieldName() + "}");
+                    } else {
+                        // Use the specified database function to insert the data for this field.
+                        VALUES(columnInfo.getColumnName(), columnInfo.getOnChangeFunction());
+                    }
                 }
-            } else {
-                // There may be database defaults set for some values, so force refresh of the 
-                // entity after the save has completed. 
-                entity.setForceRefresh(true);
             }
+            sql = SQL();
+            putTemplate(key, sql);
         }
-        return SQL();
+        return sql;
     }
 
     /**
@@ -188,12 +520,18 @@ public class CommonSqlProvider {
      */
     public static <T extends AbstractEntity> String buildDeleteSql(T entity) {
 
-        BEGIN();
-        DELETE_FROM(entity.getTableName());
-        for (ColumnInfo idColumnInfo : entity.getIdColumns()) {
-            WHERE(idColumnInfo.getColumnName() + "=#{" + idColumnInfo.getFieldName() + "}");
+        TemplateKey key = new TemplateKey(entity.getClass(), StatementKind.DELETE);
+        String sql = getTemplate(key);
+        if (sql == null) {
+            BEGIN();
+            DELETE_FROM(entity.getTableName());
+            for (ColumnInfo idColumnInfo : entity.getIdColumns()) {
+                WHERE(idColumnInfo.getColumnName() + "=#{" + idColumnInfo.getFieldName() + "}");
+            }
+            sql = SQL();
+            putTemplate(key, sql);
         }
-        return SQL();
+        return sql;
     }
 
     /**
@@ -216,6 +554,12 @@ public class CommonSqlProvider {
      * <p>
      * {@code excludeList} - The list of fields that should be excluded from the
      * SELECT clause. Optional parameter.</p>
+     * <p>
+     * {@code includeList} - The list of fields that should be included in the
+     * SELECT clause. Optional parameter.</p>
+     * <p>
+     * {@code additionalSelect} - Columns to select in addition to the entity
+     * columns. Optional parameter.</p>
      * @return The SELECT statement for the entity.
      */
     public static <T extends AbstractEntity> String buildGetEntitySql(Map params) {
@@ -231,41 +575,62 @@ public class CommonSqlProvider {
             String fromClause = (String) params.get(PARAM_FROM_PART);
             String whereClause = (String) params.get(PARAM_WHERE_PART);
             String orderByClause = (String) params.get(PARAM_ORDER_BY_PART);
+            String selectPart = (String) params.get(PARAM_SELECT_PART);
+            String additionalSelectPart = (String) params.get(PARAM_ADDITIONAL_SELECT_PART);
+            Object limitPart = params.get(PARAM_LIMIT_PART);
             Boolean localized = false;
             List<String> excludeList = new ArrayList();
 
-            if (params.containsKey(PARAM_LANGUAGE_CODE)) {
+            if (Boolean.TRUE.equals(params.get(PARAM_RAW_LOCALIZED))
+                    && LocalizedValueResolver.isLocalizedColumnReferenced(
+                            (Class<? extends AbstractReadOnlyEntity>) entityClass, whereClause, orderByClause)) {
+                // Filter and sort on the translated values
+                params.put(PARAM_RAW_LOCALIZED, false);
+            }
+            if (params.containsKey(PARAM_LANGUAGE_CODE)
+                    && !Boolean.TRUE.equals(params.get(PARAM_RAW_LOCALIZED))) {
                 localized = true;
             }
 
             if (params.containsKey(PARAM_EXCLUDE_LIST)) {
                 excludeList = (List<String>) params.get(PARAM_EXCLUDE_LIST);
             }
+            List<String> includeList = (List<String>) params.get(PARAM_INCLUDE_LIST);
+
+            TemplateKey key = new TemplateKey(entityClass, StatementKind.SELECT_ENTITY, localized,
+                    excludeList == null ? null : excludeList.toArray(),
+                    includeList == null ? null : includeList.toArray(), selectPart, additionalSelectPart,
+                    fromClause, whereClause, orderByClause, limitPart == null ? null : limitPart.toString());
+            sql = getTemplate(key);
+            if (sql == null) {
+                BEGIN();
+                if (selectPart == null) {
+                    buildSelectClauseSql(entityClass, localized, excludeList, includeList);
+                } else {
+                    SELECT(selectPart);
+                }
+                if (additionalSelectPart != null && !additionalSelectPart.isEmpty()) {
+                    SELECT(additionalSelectPart);
+                }
+                if (fromClause != null && !fromClause.isEmpty()) {
+                    FROM(fromClause);
+                } else {
+                    FROM(RepositoryUtility.getTableName(entityClass));
+                }
+                if (whereClause != null && !whereClause.isEmpty()) {
+                    WHERE(whereClause);
+                }
+                if (orderByClause != null && !orderByClause.isEmpty()) {
+                    ORDER_BY(orderByClause);
+                }
 
-            BEGIN();
-            String selectPart = (String) params.get(PARAM_SELECT_PART);
-            if (selectPart == null) {
-                buildSelectClauseSql(entityClass, localized, excludeList);
-            } else {
-                SELECT(selectPart);
-            }
-            if (fromClause != null && !fromClause.isEmpty()) {
-                FROM(fromClause);
-            } else {
-                FROM(RepositoryUtility.getTableName(entityClass));
-            }
-            if (whereClause != null && !whereClause.isEmpty()) {
-                WHERE(whereClause);
-            }
-            if (orderByClause != null && !orderByClause.isEmpty()) {
-                ORDER_BY(orderByClause);
-            }
-
-            sql = SQL();
+                sql = SQL();
 
-            if (params.containsKey(PARAM_LIMIT_PART)) {
-                // Limit the number of results to return. 
-                sql = sql + " LIMIT " + params.get(PARAM_LIMIT_PART).toString();
+                if (limitPart != null) {
+                    // Limit the number of results to return. 
+                    sql = sql + " LIMIT " + limitPart.toString();
+                }
+                putTemplate(key, sql);
             }
         }
         return sql;
@@ -287,30 +652,38 @@ public class CommonSqlProvider {
 
         if (sql == null || sql.isEmpty()) {
 
+            String selectPart = (String) params.get(PARAM_SELECT_PART);
             String fromClause = (String) params.get(PARAM_FROM_PART);
             String whereClause = (String) params.get(PARAM_WHERE_PART);
             String orderByClause = (String) params.get(PARAM_ORDER_BY_PART);
+            Object limitPart = params.get(PARAM_LIMIT_PART);
 
-            BEGIN();
-            SELECT((String) params.get(PARAM_SELECT_PART));
+            TemplateKey key = new TemplateKey(null, StatementKind.SELECT, selectPart, fromClause,
+                    whereClause, orderByClause, limitPart == null ? null : limitPart.toString());
+            sql = getTemplate(key);
+            if (sql == null) {
+                BEGIN();
+                SELECT(selectPart);
 
-            if (fromClause != null && !fromClause.isEmpty()) {
-                // From may not be provided if selecting from a sequence or system table. 
-                FROM((String) params.get(PARAM_FROM_PART));
-            }
+                if (fromClause != null && !fromClause.isEmpty()) {
+                    // From may not be provided if selecting from a sequence or system table. 
+                    FROM(fromClause);
+                }
 
-            if (whereClause != null && !whereClause.isEmpty()) {
-                WHERE(whereClause);
-            }
-            if (orderByClause != null && !orderByClause.isEmpty()) {
-                ORDER_BY(orderByClause);
-            }
+                if (whereClause != null && !whereClause.isEmpty()) {
+                    WHERE(whereClause);
+                }
+                if (orderByClause != null && !orderByClause.isEmpty()) {
+                    ORDER_BY(orderByClause);
+                }
 
-            sql = SQL();
+                sql = SQL();
 
-            if (params.containsKey(PARAM_LIMIT_PART)) {
-                // Limit the number of results to return. 
-                sql = sql + " LIMIT " + params.get(PARAM_LIMIT_PART).toString();
+                if (limitPart != null) {
+                    // Limit the number of results to return. 
+                    sql = sql + " LIMIT " + limitPart.toString();
+                }
+                putTemplate(key, sql);
             }
         }
 
@@ -345,4 +718,39 @@ public class CommonSqlProvider {
         }
         return result.substring(1);
     }
+
+    /**
+     * Variation of {@linkplain #prepareListParams(List, Map)} used for batch
+     * loading of child entities. The number of Mybatis parameters generated is
+     * rounded up to the next power of 2 (minimum 8) by repeating the last value
+     * in the list. This limits the number of distinct statement shapes created
+     * for IN clauses of varying length so they can be reused from the SQL
+     * template cache and by the database statement cache.
+     *
+     * @param values The list of data values that will be the subject of the IN
+     * clause. Must not be empty.
+     * @param params The parameter Map for the SQL query
+     * @return A string that contains the Mybatis parameters representing the
+     * list data values
+     */
+    public static String prepareBatchListParams(List values, Map params) {
+        int size = 8;
+        while (size < values.size()) {
+            size = size << 1;
+        }
+        StringBuilder result = new StringBuilder();
+        Object val = null;
+        for (int i = 0; i < size; i++) {
+            String paramName = "batchVal" + i;
+            if (i < values.size()) {
+                val = values.get(i);
+            }
+            if (i > 0) {
+                result.append(",");
+            }
+            result.append("#{").append(paramName).append("}");
+            params.put(paramName, val);
+        }
+        return result.toString();
+    }
 }
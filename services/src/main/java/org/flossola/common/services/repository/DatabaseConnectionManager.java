@@ -32,15 +32,25 @@
 package org.flossola.common.services.repository;
 
 import java.io.InputStream;
-import java.io.Reader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.ResourceBundle;
-import org.apache.ibatis.io.Resources;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
 import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.apache.ibatis.session.SqlSessionFactoryBuilder;
 import org.flossola.common.utilities.exceptions.SOLAException;
 import org.flossola.common.messaging.CommonMessage;
+import org.flossola.common.services.LocalInfo;
 
 /**
  * Provides common functionality for configuring and managing the Mybatis database connection.
@@ -70,6 +80,16 @@ import org.flossola.common.messaging.CommonMessage;
  * SQL query, set java.sql.ResultSet to FINE as well, but be aware that logging all results may
  * negatively impact performance of the application. 
  * </p>
+ * <p>
+ * If a JTA transaction is active, the SqlSession returned by {@linkplain #getSqlSession()} is
+ * shared by all repository calls made during the transaction (see 
+ * {@linkplain #setTransactionSessionReuse(boolean)}). The shared session is held in the 
+ * TransactionSynchronizationRegistry and is closed when the transaction completes. Connection
+ * managers created for the same Mybatis configuration file share one SqlSessionFactory, so the 
+ * repositories of all EJBs called during the transaction share the same session. The shared 
+ * session uses the Mybatis REUSE executor so the prepared statement for each SQL statement is 
+ * created once and reused for the remainder of the transaction. 
+ * </p>
  * @author soladev
  */
 public class DatabaseConnectionManager {
@@ -81,6 +101,16 @@ public class DatabaseConnectionManager {
     private static final String PROPERTY_FILENAME = "databaseConnection";
     private static final String TRUE = "true";
     private static final String SHARED_CONNECTION_PROP = "SHARED_CONNECTION";
+    /**
+     * The SqlSessionFactory for each Mybatis configuration file and environment. The connection
+     * managers of all EJBs that use the same configuration share the factory and therefore share
+     * the SqlSession within a JTA transaction.
+     */
+    private static final Map<String, SqlSessionFactory> sessionFactories =
+            new HashMap<String, SqlSessionFactory>();
+    private final AtomicLong sessionsRequested = new AtomicLong();
+    private final AtomicLong sessionsOpened = new AtomicLong();
+    private volatile boolean transactionSessionReuse = true;
 
     /**
      * This constructor is provided to simplify mocking of the DatabaseConnectionManager. Refer to
@@ -111,40 +141,64 @@ public class DatabaseConnectionManager {
                     bundle.getString(SHARED_CONNECTION_PROP))) {
                 environment = SHARED_ENV;
             }
+            URL configUrl = null;
+            if (environment.equalsIgnoreCase(SHARED_ENV)) {
+                // Try to get settings from the root META-INF folder
+                System.out.println("Trying to load connection settings from the WEB-INF root folder");
+                configUrl = this.getClass().getClassLoader().getResource("../" + CommonRepository.CONNECT_CONFIG_FILE_NAME);
+                if (configUrl == null) {
+                    System.out.println("Trying to load connection settings from the META-INF of EAR root folder");
+                    configUrl = this.getClass().getClassLoader().getResource("../META-INF/" + CommonRepository.CONNECT_CONFIG_FILE_NAME);
+                }
+            }
+            if (configUrl == null) {
+                System.out.println("Loading connection settings from local EJB");
+                configUrl = new URL(configFileUrl);
+            }
             // Load the Mybatis configuration file and the mapper classes into the SqlSessionFactory. 
-            if (sqlSessionFactory == null) {
-                if(environment.equalsIgnoreCase(SHARED_ENV)){
-                    // Try to get settings from the root META-INF folder
-                    System.out.println("Trying to load connection settings from the WEB-INF root folder");
-                    InputStream connConf = this.getClass().getClassLoader().getResourceAsStream("../" + CommonRepository.CONNECT_CONFIG_FILE_NAME);
-                    
-                    if(connConf != null){
+            // The factory is shared by all connection managers that use the same configuration. 
+            String factoryKey = configUrl.toString() + "#" + environment;
+            synchronized (sessionFactories) {
+                sqlSessionFactory = sessionFactories.get(factoryKey);
+                if (sqlSessionFactory == null) {
+                    InputStream connConf = configUrl.openStream();
+                    try {
                         sqlSessionFactory = new SqlSessionFactoryBuilder().build(connConf, environment);
-                    } else {
-                        System.out.println("Trying to load connection settings from the META-INF of EAR root folder");
-                        connConf = this.getClass().getClassLoader().getResourceAsStream("../META-INF/" + CommonRepository.CONNECT_CONFIG_FILE_NAME);
-
-                        if(connConf != null){
-                            sqlSessionFactory = new SqlSessionFactoryBuilder().build(connConf, environment);
-                        } 
+                    } finally {
+                        connConf.close();
                     }
+                    sessionFactories.put(factoryKey, sqlSessionFactory);
                 }
-                
-                if (sqlSessionFactory == null){
-                    System.out.println("Loading connection settings from local EJB");
-                    Reader reader = Resources.getUrlAsReader(configFileUrl);
-                    sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader, environment);
+                if (!sqlSessionFactory.getConfiguration().hasMapper(mapperClass)) {
+                    sqlSessionFactory.getConfiguration().addMapper(mapperClass);
                 }
-
-                sqlSessionFactory.getConfiguration().addMapper(mapperClass);
-                this.mapperClass = mapperClass;
             }
+            SlowQueryRecorder.register(sqlSessionFactory.getConfiguration());
+            this.mapperClass = mapperClass;
         } catch (Exception ex) {
             throw new SOLAException(CommonMessage.GENERAL_UNEXPECTED,
                     new Object[]{configFileUrl, ex});
         }
     }
 
+    /**
+     * Initializes the DatabaseConnectionManager using an existing SqlSessionFactory. Allows the
+     * repository to be used with a programmatically configured data source (e.g. an embedded
+     * database for testing or benchmarking).
+     * @param sqlSessionFactory The Mybatis SqlSessionFactory to use
+     * @param mapperClass The Mybatis mapper class that identifies the SqlSession methods that
+     * may be executed.
+     */
+    public DatabaseConnectionManager(SqlSessionFactory sqlSessionFactory,
+            Class<? extends CommonMapper> mapperClass) {
+        this.sqlSessionFactory = sqlSessionFactory;
+        if (!sqlSessionFactory.getConfiguration().hasMapper(mapperClass)) {
+            sqlSessionFactory.getConfiguration().addMapper(mapperClass);
+        }
+        SlowQueryRecorder.register(sqlSessionFactory.getConfiguration());
+        this.mapperClass = mapperClass;
+    }
+
     /**
      * @return The Mybatis SqlSessionFactory for the database connection
      */
@@ -153,14 +207,173 @@ public class DatabaseConnectionManager {
     }
 
     /**
-     * @return A newly opened Mybatis SqlSession that can be used to query or update the database. 
-     * Note that the SqlSession must be closed once all work for the transaction is complete. 
+     * Returns a Mybatis SqlSession that can be used to query or update the database. If a JTA 
+     * transaction is active and transaction session reuse is enabled, the same session is returned
+     * for every call made during the transaction. Otherwise a newly opened session is returned. 
+     * <p>
+     * The SqlSession must be closed once the work is complete. Closing a shared session has no 
+     * effect as the shared session is closed when the transaction completes. The local (first 
+     * level) cache of the shared session is cleared before each query so the results are the 
+     * same as for a newly opened session.</p>
+     * @return A Mybatis SqlSession
      */
     public SqlSession getSqlSession() {
+        sessionsRequested.incrementAndGet();
+        TransactionSynchronizationRegistry registry = transactionSessionReuse
+                ? LocalInfo.getTransactionRegistry() : null;
+        if (registry == null) {
+            return openSession();
+        }
+        SessionKey sessionKey = new SessionKey(getSqlSessionFactory());
+        SqlSession shared = (SqlSession) registry.getResource(sessionKey);
+        if (shared == null) {
+            // Reuse the prepared statements for the duration of the transaction
+            sessionsOpened.incrementAndGet();
+            final SqlSession session = getSqlSessionFactory().openSession(ExecutorType.REUSE);
+            try {
+                registry.registerInterposedSynchronization(new Synchronization() {
+                    @Override
+                    public void beforeCompletion() {
+                    }
+
+                    @Override
+                    public void afterCompletion(int status) {
+                        session.close();
+                    }
+                });
+            } catch (IllegalStateException ex) {
+                // The transaction is completing, so do not share the session
+                return session;
+            }
+            shared = (SqlSession) Proxy.newProxyInstance(SqlSession.class.getClassLoader(),
+                    new Class<?>[]{SqlSession.class}, new TransactionSession(session));
+            registry.putResource(sessionKey, shared);
+        }
+        return shared;
+    }
+
+    private SqlSession openSession() {
+        sessionsOpened.incrementAndGet();
         return getSqlSessionFactory().openSession();
     }
+
+    /**
+     * Indicates if the SqlSession is shared for the duration of the JTA transaction. Default is 
+     * true. 
+     */
+    public boolean isTransactionSessionReuse() {
+        return transactionSessionReuse;
+    }
+
+    /**
+     * Enables or disables sharing of the SqlSession for the duration of the JTA transaction. 
+     * @param transactionSessionReuse true to share the session. 
+     */
+    public void setTransactionSessionReuse(boolean transactionSessionReuse) {
+        this.transactionSessionReuse = transactionSessionReuse;
+    }
+
+    /**
+     * @return The number of sessions requested using {@linkplain #getSqlSession()}.
+     */
+    public long getSessionsRequested() {
+        return sessionsRequested.get();
+    }
+
+    /**
+     * @return The number of sessions opened by the connection manager. This will be less than the
+     * number of sessions requested if sessions are shared within a transaction.
+     */
+    public long getSessionsOpened() {
+        return sessionsOpened.get();
+    }
+
+    /**
+     * Resets the session counts to zero.
+     */
+    public void resetSessionCounts() {
+        sessionsRequested.set(0);
+        sessionsOpened.set(0);
+    }
+
+    /**
+     * @param executorType The type of Mybatis executor to use for the session. e.g.
+     * {@linkplain ExecutorType#BATCH} to group insert, update and delete statements into JDBC
+     * batches.
+     * @return A newly opened Mybatis SqlSession using the specified executor type. Note that the
+     * SqlSession must be closed once all work for the transaction is complete. 
+     */
+    public SqlSession getSqlSession(ExecutorType executorType) {
+        sessionsRequested.incrementAndGet();
+        sessionsOpened.incrementAndGet();
+        return getSqlSessionFactory().openSession(executorType);
+    }
     
     public Class<? extends CommonMapper> getMapperClass() {
         return mapperClass;
     }
+
+    /**
+     * Key used to hold the shared session in the TransactionSynchronizationRegistry. The key is
+     * equal for all connection managers that use the same SqlSessionFactory, so the repositories
+     * of different EJBs share the session within the transaction.
+     */
+    private static final class SessionKey {
+
+        private final SqlSessionFactory factory;
+
+        SessionKey(SqlSessionFactory factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof SessionKey && ((SessionKey) obj).factory == factory;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(factory);
+        }
+    }
+
+    /**
+     * Handler for the SqlSession shared within a JTA transaction. Ignores close as the session is
+     * closed when the transaction completes and clears the local cache before each query. Mappers
+     * obtained from the shared session are bound to the shared session so that their queries are
+     * also processed by this handler. 
+     */
+    private static class TransactionSession implements InvocationHandler {
+
+        private final SqlSession session;
+
+        TransactionSession(SqlSession session) {
+            this.session = session;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("close".equals(name)) {
+                return null;
+            }
+            if ("equals".equals(name)) {
+                return proxy == args[0];
+            }
+            if ("hashCode".equals(name)) {
+                return System.identityHashCode(proxy);
+            }
+            if ("getMapper".equals(name)) {
+                return session.getConfiguration().getMapper((Class<?>) args[0], (SqlSession) proxy);
+            }
+            if (name.startsWith("select")) {
+                session.clearCache();
+            }
+            try {
+                return method.invoke(session, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+    }
 }
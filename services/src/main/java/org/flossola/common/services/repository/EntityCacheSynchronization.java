@@ -0,0 +1,112 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+import org.flossola.common.services.ejbs.cache.businesslogic.CacheEJBLocal;
+
+/**
+ * Removes the rows of the entity classes saved during a transaction from the
+ * by id entity cache (see {@linkplain CachePolicy}) once the transaction
+ * completes. The rows are also removed when each entity is saved, but until
+ * the transaction commits, other transactions still read the old row from the
+ * database and can add it back to the cache. One synchronization is registered
+ * for each transaction and it is held in the Transaction Synchronization
+ * Registry.
+ *
+ * @author soladev
+ */
+final class EntityCacheSynchronization implements Synchronization {
+
+    private static final Object SYNCHRONIZATION_KEY = new Object();
+    private final CacheEJBLocal cache;
+    private final Set<Class<?>> entityClasses = Collections.synchronizedSet(new HashSet<Class<?>>());
+    private volatile boolean clearAll = false;
+
+    private EntityCacheSynchronization(CacheEJBLocal cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Registers the entity class so its rows are removed from the entity cache
+     * when the transaction completes. Has no effect if there is no
+     * transaction.
+     *
+     * @param registry The Transaction Synchronization Registry for the current
+     * transaction or null if there is no transaction.
+     * @param cache The cache holding the entity rows
+     * @param entityClass The class of the entity that was saved or null if
+     * the rows of all entity classes must be removed (e.g. after a bulk
+     * update).
+     */
+    static void register(TransactionSynchronizationRegistry registry, CacheEJBLocal cache,
+            Class<?> entityClass) {
+        if (registry == null) {
+            return;
+        }
+        EntityCacheSynchronization sync = (EntityCacheSynchronization) registry.getResource(SYNCHRONIZATION_KEY);
+        if (sync == null) {
+            sync = new EntityCacheSynchronization(cache);
+            try {
+                registry.registerInterposedSynchronization(sync);
+            } catch (IllegalStateException ex) {
+                // The transaction is completing, so rely on the clear made by the save
+                return;
+            }
+            registry.putResource(SYNCHRONIZATION_KEY, sync);
+        }
+        if (entityClass == null) {
+            sync.clearAll = true;
+        } else {
+            sync.entityClasses.add(entityClass);
+        }
+    }
+
+    @Override
+    public void beforeCompletion() {
+    }
+
+    @Override
+    public void afterCompletion(int status) {
+        // Clear the rows even if the transaction rolled back. The cache will be 
+        // reloaded from the database as required. 
+        if (clearAll) {
+            cache.clearAllEntities();
+            return;
+        }
+        synchronized (entityClasses) {
+            for (Class<?> entityClass : entityClasses) {
+                cache.clearEntities(entityClass);
+            }
+        }
+    }
+}
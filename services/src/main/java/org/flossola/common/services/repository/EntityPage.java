@@ -0,0 +1,74 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import java.io.Serializable;
+import java.util.List;
+import org.flossola.common.services.repository.entities.AbstractReadOnlyEntity;
+
+/**
+ * A page of entities returned by
+ * {@linkplain CommonRepository#getEntityPage(Class, String, java.util.Map, int, String)}.
+ * The {@linkplain #getNextPageToken() next page token} is opaque and should be
+ * passed back unchanged to retrieve the following page.
+ *
+ * @param <T> The generic type of the entities in the page.
+ * @author soladev
+ */
+public class EntityPage<T extends AbstractReadOnlyEntity> implements Serializable {
+
+    private final List<T> entities;
+    private final String nextPageToken;
+
+    public EntityPage(List<T> entities, String nextPageToken) {
+        this.entities = entities;
+        this.nextPageToken = nextPageToken;
+    }
+
+    /**
+     * @return The entities in the page.
+     */
+    public List<T> getEntities() {
+        return entities;
+    }
+
+    /**
+     * @return The token to use to retrieve the next page or null if this is the
+     * last page.
+     */
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+    /**
+     * @return true if there are further pages available.
+     */
+    public boolean hasNextPage() {
+        return nextPageToken != null;
+    }
+}
@@ -0,0 +1,243 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import javax.ejb.SessionContext;
+import org.flossola.common.messaging.CommonMessage;
+import org.flossola.common.services.LocalInfo;
+import org.flossola.common.services.ejbs.AbstractEJBLocal;
+import org.flossola.common.services.ejbs.async.businesslogic.AsyncLoaderEJBLocal;
+import org.flossola.common.services.faults.FaultUtility;
+import org.flossola.common.services.repository.entities.AbstractReadOnlyEntity;
+import org.flossola.common.services.repository.entities.ChildEntityInfo;
+import org.flossola.common.utilities.exceptions.SOLAException;
+import org.flossola.common.utilities.logging.LogUtility;
+
+/**
+ * Loads a child entity or child entity list from another EJB using the details
+ * provided in the {@linkplain ExternalEJB} annotation. The load can run on the
+ * calling thread or be submitted to the {@linkplain AsyncLoaderEJBLocal} so
+ * the children of an entity obtained from other EJBs are loaded in parallel
+ * (see {@linkplain CommonRepository#setAsyncExternalLoading(boolean)}).
+ * <p>
+ * An asynchronous load runs in its own transaction, so the LocalInfo user
+ * name, language code, load inhibitors and session context of the caller are
+ * copied to the task and restored once the task ends. The number of
+ * asynchronous loads is limited to {@linkplain #MAX_ASYNC_LOADS} for the
+ * whole application. Loads over the limit run on the calling thread.</p>
+ * <p>
+ * Loads run on the calling thread if:
+ * <ul>
+ * <li>the caller is an asynchronous load. This avoids waiting for tasks that
+ * are queued behind the tasks that are waiting.</li>
+ * <li>the current transaction has modified the database (see
+ * {@linkplain #setWritePerformed()}). The task would not see those changes as
+ * it uses another transaction.</li>
+ * </ul></p>
+ *
+ * @author soladev
+ */
+final class ExternalEntityLoad implements Callable<Object> {
+
+    /**
+     * The maximum number of external entity loads that can run asynchronously
+     * at the same time.
+     */
+    static final int MAX_ASYNC_LOADS = 8;
+    private static final String ASYNC_LOAD = "Repository.asyncLoad";
+    private static final String WRITE_PERFORMED = "Repository.writePerformed";
+    private static final Semaphore permits = new Semaphore(MAX_ASYNC_LOADS);
+    private final AbstractReadOnlyEntity entity;
+    private final ChildEntityInfo childInfo;
+    private final AbstractEJBLocal ejb;
+    private final Class<?> argType;
+    private final Object argValue;
+    private String userName;
+    private String languageCode;
+    private Set<Class<?>> inhibitors;
+    private SessionContext sessionContext;
+    private Future<Object> future;
+
+    /**
+     * @param entity The parent entity that references the child entity or
+     * child entity list to load
+     * @param childInfo Details of the child entity (or entity list) to load.
+     * @param ejb The EJB that loads the child.
+     * @param argType The type of the argument of the load method.
+     * @param argValue The value to pass to the load method.
+     */
+    ExternalEntityLoad(AbstractReadOnlyEntity entity, ChildEntityInfo childInfo,
+            AbstractEJBLocal ejb, Class<?> argType, Object argValue) {
+        this.entity = entity;
+        this.childInfo = childInfo;
+        this.ejb = ejb;
+        this.argType = argType;
+        this.argValue = argValue;
+    }
+
+    AbstractReadOnlyEntity getEntity() {
+        return entity;
+    }
+
+    ChildEntityInfo getChildInfo() {
+        return childInfo;
+    }
+
+    /**
+     * Indicates if external entities can be loaded asynchronously by the
+     * current thread. See the class description.
+     */
+    static boolean isAsyncAllowed() {
+        return LocalInfo.get(ASYNC_LOAD) == null && LocalInfo.get(WRITE_PERFORMED) == null;
+    }
+
+    /**
+     * Notes that the current transaction has modified the database so that
+     * external entities are loaded on the calling thread for the rest of the
+     * transaction.
+     */
+    static void setWritePerformed() {
+        LocalInfo.set(WRITE_PERFORMED, Boolean.TRUE);
+    }
+
+    /**
+     * Loads the child from the external EJB on the calling thread.
+     *
+     * @return The entity or entity list loaded from the external EJB, or null
+     * if there are no child entities.
+     */
+    Object load() {
+        try {
+            Method loadMethod = ejb.getClass().getMethod(childInfo.getLoadMethod(), argType);
+            return loadMethod.invoke(ejb, argValue);
+        } catch (Exception ex) {
+            throw new SOLAException(CommonMessage.GENERAL_UNEXPECTED,
+                    // Capture the specific details so they are added to the log. Note that
+                    // any exception raised when invoking the ejb method will be wrapped in an
+                    // InvocationTargetException. The true cause can be masked by this exception.
+                    new Object[]{"Unable to invoke method " + childInfo.getLoadMethod(),
+                        FaultUtility.getStackTraceAsString(ex)});
+        }
+    }
+
+    /**
+     * Submits the load to the asynchronous loader if the limit on the number
+     * of asynchronous loads has not been reached. The LocalInfo context of the
+     * calling thread is captured for the task.
+     *
+     * @param loader The asynchronous loader.
+     * @return true if the load was submitted. If false, the child will be
+     * loaded on the calling thread by {@linkplain #getResult()}.
+     */
+    boolean submit(AsyncLoaderEJBLocal loader) {
+        if (!permits.tryAcquire()) {
+            return false;
+        }
+        userName = LocalInfo.getUserName();
+        languageCode = LocalInfo.get(CommonSqlProvider.PARAM_LANGUAGE_CODE, String.class);
+        inhibitors = LoadInhibitorScope.getInhibitors();
+        sessionContext = LocalInfo.get(LocalInfo.SESSION_CONTEXT, SessionContext.class);
+        try {
+            future = loader.load(this);
+            return true;
+        } catch (RuntimeException ex) {
+            // The task was not accepted so load the child on the calling thread 
+            permits.release();
+            LogUtility.log("Unable to load " + childInfo.getLoadMethod()
+                    + " asynchronously: " + ex.getMessage(), Level.WARNING);
+            return false;
+        }
+    }
+
+    /**
+     * Runs the asynchronous load using the LocalInfo context captured by
+     * {@linkplain #submit(AsyncLoaderEJBLocal)}.
+     */
+    @Override
+    public Object call() {
+        String previousUserName = LocalInfo.getUserName();
+        Object previousLanguageCode = LocalInfo.get(CommonSqlProvider.PARAM_LANGUAGE_CODE);
+        Set<Class<?>> previousInhibitors = LoadInhibitorScope.getInhibitors();
+        Object previousSessionContext = LocalInfo.get(LocalInfo.SESSION_CONTEXT);
+        try {
+            LocalInfo.set(ASYNC_LOAD, Boolean.TRUE, true);
+            LocalInfo.setUserName(userName);
+            LocalInfo.set(CommonSqlProvider.PARAM_LANGUAGE_CODE, languageCode, true);
+            LoadInhibitorScope.setInhibitors(inhibitors);
+            LocalInfo.set(LocalInfo.SESSION_CONTEXT, sessionContext, true);
+            return load();
+        } finally {
+            LocalInfo.set(ASYNC_LOAD, null, true);
+            LocalInfo.setUserName(previousUserName);
+            LocalInfo.set(CommonSqlProvider.PARAM_LANGUAGE_CODE, previousLanguageCode, true);
+            LoadInhibitorScope.setInhibitors(previousInhibitors);
+            LocalInfo.set(LocalInfo.SESSION_CONTEXT, previousSessionContext, true);
+            permits.release();
+        }
+    }
+
+    /**
+     * Returns the child loaded by the asynchronous load, waiting for the load
+     * to complete if necessary. If the load was not submitted, the child is
+     * loaded on the calling thread.
+     *
+     * @return The entity or entity list loaded from the external EJB, or null
+     * if there are no child entities.
+     */
+    Object getResult() {
+        if (future == null) {
+            return load();
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SOLAException(CommonMessage.GENERAL_UNEXPECTED,
+                    new Object[]{"Interrupted while loading " + childInfo.getLoadMethod(), ex});
+        } catch (ExecutionException ex) {
+            // The container may wrap the exception raised by the task in an EJBException
+            Throwable cause = ex.getCause();
+            while (cause != null && !(cause instanceof SOLAException) && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof SOLAException) {
+                throw (SOLAException) cause;
+            }
+            throw new SOLAException(CommonMessage.GENERAL_UNEXPECTED,
+                    new Object[]{"Unable to invoke method " + childInfo.getLoadMethod(),
+                        FaultUtility.getStackTraceAsString(ex)});
+        }
+    }
+}
@@ -0,0 +1,319 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.xml.bind.DatatypeConverter;
+import org.flossola.common.messaging.CommonMessage;
+import org.flossola.common.services.repository.entities.AbstractReadOnlyEntity;
+import org.flossola.common.services.repository.entities.ColumnInfo;
+import org.flossola.common.services.repository.entities.EntityMetadata;
+import org.flossola.common.utilities.exceptions.SOLAException;
+
+/**
+ * The sort used for keyset (a.k.a. seek) pagination of an entity class. The
+ * sort is made up of the columns in the {@linkplain DefaultSorter} for the
+ * entity followed by any id columns not already included so that the sort is
+ * unique. Rather than skipping rows with an OFFSET, each page is selected with
+ * a WHERE condition that seeks past the sort values of the last entity on the
+ * previous page. These values are encoded into the page token.
+ * <p>
+ * The sort expression must be a comma separated list of entity columns, each
+ * optionally followed by ASC or DESC. Localized columns and columns with an
+ * onSelect function cannot be used as the values read from the entity do not
+ * match the values in the table. The sort columns should be NOT NULL as a null
+ * sort value cannot be used to seek to the next page.</p>
+ *
+ * @author soladev
+ */
+final class KeysetSort {
+
+    private static final String SEEK_PARAM = "sola_seek_";
+    private static final char NANOS_SEPARATOR = '/';
+    private static final ConcurrentMap<Class<?>, KeysetSort> SORTS
+            = new ConcurrentHashMap<Class<?>, KeysetSort>();
+    private final ColumnInfo[] columns;
+    private final boolean[] descending;
+    private final String orderBy;
+    private final String seekCondition;
+
+    private KeysetSort(List<ColumnInfo> columns, List<Boolean> descending) {
+        this.columns = columns.toArray(new ColumnInfo[columns.size()]);
+        this.descending = new boolean[this.columns.length];
+        StringBuilder order = new StringBuilder();
+        boolean mixed = false;
+        for (int i = 0; i < this.columns.length; i++) {
+            this.descending[i] = descending.get(i);
+            mixed = mixed || this.descending[i] != this.descending[0];
+            order.append(i == 0 ? "" : ", ").append(this.columns[i].getColumnName())
+                    .append(this.descending[i] ? " DESC" : " ASC");
+        }
+        this.orderBy = order.toString();
+        this.seekCondition = mixed ? buildExpandedCondition() : buildRowCondition();
+    }
+
+    /**
+     * Builds the seek condition as a row value comparison. e.g.
+     * {@code (a, b) > (#{sola_seek_0}, #{sola_seek_1})}. Used when all
+     * columns are sorted in the same direction so the condition can be
+     * satisfied using an index on the sort columns.
+     */
+    private String buildRowCondition() {
+        StringBuilder left = new StringBuilder("(");
+        StringBuilder right = new StringBuilder("(");
+        for (int i = 0; i < columns.length; i++) {
+            left.append(i == 0 ? "" : ", ").append(columns[i].getColumnName());
+            right.append(i == 0 ? "" : ", ").append("#{").append(SEEK_PARAM).append(i).append("}");
+        }
+        return left + ") " + (descending[0] ? "<" : ">") + " " + right + ")";
+    }
+
+    /**
+     * Builds the seek condition for a sort with mixed directions. e.g.
+     * {@code (a > #{sola_seek_0}) OR (a = #{sola_seek_0} AND b < #{sola_seek_1})}
+     */
+    private String buildExpandedCondition() {
+        StringBuilder condition = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            condition.append(i == 0 ? "(" : " OR (");
+            for (int j = 0; j < i; j++) {
+                condition.append(columns[j].getColumnName()).append(" = #{")
+                        .append(SEEK_PARAM).append(j).append("} AND ");
+            }
+            condition.append(columns[i].getColumnName()).append(descending[i] ? " < #{" : " > #{")
+                    .append(SEEK_PARAM).append(i).append("})");
+        }
+        return condition.toString();
+    }
+
+    /**
+     * Returns the keyset sort for the entity class, parsing the
+     * {@linkplain DefaultSorter} for the entity the first time the class is
+     * used.
+     *
+     * @param entityClass The entity class to get the sort for
+     * @throws SOLAException If the default sorter of the entity cannot be used
+     * for keyset pagination.
+     */
+    static KeysetSort forEntity(Class<? extends AbstractReadOnlyEntity> entityClass) {
+        KeysetSort sort = SORTS.get(entityClass);
+        if (sort == null) {
+            sort = parse(RepositoryUtility.getMetadata(entityClass));
+            KeysetSort existing = SORTS.putIfAbsent(entityClass, sort);
+            sort = existing == null ? sort : existing;
+        }
+        return sort;
+    }
+
+    private static KeysetSort parse(EntityMetadata metadata) {
+        List<ColumnInfo> columns = new ArrayList<ColumnInfo>();
+        List<Boolean> descending = new ArrayList<Boolean>();
+        String sorter = metadata.getSorterExpression();
+        if (sorter != null && !sorter.trim().isEmpty()) {
+            for (String part : sorter.split(",")) {
+                String[] tokens = part.trim().split("\\s+");
+                String columnName = tokens[0].substring(tokens[0].lastIndexOf('.') + 1);
+                ColumnInfo columnInfo = metadata.getColumnByColumnName(columnName);
+                if (columnInfo == null || tokens.length > 2
+                        || (tokens.length == 2 && !tokens[1].equalsIgnoreCase("ASC")
+                        && !tokens[1].equalsIgnoreCase("DESC"))) {
+                    throw unsupported(metadata, "Sort expression " + part.trim()
+                            + " must be an entity column optionally followed by ASC or DESC");
+                }
+                if (columnInfo.isLocalized() || columnInfo.getOnSelectFunction() != null
+                        || !isSupportedType(columnInfo.getFieldType())) {
+                    throw unsupported(metadata, "Column " + columnInfo.getColumnName()
+                            + " cannot be used for keyset pagination");
+                }
+                if (!columns.contains(columnInfo)) {
+                    columns.add(columnInfo);
+                    descending.add(tokens.length == 2 && tokens[1].equalsIgnoreCase("DESC"));
+                }
+            }
+        }
+        // Add the id columns to ensure the sort is unique
+        for (ColumnInfo idColumn : metadata.getIdColumns()) {
+            if (!columns.contains(idColumn)) {
+                if (!isSupportedType(idColumn.getFieldType())) {
+                    throw unsupported(metadata, "Column " + idColumn.getColumnName()
+                            + " cannot be used for keyset pagination");
+                }
+                columns.add(idColumn);
+                descending.add(false);
+            }
+        }
+        return new KeysetSort(columns, descending);
+    }
+
+    private static SOLAException unsupported(EntityMetadata metadata, String reason) {
+        return new SOLAException(CommonMessage.GENERAL_UNEXPECTED,
+                new Object[]{"Keyset pagination is not supported for "
+                    + metadata.getEntityClass().getSimpleName() + ". " + reason});
+    }
+
+    private static boolean isSupportedType(Class<?> type) {
+        return String.class == type || Integer.class == type || Long.class == type
+                || Short.class == type || Double.class == type || Boolean.class == type
+                || BigDecimal.class == type || Date.class.isAssignableFrom(type);
+    }
+
+    /**
+     * @return The ORDER BY clause for the sort.
+     */
+    String getOrderBy() {
+        return orderBy;
+    }
+
+    /**
+     * @return The WHERE condition that selects the entities following the
+     * entity the page token was created from. The parameter values are set
+     * using {@linkplain #putSeekParams(String, Map)}.
+     */
+    String getSeekCondition() {
+        return seekCondition;
+    }
+
+    /**
+     * Creates the page token from the sort values of the last row on a page.
+     * The token is created from the row returned by the query rather than the
+     * entity, as the last row may not be mapped to an entity if the user does
+     * not have security clearance to view it. Timestamps are encoded with
+     * their nanoseconds so the next page seeks past the exact value held in
+     * the database.
+     *
+     * @param row The last row on the page as returned by Mybatis.
+     * @return The page token.
+     */
+    String createToken(Map<String, Object> row) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(orderBy.hashCode());
+            for (ColumnInfo columnInfo : columns) {
+                // Mybatis returns the column names in lower case
+                Object value = row.get(columnInfo.getColumnName().toLowerCase(Locale.ENGLISH));
+                if (value == null) {
+                    throw new SOLAException(CommonMessage.GENERAL_UNEXPECTED,
+                            new Object[]{"Keyset pagination cannot continue from a null value for "
+                                + columnInfo.getColumnName()});
+                }
+                out.writeUTF(toString(value));
+            }
+            out.close();
+            return DatatypeConverter.printBase64Binary(bytes.toByteArray());
+        } catch (IOException ex) {
+            throw new SOLAException(CommonMessage.GENERAL_UNEXPECTED, ex);
+        }
+    }
+
+    /**
+     * Decodes the page token and adds the sort values it contains to the
+     * query parameters.
+     *
+     * @param token The page token created by {@linkplain #createToken(Map)}
+     * @param params The query parameters
+     * @throws SOLAException If the token is not valid for this sort.
+     */
+    void putSeekParams(String token, Map<String, Object> params) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                    DatatypeConverter.parseBase64Binary(token)));
+            if (in.readInt() != orderBy.hashCode()) {
+                throw new IllegalArgumentException("Sort mismatch");
+            }
+            for (int i = 0; i < columns.length; i++) {
+                params.put(SEEK_PARAM + i, fromString(columns[i].getFieldType(), in.readUTF()));
+            }
+        } catch (IOException ex) {
+            throw invalidToken(ex);
+        } catch (IllegalArgumentException ex) {
+            throw invalidToken(ex);
+        }
+    }
+
+    private static SOLAException invalidToken(Exception ex) {
+        return new SOLAException(CommonMessage.GENERAL_UNEXPECTED,
+                new Object[]{"Invalid page token"}, ex);
+    }
+
+    private static Object fromString(Class<?> type, String value) {
+        Object result = value;
+        if (Integer.class == type) {
+            result = Integer.valueOf(value);
+        } else if (Long.class == type) {
+            result = Long.valueOf(value);
+        } else if (Short.class == type) {
+            result = Short.valueOf(value);
+        } else if (Double.class == type) {
+            result = Double.valueOf(value);
+        } else if (Boolean.class == type) {
+            result = Boolean.valueOf(value);
+        } else if (BigDecimal.class == type) {
+            result = new BigDecimal(value);
+        } else if (Date.class.isAssignableFrom(type)) {
+            int separator = value.indexOf(NANOS_SEPARATOR);
+            if (separator < 0) {
+                result = new Date(Long.parseLong(value));
+            } else {
+                Timestamp timestamp = new Timestamp(Long.parseLong(value.substring(0, separator)));
+                timestamp.setNanos(Integer.parseInt(value.substring(separator + 1)));
+                result = timestamp;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Encodes the sort value for the page token. Dates are encoded as
+     * milliseconds. Timestamps also include the nanoseconds as PostgreSQL
+     * timestamps have microsecond precision.
+     */
+    private static String toString(Object value) {
+        if (value instanceof Timestamp) {
+            Timestamp timestamp = (Timestamp) value;
+            return Long.toString(timestamp.getTime()) + NANOS_SEPARATOR + timestamp.getNanos();
+        }
+        if (value instanceof Date) {
+            return Long.toString(((Date) value).getTime());
+        }
+        return value.toString();
+    }
+}
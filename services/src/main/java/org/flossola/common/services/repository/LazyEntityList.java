@@ -0,0 +1,130 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import org.flossola.common.services.repository.entities.AbstractReadOnlyEntity;
+
+/**
+ * List used for child lists marked as lazy (see
+ * {@linkplain ChildEntityList#lazy()}). The child entities are not loaded
+ * until the list is first accessed. The list then loads the children for all
+ * of the parent entities in its {@linkplain LazyLoadGroup} and delegates to the
+ * loaded list.
+ * <p>
+ * The children must be loaded in the same transaction and user context as the
+ * parent (see {@linkplain LazyLoadGroup}). Lazy lists are loaded and replaced
+ * with the loaded list by the repository before the parent entities are added
+ * to the cache. The list is
+ * serialized as a standard ArrayList, so a list that has not been accessed
+ * is loaded when it is serialized. Serializing a list that has not been
+ * loaded outside of its original context fails.</p>
+ *
+ * @param <E> The generic type of the child entity
+ * @author soladev
+ */
+public final class LazyEntityList<E> extends AbstractList<E> implements Serializable {
+
+    private transient LazyLoadGroup group;
+    private transient AbstractReadOnlyEntity parent;
+    private List<E> delegate;
+
+    LazyEntityList(LazyLoadGroup group, AbstractReadOnlyEntity parent) {
+        this.group = group;
+        this.parent = parent;
+    }
+
+    /**
+     * @return True if the child entities have been loaded.
+     */
+    public boolean isLoaded() {
+        return delegate != null;
+    }
+
+    AbstractReadOnlyEntity getParent() {
+        return parent;
+    }
+
+    void setDelegate(List<E> delegate) {
+        this.delegate = delegate;
+        this.group = null;
+        this.parent = null;
+    }
+
+    /**
+     * Loads the child entities if they have not already been loaded.
+     */
+    void load() {
+        if (delegate == null) {
+            group.load();
+        }
+    }
+
+    /**
+     * Returns the loaded child entities, loading them if necessary.
+     */
+    List<E> getDelegate() {
+        load();
+        return delegate;
+    }
+
+    @Override
+    public E get(int index) {
+        return getDelegate().get(index);
+    }
+
+    @Override
+    public int size() {
+        return getDelegate().size();
+    }
+
+    @Override
+    public E set(int index, E element) {
+        return getDelegate().set(index, element);
+    }
+
+    @Override
+    public void add(int index, E element) {
+        getDelegate().add(index, element);
+        modCount++;
+    }
+
+    @Override
+    public E remove(int index) {
+        E result = getDelegate().remove(index);
+        modCount++;
+        return result;
+    }
+
+    private Object writeReplace() {
+        return new ArrayList<E>(getDelegate());
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import javax.transaction.TransactionSynchronizationRegistry;
+import org.flossola.common.messaging.CommonMessage;
+import org.flossola.common.services.LocalInfo;
+import org.flossola.common.services.repository.entities.AbstractReadOnlyEntity;
+import org.flossola.common.services.repository.entities.ChildEntityInfo;
+import org.flossola.common.utilities.exceptions.SOLAException;
+
+/**
+ * Groups the {@linkplain LazyEntityList lazy child lists} for one child field
+ * of a set of parent entities that were loaded together. When any list in the
+ * group is accessed, the child lists for all parents in the group are loaded
+ * with {@linkplain #loadChildren(List)}.
+ * <p>
+ * The group only holds weak references to the lazy lists, so the parents
+ * that are no longer used can be garbage collected before the group is
+ * loaded. Each lazy list holds its own parent until it is loaded.</p>
+ * <p>
+ * The group records the transaction, user and load inhibitors in effect
+ * when the parents were loaded. The children are loaded with the same load
+ * inhibitors. If the lists are accessed outside of the transaction or by a
+ * different user, the load fails with a {@linkplain SOLAException} rather than
+ * reading the children in a different context.</p>
+ *
+ * @author soladev
+ */
+abstract class LazyLoadGroup {
+
+    private final ChildEntityInfo childInfo;
+    private final List<WeakReference<LazyEntityList<Object>>> lists =
+            new ArrayList<WeakReference<LazyEntityList<Object>>>();
+    private final Object transactionKey;
+    private final String userName;
+    private final Set<Class<?>> inhibitors;
+    private boolean loaded = false;
+
+    LazyLoadGroup(ChildEntityInfo childInfo) {
+        this.childInfo = childInfo;
+        this.transactionKey = getTransactionKey();
+        this.userName = LocalInfo.getUserName();
+        this.inhibitors = LoadInhibitorScope.getInhibitors();
+    }
+
+    private static Object getTransactionKey() {
+        TransactionSynchronizationRegistry registry = LocalInfo.getTransactionRegistry();
+        return registry == null ? null : registry.getTransactionKey();
+    }
+
+    private static boolean isEqual(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Adds the parent to the group and assigns a lazy list to the child field
+     * of the parent.
+     *
+     * @param parent The parent entity
+     */
+    void add(AbstractReadOnlyEntity parent) {
+        LazyEntityList<Object> list = new LazyEntityList<Object>(this, parent);
+        lists.add(new WeakReference<LazyEntityList<Object>>(list));
+        parent.setEntityFieldValue(childInfo, list);
+    }
+
+    /**
+     * Checks the group is being loaded in the same transaction and by the same
+     * user as the parent entities.
+     */
+    private void checkContext() {
+        if (!isEqual(transactionKey, getTransactionKey())
+                || !isEqual(userName, LocalInfo.getUserName())) {
+            throw new SOLAException(CommonMessage.GENERAL_UNEXPECTED,
+                    new Object[]{"Lazy child list " + childInfo.getFieldName()
+                        + " accessed outside of the transaction or user context that loaded its "
+                        + "parent entities. Access the list before the transaction completes "
+                        + "or do not mark the list as lazy."});
+        }
+    }
+
+    /**
+     * Loads the child lists for all parents in the group that are still in use.
+     * The loaded lists are assigned to the lazy lists and the child field of
+     * each parent is reset to the value it had before the load.
+     */
+    void load() {
+        if (loaded) {
+            return;
+        }
+        checkContext();
+        List<LazyEntityList<Object>> liveLists = new ArrayList<LazyEntityList<Object>>();
+        List<AbstractReadOnlyEntity> parents = new ArrayList<AbstractReadOnlyEntity>();
+        for (WeakReference<LazyEntityList<Object>> ref : lists) {
+            LazyEntityList<Object> list = ref.get();
+            if (list != null && !list.isLoaded()) {
+                liveLists.add(list);
+                parents.add(list.getParent());
+            }
+        }
+        loaded = true;
+        Object[] current = new Object[parents.size()];
+        for (int i = 0; i < parents.size(); i++) {
+            current[i] = parents.get(i).getEntityFieldValue(childInfo);
+        }
+        Set<Class<?>> previous = LoadInhibitorScope.getInhibitors();
+        LoadInhibitorScope.setInhibitors(inhibitors);
+        try {
+            loadChildren(parents);
+        } catch (RuntimeException ex) {
+            // Restore the lazy lists so the load can be attempted again
+            loaded = false;
+            for (int i = 0; i < parents.size(); i++) {
+                parents.get(i).setEntityFieldValue(childInfo, current[i]);
+            }
+            throw ex;
+        } finally {
+            LoadInhibitorScope.setInhibitors(previous);
+        }
+        for (int i = 0; i < parents.size(); i++) {
+            AbstractReadOnlyEntity parent = parents.get(i);
+            Object value = parent.getEntityFieldValue(childInfo);
+            LazyEntityList<Object> list = liveLists.get(i);
+            list.setDelegate(value instanceof List && value != list
+                    ? (List<Object>) value : new ArrayList<Object>());
+            parent.setEntityFieldValue(childInfo, current[i]);
+        }
+        lists.clear();
+    }
+
+    /**
+     * Loads the child list for each of the parent entities and assigns it to
+     * the child field of the parent.
+     *
+     * @param parents The parent entities in the group
+     */
+    protected abstract void loadChildren(List<AbstractReadOnlyEntity> parents);
+}
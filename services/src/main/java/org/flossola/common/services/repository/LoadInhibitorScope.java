@@ -0,0 +1,106 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import org.flossola.common.services.LocalInfo;
+
+/**
+ * Scope returned by {@linkplain CommonRepository#inhibitLoad(Class[])} that
+ * inhibits the load of child entity classes until it is closed. Closing the
+ * scope restores the load inhibitors that were set when the scope was opened,
+ * so inhibitors cannot leak into later calls on the same thread or
+ * transaction. Scopes can be nested, but must be closed in the reverse order
+ * they were opened. e.g.
+ * <pre>
+ * LoadInhibitorScope scope = repository.inhibitLoad(Party.class);
+ * try {
+ *     ...
+ * } finally {
+ *     scope.close();
+ * }
+ * </pre>
+ * <p>
+ * The load inhibitors are held in {@linkplain LocalInfo} as an unmodifiable
+ * set so the repository can check each child entity class without a linear
+ * search.</p>
+ *
+ * @author soladev
+ */
+public final class LoadInhibitorScope {
+
+    private static final String LOAD_INHIBITORS = "Repository.loadInhibitors";
+    private final Set<Class<?>> previous;
+    private boolean closed = false;
+
+    LoadInhibitorScope(Class<?>... entityClasses) {
+        previous = getInhibitors();
+        Set<Class<?>> inhibitors = new HashSet<Class<?>>(previous);
+        if (entityClasses != null) {
+            inhibitors.addAll(Arrays.asList(entityClasses));
+        }
+        setInhibitors(inhibitors);
+    }
+
+    /**
+     * Restores the load inhibitors that were set before the scope was opened.
+     * Has no effect if the scope is already closed.
+     */
+    public void close() {
+        if (!closed) {
+            closed = true;
+            setInhibitors(previous);
+        }
+    }
+
+    /**
+     * Returns the current load inhibitors. Never returns null.
+     */
+    static Set<Class<?>> getInhibitors() {
+        Set<Class<?>> inhibitors = LocalInfo.get(LOAD_INHIBITORS, Set.class);
+        return inhibitors == null ? Collections.<Class<?>>emptySet() : inhibitors;
+    }
+
+    /**
+     * Replaces the current load inhibitors. A null or empty set clears the load
+     * inhibitors.
+     */
+    static void setInhibitors(Set<Class<?>> inhibitors) {
+        if (inhibitors == null || inhibitors.isEmpty()) {
+            if (LocalInfo.get(LOAD_INHIBITORS) != null) {
+                LocalInfo.set(LOAD_INHIBITORS, null, true);
+            }
+        } else {
+            LocalInfo.set(LOAD_INHIBITORS,
+                    Collections.unmodifiableSet(new HashSet<Class<?>>(inhibitors)), true);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.flossola.common.services.repository.entities.AbstractReadOnlyEntity;
+import org.flossola.common.services.repository.entities.ColumnInfo;
+
+/**
+ * Resolves localized values in Java using the same rules as the
+ * get_translation database function. A localized value holds the text for
+ * each language separated by {@value #DELIMITER} in the item order of the
+ * system.language table. e.g. {@code Parcel::::Parcelle} for English (item
+ * order 1) and French (item order 2).
+ * <p>
+ * The value for the language is returned if it is not empty, otherwise the
+ * value for the default language is returned. If that is also empty, the
+ * complete localized value is returned. Values that do not contain the
+ * delimiter are returned as is.</p>
+ * <p>
+ * Each localized value is split once and the parts are held in a parse cache
+ * so that values repeated across rows (e.g. code list display values) are not
+ * split again. Once the cache holds {@linkplain #MAX_CACHED_VALUES} values,
+ * further values are split on each call but are not cached. See
+ * {@linkplain CommonRepositoryImpl#setJavaLocalization(boolean)}.</p>
+ * <p>
+ * The languages are considered stale once they are older than the language
+ * refresh interval (see {@linkplain #setLanguageRefreshSeconds(int)}) so that
+ * changes to the system.language table are picked up without a restart.</p>
+ *
+ * @author soladev
+ */
+public class LocalizedValueResolver {
+
+    public static final String DELIMITER = "::::";
+    /**
+     * The maximum number of localized values held in the parse cache.
+     */
+    public static final int MAX_CACHED_VALUES = 10000;
+    /**
+     * The default number of seconds the languages are used before they must be
+     * loaded again.
+     */
+    public static final int DEFAULT_LANGUAGE_REFRESH_SECONDS = 600;
+    private static final ConcurrentMap<Class<?>, List<String>> localizedColumns
+            = new ConcurrentHashMap<Class<?>, List<String>>();
+    private final ConcurrentMap<String, String[]> parseCache
+            = new ConcurrentHashMap<String, String[]>();
+    private volatile Map<String, Integer> itemOrders = null;
+    private volatile int defaultItemOrder = 0;
+    private volatile long languagesSetAt = 0;
+    private volatile int languageRefreshSeconds = DEFAULT_LANGUAGE_REFRESH_SECONDS;
+
+    /**
+     * @return true if the languages have been set and are not older than the
+     * language refresh interval.
+     */
+    public boolean hasLanguages() {
+        return itemOrders != null && (languageRefreshSeconds <= 0
+                || System.currentTimeMillis() - languagesSetAt < languageRefreshSeconds * 1000L);
+    }
+
+    public int getLanguageRefreshSeconds() {
+        return languageRefreshSeconds;
+    }
+
+    /**
+     * Sets the number of seconds the languages are used before
+     * {@linkplain #hasLanguages()} reports they must be loaded again. Default
+     * is {@linkplain #DEFAULT_LANGUAGE_REFRESH_SECONDS}.
+     *
+     * @param languageRefreshSeconds The refresh interval or 0 to use the
+     * languages until they are set again.
+     */
+    public void setLanguageRefreshSeconds(int languageRefreshSeconds) {
+        this.languageRefreshSeconds = languageRefreshSeconds;
+    }
+
+    /**
+     * Sets the languages used to resolve the localized values.
+     *
+     * @param itemOrderByCode The item order of each language by language code.
+     * The item order is the 1 based position of the language in the localized
+     * values.
+     * @param defaultLanguageCode The code of the default language. If there is
+     * no default language, the complete localized value is returned when the
+     * value for the language is empty.
+     */
+    public void setLanguages(Map<String, Integer> itemOrderByCode, String defaultLanguageCode) {
+        // Language codes are matched exactly as for the get_translation function
+        Map<String, Integer> orders = new HashMap<String, Integer>(itemOrderByCode);
+        Integer defaultOrder = defaultLanguageCode == null ? null : orders.get(defaultLanguageCode);
+        defaultItemOrder = defaultOrder == null ? 0 : defaultOrder;
+        itemOrders = Collections.unmodifiableMap(orders);
+        languagesSetAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the value for the language from the localized value.
+     *
+     * @param localizedValue The localized value
+     * @param languageCode The language code
+     * @return The value for the language.
+     */
+    public String resolve(String localizedValue, String languageCode) {
+        if (localizedValue == null || localizedValue.indexOf(DELIMITER) < 0) {
+            return localizedValue;
+        }
+        String[] parts = parseCache.get(localizedValue);
+        if (parts == null) {
+            parts = split(localizedValue);
+            if (parseCache.size() < MAX_CACHED_VALUES) {
+                parseCache.putIfAbsent(localizedValue, parts);
+            }
+        }
+        Map<String, Integer> orders = itemOrders;
+        Integer itemOrder = orders == null || languageCode == null ? null : orders.get(languageCode);
+        String result = itemOrder == null ? null : getPart(parts, itemOrder);
+        if (result == null) {
+            result = getPart(parts, defaultItemOrder);
+        }
+        return result == null ? localizedValue : result;
+    }
+
+    /**
+     * Resolves the values of the localized columns in a result row returned by
+     * a query that selected the localized columns without the get_translation
+     * function.
+     *
+     * @param entityClass The entity class of the query
+     * @param row The result row. The localized values are replaced with the
+     * value for the language.
+     * @param languageCode The language code
+     */
+    public void resolveRow(Class<? extends AbstractReadOnlyEntity> entityClass,
+            Map<String, Object> row, String languageCode) {
+        if (row == null) {
+            return;
+        }
+        for (String key : getLocalizedColumns(entityClass)) {
+            Object value = row.get(key);
+            if (value instanceof String) {
+                row.put(key, resolve((String) value, languageCode));
+            }
+        }
+    }
+
+    /**
+     * @return The number of localized values held in the parse cache.
+     */
+    public int getCacheSize() {
+        return parseCache.size();
+    }
+
+    public void clearCache() {
+        parseCache.clear();
+    }
+
+    /**
+     * Checks if any of the SQL parts (e.g. the WHERE and ORDER BY clauses of
+     * a query) reference a column annotated with {@linkplain Localized}. Such
+     * queries must use the get_translation function so that they filter and
+     * sort on the value for the language rather than the complete localized
+     * value.
+     *
+     * @param entityClass The entity class of the query
+     * @param sqlParts The SQL parts to check. Null parts are ignored.
+     * @return true if a localized column name appears in any of the parts.
+     */
+    public static boolean isLocalizedColumnReferenced(Class<? extends AbstractReadOnlyEntity> entityClass,
+            String... sqlParts) {
+        List<String> columns = getLocalizedColumns(entityClass);
+        if (columns.isEmpty()) {
+            return false;
+        }
+        for (String part : sqlParts) {
+            if (part == null || part.isEmpty()) {
+                continue;
+            }
+            String sql = part.toLowerCase(Locale.ENGLISH);
+            for (String column : columns) {
+                int index = sql.indexOf(column);
+                while (index >= 0) {
+                    int end = index + column.length();
+                    if ((index == 0 || !isIdentifierChar(sql.charAt(index - 1)))
+                            && (end == sql.length() || !isIdentifierChar(sql.charAt(end)))) {
+                        return true;
+                    }
+                    index = sql.indexOf(column, index + 1);
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isIdentifierChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    /**
+     * Returns the result row keys of the columns annotated with
+     * {@linkplain Localized} for the entity class.
+     */
+    private static List<String> getLocalizedColumns(Class<? extends AbstractReadOnlyEntity> entityClass) {
+        List<String> columns = localizedColumns.get(entityClass);
+        if (columns == null) {
+            columns = new ArrayList<String>();
+            for (ColumnInfo columnInfo : RepositoryUtility.getColumns(entityClass)) {
+                if (columnInfo.isLocalized()) {
+                    columns.add(columnInfo.getColumnName().toLowerCase(Locale.ENGLISH));
+                }
+            }
+            localizedColumns.putIfAbsent(entityClass, columns);
+        }
+        return columns;
+    }
+
+    /**
+     * Splits the localized value on the delimiter. Empty parts are retained so
+     * that each part remains at the position of its language.
+     */
+    private static String[] split(String localizedValue) {
+        List<String> parts = new ArrayList<String>();
+        int start = 0;
+        int end;
+        while ((end = localizedValue.indexOf(DELIMITER, start)) >= 0) {
+            parts.add(localizedValue.substring(start, end));
+            start = end + DELIMITER.length();
+        }
+        parts.add(localizedValue.substring(start));
+        return parts.toArray(new String[parts.size()]);
+    }
+
+    /**
+     * @return The part at the 1 based item order or null if the part does not
+     * exist or is empty.
+     */
+    private static String getPart(String[] parts, int itemOrder) {
+        if (itemOrder < 1 || itemOrder > parts.length || parts[itemOrder - 1].length() == 0) {
+            return null;
+        }
+        return parts[itemOrder - 1];
+    }
+}
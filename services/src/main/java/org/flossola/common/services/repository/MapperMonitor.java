@@ -0,0 +1,200 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.flossola.common.services.repository.entities.AbstractReadOnlyEntity;
+
+/**
+ * Collects statistics for the Mybatis mapper calls made by a repository. The
+ * repository wraps each mapper it obtains from the SqlSession using
+ * {@linkplain #wrap(CommonMapper, Class)} so that every call to a mapper method
+ * (i.e. every SQL statement executed against the database) is recorded.
+ * <p>
+ * The query count is primarily intended to allow unit tests and benchmarks to
+ * verify the number of database round trips made by a repository operation
+ * such as {@linkplain CommonRepository#getEntityList(Class, java.util.Map)}.</p>
+ * <p>
+ * Each mapper call is also timed and recorded in the process wide
+ * {@linkplain MapperStatistics} by statement kind and entity table and
+ * passed to the {@linkplain SlowQueryRecorder}.</p>
+ *
+ * @author soladev
+ */
+public class MapperMonitor {
+
+    private final AtomicLong queryCount = new AtomicLong();
+
+    /**
+     * Wraps the mapper with a dynamic proxy that records each call to the
+     * mapper before delegating the call to the original mapper.
+     *
+     * @param <U> The generic type of the mapper. Must be a descendent of
+     * {@linkplain CommonMapper}
+     * @param mapper The Mybatis mapper to wrap.
+     * @param mapperClass The mapper interface implemented by the mapper.
+     * @return The mapper proxy.
+     */
+    public <U extends CommonMapper> U wrap(U mapper, Class<? extends CommonMapper> mapperClass) {
+        if (mapper == null) {
+            return null;
+        }
+        return (U) Proxy.newProxyInstance(mapperClass.getClassLoader(),
+                new Class<?>[]{mapperClass}, new MonitorHandler(mapper, mapperClass));
+    }
+
+    /**
+     * Records each call to the mapper before delegating the call to the
+     * original mapper.
+     */
+    private class MonitorHandler implements InvocationHandler {
+
+        private final CommonMapper mapper;
+        private final Class<? extends CommonMapper> mapperClass;
+
+        MonitorHandler(CommonMapper mapper, Class<? extends CommonMapper> mapperClass) {
+            this.mapper = mapper;
+            this.mapperClass = mapperClass;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return method.invoke(mapper, args);
+            }
+            queryCount.incrementAndGet();
+            long start = System.nanoTime();
+            Object result = null;
+            boolean failed = true;
+            try {
+                result = method.invoke(mapper, args);
+                failed = false;
+                return result;
+            } catch (InvocationTargetException ex) {
+                // Throw the original exception raised by the mapper.
+                throw ex.getCause();
+            } finally {
+                long nanos = System.nanoTime() - start;
+                long rowCount = getRowCount(result);
+                MapperStatistics.getInstance().record(method.getName(), getTable(args),
+                        nanos, rowCount, failed);
+                SlowQueryRecorder.getInstance().record(
+                        mapperClass.getName() + "." + method.getName(),
+                        args == null || args.length == 0 ? null : args[0],
+                        nanos, rowCount, failed);
+            }
+        }
+    }
+
+    /**
+     * Records a query executed directly against the SqlSession rather than
+     * through the mapper proxy. e.g. a query executed with a Mybatis
+     * ResultHandler.
+     */
+    public void recordQuery() {
+        queryCount.incrementAndGet();
+    }
+
+    /**
+     * Records the statistics for a query executed directly against the
+     * SqlSession. See {@linkplain #recordQuery()}.
+     *
+     * @param statement The statement kind (i.e. the CommonMapper method name)
+     * @param entityClass The entity class queried or null if it is not known.
+     * @param nanos The time taken to execute the query.
+     * @param rowCount The number of rows returned by the query.
+     * @param failed true if the query raised an exception.
+     */
+    public void recordStatement(String statement, Class<?> entityClass, long nanos,
+            long rowCount, boolean failed) {
+        MapperStatistics.getInstance().record(statement, getTable(entityClass), nanos,
+                rowCount, failed);
+    }
+
+    /**
+     * Determines the entity table for the mapper call from the entity or the
+     * entity class parameter.
+     */
+    private static String getTable(Object[] args) {
+        Object arg = args == null || args.length == 0 ? null : args[0];
+        if (arg instanceof AbstractReadOnlyEntity) {
+            return getTable(arg.getClass());
+        }
+        if (arg instanceof Map) {
+            return getTable(((Map) arg).get(CommonSqlProvider.PARAM_ENTITY_CLASS));
+        }
+        return null;
+    }
+
+    private static String getTable(Object entityClass) {
+        if (entityClass instanceof Class
+                && AbstractReadOnlyEntity.class.isAssignableFrom((Class<?>) entityClass)) {
+            return RepositoryUtility.getTableName((Class<? extends AbstractReadOnlyEntity>) entityClass);
+        }
+        return null;
+    }
+
+    /**
+     * Determines the number of rows returned or affected by the mapper call.
+     * Batched statements report a negative update count, so they are not
+     * counted.
+     */
+    private static long getRowCount(Object result) {
+        if (result == null) {
+            return 0;
+        }
+        if (result instanceof Integer) {
+            return Math.max(0, (Integer) result);
+        }
+        if (result instanceof Collection) {
+            return ((Collection) result).size();
+        }
+        return 1;
+    }
+
+    /**
+     * @return The number of mapper calls recorded since the monitor was
+     * created or last reset.
+     */
+    public long getQueryCount() {
+        return queryCount.get();
+    }
+
+    /**
+     * Resets the query count to zero.
+     */
+    public void resetQueryCount() {
+        queryCount.set(0);
+    }
+}
@@ -0,0 +1,299 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import org.flossola.common.utilities.logging.LogUtility;
+
+/**
+ * Process wide latency histograms, row counts and error counts for the mapper
+ * statements executed by all repositories. The statistics are recorded by
+ * {@linkplain MapperMonitor} for each mapper call and are grouped by statement
+ * kind (i.e. the CommonMapper method name) and entity table.
+ * <p>
+ * Recording a statement only requires two map lookups and a few atomic
+ * increments, so the statistics can be left enabled in production. The
+ * statistics can be read in process using {@linkplain #getStatementStatistics()}
+ * or through JMX using the object name {@value #OBJECT_NAME} with the
+ * application and module keys passed to {@linkplain #register(String, String)}.
+ * Each application bundles its own copy of this class, so the keys keep the
+ * statistics of each application (and module) apart on a shared server.</p>
+ *
+ * @author soladev
+ */
+public final class MapperStatistics implements MapperStatisticsMXBean {
+
+    public static final String OBJECT_NAME = "org.flossola.common:type=MapperStatistics";
+    private static final int BUCKETS = 32;
+    private static final MapperStatistics INSTANCE = new MapperStatistics();
+    private final ConcurrentMap<String, ConcurrentMap<String, Stats>> statistics
+            = new ConcurrentHashMap<String, ConcurrentMap<String, Stats>>();
+    private final Map<ObjectName, Integer> registrations = new HashMap<ObjectName, Integer>();
+    private volatile boolean enabled = true;
+
+    /**
+     * The counters for one statement kind and table.
+     */
+    private static final class Stats {
+
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong totalMicros = new AtomicLong();
+        private final AtomicLong maxMicros = new AtomicLong();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        void record(long micros, long rowCount, boolean failed) {
+            count.incrementAndGet();
+            if (failed) {
+                errors.incrementAndGet();
+            }
+            if (rowCount > 0) {
+                rows.addAndGet(rowCount);
+            }
+            totalMicros.addAndGet(micros);
+            long max = maxMicros.get();
+            while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+                max = maxMicros.get();
+            }
+            histogram.incrementAndGet(Math.min(BUCKETS - 1,
+                    64 - Long.numberOfLeadingZeros(micros)));
+        }
+
+        StatementStatistics snapshot(String statement, String table) {
+            long[] buckets = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = histogram.get(i);
+            }
+            return new StatementStatistics(statement, table, count.get(), errors.get(),
+                    rows.get(), totalMicros.get(), maxMicros.get(), buckets);
+        }
+    }
+
+    private MapperStatistics() {
+    }
+
+    public static MapperStatistics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Creates the JMX object name for the statistics of the application
+     * module.
+     */
+    private static ObjectName getObjectName(String application, String module)
+            throws MalformedObjectNameException {
+        return new ObjectName(OBJECT_NAME + ",application=" + ObjectName.quote(application)
+                + ",module=" + ObjectName.quote(module));
+    }
+
+    /**
+     * Registers the statistics with the platform MBean server for the
+     * application module. Called by each EJB when it is created (see
+     * AbstractEJB), so the registrations are counted and the statistics are
+     * only registered with the MBean server for the first one.
+     *
+     * @param application The name of the application (e.g. java:app/AppName)
+     * @param module The name of the module (e.g. java:module/ModuleName)
+     */
+    public void register(String application, String module) {
+        try {
+            ObjectName name = getObjectName(application, module);
+            synchronized (registrations) {
+                Integer count = registrations.get(name);
+                if (count == null) {
+                    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                    if (server.isRegistered(name)) {
+                        // Left behind by a previous deployment that was not shut down cleanly
+                        server.unregisterMBean(name);
+                    }
+                    server.registerMBean(this, name);
+                    count = 0;
+                }
+                registrations.put(name, count + 1);
+            }
+        } catch (JMException ex) {
+            LogUtility.log("Unable to register " + OBJECT_NAME + " with JMX", Level.WARNING);
+        } catch (SecurityException ex) {
+            LogUtility.log("Unable to register " + OBJECT_NAME + " with JMX", Level.WARNING);
+        }
+    }
+
+    /**
+     * Removes a registration made with {@linkplain #register(String, String)}.
+     * Called by each EJB when it is destroyed. The statistics are unregistered
+     * from the MBean server once all the registrations for the application
+     * module have been removed so that the MBean server does not hold a
+     * reference to this class once the application has been undeployed.
+     *
+     * @param application The name of the application
+     * @param module The name of the module
+     */
+    public void unregister(String application, String module) {
+        try {
+            ObjectName name = getObjectName(application, module);
+            synchronized (registrations) {
+                Integer count = registrations.get(name);
+                if (count == null) {
+                    return;
+                }
+                if (count > 1) {
+                    registrations.put(name, count - 1);
+                    return;
+                }
+                registrations.remove(name);
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+            }
+        } catch (JMException ex) {
+            LogUtility.log("Unable to unregister " + OBJECT_NAME + " from JMX", Level.WARNING);
+        } catch (SecurityException ex) {
+            LogUtility.log("Unable to unregister " + OBJECT_NAME + " from JMX", Level.WARNING);
+        }
+    }
+
+    /**
+     * Records the execution of a mapper statement.
+     *
+     * @param statement The statement kind (i.e. the CommonMapper method name)
+     * @param table The entity table or null if it is not known.
+     * @param nanos The time taken to execute the statement.
+     * @param rowCount The number of rows returned or affected by the
+     * statement.
+     * @param failed true if the statement raised an exception.
+     */
+    public void record(String statement, String table, long nanos, long rowCount, boolean failed) {
+        if (!enabled) {
+            return;
+        }
+        table = table == null ? "" : table;
+        ConcurrentMap<String, Stats> tables = statistics.get(statement);
+        if (tables == null) {
+            tables = new ConcurrentHashMap<String, Stats>();
+            ConcurrentMap<String, Stats> existing = statistics.putIfAbsent(statement, tables);
+            tables = existing == null ? tables : existing;
+        }
+        Stats stats = tables.get(table);
+        if (stats == null) {
+            stats = new Stats();
+            Stats existing = tables.putIfAbsent(table, stats);
+            stats = existing == null ? stats : existing;
+        }
+        stats.record(Math.max(0, nanos / 1000), rowCount, failed);
+    }
+
+    /**
+     * Returns the statistics for a statement kind and table.
+     *
+     * @param statement The statement kind (i.e. the CommonMapper method name)
+     * @param table The entity table or null for statements where the table
+     * could not be determined.
+     * @return The statistics or null if no statements have been recorded.
+     */
+    public StatementStatistics getStatementStatistics(String statement, String table) {
+        table = table == null ? "" : table;
+        Map<String, Stats> tables = statistics.get(statement);
+        Stats stats = tables == null ? null : tables.get(table);
+        return stats == null ? null : stats.snapshot(statement, table);
+    }
+
+    @Override
+    public List<StatementStatistics> getStatementStatistics() {
+        List<StatementStatistics> result = new ArrayList<StatementStatistics>();
+        for (Map.Entry<String, ConcurrentMap<String, Stats>> statement : statistics.entrySet()) {
+            for (Map.Entry<String, Stats> table : statement.getValue().entrySet()) {
+                result.add(table.getValue().snapshot(statement.getKey(), table.getKey()));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables the recording of statistics. Enabled by default.
+     */
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void reset() {
+        statistics.clear();
+    }
+
+    @Override
+    public long getSlowQueryThresholdMillis() {
+        return SlowQueryRecorder.getInstance().getThresholdMillis();
+    }
+
+    @Override
+    public void setSlowQueryThresholdMillis(long thresholdMillis) {
+        SlowQueryRecorder.getInstance().setThresholdMillis(thresholdMillis);
+    }
+
+    @Override
+    public String getSlowQueryLogFile() {
+        return SlowQueryRecorder.getInstance().getLogFile();
+    }
+
+    @Override
+    public void setSlowQueryLogFile(String pattern) throws IOException {
+        SlowQueryRecorder.getInstance().setLogFile(pattern);
+    }
+
+    @Override
+    public List<SlowQuery> getSlowQueries() {
+        return SlowQueryRecorder.getInstance().getSlowQueries();
+    }
+
+    @Override
+    public void clearSlowQueries() {
+        SlowQueryRecorder.getInstance().clear();
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * JMX management interface for {@linkplain MapperStatistics}. The statistics
+ * are registered with the platform MBean server using the name
+ * {@value MapperStatistics#OBJECT_NAME} along with the application and module
+ * keys. The interface also allows the {@linkplain SlowQueryRecorder} to be
+ * configured and reports the slow statements it has captured.
+ *
+ * @author soladev
+ */
+public interface MapperStatisticsMXBean {
+
+    /**
+     * @return A snapshot of the statistics for each statement kind and table.
+     */
+    List<StatementStatistics> getStatementStatistics();
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /**
+     * Clears all statistics recorded so far.
+     */
+    void reset();
+
+    /**
+     * @return The slow statement threshold in milliseconds or 0 if slow
+     * statements are not captured.
+     */
+    long getSlowQueryThresholdMillis();
+
+    /**
+     * @param thresholdMillis The slow statement threshold in milliseconds. Use
+     * 0 to stop capturing slow statements.
+     */
+    void setSlowQueryThresholdMillis(long thresholdMillis);
+
+    /**
+     * @return The file name pattern of the slow statement log file or null if
+     * slow statements are not written to a log file.
+     */
+    String getSlowQueryLogFile();
+
+    /**
+     * @param pattern The file name pattern of the slow statement log file or
+     * null to stop writing to the log file.
+     * @throws IOException If the log file cannot be opened.
+     */
+    void setSlowQueryLogFile(String pattern) throws IOException;
+
+    /**
+     * @return The slow statements captured with the most recent first.
+     */
+    List<SlowQuery> getSlowQueries();
+
+    /**
+     * Clears the slow statements captured so far.
+     */
+    void clearSlowQueries();
+}
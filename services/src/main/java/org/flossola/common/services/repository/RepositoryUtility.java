@@ -33,13 +33,19 @@ import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.io.ParseException;
 import com.vividsolutions.jts.io.WKBReader;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
@@ -58,27 +64,53 @@ import org.flossola.common.messaging.CommonMessage;
 import org.flossola.common.services.LocalInfo;
 import org.flossola.common.services.repository.entities.AbstractEntityInfo;
 import org.flossola.common.services.repository.entities.AbstractReadOnlyEntity;
+import org.flossola.common.services.repository.entities.AbstractVersionedEntity;
 import org.flossola.common.services.repository.entities.ChildEntityInfo;
 import org.flossola.common.services.repository.entities.ColumnInfo;
+import org.flossola.common.services.repository.entities.ConstructorEntityFactory;
+import org.flossola.common.services.repository.entities.EntityFactory;
+import org.flossola.common.services.repository.entities.EntityMetadata;
+import org.flossola.common.services.repository.entities.FieldAccessor;
 
 /**
  * Repository Utility class providing a number of utility methods for dealing
  * with entities, database repositories and accessing EJBs.
  *
- * This class stores a cache of the metadata for each entity to limit avoid
- * excessive reflection over entity classes during each database operation.
+ * This class stores a registry of the metadata for each entity to avoid
+ * excessive reflection over entity classes during each database operation. The
+ * metadata for an entity class is immutable and is built once, either on first
+ * use or eagerly using {@linkplain #registerEntityClasses(java.lang.Class[])}.
  *
  * @author soladev
  */
 public class RepositoryUtility {
 
-    private static Map<String, List<ColumnInfo>> entityColumns = new HashMap<String, List<ColumnInfo>>();
-    private static Map<String, List<ColumnInfo>> entityIdColumns = new HashMap<String, List<ColumnInfo>>();
-    private static Map<String, String> entityTableNames = new HashMap<String, String>();
-    private static Map<String, Boolean> entityCacheable = new HashMap<String, Boolean>();
-    private static Map<String, String> sorterExpressions = new HashMap<String, String>();
-    private static Map<String, List<ChildEntityInfo>> childEntities = new HashMap<String, List<ChildEntityInfo>>();
-    private static Boolean isCacheEJBDeployed = null;
+    private static final ConcurrentMap<Class<?>, EntityMetadata> entityMetadata
+            = new ConcurrentHashMap<Class<?>, EntityMetadata>();
+    private static final ConcurrentMap<Class<?>, RowMappingPlan> rowMappingPlans
+            = new ConcurrentHashMap<Class<?>, RowMappingPlan>();
+    private static final AtomicLong metadataBuildTimeNanos = new AtomicLong();
+    private static volatile Boolean isCacheEJBDeployed = null;
+    private static volatile Boolean isAsyncLoaderEJBDeployed = null;
+    private static final CachePolicy DEFAULT_CACHE_POLICY
+            = DefaultCachePolicy.class.getAnnotation(CachePolicy.class);
+    /**
+     * The security classifications that are declared as roles on AbstractEJB
+     * and can therefore be granted to a user.
+     */
+    private static final String[] CLASSIFICATION_CODES = {
+        RolesConstants.CLASSIFICATION_UNRESTRICTED, RolesConstants.CLASSIFICATION_RESTRICTED,
+        RolesConstants.CLASSIFICATION_CONFIDENTIAL, RolesConstants.CLASSIFICATION_SECRET,
+        RolesConstants.CLASSIFICATION_SUPPRESSION_ORDER};
+    private static final String CLASSIFICATION_PARAM = "sql_param_classification";
+
+    /**
+     * Used to obtain the default values of the {@linkplain CachePolicy}
+     * annotation.
+     */
+    @CachePolicy
+    private static final class DefaultCachePolicy {
+    }
 
     /**
      * Uses recursion to obtain the list of all declared fields of a class
@@ -97,18 +129,137 @@ public class RepositoryUtility {
         }
     }
 
-    public static <T extends AbstractReadOnlyEntity> String getTableName(Class<T> entityClass) {
+    /**
+     * Retrieves the metadata for the entity class from the metadata registry.
+     * If the entity class has not been registered, the metadata is built and
+     * added to the registry.
+     *
+     * @param entityClass The entity class to retrieve the metadata for
+     * @return The metadata for the entity class.
+     */
+    public static EntityMetadata getMetadata(Class<? extends AbstractReadOnlyEntity> entityClass) {
+        EntityMetadata metadata = entityMetadata.get(entityClass);
+        if (metadata == null) {
+            metadata = buildMetadata(entityClass);
+            EntityMetadata existing = entityMetadata.putIfAbsent(entityClass, metadata);
+            if (existing != null) {
+                // Another thread registered the metadata first
+                metadata = existing;
+            } else {
+                metadataBuildTimeNanos.addAndGet(metadata.getBuildTimeNanos());
+            }
+        }
+        return metadata;
+    }
+
+    /**
+     * Retrieves the plan used to map result rows to entities of the entity
+     * class. The plan is created on first use and shared by all threads.
+     *
+     * @param entityClass The entity class to retrieve the mapping plan for
+     * @return The mapping plan for the entity class.
+     */
+    public static RowMappingPlan getRowMappingPlan(Class<? extends AbstractReadOnlyEntity> entityClass) {
+        RowMappingPlan plan = rowMappingPlans.get(entityClass);
+        if (plan == null) {
+            plan = new RowMappingPlan(getMetadata(entityClass));
+            RowMappingPlan existing = rowMappingPlans.putIfAbsent(entityClass, plan);
+            if (existing != null) {
+                plan = existing;
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Builds the metadata for the entity class using reflection. The metadata
+     * is not added to the metadata registry. Use
+     * {@linkplain #getMetadata(java.lang.Class)} to obtain the registered
+     * metadata for an entity class.
+     *
+     * @param entityClass The entity class to build the metadata for
+     * @return The metadata for the entity class.
+     */
+    public static EntityMetadata buildMetadata(Class<? extends AbstractReadOnlyEntity> entityClass) {
+        long start = System.nanoTime();
         String tableName = null;
-        if (entityTableNames.containsKey(entityClass.getName())) {
-            tableName = entityTableNames.get(entityClass.getName());
-        } else {
-            Table tableAnnotation = entityClass.getAnnotation(Table.class);
-            if (tableAnnotation != null) {
-                tableName = tableAnnotation.schema() + "." + tableAnnotation.name();
-                entityTableNames.put(entityClass.getName(), tableName);
+        Table tableAnnotation = entityClass.getAnnotation(Table.class);
+        if (tableAnnotation != null) {
+            tableName = tableAnnotation.schema() + "." + tableAnnotation.name();
+        }
+        String sorterExpression = null;
+        DefaultSorter sorterAnnotation = entityClass.getAnnotation(DefaultSorter.class);
+        if (sorterAnnotation != null) {
+            sorterExpression = sorterAnnotation.sortString();
+        }
+        List<Field> allFields = new ArrayList<Field>();
+        getAllFields(entityClass, allFields);
+        return new EntityMetadata(entityClass, tableName, readCacheable(entityClass),
+                sorterExpression, readColumns(allFields),
+                readChildEntityInfo(entityClass, allFields), start);
+    }
+
+    /**
+     * Registers the metadata for each of the entity classes as well as the
+     * metadata for any child entities of those classes. Allows the metadata to
+     * be built eagerly (e.g. during EJB initialization) rather than on first
+     * use.
+     *
+     * @param entityClasses The entity classes to register
+     */
+    public static void registerEntityClasses(Class<?>... entityClasses) {
+        if (entityClasses == null) {
+            return;
+        }
+        for (Class<?> c : entityClasses) {
+            // Skip abstract classes such as the default manyToManyClass (AbstractEntity)
+            if (c != null && AbstractReadOnlyEntity.class.isAssignableFrom(c)
+                    && !Modifier.isAbstract(c.getModifiers()) && !entityMetadata.containsKey(c)) {
+                EntityMetadata metadata = getMetadata((Class<? extends AbstractReadOnlyEntity>) c);
+                for (ChildEntityInfo childInfo : metadata.getChildEntities()) {
+                    registerEntityClasses(childInfo.getEntityClass(), childInfo.getManyToManyClass());
+                }
             }
         }
-        return tableName;
+    }
+
+    /**
+     * Registers a custom factory to use when creating new instances of the
+     * entity class. Replaces the default {@linkplain ConstructorEntityFactory}.
+     *
+     * @param <T>
+     * @param entityClass The entity class
+     * @param entityFactory The factory to use for the entity class. If null,
+     * the default factory is restored.
+     */
+    public static <T extends AbstractReadOnlyEntity> void registerEntityFactory(Class<T> entityClass,
+            EntityFactory<? extends T> entityFactory) {
+        EntityFactory<?> factory = entityFactory;
+        if (factory == null) {
+            factory = new ConstructorEntityFactory<T>(entityClass);
+        }
+        entityMetadata.put(entityClass, new EntityMetadata(getMetadata(entityClass), factory));
+        // The mapping plan uses the entity factory from the metadata
+        rowMappingPlans.remove(entityClass);
+    }
+
+    /**
+     * @return The number of entity classes in the metadata registry.
+     */
+    public static int getRegisteredEntityCount() {
+        return entityMetadata.size();
+    }
+
+    /**
+     * @return The total time in nanoseconds spent building the metadata for
+     * the registered entity classes.
+     */
+    public static long getMetadataBuildTimeNanos() {
+        return metadataBuildTimeNanos.get();
+    }
+
+    public static <T extends AbstractReadOnlyEntity> String getTableName(Class<T> entityClass) {
+        return getMetadata(entityClass).getTableName();
     }
 
     /**
@@ -121,92 +272,161 @@ public class RepositoryUtility {
      * @return true if the Cacheable Annotation value is true, false otherwise.
      */
     public static <T extends AbstractReadOnlyEntity> boolean isCachable(Class<T> entityClass) {
-        boolean result = false;
+        return isCacheDeployed() && getMetadata(entityClass).isCacheable();
+    }
 
+    /**
+     * @return true if the CacheEJB has been deployed.
+     */
+    public static boolean isCacheDeployed() {
         if (isCacheEJBDeployed == null) {
             // Check if the CacheEJB has been deployed or not
             isCacheEJBDeployed = RepositoryUtility.tryGetEJB("CacheEJBLocal") != null;
             LogUtility.log("isCacheEJBDeployed = " + isCacheEJBDeployed);
         }
-        if (isCacheEJBDeployed) {
-            if (entityCacheable.containsKey(entityClass.getName())) {
-                result = entityCacheable.get(entityClass.getName());
-            } else {
-                Cacheable cacheableAnnotation = entityClass.getAnnotation(Cacheable.class);
-                if (cacheableAnnotation == null && entityClass.getSuperclass() != null
-                        && AbstractReadOnlyEntity.class.isAssignableFrom(entityClass.getSuperclass())) {
-                    result = isCachable((Class<AbstractReadOnlyEntity>) entityClass.getSuperclass());
-                }
-                if (cacheableAnnotation != null) {
-                    result = cacheableAnnotation.value();
-                    // Set the cacheable state of the entity based on the value of the
-                    // Cacheable annotation
-                    entityCacheable.put(entityClass.getName(), result);
-                } else {
-                    // Set the cacheable state for this entity. Note that the result 
-                    // may hve been inherited from a super class. 
-                    entityCacheable.put(entityClass.getName(), result);
-                }
+        return isCacheEJBDeployed;
+    }
+
+    /**
+     * Overrides the check for the CacheEJB. Supports testing the cache outside
+     * of a JEE container. Setting null repeats the check on the next call to
+     * {@linkplain #isCacheDeployed()}.
+     *
+     * @param deployed true if the CacheEJB should be treated as deployed.
+     */
+    static void setCacheDeployed(Boolean deployed) {
+        isCacheEJBDeployed = deployed;
+    }
+
+    /**
+     * @return true if the AsyncLoaderEJB has been deployed.
+     */
+    public static boolean isAsyncLoaderDeployed() {
+        if (isAsyncLoaderEJBDeployed == null) {
+            // Check if the AsyncLoaderEJB has been deployed or not
+            isAsyncLoaderEJBDeployed = RepositoryUtility.tryGetEJB("AsyncLoaderEJBLocal") != null;
+            LogUtility.log("isAsyncLoaderEJBDeployed = " + isAsyncLoaderEJBDeployed);
+        }
+        return isAsyncLoaderEJBDeployed;
+    }
+
+    /**
+     * Returns the by id entity cache settings for a cacheable entity class.
+     * If the class does not have a {@linkplain CachePolicy} annotation, the
+     * default settings are returned.
+     *
+     * @param entityClass The entity class
+     * @return The cache policy for the entity class.
+     */
+    public static <T extends AbstractReadOnlyEntity> CachePolicy getCachePolicy(Class<T> entityClass) {
+        CachePolicy policy = entityClass.getAnnotation(CachePolicy.class);
+        return policy == null ? DEFAULT_CACHE_POLICY : policy;
+    }
+
+    /**
+     * Determines the value of the Cacheable annotation for the entity class.
+     * If the entity class does not have the annotation, the value is inherited
+     * from the closest super class that does.
+     */
+    private static boolean readCacheable(Class<?> entityClass) {
+        boolean result = false;
+        Class<?> c = entityClass;
+        while (c != null && AbstractReadOnlyEntity.class.isAssignableFrom(c)) {
+            Cacheable cacheableAnnotation = c.getAnnotation(Cacheable.class);
+            if (cacheableAnnotation != null) {
+                result = cacheableAnnotation.value();
+                break;
             }
+            c = c.getSuperclass();
         }
         return result;
     }
 
     public static <T extends AbstractReadOnlyEntity> String getSorterExpression(Class<T> entityClass) {
-        String sorterExpression = null;
-        if (sorterExpressions.containsKey(entityClass.getName())) {
-            sorterExpression = sorterExpressions.get(entityClass.getName());
-        } else {
-            DefaultSorter sorterAnnotation = entityClass.getAnnotation(DefaultSorter.class);
-            if (sorterAnnotation != null) {
-                sorterExpression = sorterAnnotation.sortString();
-                sorterExpressions.put(entityClass.getName(), sorterExpression);
+        return getMetadata(entityClass).getSorterExpression();
+    }
+
+    /**
+     * Determines the fields to select for a projection of the entity (see
+     * {@linkplain CommonSqlProvider#PARAM_INCLUDE_LIST}). As well as the
+     * fields in the include list, the id fields, the security classification
+     * and redact code fields and the row version fields are always included
+     * so that security and optimistic locking continue to apply to the
+     * projected entity. If a one to one child entity is included and the
+     * parent holds the id of the child, the child id field is also included.
+     *
+     * @param entityClass The entity class
+     * @param includeList The names of the fields to include in the projection
+     * @return The names of the fields to select.
+     */
+    public static <T extends AbstractReadOnlyEntity> Set<String> getProjectedFields(Class<T> entityClass,
+            Collection<String> includeList) {
+        Set<String> result = new HashSet<String>(includeList);
+        for (ColumnInfo columnInfo : getColumns(entityClass)) {
+            String columnName = columnInfo.getColumnName();
+            if (columnInfo.isIdColumn()
+                    || AbstractReadOnlyEntity.CLASSIFICATION_CODE_COLUMN_NAME.equals(columnName)
+                    || AbstractReadOnlyEntity.REDACT_CODE_COLUMN_NAME.equals(columnName)
+                    || AbstractVersionedEntity.ROW_VERSION_COLUMN_NAME.equals(columnName)
+                    || AbstractVersionedEntity.ROW_ID_COLUMN_NAME.equals(columnName)
+                    || AbstractVersionedEntity.CHANGE_USER_COLUMN_NAME.equals(columnName)) {
+                result.add(columnInfo.getFieldName());
+            }
+        }
+        for (ChildEntityInfo childInfo : getChildEntityInfo(entityClass)) {
+            if (includeList.contains(childInfo.getFieldName()) && !childInfo.isListField()
+                    && childInfo.isInsertBeforeParent()) {
+                result.add(childInfo.getChildIdField());
             }
         }
-        return sorterExpression;
+        return result;
     }
 
+    /**
+     * @param <T>
+     * @param entityClass The entity class
+     * @return Unmodifiable list of the columns for the entity class.
+     */
     public static <T extends AbstractReadOnlyEntity> List<ColumnInfo> getColumns(Class<T> entityClass) {
+        return getMetadata(entityClass).getColumns();
+    }
 
+    private static List<ColumnInfo> readColumns(List<Field> allFields) {
         List<ColumnInfo> columns = new ArrayList<ColumnInfo>();
-        if (entityColumns.containsKey(entityClass.getName())) {
-            columns = entityColumns.get(entityClass.getName());
-        } else {
-            List<Field> allFields = new ArrayList<Field>();
-            getAllFields(entityClass, allFields);
-
-            for (Field field : allFields) {
-                Column columnAnnotation = field.getAnnotation(Column.class);
-                if (columnAnnotation != null) {
-                    Boolean isId = (field.getAnnotation(Id.class) != null);
-                    Boolean isLocalized = (field.getAnnotation(Localized.class) != null);
-                    Class<?> fieldType = field.getType();
-                    String columnName = columnAnnotation.name();
-                    if (columnName == null || columnName.length() < 1) {
-                        columnName = field.getName();
-                    }
-                    ColumnInfo columnInfo = new ColumnInfo(columnName,
-                            field.getName(), fieldType, isId, isLocalized,
-                            columnAnnotation.insertable(), columnAnnotation.updatable());
-                    AccessFunctions accessFunctions = field.getAnnotation(AccessFunctions.class);
-                    if (accessFunctions != null) {
-                        columnInfo.setOnSelectFunction(accessFunctions.onSelect());
-                        columnInfo.setOnChangeFunction(accessFunctions.onChange());
-                    }
-                    Redact redactInfo = field.getAnnotation(Redact.class);
-                    if (redactInfo != null) {
-                        columnInfo.setRedact(true);
-                        columnInfo.setMinRedactClassification(
-                                StringUtility.isEmpty(redactInfo.minClassification()) ? null
-                                : redactInfo.minClassification());
-                        columnInfo.setRedactMessageCode(
-                                StringUtility.isEmpty(redactInfo.messageCode()) ? null
-                                : redactInfo.messageCode());
-                    }
-                    columns.add(columnInfo);
+        for (Field field : allFields) {
+            Column columnAnnotation = field.getAnnotation(Column.class);
+            if (columnAnnotation != null) {
+                Boolean isId = (field.getAnnotation(Id.class) != null);
+                Boolean isLocalized = (field.getAnnotation(Localized.class) != null);
+                Class<?> fieldType = field.getType();
+                String columnName = columnAnnotation.name();
+                if (columnName == null || columnName.length() < 1) {
+                    columnName = field.getName();
+                }
+                ColumnInfo columnInfo = new ColumnInfo(columnName,
+                        field.getName(), fieldType, isId, isLocalized,
+                        columnAnnotation.insertable(), columnAnnotation.updatable());
+                AccessFunctions accessFunctions = field.getAnnotation(AccessFunctions.class);
+                if (accessFunctions != null) {
+                    columnInfo.setOnSelectFunction(accessFunctions.onSelect());
+                    columnInfo.setOnChangeFunction(accessFunctions.onChange());
+                }
+                // The value set by an onChange function may differ even if the field value has not
+                // changed, so those columns are always updated as well. 
+                columnInfo.setAlwaysUpdated(field.getAnnotation(AlwaysUpdated.class) != null
+                        || columnInfo.getOnChangeFunction() != null);
+                Redact redactInfo = field.getAnnotation(Redact.class);
+                if (redactInfo != null) {
+                    columnInfo.setRedact(true);
+                    columnInfo.setMinRedactClassification(
+                            StringUtility.isEmpty(redactInfo.minClassification()) ? null
+                            : redactInfo.minClassification());
+                    columnInfo.setRedactMessageCode(
+                            StringUtility.isEmpty(redactInfo.messageCode()) ? null
+                            : redactInfo.messageCode());
                 }
+                columns.add(columnInfo);
             }
-            entityColumns.put(entityClass.getName(), columns);
         }
         return columns;
     }
@@ -224,137 +444,125 @@ public class RepositoryUtility {
      */
     public static <T extends AbstractReadOnlyEntity> ColumnInfo getColumnInfo(Class<T> entityClass,
             String fieldNameOrDbColName) {
-        ColumnInfo result = null;
-        if (fieldNameOrDbColName != null) {
-            for (ColumnInfo columnInfo : getColumns(entityClass)) {
-                if (columnInfo.getFieldName().equalsIgnoreCase(fieldNameOrDbColName)) {
-                    // Check the entity field name
-                    result = columnInfo;
-                    break;
-                }
-                if (columnInfo.getColumnName() != null
-                        && columnInfo.getColumnName().equalsIgnoreCase(fieldNameOrDbColName)) {
-                    // Check the database column name
-                    result = columnInfo;
-                    break;
-                }
-            }
-        }
-        return result;
+        return getMetadata(entityClass).getColumnInfo(fieldNameOrDbColName);
     }
 
     public static <T extends AbstractReadOnlyEntity> ChildEntityInfo getChildEntityInfo(Class<T> entityClass,
             String fieldName) {
-        ChildEntityInfo result = null;
-        if (fieldName != null) {
-            for (ChildEntityInfo childInfo : getChildEntityInfo(entityClass)) {
-                if (childInfo.getFieldName().equalsIgnoreCase(fieldName)) {
-                    result = childInfo;
-                    break;
-                }
-            }
-        }
-        return result;
+        return getMetadata(entityClass).getChildEntityInfo(fieldName);
     }
 
     public static <T extends AbstractReadOnlyEntity> Boolean isIdColumn(Class<T> entityClass,
             String fieldName) {
-        Boolean result = false;
-        if (fieldName != null) {
-            for (ColumnInfo columnInfo : getIdColumns(entityClass)) {
-                if (columnInfo.getFieldName().equalsIgnoreCase(fieldName)) {
-                    result = true;
-                    break;
-                }
-            }
-        }
-
-        return result;
+        ColumnInfo columnInfo = getMetadata(entityClass).getColumnByFieldName(fieldName);
+        return columnInfo != null && columnInfo.isIdColumn();
     }
 
+    /**
+     * @param <T>
+     * @param entityClass The entity class
+     * @return Unmodifiable list of the id columns for the entity class.
+     */
     public static <T extends AbstractReadOnlyEntity> List<ColumnInfo> getIdColumns(Class<T> entityClass) {
-        return getIdColumns(entityClass, getColumns(entityClass));
+        return getMetadata(entityClass).getIdColumns();
     }
 
+    /**
+     * @deprecated The id columns are held in the entity metadata. Use
+     * {@linkplain #getIdColumns(java.lang.Class)} instead.
+     */
+    @Deprecated
     public static <T extends AbstractReadOnlyEntity> List<ColumnInfo> getIdColumns(Class<T> entityClass,
             List<ColumnInfo> columns) {
-        List<ColumnInfo> idColumns = new ArrayList<ColumnInfo>();
-        if (entityIdColumns.containsKey(entityClass.getName())) {
-            idColumns = entityIdColumns.get(entityClass.getName());
-        } else {
-            for (ColumnInfo columnInfo : columns) {
-                if (columnInfo.isIdColumn()) {
-                    idColumns.add(columnInfo);
-                }
-            }
-            entityIdColumns.put(entityClass.getName(), idColumns);
-        }
-        return idColumns;
+        return getIdColumns(entityClass);
     }
 
+    /**
+     * @param <T>
+     * @param entityClass The entity class
+     * @return Unmodifiable list of the child entities for the entity class.
+     */
     public static <T extends AbstractReadOnlyEntity> List<ChildEntityInfo> getChildEntityInfo(Class<T> entityClass) {
+        return getMetadata(entityClass).getChildEntities();
+    }
 
+    private static List<ChildEntityInfo> readChildEntityInfo(Class<?> entityClass, List<Field> allFields) {
         List<ChildEntityInfo> children = new ArrayList<ChildEntityInfo>();
-        if (childEntities.containsKey(entityClass.getName())) {
-            children = childEntities.get(entityClass.getName());
-        } else {
-            List<Field> allFields = new ArrayList<Field>();
-            getAllFields(entityClass, allFields);
-
-            for (Field field : allFields) {
-                ChildEntity childAnnotation = field.getAnnotation(ChildEntity.class);
-                ChildEntityList childListAnnotation = field.getAnnotation(ChildEntityList.class);
-                ExternalEJB externalEJBAnnoation = field.getAnnotation(ExternalEJB.class);
-                Redact redactInfo = field.getAnnotation(Redact.class);
-                ParameterizedType paramType = null;
-                if (Iterable.class.isAssignableFrom(field.getType())) {
-                    paramType = (ParameterizedType) field.getGenericType();
-                }
-                ChildEntityInfo childInfo = null;
-                if (childAnnotation != null) {
-                    boolean insert = childAnnotation.insertBeforeParent();
-
-                    if ((insert && childAnnotation.childIdField().isEmpty())
-                            || (!insert && childAnnotation.parentIdField().isEmpty())) {
-                        throw new SOLAException(CommonMessage.GENERAL_UNEXPECTED,
-                                // The ChildEntity annoation is not configured correctly
-                                new Object[]{"ChildEntity annotation is not configured correclty on "
-                                    + entityClass.getSimpleName() + "." + field.getName()});
-                    }
-
-                    childInfo = new ChildEntityInfo(field.getName(), field.getType(), insert,
-                            childAnnotation.parentIdField(), childAnnotation.childIdField(),
-                            childAnnotation.readOnly());
-                }
-                if (childListAnnotation != null) {
-                    childInfo = new ChildEntityInfo(field.getName(), field.getType(), paramType,
-                            childListAnnotation.parentIdField(), childListAnnotation.childIdField(),
-                            childListAnnotation.manyToManyClass(),
-                            childListAnnotation.cascadeDelete(),
-                            childListAnnotation.readOnly());
-                }
-                if (externalEJBAnnoation != null && childInfo != null) {
-                    childInfo.setEJBLocalClass(externalEJBAnnoation.ejbLocalClass());
-                    childInfo.setLoadMethod(externalEJBAnnoation.loadMethod());
-                    childInfo.setSaveMethod(externalEJBAnnoation.saveMethod());
-                }
-                if (redactInfo != null && childInfo != null) {
-                    // Capture redact details but ignore the messageCode as this does not
-                    // apply to List or child entity fields
-                    childInfo.setRedact(true);
-                    childInfo.setMinRedactClassification(
-                            StringUtility.isEmpty(redactInfo.minClassification()) ? null
-                            : redactInfo.minClassification());
-                }
-                if (childInfo != null) {
-                    children.add(childInfo);
+        for (Field field : allFields) {
+            ChildEntity childAnnotation = field.getAnnotation(ChildEntity.class);
+            ChildEntityList childListAnnotation = field.getAnnotation(ChildEntityList.class);
+            ExternalEJB externalEJBAnnoation = field.getAnnotation(ExternalEJB.class);
+            Redact redactInfo = field.getAnnotation(Redact.class);
+            ParameterizedType paramType = null;
+            if (Iterable.class.isAssignableFrom(field.getType())) {
+                paramType = (ParameterizedType) field.getGenericType();
+            }
+            ChildEntityInfo childInfo = null;
+            if (childAnnotation != null) {
+                boolean insert = childAnnotation.insertBeforeParent();
+
+                if ((insert && childAnnotation.childIdField().isEmpty())
+                        || (!insert && childAnnotation.parentIdField().isEmpty())) {
+                    throw new SOLAException(CommonMessage.GENERAL_UNEXPECTED,
+                            // The ChildEntity annoation is not configured correctly
+                            new Object[]{"ChildEntity annotation is not configured correclty on "
+                                + entityClass.getSimpleName() + "." + field.getName()});
                 }
+
+                childInfo = new ChildEntityInfo(field.getName(), field.getType(), insert,
+                        childAnnotation.parentIdField(), childAnnotation.childIdField(),
+                        childAnnotation.readOnly());
+            }
+            if (childListAnnotation != null) {
+                childInfo = new ChildEntityInfo(field.getName(), field.getType(), paramType,
+                        childListAnnotation.parentIdField(), childListAnnotation.childIdField(),
+                        childListAnnotation.manyToManyClass(),
+                        childListAnnotation.cascadeDelete(),
+                        childListAnnotation.readOnly());
+                childInfo.setLazy(childListAnnotation.lazy());
+            }
+            if (externalEJBAnnoation != null && childInfo != null) {
+                childInfo.setEJBLocalClass(externalEJBAnnoation.ejbLocalClass());
+                childInfo.setLoadMethod(externalEJBAnnoation.loadMethod());
+                childInfo.setSaveMethod(externalEJBAnnoation.saveMethod());
+            }
+            if (redactInfo != null && childInfo != null) {
+                // Capture redact details but ignore the messageCode as this does not
+                // apply to List or child entity fields
+                childInfo.setRedact(true);
+                childInfo.setMinRedactClassification(
+                        StringUtility.isEmpty(redactInfo.minClassification()) ? null
+                        : redactInfo.minClassification());
+            }
+            if (childInfo != null) {
+                children.add(childInfo);
             }
-            childEntities.put(entityClass.getName(), children);
         }
         return children;
     }
 
+    /**
+     * Retrieves the {@linkplain FieldAccessor} for a field on the entity class.
+     * The accessors for the entity class are held in the entity metadata.
+     *
+     * @param entityClass The class of entity
+     * @param entityInfo The column or child entity info identifying the field
+     * @return The accessor for the field.
+     */
+    public static FieldAccessor getFieldAccessor(Class<?> entityClass, AbstractEntityInfo entityInfo) {
+        FieldAccessor accessor = null;
+        if (AbstractReadOnlyEntity.class.isAssignableFrom(entityClass)) {
+            accessor = getMetadata((Class<? extends AbstractReadOnlyEntity>) entityClass)
+                    .getFieldAccessor(entityInfo.getFieldName());
+        }
+        if (accessor == null) {
+            // The entityInfo is not part of the metadata for the class, so create the 
+            // accessor on demand. 
+            accessor = new FieldAccessor(entityClass, entityInfo);
+        }
+        return accessor;
+    }
+
     public static <T> T getEJB(Class<T> ejbLocalClass) {
         T ejb = null;
 
@@ -448,6 +656,11 @@ public class RepositoryUtility {
         if (geom1 == null && geom2 == null) {
             result = true;
         } else if (geom1 != null && geom2 != null) {
+            if (Arrays.equals((byte[]) geom1, (byte[]) geom2)) {
+                // Identical bytes are always geometrically equivalent, so avoid parsing 
+                // the geometries. 
+                return true;
+            }
             try {
                 Geometry g1 = new WKBReader().read((byte[]) geom1);
                 Geometry g2 = new WKBReader().read((byte[]) geom2);
@@ -502,6 +715,44 @@ public class RepositoryUtility {
         return result;
     }
 
+    /**
+     * Builds a SQL condition on the classification_code column that only
+     * matches the rows the user has security clearance to view, applying the
+     * same rules as {@linkplain #hasSecurityClearance(String)}. Only the
+     * security classifications declared as roles on AbstractEJB can be
+     * granted to a user, so any other classification is only visible to users
+     * with Top Secret clearance. The classification codes the user can view
+     * are added to the params as Mybatis parameters.
+     *
+     * @param entityClass The entity class being queried.
+     * @param params The parameters for the SQL query.
+     * @return The condition or null if the entity does not have a
+     * classification_code column or the user can view all rows.
+     */
+    public static <T extends AbstractReadOnlyEntity> String getSecurityClearanceCondition(
+            Class<T> entityClass, Map<String, Object> params) {
+        if (getColumnInfo(entityClass, AbstractReadOnlyEntity.CLASSIFICATION_CODE_COLUMN_NAME) == null
+                || hasSecurityClearance(RolesConstants.CLASSIFICATION_TOPSECRET)) {
+            return null;
+        }
+        // Rows without a classification are unrestricted
+        params.put(CLASSIFICATION_PARAM + "0", "");
+        StringBuilder condition = new StringBuilder("(")
+                .append(AbstractReadOnlyEntity.CLASSIFICATION_CODE_COLUMN_NAME)
+                .append(" IS NULL OR ")
+                .append(AbstractReadOnlyEntity.CLASSIFICATION_CODE_COLUMN_NAME)
+                .append(" IN (#{").append(CLASSIFICATION_PARAM).append("0}");
+        int i = 1;
+        for (String classificationCode : CLASSIFICATION_CODES) {
+            if (hasSecurityClearance(classificationCode)) {
+                params.put(CLASSIFICATION_PARAM + i, classificationCode);
+                condition.append(", #{").append(CLASSIFICATION_PARAM).append(i).append("}");
+                i++;
+            }
+        }
+        return condition.append("))").toString();
+    }
+
     /**
      * Determines if the the contents of a field need to be redacted or not
      * based on the security clearance assigned to the user and the minimum
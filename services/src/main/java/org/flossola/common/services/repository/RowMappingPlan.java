@@ -0,0 +1,255 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import java.sql.Array;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.flossola.common.messaging.CommonMessage;
+import org.flossola.common.services.repository.entities.AbstractEntityInfo;
+import org.flossola.common.services.repository.entities.AbstractReadOnlyEntity;
+import org.flossola.common.services.repository.entities.ColumnInfo;
+import org.flossola.common.services.repository.entities.EntityFactory;
+import org.flossola.common.services.repository.entities.EntityMetadata;
+import org.flossola.common.services.repository.entities.FieldAccessor;
+import org.flossola.common.utilities.StringUtility;
+import org.flossola.common.utilities.exceptions.SOLAException;
+
+/**
+ * Mapping plan used to populate an entity from a row of the generic result set
+ * returned by Mybatis. The plan binds each result column to the entity field,
+ * the field accessor and the type conversion required for the field. The plan
+ * is resolved once per entity class (see
+ * {@linkplain RepositoryUtility#getRowMappingPlan(java.lang.Class)}) so that
+ * mapping a row does not require any string processing or metadata lookups.
+ * <p>
+ * If the entity class overrides
+ * {@linkplain AbstractReadOnlyEntity#isRedactRequired(AbstractEntityInfo, String)}
+ * or
+ * {@linkplain AbstractReadOnlyEntity#setEntityFieldValue(AbstractEntityInfo, Object)}
+ * the plan calls the overriding methods for every column so that the entity
+ * customizations are respected. Otherwise the redact check is limited to
+ * columns marked with {@linkplain Redact} and the field values are set
+ * directly through the field accessors.</p>
+ *
+ * @author soladev
+ */
+public final class RowMappingPlan {
+
+    private static final int CONVERT_NONE = 0;
+    private static final int CONVERT_CHARACTER = 1;
+    private static final int CONVERT_SHORT = 2;
+    private static final int CONVERT_ARRAY = 3;
+    private final Class<?> entityClass;
+    private final String[] keys;
+    private final ColumnInfo[] columns;
+    private final FieldAccessor[] accessors;
+    private final int[] converters;
+    private final boolean[] redact;
+    private final boolean[] hasMinRedactClassification;
+    private final ColumnInfo redactCodeColumn;
+    private final EntityFactory<?> entityFactory;
+    private final boolean customRedact;
+    private final boolean customSetter;
+
+    /**
+     * Creates the mapping plan for the entity based on the entity metadata.
+     *
+     * @param metadata The metadata of the entity class
+     */
+    public RowMappingPlan(EntityMetadata metadata) {
+        this.entityClass = metadata.getEntityClass();
+        List<ColumnInfo> columnList = metadata.getColumns();
+        int size = columnList.size();
+        keys = new String[size];
+        columns = new ColumnInfo[size];
+        accessors = new FieldAccessor[size];
+        converters = new int[size];
+        redact = new boolean[size];
+        hasMinRedactClassification = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            ColumnInfo columnInfo = columnList.get(i);
+            // Mybatis returns the column names in lower case
+            keys[i] = columnInfo.getColumnName().toLowerCase(Locale.ENGLISH);
+            columns[i] = columnInfo;
+            accessors[i] = RepositoryUtility.getFieldAccessor(entityClass, columnInfo);
+            converters[i] = getConverter(columnInfo.getFieldType());
+            redact[i] = columnInfo.isRedact();
+            hasMinRedactClassification[i] = !StringUtility.isEmpty(columnInfo.getMinRedactClassification());
+        }
+        redactCodeColumn = metadata.getColumnInfo(AbstractReadOnlyEntity.REDACT_CODE_COLUMN_NAME);
+        entityFactory = metadata.getEntityFactory();
+        customRedact = isOverridden(entityClass, "isRedactRequired",
+                AbstractEntityInfo.class, String.class);
+        customSetter = isOverridden(entityClass, "setEntityFieldValue",
+                AbstractEntityInfo.class, Object.class);
+    }
+
+    /**
+     * Checks if the entity class overrides the specified method of
+     * {@linkplain AbstractReadOnlyEntity}.
+     */
+    private static boolean isOverridden(Class<?> entityClass, String methodName,
+            Class<?>... parameterTypes) {
+        try {
+            return !AbstractReadOnlyEntity.class.equals(
+                    entityClass.getMethod(methodName, parameterTypes).getDeclaringClass());
+        } catch (NoSuchMethodException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Determines the conversion required between the type Mybatis uses for a
+     * column value and the type of the entity field. Mybatis serves up
+     * Character fields as String and Short fields as Integer. Array columns are
+     * returned as {@linkplain java.sql.Array}.
+     */
+    private static int getConverter(Class<?> fieldType) {
+        int result = CONVERT_NONE;
+        if (Character.class.equals(fieldType) || char.class.equals(fieldType)) {
+            result = CONVERT_CHARACTER;
+        } else if (Short.class.equals(fieldType) || short.class.equals(fieldType)) {
+            result = CONVERT_SHORT;
+        } else if (fieldType.isArray() || Object.class.equals(fieldType)) {
+            result = CONVERT_ARRAY;
+        }
+        return result;
+    }
+
+    private static Object convert(int converter, Object value) throws Exception {
+        switch (converter) {
+            case CONVERT_CHARACTER:
+                if (value instanceof String) {
+                    value = new Character(value.toString().charAt(0));
+                }
+                break;
+            case CONVERT_SHORT:
+                if (value instanceof Integer) {
+                    value = new Short(value.toString());
+                }
+                break;
+            case CONVERT_ARRAY:
+                if (value instanceof Array) {
+                    value = ((Array) value).getArray();
+                }
+                break;
+            default:
+                break;
+        }
+        return value;
+    }
+
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    /**
+     * @return A new instance of the entity created using the entity factory
+     * from the entity metadata.
+     */
+    public AbstractReadOnlyEntity newEntity() {
+        return entityFactory.newInstance();
+    }
+
+    /**
+     * Populates the entity with the values from the row. Checks the user has
+     * the appropriate security clearance to view the row and redacts any
+     * fields the user is not permitted to see.
+     *
+     * @param entity The entity to populate. Must be an instance of the entity
+     * class for the plan.
+     * @param row The Mybatis Map object representing one row of a result set.
+     * @return true if the row was mapped to the entity, false if the row is
+     * empty or the user does not have security clearance to view the row.
+     */
+    public boolean mapRow(AbstractReadOnlyEntity entity, Map<String, Object> row) {
+        if (row == null || row.isEmpty()) {
+            return false;
+        }
+        // Ticket #3. Check if the user has the appropraite security clearance
+        // to view this record. If not, do not load the entity.
+        String classificationCode = (String) row.get(AbstractReadOnlyEntity.CLASSIFICATION_CODE_COLUMN_NAME);
+        if (!entity.hasSecurityClearance(classificationCode)) {
+            return false;
+        }
+        // Ticket #3. Obtain the redact code for this entity
+        String redactCode = (String) row.get(AbstractReadOnlyEntity.REDACT_CODE_COLUMN_NAME);
+        boolean overrideRedactCode = !StringUtility.isEmpty(redactCode);
+        entity.setRedacted(false);
+        for (int i = 0; i < keys.length; i++) {
+            Object value = row.get(keys[i]);
+            // Note that the row map only contains columns with non-null values
+            if (value == null && !row.containsKey(keys[i])) {
+                continue;
+            }
+            if ((redact[i] || customRedact) && entity.isRedactRequired(columns[i], redactCode)) {
+                // The field must have its value redacted
+                value = entity.getRedactedValue(columns[i]);
+                entity.setRedacted(true);
+            }
+            if (hasMinRedactClassification[i] && !overrideRedactCode) {
+                updateRedactCode(entity, columns[i]);
+            }
+            setValue(entity, i, value);
+        }
+        return true;
+    }
+
+    /**
+     * Sets the redact code for the entity to the minRedactClassification of
+     * the column unless a higher classification has already been set.
+     */
+    private void updateRedactCode(AbstractReadOnlyEntity entity, ColumnInfo columnInfo) {
+        if (redactCodeColumn != null && (StringUtility.isEmpty(entity.getRedactCode())
+                || columnInfo.getMinRedactClassification().compareTo(entity.getRedactCode()) > 0)) {
+            entity.setEntityFieldValue(redactCodeColumn, columnInfo.getMinRedactClassification());
+        }
+    }
+
+    private void setValue(AbstractReadOnlyEntity entity, int i, Object value) {
+        if (customSetter) {
+            entity.setEntityFieldValue(columns[i], value);
+            return;
+        }
+        try {
+            accessors[i].set(entity, convert(converters[i], value));
+        } catch (Exception ex) {
+            String valueType = "<null>";
+            if (value != null) {
+                valueType = value.getClass().getSimpleName();
+            }
+            throw new SOLAException(CommonMessage.GENERAL_UNEXPECTED,
+                    new Object[]{"Unable to set value to " + columns[i].setterName()
+                        + " for entity " + entity.toString(),
+                        "Field Type: " + columns[i].getFieldType().getSimpleName()
+                        + ", Value Type:" + valueType, ex});
+        }
+    }
+}
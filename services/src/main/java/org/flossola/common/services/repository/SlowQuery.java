@@ -0,0 +1,111 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Details of a slow SQL statement captured by {@linkplain SlowQueryRecorder}.
+ *
+ * @author soladev
+ */
+public class SlowQuery implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private final Date timestamp;
+    private final String statement;
+    private final String sql;
+    private final Map<String, String> parameters;
+    private final long rowCount;
+    private final long elapsedMicros;
+    private final boolean failed;
+
+    public SlowQuery(Date timestamp, String statement, String sql, Map<String, String> parameters,
+            long rowCount, long elapsedMicros, boolean failed) {
+        this.timestamp = timestamp;
+        this.statement = statement;
+        this.sql = sql;
+        this.parameters = Collections.unmodifiableMap(parameters);
+        this.rowCount = rowCount;
+        this.elapsedMicros = elapsedMicros;
+        this.failed = failed;
+    }
+
+    /**
+     * @return The time the statement completed.
+     */
+    public Date getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return The Mybatis statement id (e.g.
+     * org.flossola.common.services.repository.CommonMapper.getEntityList)
+     */
+    public String getStatement() {
+        return statement;
+    }
+
+    /**
+     * @return The SQL generated for the statement with ? placeholders for the
+     * bound parameters.
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @return The bound parameter values in placeholder order. Values of
+     * fields marked with {@linkplain Redact} are masked.
+     */
+    public Map<String, String> getParameters() {
+        return parameters;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public long getElapsedMicros() {
+        return elapsedMicros;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%1$tF %1$tT.%1$tL %2$s %3$dms rows=%4$d%5$s%n  %6$s%n  %7$s",
+                timestamp, statement, elapsedMicros / 1000, rowCount, failed ? " FAILED" : "",
+                sql, parameters);
+    }
+}
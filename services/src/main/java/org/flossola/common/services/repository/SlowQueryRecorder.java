@@ -0,0 +1,473 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.session.Configuration;
+import org.flossola.common.services.repository.entities.AbstractReadOnlyEntity;
+import org.flossola.common.services.repository.entities.ColumnInfo;
+import org.flossola.common.utilities.logging.LogUtility;
+
+/**
+ * Captures the SQL statements executed by the repositories that take longer
+ * than a configurable threshold. For each slow statement the recorder
+ * captures the SQL generated by {@linkplain CommonSqlProvider}, the bound
+ * parameter values, the row count and the elapsed time. By default, all
+ * parameter values are masked if the statement is for an entity class that
+ * has fields marked with {@linkplain Redact} (see
+ * {@linkplain #setMaskRedactedEntities(boolean)}).
+ * <p>
+ * The SQL and parameters are captured from the statement that was executed
+ * by the {@linkplain SlowQueryInterceptor} Mybatis plugin. Statements
+ * executed without the plugin registered are recorded without the SQL.</p>
+ * <p>
+ * Slow statements are held in a bounded in memory ring buffer (see
+ * {@linkplain #getSlowQueries()}) and can optionally be written to a rolling
+ * log file (see {@linkplain #setLogFile(String, int, int)}). The recorder is
+ * disabled until a threshold is set using
+ * {@linkplain #setThresholdMillis(long)}. The recorder adds no overhead
+ * while it is disabled.</p>
+ * <p>
+ * The recorder is initially configured from the system properties (see
+ * {@linkplain #configure(Properties)}), e.g.
+ * {@code -Dsola.slowQuery.thresholdMillis=500}. The threshold and the log file
+ * can also be changed at runtime through the
+ * {@linkplain MapperStatisticsMXBean}, which also reports the captured slow
+ * statements.</p>
+ *
+ * @author soladev
+ */
+public final class SlowQueryRecorder {
+
+    public static final int DEFAULT_CAPACITY = 100;
+    public static final int DEFAULT_LOG_LIMIT_BYTES = 10 * 1024 * 1024;
+    public static final int DEFAULT_LOG_COUNT = 5;
+    /**
+     * Prefix of the system properties used to configure the recorder.
+     */
+    public static final String PROPERTY_PREFIX = "sola.slowQuery.";
+    public static final String THRESHOLD_PROPERTY = PROPERTY_PREFIX + "thresholdMillis";
+    public static final String CAPACITY_PROPERTY = PROPERTY_PREFIX + "capacity";
+    public static final String MASK_PROPERTY = PROPERTY_PREFIX + "maskRedactedEntities";
+    public static final String LOG_FILE_PROPERTY = PROPERTY_PREFIX + "logFile";
+    public static final String LOG_LIMIT_PROPERTY = PROPERTY_PREFIX + "logLimitBytes";
+    public static final String LOG_COUNT_PROPERTY = PROPERTY_PREFIX + "logCount";
+    private static final String MASK = "*****";
+    private static final String SQL_NOT_CAPTURED = "<SQL not captured>";
+    private static final int MAX_VALUE_LENGTH = 200;
+    private static final int MAX_CAPTURED = 16;
+    private static final SlowQueryRecorder INSTANCE = new SlowQueryRecorder();
+    private static final Map<Configuration, Boolean> registered =
+            new WeakHashMap<Configuration, Boolean>();
+    private final ThreadLocal<LinkedList<BoundSql>> captured = new ThreadLocal<LinkedList<BoundSql>>();
+    private volatile long thresholdNanos = 0;
+    private volatile boolean maskRedactedEntities = true;
+    private SlowQuery[] buffer = new SlowQuery[DEFAULT_CAPACITY];
+    private int next = 0;
+    private int size = 0;
+    private FileHandler fileHandler = null;
+    private String logFile = null;
+
+    private SlowQueryRecorder() {
+        configure(System.getProperties());
+    }
+
+    public static SlowQueryRecorder getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Adds the {@linkplain SlowQueryInterceptor} to the Mybatis configuration
+     * if it has not already been added.
+     *
+     * @param configuration The Mybatis configuration to register the plugin
+     * with.
+     */
+    public static void register(Configuration configuration) {
+        synchronized (registered) {
+            if (configuration != null && !registered.containsKey(configuration)) {
+                configuration.addInterceptor(new SlowQueryInterceptor());
+                registered.put(configuration, Boolean.TRUE);
+            }
+        }
+    }
+
+    /**
+     * Configures the recorder from the {@value #PROPERTY_PREFIX} properties.
+     * Properties that are not set leave the current configuration unchanged.
+     * <ul>
+     * <li>{@value #THRESHOLD_PROPERTY} - see {@linkplain #setThresholdMillis(long)}</li>
+     * <li>{@value #CAPACITY_PROPERTY} - see {@linkplain #setCapacity(int)}</li>
+     * <li>{@value #MASK_PROPERTY} - see {@linkplain #setMaskRedactedEntities(boolean)}</li>
+     * <li>{@value #LOG_FILE_PROPERTY}, {@value #LOG_LIMIT_PROPERTY} and
+     * {@value #LOG_COUNT_PROPERTY} - see {@linkplain #setLogFile(String, int, int)}</li>
+     * </ul>
+     * Invalid values are logged and ignored.
+     *
+     * @param properties The properties to read. e.g. the system properties
+     */
+    void configure(Properties properties) {
+        try {
+            String value = properties.getProperty(THRESHOLD_PROPERTY);
+            if (value != null) {
+                setThresholdMillis(Long.parseLong(value.trim()));
+            }
+            value = properties.getProperty(CAPACITY_PROPERTY);
+            if (value != null) {
+                setCapacity(Integer.parseInt(value.trim()));
+            }
+            value = properties.getProperty(MASK_PROPERTY);
+            if (value != null) {
+                setMaskRedactedEntities(Boolean.parseBoolean(value.trim()));
+            }
+            value = properties.getProperty(LOG_FILE_PROPERTY);
+            if (value != null) {
+                setLogFile(value.trim(),
+                        Integer.parseInt(properties.getProperty(LOG_LIMIT_PROPERTY,
+                        Integer.toString(DEFAULT_LOG_LIMIT_BYTES)).trim()),
+                        Integer.parseInt(properties.getProperty(LOG_COUNT_PROPERTY,
+                        Integer.toString(DEFAULT_LOG_COUNT)).trim()));
+            }
+        } catch (NumberFormatException ex) {
+            LogUtility.log("Invalid " + PROPERTY_PREFIX + " property value " + ex.getMessage(),
+                    Level.WARNING);
+        } catch (IOException ex) {
+            LogUtility.log("Unable to open the slow query log file " + ex.getMessage(),
+                    Level.WARNING);
+        }
+    }
+
+    /**
+     * @return The threshold in milliseconds or 0 if the recorder is disabled.
+     */
+    public long getThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+
+    /**
+     * Sets the threshold for capturing slow statements. Statements that take
+     * longer than the threshold are captured.
+     *
+     * @param thresholdMillis The threshold in milliseconds. Use 0 to disable
+     * the recorder.
+     */
+    public void setThresholdMillis(long thresholdMillis) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, thresholdMillis));
+    }
+
+    public boolean isMaskRedactedEntities() {
+        return maskRedactedEntities;
+    }
+
+    /**
+     * Indicates if all parameter values should be masked for statements on
+     * entity classes that have one or more fields marked with
+     * {@linkplain Redact}. If false, only the parameters that correspond to
+     * the redacted fields are masked. Default is true as parameter names
+     * in free form where clauses do not necessarily match the field names.
+     *
+     * @param maskRedactedEntities true to mask all parameter values.
+     */
+    public void setMaskRedactedEntities(boolean maskRedactedEntities) {
+        this.maskRedactedEntities = maskRedactedEntities;
+    }
+
+    /**
+     * Indicates if the statement time exceeds the threshold and should be
+     * captured.
+     */
+    public boolean isSlow(long nanos) {
+        long threshold = thresholdNanos;
+        return threshold > 0 && nanos > threshold;
+    }
+
+    /**
+     * Sets the maximum number of slow statements to hold in memory. Any slow
+     * statements already captured are discarded.
+     *
+     * @param capacity The size of the ring buffer.
+     */
+    public synchronized void setCapacity(int capacity) {
+        buffer = new SlowQuery[Math.max(1, capacity)];
+        next = 0;
+        size = 0;
+    }
+
+    /**
+     * Writes the slow statements to a rolling log file as well as the in
+     * memory ring buffer.
+     *
+     * @param pattern The file name pattern. See
+     * {@linkplain java.util.logging.FileHandler} (e.g.
+     * %h/sola/logs/slow-query%g.log). Use null to stop writing to the log file.
+     * @param limitBytes The approximate maximum size of each log file.
+     * @param count The number of log files to keep.
+     * @throws IOException If the log file cannot be opened.
+     */
+    public synchronized void setLogFile(String pattern, int limitBytes, int count) throws IOException {
+        if (fileHandler != null) {
+            fileHandler.close();
+            fileHandler = null;
+            logFile = null;
+        }
+        if (pattern != null && pattern.length() > 0) {
+            fileHandler = new FileHandler(pattern, limitBytes, count, true);
+            fileHandler.setFormatter(new Formatter() {
+                @Override
+                public String format(LogRecord record) {
+                    return record.getMessage() + String.format("%n");
+                }
+            });
+            logFile = pattern;
+        }
+    }
+
+    /**
+     * Writes the slow statements to a rolling log file using the default size
+     * limit and number of files. See {@linkplain #setLogFile(String, int, int)}.
+     *
+     * @param pattern The file name pattern or null to stop writing to the log
+     * file.
+     * @throws IOException If the log file cannot be opened.
+     */
+    public void setLogFile(String pattern) throws IOException {
+        setLogFile(pattern, DEFAULT_LOG_LIMIT_BYTES, DEFAULT_LOG_COUNT);
+    }
+
+    /**
+     * @return The file name pattern of the log file or null if the slow
+     * statements are not written to a log file.
+     */
+    public synchronized String getLogFile() {
+        return logFile;
+    }
+
+    /**
+     * @return The slow statements captured in the ring buffer with the most
+     * recent first.
+     */
+    public synchronized List<SlowQuery> getSlowQueries() {
+        List<SlowQuery> result = new ArrayList<SlowQuery>(size);
+        for (int i = 1; i <= size; i++) {
+            result.add(buffer[(next - i + buffer.length) % buffer.length]);
+        }
+        return result;
+    }
+
+    /**
+     * Removes all slow statements from the ring buffer.
+     */
+    public synchronized void clear() {
+        buffer = new SlowQuery[buffer.length];
+        next = 0;
+        size = 0;
+    }
+
+    /**
+     * Holds the BoundSql of a statement that is about to be executed so it can
+     * be recorded if the statement turns out to be slow. Only the most recent
+     * statements executed by the current thread are held. Called by
+     * {@linkplain SlowQueryInterceptor}.
+     *
+     * @param boundSql The BoundSql for the statement.
+     */
+    void capture(BoundSql boundSql) {
+        if (thresholdNanos == 0 || boundSql == null) {
+            return;
+        }
+        LinkedList<BoundSql> list = captured.get();
+        if (list == null) {
+            list = new LinkedList<BoundSql>();
+            captured.set(list);
+        }
+        list.addFirst(boundSql);
+        if (list.size() > MAX_CAPTURED) {
+            list.removeLast();
+        }
+    }
+
+    /**
+     * Removes the most recent BoundSql captured for the parameter object.
+     */
+    private BoundSql takeCaptured(Object parameter) {
+        LinkedList<BoundSql> list = captured.get();
+        if (list == null) {
+            return null;
+        }
+        BoundSql result = null;
+        Iterator<BoundSql> it = list.iterator();
+        while (it.hasNext()) {
+            BoundSql boundSql = it.next();
+            if (boundSql.getParameterObject() == parameter) {
+                it.remove();
+                result = boundSql;
+                break;
+            }
+        }
+        if (list.isEmpty()) {
+            captured.remove();
+        }
+        return result;
+    }
+
+    /**
+     * Captures the statement if it exceeded the threshold.
+     *
+     * @param statementId The id of the Mybatis statement (i.e. the mapper
+     * class name and method name)
+     * @param parameter The parameter object for the statement. Either an
+     * entity or a parameter map.
+     * @param nanos The time taken to execute the statement.
+     * @param rowCount The number of rows returned or affected by the
+     * statement.
+     * @param failed true if the statement raised an exception.
+     */
+    public void record(String statementId, Object parameter,
+            long nanos, long rowCount, boolean failed) {
+        if (thresholdNanos == 0) {
+            return;
+        }
+        BoundSql boundSql = takeCaptured(parameter);
+        if (!isSlow(nanos)) {
+            return;
+        }
+        SlowQuery query;
+        try {
+            query = new SlowQuery(new Date(), statementId,
+                    boundSql == null ? SQL_NOT_CAPTURED : boundSql.getSql(),
+                    getParameters(boundSql, parameter), rowCount,
+                    TimeUnit.NANOSECONDS.toMicros(nanos), failed);
+        } catch (RuntimeException ex) {
+            // Never allow the capture to fail the repository call
+            LogUtility.log("Unable to capture slow query " + statementId, Level.WARNING);
+            return;
+        }
+        add(query);
+    }
+
+    private synchronized void add(SlowQuery query) {
+        buffer[next] = query;
+        next = (next + 1) % buffer.length;
+        size = Math.min(size + 1, buffer.length);
+        if (fileHandler != null) {
+            fileHandler.publish(new LogRecord(Level.INFO, query.toString()));
+            fileHandler.flush();
+        }
+    }
+
+    /**
+     * Obtains the values of the bound parameters. The parameter values are
+     * read from the parameter map or from the fields of the entity.
+     */
+    private Map<String, String> getParameters(BoundSql boundSql, Object parameter) {
+        Map<String, String> result = new LinkedHashMap<String, String>();
+        List<ParameterMapping> mappings = boundSql == null ? null : boundSql.getParameterMappings();
+        if (mappings == null) {
+            return result;
+        }
+        Class<?> entityClass = null;
+        if (parameter instanceof AbstractReadOnlyEntity) {
+            entityClass = parameter.getClass();
+        } else if (parameter instanceof Map) {
+            Object paramClass = ((Map) parameter).get(CommonSqlProvider.PARAM_ENTITY_CLASS);
+            entityClass = paramClass instanceof Class ? (Class<?>) paramClass : null;
+        }
+        boolean maskAll = maskRedactedEntities && hasRedactColumns(entityClass);
+        for (ParameterMapping mapping : mappings) {
+            String name = mapping.getProperty();
+            ColumnInfo columnInfo = getColumnInfo(entityClass, name);
+            Object value;
+            if (boundSql.hasAdditionalParameter(name)) {
+                value = boundSql.getAdditionalParameter(name);
+            } else if (parameter instanceof Map) {
+                value = ((Map) parameter).get(name);
+            } else if (columnInfo != null && parameter instanceof AbstractReadOnlyEntity) {
+                value = ((AbstractReadOnlyEntity) parameter).getEntityFieldValue(columnInfo);
+            } else {
+                value = parameter;
+            }
+            result.put(name, value != null && (maskAll || (columnInfo != null && columnInfo.isRedact()))
+                    ? MASK : format(value));
+        }
+        return result;
+    }
+
+    private boolean hasRedactColumns(Class<?> entityClass) {
+        if (entityClass == null || !AbstractReadOnlyEntity.class.isAssignableFrom(entityClass)) {
+            return false;
+        }
+        for (ColumnInfo columnInfo : RepositoryUtility.getColumns(
+                (Class<? extends AbstractReadOnlyEntity>) entityClass)) {
+            if (columnInfo.isRedact()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ColumnInfo getColumnInfo(Class<?> entityClass, String name) {
+        if (entityClass == null || !AbstractReadOnlyEntity.class.isAssignableFrom(entityClass)) {
+            return null;
+        }
+        return RepositoryUtility.getColumnInfo(
+                (Class<? extends AbstractReadOnlyEntity>) entityClass, name);
+    }
+
+    private String format(Object value) {
+        if (value == null) {
+            return "null";
+        }
+        if (value instanceof byte[]) {
+            return "byte[" + ((byte[]) value).length + "]";
+        }
+        if (value instanceof Collection) {
+            return "[" + ((Collection) value).size() + " values]";
+        }
+        String result = value instanceof Date ? String.format("%1$tF %1$tT.%1$tL", value)
+                : value.toString();
+        return result.length() > MAX_VALUE_LENGTH
+                ? result.substring(0, MAX_VALUE_LENGTH) + "..." : result;
+    }
+}
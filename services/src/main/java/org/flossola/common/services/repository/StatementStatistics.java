@@ -0,0 +1,167 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import java.beans.ConstructorProperties;
+import java.io.Serializable;
+
+/**
+ * Snapshot of the statistics recorded by {@linkplain MapperStatistics} for one
+ * kind of mapper statement (e.g. getEntityList) against one entity table.
+ * Latencies are in microseconds. The percentiles are estimated from the
+ * latency histogram and are the upper bound of the histogram bucket that
+ * contains the percentile, so they are accurate to within a factor of 2.
+ *
+ * @author soladev
+ */
+public class StatementStatistics implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private final String statement;
+    private final String table;
+    private final long count;
+    private final long errorCount;
+    private final long rowCount;
+    private final long totalMicros;
+    private final long maxMicros;
+    private final long[] histogram;
+
+    /**
+     * @param statement The mapper statement kind (i.e. the CommonMapper method
+     * name)
+     * @param table The entity table or an empty string if the table could not
+     * be determined.
+     * @param count The number of statements executed
+     * @param errorCount The number of statements that failed
+     * @param rowCount The number of rows returned or affected
+     * @param totalMicros The total time spent executing the statements
+     * @param maxMicros The longest time spent executing a single statement
+     * @param histogram The latency histogram. See
+     * {@linkplain #getHistogram()}.
+     */
+    @ConstructorProperties({"statement", "table", "count", "errorCount", "rowCount",
+        "totalMicros", "maxMicros", "histogram"})
+    public StatementStatistics(String statement, String table, long count, long errorCount,
+            long rowCount, long totalMicros, long maxMicros, long[] histogram) {
+        this.statement = statement;
+        this.table = table;
+        this.count = count;
+        this.errorCount = errorCount;
+        this.rowCount = rowCount;
+        this.totalMicros = totalMicros;
+        this.maxMicros = maxMicros;
+        this.histogram = histogram;
+    }
+
+    public String getStatement() {
+        return statement;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public long getTotalMicros() {
+        return totalMicros;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros;
+    }
+
+    public long getMeanMicros() {
+        return count == 0 ? 0 : totalMicros / count;
+    }
+
+    public long getP50Micros() {
+        return getPercentileMicros(50);
+    }
+
+    public long getP95Micros() {
+        return getPercentileMicros(95);
+    }
+
+    public long getP99Micros() {
+        return getPercentileMicros(99);
+    }
+
+    /**
+     * The latency histogram. Bucket 0 counts the statements that took less
+     * than 1 microsecond and bucket i counts the statements that took at least
+     * 2^(i-1) and less than 2^i microseconds. The last bucket also counts all
+     * longer statements.
+     */
+    public long[] getHistogram() {
+        return histogram.clone();
+    }
+
+    /**
+     * Estimates the latency percentile from the histogram.
+     *
+     * @param percentile The percentile between 0 and 100.
+     * @return The upper bound in microseconds of the bucket containing the
+     * percentile, or 0 if no statements have been recorded.
+     */
+    public long getPercentileMicros(double percentile) {
+        long total = 0;
+        for (long bucketCount : histogram) {
+            total += bucketCount;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= Math.max(target, 1)) {
+                return Math.min(1L << i, Math.max(maxMicros, 1));
+            }
+        }
+        return maxMicros;
+    }
+
+    @Override
+    public String toString() {
+        return statement + (table.length() == 0 ? "" : " " + table) + ": count=" + count
+                + ", errors=" + errorCount + ", rows=" + rowCount + ", mean=" + getMeanMicros()
+                + "us, p95=" + getP95Micros() + "us, max=" + maxMicros + "us";
+    }
+}
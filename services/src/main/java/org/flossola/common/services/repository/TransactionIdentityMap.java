@@ -0,0 +1,165 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.transaction.TransactionSynchronizationRegistry;
+import org.flossola.common.services.LocalInfo;
+import org.flossola.common.services.repository.entities.AbstractReadOnlyEntity;
+
+/**
+ * Transaction scoped identity map used by {@linkplain CommonRepositoryImpl}
+ * when the identity map is enabled (see
+ * {@linkplain CommonRepositoryImpl#setIdentityMapEnabled(boolean)}). Entities
+ * loaded by id are held in the Transaction Synchronization Registry keyed by
+ * entity class, language code and id so that subsequent loads of the same
+ * entity within the transaction return the instance that has already been
+ * loaded. The map is discarded with the transaction and is cleared whenever
+ * an entity is saved or dynamic SQL is executed. If there is no transaction,
+ * the identity map is not used.
+ * <p>
+ * Entities loaded while load inhibitors are active (see
+ * {@linkplain LoadInhibitorScope}) may be missing some of their children, so
+ * the identity map is bypassed while inhibitors are set. The map itself can
+ * be safely accessed by more than one thread.</p>
+ * <p>
+ * The hit and miss counts are totals for all transactions and can be used to
+ * measure the effectiveness of the identity map during load testing.</p>
+ *
+ * @author soladev
+ */
+public final class TransactionIdentityMap {
+
+    private static final Object MAP_KEY = new Object();
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private TransactionIdentityMap() {
+    }
+
+    private static String getKey(Class<?> entityClass, String id, String languageCode) {
+        return entityClass.getName() + "|" + languageCode + "|" + id;
+    }
+
+    private static Map<String, Object> getMap(boolean create) {
+        TransactionSynchronizationRegistry registry = LocalInfo.getTransactionRegistry();
+        if (registry == null) {
+            return null;
+        }
+        Map<String, Object> map = (Map<String, Object>) registry.getResource(MAP_KEY);
+        if (map == null && create) {
+            map = new ConcurrentHashMap<String, Object>();
+            registry.putResource(MAP_KEY, map);
+        }
+        return map;
+    }
+
+    /**
+     * @return true if entities can be obtained from or added to the identity
+     * map. See the class description.
+     */
+    private static boolean isUsable() {
+        return LoadInhibitorScope.getInhibitors().isEmpty();
+    }
+
+    /**
+     * Returns the entity from the identity map for the current transaction.
+     *
+     * @param entityClass The class of the entity
+     * @param id The id of the entity
+     * @param languageCode The language code the entity was loaded with.
+     * @return The entity or null if the entity has not been loaded in the
+     * current transaction or the identity map cannot be used.
+     */
+    static <T extends AbstractReadOnlyEntity> T get(Class<T> entityClass, String id,
+            String languageCode) {
+        Map<String, Object> map = isUsable() ? getMap(true) : null;
+        if (map == null) {
+            // No transaction or the identity map cannot be used
+            return null;
+        }
+        Object entity = map.get(getKey(entityClass, id, languageCode));
+        if (entity != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return entityClass.isInstance(entity) ? (T) entity : null;
+    }
+
+    /**
+     * Adds the entity to the identity map for the current transaction.
+     *
+     * @param entityClass The class of the entity
+     * @param id The id of the entity
+     * @param languageCode The language code the entity was loaded with.
+     * @param entity The entity to add.
+     */
+    static <T extends AbstractReadOnlyEntity> void put(Class<T> entityClass, String id,
+            String languageCode, T entity) {
+        Map<String, Object> map = entity == null || !isUsable() ? null : getMap(true);
+        if (map != null) {
+            map.put(getKey(entityClass, id, languageCode), entity);
+        }
+    }
+
+    /**
+     * Removes all entities from the identity map for the current transaction.
+     */
+    static void clear() {
+        Map<String, Object> map = getMap(false);
+        if (map != null) {
+            map.clear();
+        }
+    }
+
+    /**
+     * @return The number of loads that were satisfied from the identity map.
+     */
+    public static long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of loads that were not satisfied from the identity
+     * map.
+     */
+    public static long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Resets the hit and miss counts.
+     */
+    public static void resetCounts() {
+        hits.set(0);
+        misses.set(0);
+    }
+}
@@ -27,9 +27,9 @@
  */
 package org.flossola.common.services.repository.entities;
 
+import java.util.BitSet;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import org.flossola.common.utilities.DateUtility;
 import org.flossola.common.services.EntityAction;
 import org.flossola.common.services.repository.RepositoryUtility;
@@ -47,18 +47,28 @@ public abstract class AbstractEntity extends AbstractReadOnlyEntity {
     private boolean updateBeforeDelete = false;
     private boolean forceRefresh = false;
     protected EntityAction entityAction = null;
-    private Map<String, Object> originalValues = new HashMap<String, Object>();
+    /**
+     * The values of the updatable and id columns when the entity was loaded,
+     * indexed by the position of the column in {@linkplain #getColumns()}.
+     * Null if the entity has not been loaded.
+     */
+    private Object[] originalValues = null;
 
     /**
-     * Snapshots the values assigned to the columns of the entity. Used during
-     * {@linkplain #isModified()} to determine if any data modifications have
-     * occurred to the entity or not.
+     * Snapshots the values assigned to the updatable and id columns of the
+     * entity. Used during {@linkplain #isModified()} to determine if any data
+     * modifications have occurred to the entity or not.
      */
     private void snapshotValues() {
-        originalValues.clear();
-        for (ColumnInfo columnInfo : getColumns()) {
-            originalValues.put(columnInfo.getFieldName(), getEntityFieldValue(columnInfo));
+        List<ColumnInfo> columns = getColumns();
+        Object[] values = new Object[columns.size()];
+        for (int i = 0; i < values.length; i++) {
+            ColumnInfo columnInfo = columns.get(i);
+            if (columnInfo.isUpdatable() || columnInfo.isIdColumn()) {
+                values[i] = getEntityFieldValue(columnInfo);
+            }
         }
+        originalValues = values;
     }
 
     /**
@@ -85,7 +95,7 @@ public abstract class AbstractEntity extends AbstractReadOnlyEntity {
      */
     public Boolean isModified() {
         boolean result = false;
-        if (originalValues.isEmpty()) {
+        if (originalValues == null) {
             if (isNew() || !noAction()) {
                 // No original values have been captured for the entity. If it is a new entity or
                 // the EntityAction has been explicitly set, then flag the entity as modified. 
@@ -95,38 +105,13 @@ public abstract class AbstractEntity extends AbstractReadOnlyEntity {
                 result = true;
             }
         } else {
-            for (ColumnInfo columnInfo : getColumns()) {
-                if (!columnInfo.isUpdatable()) {
-                    // This column is not updatable, so don't bother checking if
-                    // it has changed. 
-                    continue; 
-                }
-                Object newValue = getEntityFieldValue(columnInfo);
-                Object originalValue = originalValues.get(columnInfo.getFieldName());
-                if (Date.class.isAssignableFrom(columnInfo.getFieldType())) {
-                    // Treat dates as a special case as the resolution of a date
-                    // retrieved from the Db can be up to millisecond. 
-                    result = !DateUtility.areEqual((Date) originalValue, (Date) newValue);
-                } else if (columnInfo.getFieldType().isArray()) {
-                    //Issue #192 Compare two arrays to determine if they are equal or not.
-                    // Need to test geometry columns as a special case. 
-                    if (columnInfo.isGeometryColumn()) {
-                        result = !RepositoryUtility.geometriesAreEqual(originalValue, newValue);
-                    } else {
-                        result = !RepositoryUtility.arraysAreEqual(columnInfo.getFieldType(),
-                                originalValue, newValue);
-                    }
-                } else if ((newValue != null && !newValue.equals(originalValue))
-                        || (originalValue != null && !originalValue.equals(newValue))) {
-                    result = true;
-                }
-                if (result) {
-                    // Debugging statement
-//                    System.err.println("Change detected on " + this.getTableName()
-//                            + ", column=" + columnInfo.getFieldName()
-//                            + ", old val=" + originalValue + ", new val="
-//                            + newValue);
+            List<ColumnInfo> columns = getColumns();
+            for (int i = 0; i < columns.size(); i++) {
+                ColumnInfo columnInfo = columns.get(i);
+                // Don't bother checking columns that are not updatable. 
+                if (columnInfo.isUpdatable() && isColumnModified(i, columnInfo)) {
                     // One of the columns has been updated. Break out of the loop.
+                    result = true;
                     break;
                 }
             }
@@ -134,6 +119,68 @@ public abstract class AbstractEntity extends AbstractReadOnlyEntity {
         return result;
     }
 
+    /**
+     * Determines which updatable columns have been modified since the entity
+     * was loaded. If the entity has not been loaded (i.e. there are no
+     * original values to compare with), all updatable columns are treated as
+     * modified.
+     *
+     * @return The positions of the modified columns in
+     * {@linkplain #getColumns()}.
+     */
+    public BitSet getModifiedColumns() {
+        List<ColumnInfo> columns = getColumns();
+        BitSet result = new BitSet(columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            ColumnInfo columnInfo = columns.get(i);
+            if (columnInfo.isUpdatable() && (originalValues == null || isColumnModified(i, columnInfo))) {
+                result.set(i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compares the current value of the column with the original value. 
+     */
+    private boolean isColumnModified(int index, ColumnInfo columnInfo) {
+        boolean result;
+        Object newValue = getEntityFieldValue(columnInfo);
+        Object originalValue = originalValues[index];
+        if (Date.class.isAssignableFrom(columnInfo.getFieldType())) {
+            // Treat dates as a special case as the resolution of a date
+            // retrieved from the Db can be up to millisecond. 
+            result = !DateUtility.areEqual((Date) originalValue, (Date) newValue);
+        } else if (columnInfo.getFieldType().isArray()) {
+            //Issue #192 Compare two arrays to determine if they are equal or not.
+            // Need to test geometry columns as a special case. 
+            if (columnInfo.isGeometryColumn()) {
+                result = !RepositoryUtility.geometriesAreEqual(originalValue, newValue);
+            } else {
+                result = !RepositoryUtility.arraysAreEqual(columnInfo.getFieldType(),
+                        originalValue, newValue);
+            }
+        } else {
+            result = (newValue != null && !newValue.equals(originalValue))
+                    || (originalValue != null && !originalValue.equals(newValue));
+        }
+        return result;
+    }
+
+    /**
+     * Indicates if the column must be included in the UPDATE statement for the
+     * entity even if its value has not been modified. By default this is
+     * determined from the column metadata (see
+     * {@linkplain org.flossola.common.services.repository.AlwaysUpdated}). Can
+     * be overridden in descendent classes.
+     *
+     * @param columnInfo The column to check
+     * @return true if the column is always updated.
+     */
+    public boolean isAlwaysUpdated(ColumnInfo columnInfo) {
+        return columnInfo.isAlwaysUpdated();
+    }
+
     /**
      * Checks if the id values on the entity have changed since the entity was
      * retrieved from the database. Uses the snapshot data to make this
@@ -145,10 +192,15 @@ public abstract class AbstractEntity extends AbstractReadOnlyEntity {
      */
     public Boolean hasIdChanged() {
         boolean result = false;
-        if (!originalValues.isEmpty()) {
-            for (ColumnInfo columnInfo : getIdColumns()) {
+        if (originalValues != null) {
+            List<ColumnInfo> columns = getColumns();
+            for (int i = 0; i < columns.size(); i++) {
+                ColumnInfo columnInfo = columns.get(i);
+                if (!columnInfo.isIdColumn()) {
+                    continue;
+                }
                 Object newValue = getEntityFieldValue(columnInfo);
-                Object originalValue = originalValues.get(columnInfo.getFieldName());
+                Object originalValue = originalValues[i];
                 if ((newValue != null && !newValue.equals(originalValue))
                         || (originalValue != null && !originalValue.equals(newValue))) {
                     // One of the columns has been updated. Indicate the entity is modified. 
@@ -32,7 +32,6 @@
 package org.flossola.common.services.repository.entities;
 
 import java.io.Serializable;
-import java.lang.reflect.Method;
 import java.sql.Array;
 import java.util.List;
 import java.util.Map;
@@ -120,7 +119,7 @@ public abstract class AbstractReadOnlyEntity implements Serializable {
 
     /**
      * Obtains the value from the field indicated by the entityInfo parameter
-     * using reflection.
+     * using the cached {@linkplain FieldAccessor} for the field.
      *
      * @param entityInfo Details of the field / column to get the value from.
      * @return The value of the field or an exception if the field indicated by
@@ -129,8 +128,7 @@ public abstract class AbstractReadOnlyEntity implements Serializable {
     public Object getEntityFieldValue(AbstractEntityInfo entityInfo) {
         Object result = null;
         try {
-            Method getter = this.getClass().getMethod(entityInfo.getterName());
-            result = getter.invoke(this);
+            result = RepositoryUtility.getFieldAccessor(this.getClass(), entityInfo).get(this);
         } catch (Exception ex) {
             if (!getValueException) {
                 // this.toString calls getEntityFieldValue. getValueException is used to avoid
@@ -145,9 +143,10 @@ public abstract class AbstractReadOnlyEntity implements Serializable {
     }
 
     /**
-     * Sets the value of a field to the specified object using reflection. If
-     * the field indicated by the entityInfo does not exist or the type of the
-     * value does not match the field type an exception is raised.
+     * Sets the value of a field to the specified object using the cached
+     * {@linkplain FieldAccessor} for the field. If the field indicated by the
+     * entityInfo does not exist or the type of the value does not match the
+     * field type an exception is raised.
      * <p>
      * Note that Mybatis treats char fields as strings. To avoid an unnecessary
      * type mismatch exception when setting a Character field, this method
@@ -182,8 +181,7 @@ public abstract class AbstractReadOnlyEntity implements Serializable {
                 value = ((Array) value).getArray();
             }
 
-            Method setter = this.getClass().getMethod(entityInfo.setterName(), fieldType);
-            setter.invoke(this, value);
+            RepositoryUtility.getFieldAccessor(this.getClass(), entityInfo).set(this, value);
         } catch (Exception ex) {
             String valueType = "<null>";
             if (value != null) {
@@ -225,7 +223,7 @@ public abstract class AbstractReadOnlyEntity implements Serializable {
      * {@linkplain javax.persistence.Id} annotation.
      */
     public List<ColumnInfo> getIdColumns() {
-        return RepositoryUtility.getIdColumns(this.getClass(), getColumns());
+        return RepositoryUtility.getIdColumns(this.getClass());
     }
 
     /**
@@ -33,6 +33,7 @@ package org.flossola.common.services.repository.entities;
 
 import javax.persistence.Column;
 import org.flossola.common.services.LocalInfo;
+import org.flossola.common.services.repository.AlwaysUpdated;
 
 /**
  * Extends {@linkplain AbstractEntity} to provide fields common to versioned entities. This includes
@@ -42,11 +43,29 @@ import org.flossola.common.services.LocalInfo;
  */
 public abstract class AbstractVersionedEntity extends AbstractEntity {
 
-    @Column(name = "rowversion")
+    /**
+     * The name of the column that contains the row version used for optimistic locking.
+     */
+    public static final String ROW_VERSION_COLUMN_NAME = "rowversion";
+    /**
+     * The name of the column that contains the user that last changed the entity.
+     */
+    public static final String CHANGE_USER_COLUMN_NAME = "change_user";
+    /**
+     * The name of the column that contains the unique identifier of the row.
+     */
+    public static final String ROW_ID_COLUMN_NAME = "rowidentifier";
+
+    // The rowversion and change_user columns are always included in the UPDATE statement as
+    // the database change tracking triggers use these values to check the row version and
+    // record the user that made the change. 
+    @Column(name = ROW_VERSION_COLUMN_NAME)
+    @AlwaysUpdated
     private int rowVersion;
-    @Column(name = "change_user")
+    @Column(name = CHANGE_USER_COLUMN_NAME)
+    @AlwaysUpdated
     private String changeUser;
-    @Column(name = "rowidentifier")
+    @Column(name = ROW_ID_COLUMN_NAME)
     private String rowId;
 
     public AbstractVersionedEntity() {
@@ -50,6 +50,7 @@ public class ChildEntityInfo extends AbstractEntityInfo {
     private String childIdField;
     private Class<? extends AbstractEntity> manyToManyClass;
     private Boolean readOnly;
+    private boolean lazy = false;
     private Class<? extends AbstractEJBLocal> EJBLocalClass;
     private String loadMethod;
     private String saveMethod;
@@ -151,6 +152,18 @@ public class ChildEntityInfo extends AbstractEntityInfo {
         this.readOnly = readOnly;
     }
 
+    /**
+     * @return True if the child list should be loaded when it is first accessed rather than
+     * with the parent entity.
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    public void setLazy(boolean lazy) {
+        this.lazy = lazy;
+    }
+
     public ParameterizedType getParameterTypes() {
         return parameterTypes;
     }
@@ -49,6 +49,7 @@ public class ColumnInfo extends AbstractEntityInfo {
     private Boolean updatable;
     private String onSelectFunction;
     private String onChangeFunction;
+    private boolean alwaysUpdated = false;
 
     /**
      * Default constructor.
@@ -133,6 +134,18 @@ public class ColumnInfo extends AbstractEntityInfo {
         this.onChangeFunction = onChangeFunction;
     }
 
+    /**
+     * Indicates if the column must be included in every UPDATE statement for
+     * the entity. See {@linkplain org.flossola.common.services.repository.AlwaysUpdated}.
+     */
+    public boolean isAlwaysUpdated() {
+        return alwaysUpdated;
+    }
+
+    public void setAlwaysUpdated(boolean alwaysUpdated) {
+        this.alwaysUpdated = alwaysUpdated;
+    }
+
     /**
      * Database function to use for the field when selecting the entity.
      */
@@ -0,0 +1,83 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository.entities;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import org.flossola.common.messaging.CommonMessage;
+import org.flossola.common.utilities.exceptions.SOLAException;
+
+/**
+ * Default {@linkplain EntityFactory} that creates entities using the no-arg
+ * constructor of the entity class. The constructor is resolved once and access
+ * checks are suppressed so that no reflective lookup is required for each new
+ * instance. If the entity class is abstract or does not have a no-arg
+ * constructor, an exception is raised when an instance is requested.
+ *
+ * @param <T> The generic type of the entity
+ * @author soladev
+ */
+public final class ConstructorEntityFactory<T extends AbstractReadOnlyEntity> implements EntityFactory<T> {
+
+    private final Class<T> entityClass;
+    private final Constructor<T> constructor;
+    private final Exception constructorException;
+
+    public ConstructorEntityFactory(Class<T> entityClass) {
+        this.entityClass = entityClass;
+        Constructor<T> c = null;
+        Exception ex = null;
+        try {
+            c = entityClass.getDeclaredConstructor();
+            c.setAccessible(true);
+        } catch (Exception e) {
+            ex = e;
+        }
+        this.constructor = c;
+        this.constructorException = ex;
+    }
+
+    @Override
+    public T newInstance() {
+        if (constructor == null) {
+            throw new SOLAException(CommonMessage.GENERAL_UNEXPECTED,
+                    new Object[]{"Entity " + entityClass.getSimpleName()
+                        + " does not have a no-arg constructor"}, constructorException);
+        }
+        try {
+            return constructor.newInstance();
+        } catch (InvocationTargetException ex) {
+            // Report the exception thrown by the constructor rather than the wrapper
+            throw new SOLAException(CommonMessage.GENERAL_UNEXPECTED,
+                    new Object[]{"Failed to create entity " + entityClass.getSimpleName()}, ex.getCause());
+        } catch (Exception ex) {
+            throw new SOLAException(CommonMessage.GENERAL_UNEXPECTED,
+                    new Object[]{"Failed to create entity " + entityClass.getSimpleName()}, ex);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository.entities;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable metadata for an entity class. Captures the table name, columns,
+ * id columns, child entities, default sorter, cacheable setting, field
+ * accessors and entity factory of the entity class. The metadata is created once per entity
+ * class by {@linkplain org.flossola.common.services.repository.RepositoryUtility}
+ * and can be safely shared by concurrent threads.
+ * <p>
+ * Columns can be retrieved by field name or by column name in constant time.
+ * Lookups by name are case insensitive.</p>
+ *
+ * @author soladev
+ */
+public final class EntityMetadata {
+
+    private final Class<?> entityClass;
+    private final String tableName;
+    private final boolean cacheable;
+    private final String sorterExpression;
+    private final List<ColumnInfo> columns;
+    private final List<ColumnInfo> idColumns;
+    private final List<ChildEntityInfo> childEntities;
+    private final Map<String, ColumnInfo> columnsByFieldName;
+    private final Map<String, ColumnInfo> columnsByColumnName;
+    private final Map<String, ColumnInfo> columnsByAnyName;
+    private final Map<String, ChildEntityInfo> childEntitiesByFieldName;
+    private final Map<String, FieldAccessor> fieldAccessors;
+    private final EntityFactory<?> entityFactory;
+    private final long buildTimeNanos;
+
+    /**
+     * Creates the metadata for an entity class.
+     *
+     * @param entityClass The entity class
+     * @param tableName The name of the table (including schema) for the entity
+     * @param cacheable The value of the Cacheable annotation for the entity or
+     * its closest annotated super class.
+     * @param sorterExpression The default sorter expression for the entity
+     * @param columns The columns of the entity in field declaration order
+     * @param childEntities The child entities of the entity in field
+     * declaration order
+     * @param buildStartNanos The {@linkplain System#nanoTime()} when the build
+     * of the metadata started. Used to record the time taken to build the
+     * metadata.
+     */
+    public EntityMetadata(Class<? extends AbstractReadOnlyEntity> entityClass, String tableName, boolean cacheable,
+            String sorterExpression, List<ColumnInfo> columns, List<ChildEntityInfo> childEntities,
+            long buildStartNanos) {
+        this.entityClass = entityClass;
+        this.tableName = tableName;
+        this.cacheable = cacheable;
+        this.sorterExpression = sorterExpression;
+
+        List<ColumnInfo> ids = new ArrayList<ColumnInfo>();
+        Map<String, ColumnInfo> byField = new HashMap<String, ColumnInfo>();
+        Map<String, ColumnInfo> byColumn = new HashMap<String, ColumnInfo>();
+        Map<String, ColumnInfo> byAny = new HashMap<String, ColumnInfo>();
+        Map<String, FieldAccessor> accessors = new HashMap<String, FieldAccessor>();
+        for (ColumnInfo columnInfo : columns) {
+            if (columnInfo.isIdColumn()) {
+                ids.add(columnInfo);
+            }
+            putIfAbsent(byField, columnInfo.getFieldName(), columnInfo);
+            putIfAbsent(byColumn, columnInfo.getColumnName(), columnInfo);
+            // Match the original lookup order where the field name and then the column
+            // name of each column are checked before moving to the next column. 
+            putIfAbsent(byAny, columnInfo.getFieldName(), columnInfo);
+            putIfAbsent(byAny, columnInfo.getColumnName(), columnInfo);
+            if (!accessors.containsKey(columnInfo.getFieldName())) {
+                accessors.put(columnInfo.getFieldName(), new FieldAccessor(entityClass, columnInfo));
+            }
+        }
+        Map<String, ChildEntityInfo> childByField = new HashMap<String, ChildEntityInfo>();
+        for (ChildEntityInfo childInfo : childEntities) {
+            putIfAbsent(childByField, childInfo.getFieldName(), childInfo);
+            if (!accessors.containsKey(childInfo.getFieldName())) {
+                accessors.put(childInfo.getFieldName(), new FieldAccessor(entityClass, childInfo));
+            }
+        }
+
+        this.columns = Collections.unmodifiableList(new ArrayList<ColumnInfo>(columns));
+        this.idColumns = Collections.unmodifiableList(ids);
+        this.childEntities = Collections.unmodifiableList(new ArrayList<ChildEntityInfo>(childEntities));
+        this.columnsByFieldName = byField;
+        this.columnsByColumnName = byColumn;
+        this.columnsByAnyName = byAny;
+        this.childEntitiesByFieldName = childByField;
+        this.fieldAccessors = accessors;
+        this.entityFactory = createDefaultFactory(entityClass);
+        this.buildTimeNanos = System.nanoTime() - buildStartNanos;
+    }
+
+    /**
+     * Creates a copy of the metadata that uses a different entity factory.
+     *
+     * @param source The metadata to copy
+     * @param entityFactory The factory to use for the entity class
+     */
+    public EntityMetadata(EntityMetadata source, EntityFactory<?> entityFactory) {
+        this.entityClass = source.entityClass;
+        this.tableName = source.tableName;
+        this.cacheable = source.cacheable;
+        this.sorterExpression = source.sorterExpression;
+        this.columns = source.columns;
+        this.idColumns = source.idColumns;
+        this.childEntities = source.childEntities;
+        this.columnsByFieldName = source.columnsByFieldName;
+        this.columnsByColumnName = source.columnsByColumnName;
+        this.columnsByAnyName = source.columnsByAnyName;
+        this.childEntitiesByFieldName = source.childEntitiesByFieldName;
+        this.fieldAccessors = source.fieldAccessors;
+        this.entityFactory = entityFactory;
+        this.buildTimeNanos = source.buildTimeNanos;
+    }
+
+    private static <T extends AbstractReadOnlyEntity> EntityFactory<T> createDefaultFactory(Class<T> entityClass) {
+        return new ConstructorEntityFactory<T>(entityClass);
+    }
+
+    private static <V> void putIfAbsent(Map<String, V> map, String name, V value) {
+        if (name != null) {
+            String key = name.toLowerCase(Locale.ENGLISH);
+            if (!map.containsKey(key)) {
+                map.put(key, value);
+            }
+        }
+    }
+
+    private static <V> V lookup(Map<String, V> map, String name) {
+        return name == null ? null : map.get(name.toLowerCase(Locale.ENGLISH));
+    }
+
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    /**
+     * @return The schema qualified table name for the entity or null if the
+     * entity does not have a Table annotation.
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @return The value of the Cacheable annotation. Note that this does not
+     * consider whether the CacheEJB is deployed or not.
+     */
+    public boolean isCacheable() {
+        return cacheable;
+    }
+
+    public String getSorterExpression() {
+        return sorterExpression;
+    }
+
+    /**
+     * @return Unmodifiable list of all columns for the entity.
+     */
+    public List<ColumnInfo> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return Unmodifiable list of the id columns for the entity.
+     */
+    public List<ColumnInfo> getIdColumns() {
+        return idColumns;
+    }
+
+    /**
+     * @return Unmodifiable list of the child entities for the entity.
+     */
+    public List<ChildEntityInfo> getChildEntities() {
+        return childEntities;
+    }
+
+    /**
+     * Retrieves the column based on a field name or a column name. Field names
+     * take precedence over column names for the same column.
+     *
+     * @param fieldNameOrColumnName The name of the field or database column
+     * @return The column or null if no column matches the name.
+     */
+    public ColumnInfo getColumnInfo(String fieldNameOrColumnName) {
+        return lookup(columnsByAnyName, fieldNameOrColumnName);
+    }
+
+    /**
+     * @param fieldName The name of the entity field
+     * @return The column for the field or null if the field is not a column.
+     */
+    public ColumnInfo getColumnByFieldName(String fieldName) {
+        return lookup(columnsByFieldName, fieldName);
+    }
+
+    /**
+     * @param columnName The name of the database column
+     * @return The column or null if there is no column with the name.
+     */
+    public ColumnInfo getColumnByColumnName(String columnName) {
+        return lookup(columnsByColumnName, columnName);
+    }
+
+    /**
+     * @param fieldName The name of the entity field
+     * @return The child entity info for the field or null if the field is not a
+     * child entity field.
+     */
+    public ChildEntityInfo getChildEntityInfo(String fieldName) {
+        return lookup(childEntitiesByFieldName, fieldName);
+    }
+
+    /**
+     * @param fieldName The name of the entity field (case sensitive)
+     * @return The accessor for the field or null if the field is not a column
+     * or child entity field.
+     */
+    public FieldAccessor getFieldAccessor(String fieldName) {
+        return fieldAccessors.get(fieldName);
+    }
+
+    /**
+     * @return The factory used to create new instances of the entity class.
+     */
+    public EntityFactory<?> getEntityFactory() {
+        return entityFactory;
+    }
+
+    /**
+     * @return The time taken to build the metadata in nanoseconds.
+     */
+    public long getBuildTimeNanos() {
+        return buildTimeNanos;
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository.entities;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Provides access to the getter and setter methods for an entity field. The
+ * getter and setter methods are resolved once when the accessor is created so
+ * that no method lookup is required each time a field value is read or
+ * written. Accessors are cached per entity class by
+ * {@linkplain org.flossola.common.services.repository.RepositoryUtility#getFieldAccessor(Class, AbstractEntityInfo)}.
+ *
+ * @author soladev
+ */
+public final class FieldAccessor {
+
+    private final String fieldName;
+    private final Method getter;
+    private final Method setter;
+    private final NoSuchMethodException getterException;
+    private final NoSuchMethodException setterException;
+
+    /**
+     * Resolves the getter and setter methods for the field described by the
+     * entityInfo. If either method does not exist on the entity class, the
+     * {@linkplain NoSuchMethodException} is raised when the accessor is used
+     * to get or set the field value.
+     *
+     * @param entityClass The class of the entity
+     * @param entityInfo The details of the field
+     */
+    public FieldAccessor(Class<?> entityClass, AbstractEntityInfo entityInfo) {
+        this.fieldName = entityInfo.getFieldName();
+        Method m = null;
+        NoSuchMethodException ex = null;
+        try {
+            m = entityClass.getMethod(entityInfo.getterName());
+            // Suppress the access checks performed on each invocation
+            m.setAccessible(true);
+        } catch (NoSuchMethodException nsme) {
+            ex = nsme;
+        }
+        this.getter = m;
+        this.getterException = ex;
+
+        m = null;
+        ex = null;
+        try {
+            m = entityClass.getMethod(entityInfo.setterName(), entityInfo.getFieldType());
+            m.setAccessible(true);
+        } catch (NoSuchMethodException nsme) {
+            ex = nsme;
+        }
+        this.setter = m;
+        this.setterException = ex;
+    }
+
+    /**
+     * @return The name of the entity field this accessor relates to.
+     */
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    /**
+     * Returns the value of the field from the entity.
+     *
+     * @param entity The entity to get the field value from
+     * @throws NoSuchMethodException If the entity does not have a getter for
+     * the field
+     * @throws IllegalAccessException
+     * @throws InvocationTargetException If the getter throws an exception
+     */
+    public Object get(Object entity) throws NoSuchMethodException, IllegalAccessException,
+            InvocationTargetException {
+        if (getter == null) {
+            throw getterException;
+        }
+        return getter.invoke(entity);
+    }
+
+    /**
+     * Sets the value of the field on the entity.
+     *
+     * @param entity The entity to set the field value on
+     * @param value The value to set
+     * @throws NoSuchMethodException If the entity does not have a setter for
+     * the field
+     * @throws IllegalAccessException
+     * @throws InvocationTargetException If the setter throws an exception
+     */
+    public void set(Object entity, Object value) throws NoSuchMethodException, IllegalAccessException,
+            InvocationTargetException {
+        if (setter == null) {
+            throw setterException;
+        }
+        setter.invoke(entity, value);
+    }
+}
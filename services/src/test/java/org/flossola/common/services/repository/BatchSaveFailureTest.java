@@ -0,0 +1,104 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.OptimisticLockException;
+import org.flossola.common.services.repository.perf.PerfParcel;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests the mapping of batch save failures by
+ * {@linkplain CommonRepositoryImpl#getBatchFailure(RuntimeException, List, String)}.
+ *
+ * @author soladev
+ */
+public class BatchSaveFailureTest {
+
+    private static List<PerfParcel> createPending(int count) {
+        List<PerfParcel> pending = new ArrayList<PerfParcel>();
+        for (int i = 0; i < count; i++) {
+            PerfParcel parcel = new PerfParcel();
+            parcel.setId("p" + i);
+            pending.add(parcel);
+        }
+        return pending;
+    }
+
+    /**
+     * Mybatis wraps the BatchUpdateException raised by the driver.
+     */
+    private static RuntimeException createFailure(int[] updateCounts, String error) {
+        BatchUpdateException batchEx = new BatchUpdateException("Batch entry failed", updateCounts);
+        batchEx.setNextException(new SQLException(error));
+        return new RuntimeException("Error flushing statements", batchEx);
+    }
+
+    /**
+     * The driver continued after the failed row and marked it as failed.
+     */
+    @Test
+    public void testOptimisticLockMarkedRow() {
+        List<PerfParcel> pending = createPending(3);
+        RuntimeException ex = CommonRepositoryImpl.getBatchFailure(
+                createFailure(new int[]{1, Statement.EXECUTE_FAILED, 1},
+                "ERROR: row_has_different_change_time"), pending, "update");
+        assertTrue(ex instanceof OptimisticLockException);
+        assertSame(pending.get(1), ((OptimisticLockException) ex).getEntity());
+    }
+
+    /**
+     * The driver stopped at the failed row, so the update counts only cover
+     * the rows before it.
+     */
+    @Test
+    public void testOptimisticLockStoppedBatch() {
+        List<PerfParcel> pending = createPending(3);
+        RuntimeException ex = CommonRepositoryImpl.getBatchFailure(
+                createFailure(new int[]{1, 1}, "ERROR: row_has_different_change_time"),
+                pending, "update");
+        assertTrue(ex instanceof OptimisticLockException);
+        assertSame(pending.get(2), ((OptimisticLockException) ex).getEntity());
+    }
+
+    /**
+     * Other failures are returned unchanged.
+     */
+    @Test
+    public void testOtherFailure() {
+        RuntimeException failure = createFailure(new int[]{Statement.EXECUTE_FAILED},
+                "ERROR: duplicate key value violates unique constraint");
+        RuntimeException ex = CommonRepositoryImpl.getBatchFailure(failure, createPending(1), "insert");
+        assertSame(failure, ex);
+    }
+}
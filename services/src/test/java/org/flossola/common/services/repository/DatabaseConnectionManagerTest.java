@@ -0,0 +1,185 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import javax.sql.DataSource;
+import javax.transaction.Status;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.managed.ManagedTransactionFactory;
+import org.flossola.common.services.LocalInfo;
+import org.flossola.common.services.repository.perf.PerfTransactionRegistry;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests the SqlSession shared within a transaction by
+ * {@linkplain DatabaseConnectionManager#getSqlSession()}. The sessions use a
+ * stub data source, so no SQL is executed.
+ *
+ * @author soladev
+ */
+public class DatabaseConnectionManagerTest {
+
+    @After
+    public void tearDown() {
+        LocalInfo.setTransactionRegistry(null);
+    }
+
+    /**
+     * Creates a JDBC object where every method returns the default value for
+     * its return type. The data source returns stub connections.
+     */
+    private static <T> T createStub(final Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(DatabaseConnectionManagerTest.class.getClassLoader(),
+                new Class<?>[]{type}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        String name = method.getName();
+                        if ("equals".equals(name)) {
+                            return proxy == args[0];
+                        }
+                        if ("hashCode".equals(name)) {
+                            return System.identityHashCode(proxy);
+                        }
+                        if ("toString".equals(name)) {
+                            return type.getSimpleName();
+                        }
+                        if ("getConnection".equals(name)) {
+                            return createStub(Connection.class);
+                        }
+                        Class<?> returnType = method.getReturnType();
+                        if (returnType == boolean.class) {
+                            return Boolean.FALSE;
+                        }
+                        if (returnType == int.class) {
+                            return 0;
+                        }
+                        return null;
+                    }
+                }));
+    }
+
+    private static SqlSessionFactory createFactory() {
+        Configuration config = new Configuration(new Environment("stub",
+                new ManagedTransactionFactory(), createStub(DataSource.class)));
+        return new SqlSessionFactoryBuilder().build(config);
+    }
+
+    @Test
+    public void testSessionSharedByManagers() {
+        SqlSessionFactory factory = createFactory();
+        DatabaseConnectionManager manager1 = new DatabaseConnectionManager(factory, CommonMapper.class);
+        DatabaseConnectionManager manager2 = new DatabaseConnectionManager(factory, CommonMapper.class);
+        PerfTransactionRegistry registry = new PerfTransactionRegistry();
+        LocalInfo.setTransactionRegistry(registry);
+        try {
+            SqlSession session = manager1.getSqlSession();
+            session.close();
+            for (int i = 0; i < 3; i++) {
+                SqlSession other = manager1.getSqlSession();
+                assertSame(session, other);
+                other.close();
+                other = manager2.getSqlSession();
+                assertSame(session, other);
+                other.close();
+            }
+            assertEquals(4, manager1.getSessionsRequested());
+            assertEquals(1, manager1.getSessionsOpened());
+            assertEquals(3, manager2.getSessionsRequested());
+            assertEquals(0, manager2.getSessionsOpened());
+            // The session is closed once when the transaction completes
+            assertEquals(1, registry.getSynchronizations().size());
+        } finally {
+            registry.complete(Status.STATUS_COMMITTED);
+        }
+    }
+
+    @Test
+    public void testSessionPerFactory() {
+        DatabaseConnectionManager manager1 = new DatabaseConnectionManager(createFactory(), CommonMapper.class);
+        DatabaseConnectionManager manager2 = new DatabaseConnectionManager(createFactory(), CommonMapper.class);
+        PerfTransactionRegistry registry = new PerfTransactionRegistry();
+        LocalInfo.setTransactionRegistry(registry);
+        try {
+            assertNotSame(manager1.getSqlSession(), manager2.getSqlSession());
+            assertEquals(1, manager1.getSessionsOpened());
+            assertEquals(1, manager2.getSessionsOpened());
+        } finally {
+            registry.complete(Status.STATUS_COMMITTED);
+        }
+    }
+
+    @Test
+    public void testSessionPerTransaction() {
+        DatabaseConnectionManager manager = new DatabaseConnectionManager(createFactory(), CommonMapper.class);
+        PerfTransactionRegistry tx1 = new PerfTransactionRegistry();
+        PerfTransactionRegistry tx2 = new PerfTransactionRegistry();
+        try {
+            LocalInfo.setTransactionRegistry(tx1);
+            SqlSession session1 = manager.getSqlSession();
+            assertSame(session1, manager.getSqlSession());
+            tx1.complete(Status.STATUS_COMMITTED);
+            LocalInfo.setTransactionRegistry(tx2);
+            assertNotSame(session1, manager.getSqlSession());
+            assertEquals(3, manager.getSessionsRequested());
+            assertEquals(2, manager.getSessionsOpened());
+        } finally {
+            tx1.complete(Status.STATUS_ROLLEDBACK);
+            tx2.complete(Status.STATUS_ROLLEDBACK);
+        }
+    }
+
+    @Test
+    public void testSessionNotShared() {
+        DatabaseConnectionManager manager = new DatabaseConnectionManager(createFactory(), CommonMapper.class);
+        PerfTransactionRegistry registry = new PerfTransactionRegistry();
+        LocalInfo.setTransactionRegistry(registry);
+        manager.setTransactionSessionReuse(false);
+        try {
+            SqlSession session1 = manager.getSqlSession();
+            SqlSession session2 = manager.getSqlSession();
+            assertNotSame(session1, session2);
+            session1.close();
+            session2.close();
+            assertEquals(2, manager.getSessionsRequested());
+            assertEquals(2, manager.getSessionsOpened());
+            assertTrue(registry.getSynchronizations().isEmpty());
+        } finally {
+            registry.complete(Status.STATUS_COMMITTED);
+        }
+    }
+}
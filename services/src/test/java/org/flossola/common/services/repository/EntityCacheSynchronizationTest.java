@@ -0,0 +1,166 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.persistence.Column;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.transaction.Status;
+import org.flossola.common.services.ejbs.cache.businesslogic.CacheEJB;
+import org.flossola.common.services.ejbs.cache.businesslogic.CacheEJBLocal;
+import org.flossola.common.services.repository.entities.AbstractVersionedEntity;
+import org.flossola.common.services.repository.perf.PerfDatabase;
+import org.flossola.common.services.repository.perf.PerfTransactionRegistry;
+import org.junit.After;
+import org.junit.Assume;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the rows of saved entities are removed from the by id entity cache
+ * when the entity is saved and again when the transaction completes (see
+ * {@linkplain EntityCacheSynchronization}).
+ *
+ * @author soladev
+ */
+public class EntityCacheSynchronizationTest {
+
+    /**
+     * Cacheable parcel entity. The cache EJB is not deployed when the tests
+     * run, so the entity reports it is cacheable directly.
+     */
+    @Table(schema = "perf", name = "parcel")
+    public static class CachedParcel extends AbstractVersionedEntity {
+
+        @Id
+        @Column(name = "id")
+        private String id;
+        @Column(name = "name")
+        private String name;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public boolean isCacheable() {
+            return true;
+        }
+    }
+
+    private CacheEJBLocal cache;
+
+    @Before
+    public void setUp() {
+        cache = new CacheEJB();
+    }
+
+    @After
+    public void tearDown() {
+        cache.clearAll();
+    }
+
+    private void cacheRow(Class<?> entityClass, String id) {
+        Map<String, Object> row = new HashMap<String, Object>();
+        row.put("id", id);
+        row.put("name", "Stale " + id);
+        cache.putEntityRow(entityClass, id, null, row, CachePolicy.DEFAULT_MAX_ENTRIES,
+                CachePolicy.DEFAULT_EXPIRY_SECONDS);
+    }
+
+    @Test
+    public void testSaveClearsCachedRow() throws Exception {
+        Assume.assumeTrue(PerfDatabase.isTestsEnabled());
+        PerfDatabase db = new PerfDatabase("entitycache");
+        try {
+            db.createSchema();
+            db.generate(2, 0);
+            CommonRepositoryImpl repository = db.getRepository();
+            repository.cache = cache;
+            String id = PerfDatabase.parcelId(0);
+            CachedParcel parcel = repository.getEntity(CachedParcel.class, id);
+            cacheRow(CachedParcel.class, id);
+            parcel.setName("Parcel 0 v2");
+            repository.saveEntity(parcel);
+            assertNull(cache.getEntityRow(CachedParcel.class, id, null));
+        } finally {
+            db.shutdown();
+        }
+    }
+
+    @Test
+    public void testRowsClearedAfterCompletion() {
+        PerfTransactionRegistry registry = new PerfTransactionRegistry();
+        EntityCacheSynchronization.register(registry, cache, CachedParcel.class);
+        EntityCacheSynchronization.register(registry, cache, CachedParcel.class);
+        assertEquals(1, registry.getSynchronizations().size());
+
+        // A reader outside of the transaction caches the row before the commit
+        cacheRow(CachedParcel.class, "1");
+        cacheRow(String.class, "1");
+        registry.complete(Status.STATUS_COMMITTED);
+        assertNull(cache.getEntityRow(CachedParcel.class, "1", null));
+        assertNotNull(cache.getEntityRow(String.class, "1", null));
+    }
+
+    @Test
+    public void testAllRowsClearedAfterCompletion() {
+        PerfTransactionRegistry registry = new PerfTransactionRegistry();
+        EntityCacheSynchronization.register(registry, cache, CachedParcel.class);
+        EntityCacheSynchronization.register(registry, cache, null);
+        assertEquals(1, registry.getSynchronizations().size());
+
+        cacheRow(CachedParcel.class, "1");
+        cacheRow(String.class, "1");
+        registry.complete(Status.STATUS_ROLLEDBACK);
+        assertNull(cache.getEntityRow(CachedParcel.class, "1", null));
+        assertNull(cache.getEntityRow(String.class, "1", null));
+    }
+
+    @Test
+    public void testNoTransaction() {
+        EntityCacheSynchronization.register(null, cache, CachedParcel.class);
+        cacheRow(CachedParcel.class, "1");
+        assertNotNull(cache.getEntityRow(CachedParcel.class, "1", null));
+    }
+}
@@ -0,0 +1,264 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.flossola.common.services.LocalInfo;
+import org.flossola.common.services.ejbs.AbstractEJBLocal;
+import org.flossola.common.services.ejbs.async.businesslogic.AsyncLoaderEJBLocal;
+import org.flossola.common.services.repository.entities.ChildEntityInfo;
+import org.flossola.common.services.repository.perf.PerfParcel;
+import org.flossola.common.services.repository.perf.PerfParcelArea;
+import org.flossola.common.utilities.exceptions.SOLAException;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@linkplain ExternalEntityLoad}. The tests run outside of a JEE
+ * container, so the {@linkplain AsyncLoaderEJBLocal} is replaced with an
+ * executor and the external EJB with a dynamic proxy that records the
+ * {@linkplain LocalInfo} values seen by each load.
+ *
+ * @author soladev
+ */
+public class ExternalEntityLoadTest {
+
+    private ExecutorService executor;
+    private AsyncLoaderEJBLocal loader;
+
+    /**
+     * The external EJB used by the tests.
+     */
+    public interface TestEJBLocal extends AbstractEJBLocal {
+
+        List<Object> getChildren(String parentId);
+    }
+
+    @Before
+    public void setUp() {
+        assertNull(LocalInfo.getTransactionRegistry());
+        executor = Executors.newCachedThreadPool();
+        loader = new AsyncLoaderEJBLocal() {
+            @Override
+            public <T> Future<T> load(Callable<T> task) {
+                return executor.submit(task);
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        LocalInfo.clear();
+    }
+
+    /**
+     * Creates an external EJB that runs the handler for getChildren.
+     */
+    private static TestEJBLocal createEJB(final Callable<List<Object>> getChildren) {
+        return (TestEJBLocal) Proxy.newProxyInstance(TestEJBLocal.class.getClassLoader(),
+                new Class<?>[]{TestEJBLocal.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (!method.getName().equals("getChildren")) {
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                        return getChildren.call();
+                    }
+                });
+    }
+
+    private static ExternalEntityLoad createLoad(AbstractEJBLocal ejb) {
+        ChildEntityInfo childInfo = new ChildEntityInfo();
+        childInfo.setFieldName("children");
+        childInfo.setLoadMethod("getChildren");
+        return new ExternalEntityLoad(new PerfParcel(), childInfo, ejb, String.class, "parcel1");
+    }
+
+    @Test
+    public void testContextCopiedToTask() {
+        LocalInfo.setUserName("test_user");
+        LocalInfo.set(CommonSqlProvider.PARAM_LANGUAGE_CODE, "fr-FR", true);
+        LoadInhibitorScope scope = new LoadInhibitorScope(PerfParcelArea.class);
+        final List<Object> seen = Collections.synchronizedList(new ArrayList<Object>());
+        try {
+            ExternalEntityLoad load = createLoad(createEJB(new Callable<List<Object>>() {
+                @Override
+                public List<Object> call() {
+                    seen.add(Thread.currentThread());
+                    seen.add(LocalInfo.getUserName());
+                    seen.add(LocalInfo.get(CommonSqlProvider.PARAM_LANGUAGE_CODE));
+                    seen.add(LoadInhibitorScope.getInhibitors());
+                    seen.add(ExternalEntityLoad.isAsyncAllowed());
+                    return new ArrayList<Object>();
+                }
+            }));
+            assertTrue(load.submit(loader));
+            assertNotNull(load.getResult());
+        } finally {
+            scope.close();
+        }
+        assertNotSame(Thread.currentThread(), seen.get(0));
+        assertEquals("test_user", seen.get(1));
+        assertEquals("fr-FR", seen.get(2));
+        assertEquals(new HashSet<Class<?>>(Arrays.<Class<?>>asList(PerfParcelArea.class)), seen.get(3));
+        // A load cannot start other asynchronous loads
+        assertEquals(Boolean.FALSE, seen.get(4));
+        assertTrue(ExternalEntityLoad.isAsyncAllowed());
+    }
+
+    @Test
+    public void testContextRestoredOnWorkerThread() throws Exception {
+        LocalInfo.setUserName("test_user");
+        LocalInfo.set(CommonSqlProvider.PARAM_LANGUAGE_CODE, "fr-FR", true);
+        ExternalEntityLoad load = createLoad(createEJB(new Callable<List<Object>>() {
+            @Override
+            public List<Object> call() {
+                return null;
+            }
+        }));
+        // Use a single worker so the check runs on the thread that ran the load
+        executor.shutdown();
+        executor = Executors.newSingleThreadExecutor();
+        assertTrue(load.submit(loader));
+        assertNull(load.getResult());
+        Object[] context = executor.submit(new Callable<Object[]>() {
+            @Override
+            public Object[] call() {
+                return new Object[]{LocalInfo.getUserName(),
+                    LocalInfo.get(CommonSqlProvider.PARAM_LANGUAGE_CODE),
+                    ExternalEntityLoad.isAsyncAllowed()};
+            }
+        }).get();
+        assertNull(context[0]);
+        assertNull(context[1]);
+        assertEquals(Boolean.TRUE, context[2]);
+    }
+
+    @Test
+    public void testLoadsRunInParallel() {
+        final CountDownLatch started = new CountDownLatch(3);
+        TestEJBLocal ejb = createEJB(new Callable<List<Object>>() {
+            @Override
+            public List<Object> call() throws Exception {
+                started.countDown();
+                // Only completes if all of the loads are running at the same time
+                assertTrue(started.await(10, TimeUnit.SECONDS));
+                return new ArrayList<Object>();
+            }
+        });
+        List<ExternalEntityLoad> loads = new ArrayList<ExternalEntityLoad>();
+        for (int i = 0; i < 3; i++) {
+            ExternalEntityLoad load = createLoad(ejb);
+            assertTrue(load.submit(loader));
+            loads.add(load);
+        }
+        for (ExternalEntityLoad load : loads) {
+            assertNotNull(load.getResult());
+        }
+    }
+
+    @Test
+    public void testLoadsOverLimitRunOnCallingThread() {
+        final CountDownLatch release = new CountDownLatch(1);
+        TestEJBLocal blocked = createEJB(new Callable<List<Object>>() {
+            @Override
+            public List<Object> call() throws Exception {
+                release.await(10, TimeUnit.SECONDS);
+                return new ArrayList<Object>();
+            }
+        });
+        List<ExternalEntityLoad> loads = new ArrayList<ExternalEntityLoad>();
+        try {
+            for (int i = 0; i < ExternalEntityLoad.MAX_ASYNC_LOADS; i++) {
+                ExternalEntityLoad load = createLoad(blocked);
+                assertTrue(load.submit(loader));
+                loads.add(load);
+            }
+            final List<Thread> threads = new ArrayList<Thread>();
+            ExternalEntityLoad extra = createLoad(createEJB(new Callable<List<Object>>() {
+                @Override
+                public List<Object> call() {
+                    threads.add(Thread.currentThread());
+                    return new ArrayList<Object>();
+                }
+            }));
+            assertFalse(extra.submit(loader));
+            assertNotNull(extra.getResult());
+            assertEquals(Arrays.asList(Thread.currentThread()), threads);
+        } finally {
+            release.countDown();
+        }
+        for (ExternalEntityLoad load : loads) {
+            assertNotNull(load.getResult());
+        }
+        // The permits are released once the loads complete
+        ExternalEntityLoad load = createLoad(blocked);
+        assertTrue(load.submit(loader));
+        assertNotNull(load.getResult());
+    }
+
+    @Test
+    public void testFailedLoadRaisesSOLAException() {
+        ExternalEntityLoad load = createLoad(createEJB(new Callable<List<Object>>() {
+            @Override
+            public List<Object> call() {
+                throw new IllegalStateException("Load failed");
+            }
+        }));
+        assertTrue(load.submit(loader));
+        try {
+            load.getResult();
+            fail("Expected SOLAException");
+        } catch (SOLAException ex) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testNoAsyncLoadAfterWrite() {
+        assertTrue(ExternalEntityLoad.isAsyncAllowed());
+        ExternalEntityLoad.setWritePerformed();
+        assertFalse(ExternalEntityLoad.isAsyncAllowed());
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import javax.persistence.Column;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import org.flossola.common.services.repository.entities.AbstractReadOnlyEntity;
+import org.flossola.common.utilities.exceptions.SOLAException;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests for {@linkplain KeysetSort}.
+ *
+ * @author soladev
+ */
+public class KeysetSortTest {
+
+    @Table(name = "keyset_test")
+    @DefaultSorter(sortString = "change_time DESC, area")
+    public static class KeysetEntity extends AbstractReadOnlyEntity {
+
+        @Id
+        @Column(name = "id")
+        private String id;
+        @Column(name = "change_time")
+        private Date changeTime;
+        @Column(name = "area")
+        private BigDecimal area;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public Date getChangeTime() {
+            return changeTime;
+        }
+
+        public void setChangeTime(Date changeTime) {
+            this.changeTime = changeTime;
+        }
+
+        public BigDecimal getArea() {
+            return area;
+        }
+
+        public void setArea(BigDecimal area) {
+            this.area = area;
+        }
+    }
+
+    private static Map<String, Object> row(Date changeTime) {
+        Map<String, Object> row = new HashMap<String, Object>();
+        row.put("id", "a1");
+        row.put("change_time", changeTime);
+        row.put("area", new BigDecimal("12.50"));
+        return row;
+    }
+
+    @Test
+    public void testOrderBy() {
+        KeysetSort sort = KeysetSort.forEntity(KeysetEntity.class);
+        assertEquals("change_time DESC, area ASC, id ASC", sort.getOrderBy());
+        assertEquals("(change_time < #{sola_seek_0}) OR (change_time = #{sola_seek_0} AND "
+                + "area > #{sola_seek_1}) OR (change_time = #{sola_seek_0} AND "
+                + "area = #{sola_seek_1} AND id > #{sola_seek_2})", sort.getSeekCondition());
+    }
+
+    @Test
+    public void testTimestampNanosInToken() {
+        KeysetSort sort = KeysetSort.forEntity(KeysetEntity.class);
+        Timestamp changeTime = new Timestamp(1400000000123L);
+        changeTime.setNanos(123456789);
+        Map<String, Object> params = new HashMap<String, Object>();
+        sort.putSeekParams(sort.createToken(row(changeTime)), params);
+        assertEquals(changeTime, params.get("sola_seek_0"));
+        assertEquals(123456789, ((Timestamp) params.get("sola_seek_0")).getNanos());
+        assertEquals(new BigDecimal("12.50"), params.get("sola_seek_1"));
+        assertEquals("a1", params.get("sola_seek_2"));
+    }
+
+    @Test
+    public void testDateInToken() {
+        KeysetSort sort = KeysetSort.forEntity(KeysetEntity.class);
+        Date changeTime = new Date(1400000000123L);
+        Map<String, Object> params = new HashMap<String, Object>();
+        sort.putSeekParams(sort.createToken(row(changeTime)), params);
+        assertEquals(changeTime, params.get("sola_seek_0"));
+    }
+
+    @Test(expected = SOLAException.class)
+    public void testNullSortValue() {
+        KeysetSort.forEntity(KeysetEntity.class).createToken(row(null));
+    }
+
+    @Test(expected = SOLAException.class)
+    public void testInvalidToken() {
+        KeysetSort.forEntity(KeysetEntity.class).putSeekParams("not a token",
+                new HashMap<String, Object>());
+    }
+}
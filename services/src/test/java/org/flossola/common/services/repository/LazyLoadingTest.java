@@ -0,0 +1,243 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.transaction.Status;
+import org.flossola.common.services.LocalInfo;
+import org.flossola.common.services.ejbs.cache.businesslogic.CacheEJB;
+import org.flossola.common.services.repository.entities.AbstractVersionedEntity;
+import org.flossola.common.services.repository.perf.PerfDatabase;
+import org.flossola.common.services.repository.perf.PerfParcelArea;
+import org.flossola.common.services.repository.perf.PerfTransactionRegistry;
+import org.flossola.common.utilities.exceptions.SOLAException;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the loading of lazy child lists (see
+ * {@linkplain ChildEntityList#lazy()}) against the in memory HSQLDB
+ * {@linkplain PerfDatabase}.
+ *
+ * @author soladev
+ */
+public class LazyLoadingTest {
+
+    private static final int PARCELS = 20;
+    private static final int AREAS_PER_PARCEL = 2;
+    private static PerfDatabase db;
+    private static CommonRepositoryImpl repository;
+
+    /**
+     * Parcel entity with a lazy list of parcel areas.
+     */
+    @Table(schema = "perf", name = "parcel")
+    public static class LazyParcel extends AbstractVersionedEntity {
+
+        @Id
+        @Column(name = "id")
+        private String id;
+        @Column(name = "name")
+        private String name;
+        @ChildEntityList(parentIdField = "parcelId", lazy = true)
+        private List<PerfParcelArea> areas;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public List<PerfParcelArea> getAreas() {
+            return areas;
+        }
+
+        public void setAreas(List<PerfParcelArea> areas) {
+            this.areas = areas;
+        }
+    }
+
+    /**
+     * Cacheable parcel entity with a lazy list of parcel areas.
+     */
+    @Cacheable
+    @Table(schema = "perf", name = "parcel")
+    public static class CachedLazyParcel extends LazyParcel {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Assume.assumeTrue(PerfDatabase.isTestsEnabled());
+        db = new PerfDatabase("lazyload");
+        db.createSchema();
+        db.generate(PARCELS, AREAS_PER_PARCEL);
+        repository = db.getRepository();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        if (db != null) {
+            db.shutdown();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        repository.setBatchChildLoading(true);
+    }
+
+    @After
+    public void tearDown() {
+        repository.setBatchChildLoading(false);
+        LocalInfo.setUserName(null);
+        LocalInfo.setTransactionRegistry(null);
+    }
+
+    private static <T extends LazyParcel> List<T> loadParcels(Class<T> entityClass, int count) {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(CommonSqlProvider.PARAM_WHERE_PART, "id < #{toId}");
+        params.put("toId", PerfDatabase.parcelId(count));
+        repository.resetQueryCount();
+        List<T> parcels = repository.getEntityList(entityClass, params);
+        assertEquals(count, parcels.size());
+        return parcels;
+    }
+
+    @Test
+    public void testAccessLoadsGroup() {
+        List<LazyParcel> parcels = loadParcels(LazyParcel.class, 10);
+        assertEquals(1, repository.getQueryCount());
+        for (LazyParcel parcel : parcels) {
+            assertTrue(parcel.getAreas() instanceof LazyEntityList);
+            assertFalse(((LazyEntityList) parcel.getAreas()).isLoaded());
+        }
+        repository.resetQueryCount();
+        assertEquals(AREAS_PER_PARCEL, parcels.get(3).getAreas().size());
+        assertEquals(1, repository.getQueryCount());
+        for (LazyParcel parcel : parcels) {
+            assertTrue(((LazyEntityList) parcel.getAreas()).isLoaded());
+            assertEquals(AREAS_PER_PARCEL, parcel.getAreas().size());
+            assertEquals(parcel.getId(), parcel.getAreas().get(0).getParcelId());
+        }
+        assertEquals(1, repository.getQueryCount());
+    }
+
+    @Test(expected = SOLAException.class)
+    public void testAccessByDifferentUser() {
+        LocalInfo.setUserName("user1");
+        List<LazyParcel> parcels = loadParcels(LazyParcel.class, 2);
+        LocalInfo.setUserName("user2");
+        parcels.get(0).getAreas().size();
+    }
+
+    @Test
+    public void testAccessInDifferentTransaction() {
+        PerfTransactionRegistry tx1 = new PerfTransactionRegistry();
+        PerfTransactionRegistry tx2 = new PerfTransactionRegistry();
+        try {
+            LocalInfo.setTransactionRegistry(tx1);
+            List<LazyParcel> parcels = loadParcels(LazyParcel.class, 2);
+            tx1.complete(Status.STATUS_COMMITTED);
+            LocalInfo.setTransactionRegistry(tx2);
+            try {
+                parcels.get(0).getAreas().size();
+                fail("Lazy list loaded in a different transaction");
+            } catch (SOLAException expected) {
+            }
+            // The lazy list is left unloaded
+            assertFalse(((LazyEntityList) parcels.get(0).getAreas()).isLoaded());
+        } finally {
+            tx1.complete(Status.STATUS_ROLLEDBACK);
+            tx2.complete(Status.STATUS_ROLLEDBACK);
+        }
+    }
+
+    @Test
+    public void testSerializedAsArrayList() throws Exception {
+        LazyParcel parcel = loadParcels(LazyParcel.class, 2).get(0);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(parcel);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        LazyParcel copy = (LazyParcel) in.readObject();
+        assertEquals(ArrayList.class, copy.getAreas().getClass());
+        assertEquals(AREAS_PER_PARCEL, copy.getAreas().size());
+    }
+
+    @Test
+    public void testCachedListNotLazy() {
+        CacheEJB cache = new CacheEJB();
+        RepositoryUtility.setCacheDeployed(true);
+        repository.cache = cache;
+        try {
+            List<CachedLazyParcel> parcels = repository.getEntityList(CachedLazyParcel.class);
+            assertEquals(PARCELS, parcels.size());
+            for (CachedLazyParcel parcel : parcels) {
+                assertFalse(parcel.getAreas() instanceof LazyEntityList);
+                assertEquals(AREAS_PER_PARCEL, parcel.getAreas().size());
+            }
+            repository.resetQueryCount();
+            parcels = repository.getEntityList(CachedLazyParcel.class);
+            assertEquals(0, repository.getQueryCount());
+            for (CachedLazyParcel parcel : parcels) {
+                assertFalse(parcel.getAreas() instanceof LazyEntityList);
+            }
+        } finally {
+            cache.clearAll();
+            repository.cache = null;
+            RepositoryUtility.setCacheDeployed(null);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.flossola.common.services.LocalInfo;
+import org.flossola.common.services.repository.perf.PerfParcel;
+import org.flossola.common.services.repository.perf.PerfParcelArea;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@linkplain LoadInhibitorScope} and the load inhibitor methods of
+ * {@linkplain CommonRepositoryImpl}. The tests run outside of a JEE container,
+ * so the load inhibitors are held in Thread Local storage by
+ * {@linkplain LocalInfo}.
+ *
+ * @author soladev
+ */
+public class LoadInhibitorScopeTest {
+
+    private CommonRepositoryImpl repository;
+
+    @Before
+    public void setUp() {
+        // The load inhibitor methods do not use the database
+        repository = new CommonRepositoryImpl((DatabaseConnectionManager) null);
+        assertNull(LocalInfo.getTransactionRegistry());
+    }
+
+    @After
+    public void tearDown() {
+        LocalInfo.clear();
+    }
+
+    private static Set<Class<?>> classes(Class<?>... entityClasses) {
+        return new HashSet<Class<?>>(Arrays.asList(entityClasses));
+    }
+
+    @Test
+    public void testNestedScopes() {
+        LoadInhibitorScope outer = repository.inhibitLoad(PerfParcelArea.class);
+        assertEquals(classes(PerfParcelArea.class), LoadInhibitorScope.getInhibitors());
+        LoadInhibitorScope inner = repository.inhibitLoad(PerfParcel.class);
+        assertEquals(classes(PerfParcelArea.class, PerfParcel.class), LoadInhibitorScope.getInhibitors());
+        inner.close();
+        assertEquals(classes(PerfParcelArea.class), LoadInhibitorScope.getInhibitors());
+        outer.close();
+        assertTrue(LoadInhibitorScope.getInhibitors().isEmpty());
+    }
+
+    @Test
+    public void testNestedScopeWithSameClass() {
+        LoadInhibitorScope outer = repository.inhibitLoad(PerfParcelArea.class);
+        LoadInhibitorScope inner = repository.inhibitLoad(PerfParcelArea.class);
+        inner.close();
+        // The outer scope still inhibits the class
+        assertEquals(classes(PerfParcelArea.class), LoadInhibitorScope.getInhibitors());
+        outer.close();
+        assertTrue(LoadInhibitorScope.getInhibitors().isEmpty());
+    }
+
+    @Test
+    public void testCloseTwice() {
+        LoadInhibitorScope outer = repository.inhibitLoad(PerfParcelArea.class);
+        LoadInhibitorScope inner = repository.inhibitLoad(PerfParcel.class);
+        inner.close();
+        inner.close();
+        assertEquals(classes(PerfParcelArea.class), LoadInhibitorScope.getInhibitors());
+        outer.close();
+        outer.close();
+        assertTrue(LoadInhibitorScope.getInhibitors().isEmpty());
+    }
+
+    @Test
+    public void testScopeRestoresInhibitorsSetOnRepository() {
+        repository.setLoadInhibitors(new Class<?>[]{PerfParcelArea.class});
+        LoadInhibitorScope scope = repository.inhibitLoad(PerfParcel.class);
+        assertEquals(classes(PerfParcelArea.class, PerfParcel.class), LoadInhibitorScope.getInhibitors());
+        scope.close();
+        assertEquals(classes(PerfParcelArea.class), LoadInhibitorScope.getInhibitors());
+        repository.clearLoadInhibitors();
+        assertTrue(LoadInhibitorScope.getInhibitors().isEmpty());
+    }
+
+    @Test
+    public void testSetLoadInhibitorsDoesNotOverwrite() {
+        repository.setLoadInhibitors(new Class<?>[]{PerfParcelArea.class});
+        repository.setLoadInhibitors(new Class<?>[]{PerfParcel.class});
+        assertEquals(classes(PerfParcelArea.class), LoadInhibitorScope.getInhibitors());
+        repository.setLoadInhibitors(null);
+        assertEquals(classes(PerfParcelArea.class), LoadInhibitorScope.getInhibitors());
+
+        repository.clearLoadInhibitors();
+        repository.setLoadInhibitors(new Class<?>[]{PerfParcel.class});
+        assertEquals(classes(PerfParcel.class), LoadInhibitorScope.getInhibitors());
+    }
+
+    @Test
+    public void testSetLoadInhibitorsInsideScope() {
+        LoadInhibitorScope scope = repository.inhibitLoad(PerfParcelArea.class);
+        // The scope has already set inhibitors, so they are not replaced
+        repository.setLoadInhibitors(new Class<?>[]{PerfParcel.class});
+        assertEquals(classes(PerfParcelArea.class), LoadInhibitorScope.getInhibitors());
+        scope.close();
+        assertTrue(LoadInhibitorScope.getInhibitors().isEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testInhibitorsCannotBeModified() {
+        LoadInhibitorScope scope = repository.inhibitLoad(PerfParcelArea.class);
+        try {
+            LoadInhibitorScope.getInhibitors().add(PerfParcel.class);
+        } finally {
+            scope.close();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.persistence.Column;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import org.flossola.common.services.repository.entities.AbstractCodeEntity;
+import org.flossola.common.services.repository.entities.AbstractReadOnlyEntity;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@linkplain LocalizedValueResolver} resolves localized values in the
+ * same way as the get_translation database function.
+ *
+ * @author soladev
+ */
+public class LocalizedValueResolverTest {
+
+    @Table(name = "localized_test")
+    public static class LocalizedCode extends AbstractCodeEntity {
+    }
+
+    @Table(name = "plain_test")
+    public static class PlainEntity extends AbstractReadOnlyEntity {
+
+        @Id
+        @Column(name = "id")
+        private String id;
+        @Column(name = "display_value")
+        private String displayValue;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getDisplayValue() {
+            return displayValue;
+        }
+
+        public void setDisplayValue(String displayValue) {
+            this.displayValue = displayValue;
+        }
+    }
+
+    private LocalizedValueResolver resolver;
+
+    @Before
+    public void setUp() {
+        resolver = new LocalizedValueResolver();
+        setLanguages("en");
+    }
+
+    /**
+     * Sets the languages in the same way as the system.language table with
+     * English, French and Spanish in item order.
+     */
+    private void setLanguages(String defaultLanguageCode) {
+        Map<String, Integer> itemOrders = new HashMap<String, Integer>();
+        itemOrders.put("en", 1);
+        itemOrders.put("fr", 2);
+        itemOrders.put("es", 3);
+        resolver.setLanguages(itemOrders, defaultLanguageCode);
+    }
+
+    @Test
+    public void testItemOrder() {
+        String value = "Parcel::::Parcelle::::Parcela";
+        assertEquals("Parcel", resolver.resolve(value, "en"));
+        assertEquals("Parcelle", resolver.resolve(value, "fr"));
+        assertEquals("Parcela", resolver.resolve(value, "es"));
+    }
+
+    @Test
+    public void testItemOrderNotAlphabetical() {
+        Map<String, Integer> itemOrders = new HashMap<String, Integer>();
+        itemOrders.put("fr", 1);
+        itemOrders.put("en", 2);
+        resolver.setLanguages(itemOrders, "en");
+        assertEquals("Parcelle", resolver.resolve("Parcelle::::Parcel", "fr"));
+        assertEquals("Parcel", resolver.resolve("Parcelle::::Parcel", "en"));
+        assertEquals("Parcel", resolver.resolve("Parcelle::::Parcel", "es"));
+    }
+
+    @Test
+    public void testFallbackToDefaultLanguage() {
+        // Empty part
+        assertEquals("Parcel", resolver.resolve("Parcel::::::::Parcela", "fr"));
+        // Missing part
+        assertEquals("Parcel", resolver.resolve("Parcel::::Parcelle", "es"));
+        // Unknown or no language code
+        assertEquals("Parcel", resolver.resolve("Parcel::::Parcelle", "de"));
+        assertEquals("Parcel", resolver.resolve("Parcel::::Parcelle", null));
+        // Language codes are matched exactly
+        assertEquals("Parcel", resolver.resolve("Parcel::::Parcelle", "FR"));
+    }
+
+    @Test
+    public void testDefaultLanguageNotFirst() {
+        setLanguages("fr");
+        assertEquals("Parcelle", resolver.resolve("Parcel::::Parcelle", "es"));
+        assertEquals("Parcelle", resolver.resolve("::::Parcelle::::Parcela", "en"));
+    }
+
+    @Test
+    public void testFallbackToWholeValue() {
+        assertEquals("::::Parcelle", resolver.resolve("::::Parcelle", "es"));
+        assertEquals("::::::::", resolver.resolve("::::::::", "fr"));
+        // No default language
+        setLanguages(null);
+        assertEquals("Parcel::::", resolver.resolve("Parcel::::", "fr"));
+        assertEquals("Parcel", resolver.resolve("Parcel::::", "en"));
+    }
+
+    @Test
+    public void testValueWithoutDelimiter() {
+        assertNull(resolver.resolve(null, "fr"));
+        assertEquals("", resolver.resolve("", "fr"));
+        assertEquals("Parcel", resolver.resolve("Parcel", "fr"));
+        setLanguages("fr");
+        assertEquals("Parcel", resolver.resolve("Parcel", "en"));
+    }
+
+    @Test
+    public void testEmptyParts() {
+        // Empty parts keep the position of each language
+        assertEquals("Parcela", resolver.resolve("::::::::Parcela", "es"));
+        assertEquals("Parcelle", resolver.resolve("Parcel::::Parcelle::::", "fr"));
+        assertEquals("Parcel", resolver.resolve("Parcel::::Parcelle::::", "es"));
+        // A delimiter inside a longer run of colons
+        assertEquals(":Parcelle", resolver.resolve("Parcel:::::Parcelle", "fr"));
+    }
+
+    @Test
+    public void testCachedValuesResolvedForEachLanguage() {
+        String value = "Parcel::::Parcelle";
+        assertEquals("Parcelle", resolver.resolve(value, "fr"));
+        assertEquals(1, resolver.getCacheSize());
+        assertEquals("Parcel", resolver.resolve(value, "en"));
+        assertEquals(1, resolver.getCacheSize());
+    }
+
+    @Test
+    public void testLocalizedColumnReferenced() {
+        assertTrue(LocalizedValueResolver.isLocalizedColumnReferenced(LocalizedCode.class,
+                "display_value = #{value}"));
+        assertTrue(LocalizedValueResolver.isLocalizedColumnReferenced(LocalizedCode.class,
+                "status = 'c'", "t.DISPLAY_VALUE"));
+        assertTrue(LocalizedValueResolver.isLocalizedColumnReferenced(LocalizedCode.class,
+                "get_translation(description, #{lang}) LIKE #{text}"));
+        assertTrue(LocalizedValueResolver.isLocalizedColumnReferenced(LocalizedCode.class,
+                "code,description"));
+        assertTrue(LocalizedValueResolver.isLocalizedColumnReferenced(LocalizedCode.class,
+                "old_display_value = 1 OR display_value = 2"));
+    }
+
+    @Test
+    public void testLocalizedColumnNotReferenced() {
+        assertFalse(LocalizedValueResolver.isLocalizedColumnReferenced(LocalizedCode.class,
+                "display_value_old = #{value}"));
+        assertFalse(LocalizedValueResolver.isLocalizedColumnReferenced(LocalizedCode.class,
+                "old_display_value = #{value}"));
+        assertFalse(LocalizedValueResolver.isLocalizedColumnReferenced(LocalizedCode.class,
+                "description2 = #{value}", "code"));
+        assertFalse(LocalizedValueResolver.isLocalizedColumnReferenced(LocalizedCode.class,
+                (String) null, ""));
+        // The entity has no localized columns
+        assertFalse(LocalizedValueResolver.isLocalizedColumnReferenced(PlainEntity.class,
+                "display_value = #{value}"));
+    }
+}
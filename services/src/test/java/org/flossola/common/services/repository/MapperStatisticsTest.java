@@ -0,0 +1,107 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import java.lang.management.ManagementFactory;
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests the JMX registration of {@linkplain MapperStatistics} and the slow
+ * statement attributes.
+ *
+ * @author soladev
+ */
+public class MapperStatisticsTest {
+
+    private static ObjectName getName(String application, String module) throws Exception {
+        return new ObjectName(MapperStatistics.OBJECT_NAME + ",application="
+                + ObjectName.quote(application) + ",module=" + ObjectName.quote(module));
+    }
+
+    @Test
+    public void testRegisterUntilLastEjbDestroyed() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = getName("sola-test", "sola-test-ejb");
+        MapperStatistics statistics = MapperStatistics.getInstance();
+        statistics.register("sola-test", "sola-test-ejb");
+        statistics.register("sola-test", "sola-test-ejb");
+        assertTrue(server.isRegistered(name));
+        statistics.unregister("sola-test", "sola-test-ejb");
+        assertTrue(server.isRegistered(name));
+        statistics.unregister("sola-test", "sola-test-ejb");
+        assertFalse(server.isRegistered(name));
+        // Unregistering again has no effect
+        statistics.unregister("sola-test", "sola-test-ejb");
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void testApplicationsRegisteredSeparately() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        MapperStatistics statistics = MapperStatistics.getInstance();
+        statistics.register("sola-app1", "services");
+        statistics.register("sola-app2", "services");
+        try {
+            assertTrue(server.isRegistered(getName("sola-app1", "services")));
+            assertTrue(server.isRegistered(getName("sola-app2", "services")));
+        } finally {
+            statistics.unregister("sola-app1", "services");
+            statistics.unregister("sola-app2", "services");
+        }
+        assertFalse(server.isRegistered(getName("sola-app1", "services")));
+        assertFalse(server.isRegistered(getName("sola-app2", "services")));
+    }
+
+    @Test
+    public void testSlowQueryAttributes() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = getName("sola-slow", "services");
+        MapperStatistics statistics = MapperStatistics.getInstance();
+        SlowQueryRecorder recorder = SlowQueryRecorder.getInstance();
+        statistics.register("sola-slow", "services");
+        try {
+            server.setAttribute(name, new Attribute("SlowQueryThresholdMillis", 1L));
+            assertEquals(1, recorder.getThresholdMillis());
+            recorder.record("CommonMapper.getEntity", null, 5000000L, 1, false);
+            CompositeData[] queries = (CompositeData[]) server.getAttribute(name, "SlowQueries");
+            assertEquals(1, queries.length);
+            assertEquals("CommonMapper.getEntity", queries[0].get("statement"));
+            server.invoke(name, "clearSlowQueries", null, null);
+            assertTrue(recorder.getSlowQueries().isEmpty());
+        } finally {
+            recorder.setThresholdMillis(0);
+            recorder.clear();
+            statistics.unregister("sola-slow", "services");
+        }
+    }
+}
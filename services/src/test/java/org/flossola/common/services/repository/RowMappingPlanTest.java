@@ -0,0 +1,167 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.Column;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import org.flossola.common.services.repository.entities.AbstractEntityInfo;
+import org.flossola.common.services.repository.entities.AbstractReadOnlyEntity;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests for {@linkplain RowMappingPlan}.
+ *
+ * @author soladev
+ */
+public class RowMappingPlanTest {
+
+    @Table(name = "mapping_test")
+    public static class MappingEntity extends AbstractReadOnlyEntity {
+
+        @Id
+        @Column(name = "id")
+        private String id;
+        @Column(name = "name")
+        private String name;
+        @Column(name = "type_code")
+        private Character typeCode;
+        @Column(name = "seq_nr")
+        private Short seqNr;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Character getTypeCode() {
+            return typeCode;
+        }
+
+        public void setTypeCode(Character typeCode) {
+            this.typeCode = typeCode;
+        }
+
+        public Short getSeqNr() {
+            return seqNr;
+        }
+
+        public void setSeqNr(Short seqNr) {
+            this.seqNr = seqNr;
+        }
+    }
+
+    @Table(name = "mapping_test")
+    public static class CustomSetterEntity extends MappingEntity {
+
+        private final List<String> setFields = new ArrayList<String>();
+
+        @Override
+        public void setEntityFieldValue(AbstractEntityInfo entityInfo, Object value) {
+            setFields.add(entityInfo.getFieldName());
+            super.setEntityFieldValue(entityInfo, value);
+        }
+    }
+
+    @Table(name = "mapping_test")
+    public static class CustomRedactEntity extends MappingEntity {
+
+        @Override
+        public boolean isRedactRequired(AbstractEntityInfo columnInfo, String redactCode) {
+            return "name".equals(columnInfo.getFieldName());
+        }
+    }
+
+    private static Map<String, Object> createRow() {
+        Map<String, Object> row = new HashMap<String, Object>();
+        row.put("id", "1");
+        row.put("name", "Parcel 1");
+        row.put("type_code", "A");
+        row.put("seq_nr", Integer.valueOf(3));
+        return row;
+    }
+
+    /**
+     * Values are converted to the field types and set on the entity.
+     */
+    @Test
+    public void testMapRow() {
+        RowMappingPlan plan = RepositoryUtility.getRowMappingPlan(MappingEntity.class);
+        MappingEntity entity = (MappingEntity) plan.newEntity();
+        assertTrue(plan.mapRow(entity, createRow()));
+        assertEquals("1", entity.getId());
+        assertEquals("Parcel 1", entity.getName());
+        assertEquals(Character.valueOf('A'), entity.getTypeCode());
+        assertEquals(Short.valueOf((short) 3), entity.getSeqNr());
+        assertFalse(entity.isRedacted());
+        assertFalse(plan.mapRow(plan.newEntity(), new HashMap<String, Object>()));
+    }
+
+    /**
+     * An overridden setEntityFieldValue is called for each column in the row.
+     */
+    @Test
+    public void testMapRowCustomSetter() {
+        RowMappingPlan plan = RepositoryUtility.getRowMappingPlan(CustomSetterEntity.class);
+        CustomSetterEntity entity = (CustomSetterEntity) plan.newEntity();
+        assertTrue(plan.mapRow(entity, createRow()));
+        assertEquals(4, entity.setFields.size());
+        assertTrue(entity.setFields.contains("typeCode"));
+        assertEquals(Character.valueOf('A'), entity.getTypeCode());
+    }
+
+    /**
+     * An overridden isRedactRequired is honoured for columns without the
+     * Redact annotation.
+     */
+    @Test
+    public void testMapRowCustomRedact() {
+        RowMappingPlan plan = RepositoryUtility.getRowMappingPlan(CustomRedactEntity.class);
+        CustomRedactEntity entity = (CustomRedactEntity) plan.newEntity();
+        assertTrue(plan.mapRow(entity, createRow()));
+        assertTrue(entity.isRedacted());
+        assertFalse("Parcel 1".equals(entity.getName()));
+        assertEquals("1", entity.getId());
+    }
+}
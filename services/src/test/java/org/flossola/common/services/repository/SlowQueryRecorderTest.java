@@ -0,0 +1,207 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.Column;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.session.Configuration;
+import org.flossola.common.services.repository.entities.AbstractReadOnlyEntity;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests the capture of slow statements by {@linkplain SlowQueryRecorder}.
+ *
+ * @author soladev
+ */
+public class SlowQueryRecorderTest {
+
+    private static final long SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /**
+     * Parcel entity with a redacted name.
+     */
+    @Table(schema = "perf", name = "parcel")
+    public static class RedactedParcel extends AbstractReadOnlyEntity {
+
+        @Id
+        @Column(name = "id")
+        private String id;
+        @Redact
+        @Column(name = "name")
+        private String name;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    private final SlowQueryRecorder recorder = SlowQueryRecorder.getInstance();
+
+    @After
+    public void tearDown() throws Exception {
+        recorder.setThresholdMillis(0);
+        recorder.setCapacity(SlowQueryRecorder.DEFAULT_CAPACITY);
+        recorder.setMaskRedactedEntities(true);
+        recorder.setLogFile(null);
+        recorder.clear();
+    }
+
+    /**
+     * Captures the statement for the parameter and records it as a slow
+     * statement.
+     */
+    private SlowQuery recordSlow(String sql, Object parameter, String... properties) {
+        Configuration configuration = new Configuration();
+        List<ParameterMapping> mappings = new ArrayList<ParameterMapping>();
+        for (String property : properties) {
+            mappings.add(new ParameterMapping.Builder(configuration, property, Object.class).build());
+        }
+        recorder.capture(new BoundSql(configuration, sql, mappings, parameter));
+        recorder.record("CommonMapper.getEntity", parameter, SLOW_NANOS, 1, false);
+        return recorder.getSlowQueries().get(0);
+    }
+
+    private static RedactedParcel createParcel() {
+        RedactedParcel parcel = new RedactedParcel();
+        parcel.setId("p1");
+        parcel.setName("Secret");
+        return parcel;
+    }
+
+    @Test
+    public void testMaskRedactedEntity() {
+        recorder.setThresholdMillis(1);
+        SlowQuery query = recordSlow("UPDATE perf.parcel SET name=? WHERE id=?",
+                createParcel(), "name", "id");
+        assertEquals("UPDATE perf.parcel SET name=? WHERE id=?", query.getSql());
+        assertEquals("*****", query.getParameters().get("name"));
+        assertEquals("*****", query.getParameters().get("id"));
+    }
+
+    @Test
+    public void testMaskRedactedFieldsOnly() {
+        recorder.setThresholdMillis(1);
+        recorder.setMaskRedactedEntities(false);
+        SlowQuery query = recordSlow("UPDATE perf.parcel SET name=? WHERE id=?",
+                createParcel(), "name", "id");
+        assertEquals("*****", query.getParameters().get("name"));
+        assertEquals("p1", query.getParameters().get("id"));
+
+        // Parameters of free form where clauses do not match a field name
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(CommonSqlProvider.PARAM_ENTITY_CLASS, RedactedParcel.class);
+        params.put("name", "Secret");
+        params.put("search", "Secret%");
+        query = recordSlow("SELECT id FROM perf.parcel WHERE name=? OR name LIKE ?",
+                params, "name", "search");
+        assertEquals("*****", query.getParameters().get("name"));
+        assertEquals("Secret%", query.getParameters().get("search"));
+
+        recorder.setMaskRedactedEntities(true);
+        query = recordSlow("SELECT id FROM perf.parcel WHERE name=? OR name LIKE ?",
+                params, "name", "search");
+        assertEquals("*****", query.getParameters().get("search"));
+    }
+
+    @Test
+    public void testRingBufferWraps() {
+        recorder.setThresholdMillis(1);
+        recorder.setCapacity(3);
+        for (int i = 0; i < 5; i++) {
+            recorder.record("statement" + i, null, SLOW_NANOS, i, false);
+        }
+        List<SlowQuery> queries = recorder.getSlowQueries();
+        assertEquals(3, queries.size());
+        assertEquals("statement4", queries.get(0).getStatement());
+        assertEquals("statement3", queries.get(1).getStatement());
+        assertEquals("statement2", queries.get(2).getStatement());
+    }
+
+    @Test
+    public void testFastStatementNotRecorded() {
+        recorder.setThresholdMillis(1000);
+        recorder.record("statement", null, SLOW_NANOS, 1, false);
+        assertTrue(recorder.getSlowQueries().isEmpty());
+    }
+
+    @Test
+    public void testConfigure() {
+        Properties properties = new Properties();
+        properties.setProperty(SlowQueryRecorder.THRESHOLD_PROPERTY, "250");
+        properties.setProperty(SlowQueryRecorder.CAPACITY_PROPERTY, "2");
+        properties.setProperty(SlowQueryRecorder.MASK_PROPERTY, "false");
+        recorder.configure(properties);
+        assertEquals(250, recorder.getThresholdMillis());
+        assertFalse(recorder.isMaskRedactedEntities());
+        for (int i = 0; i < 3; i++) {
+            recorder.record("statement" + i, null, TimeUnit.SECONDS.toNanos(1), 0, false);
+        }
+        assertEquals(2, recorder.getSlowQueries().size());
+
+        // Invalid values are ignored
+        properties = new Properties();
+        properties.setProperty(SlowQueryRecorder.THRESHOLD_PROPERTY, "slow");
+        recorder.configure(properties);
+        assertEquals(250, recorder.getThresholdMillis());
+    }
+
+    @Test
+    public void testMXBean() {
+        MapperStatistics statistics = MapperStatistics.getInstance();
+        statistics.setSlowQueryThresholdMillis(1);
+        assertEquals(1, recorder.getThresholdMillis());
+        recorder.record("statement", null, SLOW_NANOS, 1, false);
+        assertEquals(1, statistics.getSlowQueries().size());
+        statistics.clearSlowQueries();
+        assertTrue(recorder.getSlowQueries().isEmpty());
+        assertNull(statistics.getSlowQueryLogFile());
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the SQL template cache of {@linkplain CommonSqlProvider}.
+ *
+ * @author soladev
+ */
+public class TemplateCacheTest {
+
+    @Before
+    public void setUp() {
+        CommonSqlProvider.setTemplateCacheEnabled(true);
+        CommonSqlProvider.clearTemplateCache();
+    }
+
+    @After
+    public void tearDown() {
+        CommonSqlProvider.setTemplateCacheEnabled(true);
+        CommonSqlProvider.clearTemplateCache();
+    }
+
+    private static String buildSelect(String where) {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(CommonSqlProvider.PARAM_SELECT_PART, "id, name");
+        params.put(CommonSqlProvider.PARAM_FROM_PART, "template_test");
+        params.put(CommonSqlProvider.PARAM_WHERE_PART, where);
+        return CommonSqlProvider.buildSelectSql(params);
+    }
+
+    @Test
+    public void testTemplateReused() {
+        String sql = buildSelect("id = #{id}");
+        assertEquals(1, CommonSqlProvider.getTemplateCacheSize());
+        assertSame(sql, buildSelect("id = #{id}"));
+        assertEquals(1, CommonSqlProvider.getTemplateCacheSize());
+    }
+
+    @Test
+    public void testCacheDisabled() {
+        CommonSqlProvider.setTemplateCacheEnabled(false);
+        String sql = buildSelect("id = #{id}");
+        assertEquals(0, CommonSqlProvider.getTemplateCacheSize());
+        assertEquals(sql, buildSelect("id = #{id}"));
+    }
+
+    @Test
+    public void testCacheBounded() {
+        long evictions = CommonSqlProvider.getTemplateCacheEvictions();
+        // Literal values create a new template for each statement
+        for (int i = 0; i <= CommonSqlProvider.MAX_CACHED_TEMPLATES; i++) {
+            String sql = buildSelect("id = '" + i + "'");
+            assertTrue(sql, sql.contains("id = '" + i + "'"));
+        }
+        assertTrue(CommonSqlProvider.getTemplateCacheSize() <= CommonSqlProvider.MAX_CACHED_TEMPLATES);
+        assertEquals(CommonSqlProvider.TEMPLATE_EVICTION_COUNT,
+                CommonSqlProvider.getTemplateCacheEvictions() - evictions);
+        // Templates that were removed are generated again
+        String sql = buildSelect("id = '0'");
+        assertTrue(sql, sql.contains("id = '0'"));
+    }
+}
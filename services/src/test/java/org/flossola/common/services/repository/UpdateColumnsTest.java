@@ -0,0 +1,149 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository;
+
+import javax.persistence.Column;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import org.flossola.common.services.LocalInfo;
+import org.flossola.common.services.repository.entities.AbstractEntity;
+import org.flossola.common.services.repository.perf.PerfSessionContext;
+import org.flossola.common.utilities.constants.RolesConstants;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Tests the columns included in the UPDATE statement built by
+ * {@linkplain CommonSqlProvider#buildUpdateSql(AbstractEntity)} for entities
+ * loaded as a projection (see {@linkplain CommonSqlProvider#PARAM_INCLUDE_LIST}).
+ *
+ * @author soladev
+ */
+public class UpdateColumnsTest {
+
+    @Table(name = "update_test")
+    public static class UpdateEntity extends AbstractEntity {
+
+        @Id
+        @Column(name = "id")
+        private String id;
+        @Column(name = "name")
+        private String name;
+        @Column(name = "status_code")
+        private String statusCode;
+        @Column(name = CLASSIFICATION_CODE_COLUMN_NAME)
+        private String classificationCode;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getStatusCode() {
+            return statusCode;
+        }
+
+        public void setStatusCode(String statusCode) {
+            this.statusCode = statusCode;
+        }
+
+        @Override
+        public String getClassificationCode() {
+            return classificationCode;
+        }
+
+        public void setClassificationCode(String classificationCode) {
+            this.classificationCode = classificationCode;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        LocalInfo.clear();
+    }
+
+    /**
+     * Creates an entity as if it was loaded with a projection that does not
+     * include the status code.
+     */
+    private static UpdateEntity loadProjection() {
+        UpdateEntity entity = new UpdateEntity();
+        entity.setId("1");
+        entity.setName("Parcel 1");
+        entity.setLoaded(true);
+        return entity;
+    }
+
+    @Test
+    public void testOnlyModifiedColumnsUpdated() {
+        UpdateEntity entity = loadProjection();
+        entity.setName("Parcel 2");
+        assertTrue(CommonSqlProvider.hasUpdateColumns(entity));
+        String sql = CommonSqlProvider.buildUpdateSql(entity);
+        assertTrue(sql, sql.contains("name=#{name}"));
+        assertFalse(sql, sql.contains("status_code"));
+        assertFalse(sql, sql.contains(UpdateEntity.CLASSIFICATION_CODE_COLUMN_NAME));
+    }
+
+    @Test
+    public void testNoUpdateColumnsWithoutChangeClassRole() {
+        LocalInfo.setSessionContext(PerfSessionContext.withRoles(
+                RolesConstants.CLASSIFICATION_RESTRICTED));
+        UpdateEntity entity = loadProjection();
+        entity.setClassificationCode(RolesConstants.CLASSIFICATION_RESTRICTED);
+        assertTrue(entity.isModified());
+        // The classification code cannot be updated by the user and the other columns 
+        // must not be used as they were not selected
+        assertFalse(CommonSqlProvider.hasUpdateColumns(entity));
+    }
+
+    @Test
+    public void testClassificationUpdatedWithChangeClassRole() {
+        LocalInfo.setSessionContext(PerfSessionContext.withRoles(
+                RolesConstants.CLASSIFICATION_CHANGE_CLASS));
+        UpdateEntity entity = loadProjection();
+        entity.setClassificationCode(RolesConstants.CLASSIFICATION_RESTRICTED);
+        assertTrue(CommonSqlProvider.hasUpdateColumns(entity));
+        String sql = CommonSqlProvider.buildUpdateSql(entity);
+        assertTrue(sql, sql.contains(UpdateEntity.CLASSIFICATION_CODE_COLUMN_NAME + "=#{classificationCode}"));
+        assertFalse(sql, sql.contains("name=#{name}"));
+        assertFalse(sql, sql.contains("status_code"));
+    }
+}
@@ -0,0 +1,172 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository.perf;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import org.flossola.common.services.repository.CommonRepositoryImpl;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import static org.junit.Assert.*;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Verifies the statements executed by a batch save (see
+ * {@linkplain CommonRepositoryImpl#setBatchSave(boolean)}) against the in
+ * memory HSQLDB {@linkplain PerfDatabase}.
+ *
+ * @author soladev
+ */
+public class BatchSaveTest {
+
+    private static final int PARCELS = 10;
+    private static final int AREAS_PER_PARCEL = 2;
+    private static final int NEW_AREAS = 50;
+    private static PerfDatabase db;
+    private static CommonRepositoryImpl repository;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Assume.assumeTrue(PerfDatabase.isTestsEnabled());
+        db = new PerfDatabase("batchsave");
+        db.createSchema();
+        db.generate(PARCELS, AREAS_PER_PARCEL);
+        repository = db.getRepository();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        if (db != null) {
+            db.shutdown();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        repository.setBatchSave(false);
+    }
+
+    private static PerfParcel createParcel(String id) {
+        PerfParcel parcel = new PerfParcel();
+        parcel.setId(id);
+        parcel.setName("Parcel " + id);
+        List<PerfParcelArea> areas = new ArrayList<PerfParcelArea>();
+        for (int i = 0; i < NEW_AREAS; i++) {
+            PerfParcelArea area = new PerfParcelArea();
+            area.setId(String.format("%s-%03d", id, i));
+            area.setTypeCode("officialArea");
+            area.setSize(BigDecimal.valueOf(i));
+            areas.add(area);
+        }
+        parcel.setAreas(areas);
+        return parcel;
+    }
+
+    /**
+     * Checks the parcel areas saved for the parcel match those created by
+     * {@linkplain #createParcel(String)}.
+     */
+    private static void checkAreas(String parcelId) throws Exception {
+        Connection conn = db.getConnection();
+        try {
+            PreparedStatement stmt = conn.prepareStatement("SELECT id, size FROM perf.parcel_area "
+                    + "WHERE parcel_id = ? ORDER BY id");
+            stmt.setString(1, parcelId);
+            ResultSet rs = stmt.executeQuery();
+            int i = 0;
+            while (rs.next()) {
+                assertEquals(String.format("%s-%03d", parcelId, i), rs.getString(1));
+                assertEquals(i, rs.getBigDecimal(2).intValue());
+                i++;
+            }
+            assertEquals(NEW_AREAS, i);
+            stmt.close();
+        } finally {
+            conn.close();
+        }
+    }
+
+    @Test
+    public void testInsertStatementCount() throws Exception {
+        repository.setBatchSave(false);
+        db.resetStatementCounts();
+        PerfParcel parcel = repository.saveEntity(createParcel("single"));
+        assertTrue(parcel.isLoaded());
+        assertEquals(0, db.getBatchCount());
+        assertTrue(db.getStatementCount() >= 1 + NEW_AREAS);
+        checkAreas("single");
+
+        repository.setBatchSave(true);
+        db.resetStatementCounts();
+        parcel = repository.saveEntity(createParcel("batch"));
+        assertTrue(parcel.isLoaded());
+        // One batch for the parcel and one for the parcel areas. The refresh of
+        // database default values takes at most one query for each entity class.
+        assertEquals(2, db.getBatchCount());
+        assertTrue(db.getStatementCount() <= 2 + 2);
+        for (PerfParcelArea area : parcel.getAreas()) {
+            assertTrue(area.isLoaded());
+            assertEquals("batch", area.getParcelId());
+        }
+        checkAreas("batch");
+
+        PerfParcel loaded = repository.getEntity(PerfParcel.class, "batch");
+        assertEquals(NEW_AREAS, loaded.getAreas().size());
+    }
+
+    @Test
+    public void testZeroUpdateCount() throws Exception {
+        repository.setBatchSave(true);
+        String id = PerfDatabase.parcelId(0);
+        PerfParcel parcel = repository.getEntity(PerfParcel.class, id);
+        db.execute("DELETE FROM perf.parcel WHERE id = '" + id + "'");
+        parcel.setName("Parcel 0 v2");
+        parcel = repository.saveEntity(parcel);
+        assertFalse(parcel.isLoaded());
+    }
+
+    @Test
+    public void testZeroUpdateCountWithChildren() throws Exception {
+        repository.setBatchSave(true);
+        String id = PerfDatabase.parcelId(1);
+        PerfParcel parcel = repository.getEntity(PerfParcel.class, id);
+        db.execute("DELETE FROM perf.parcel WHERE id = '" + id + "'");
+        // The parcel update is flushed when the parcel area update is added to the batch
+        parcel.setName("Parcel 1 v2");
+        parcel.getAreas().get(0).setTypeCode("surveyedArea");
+        parcel = repository.saveEntity(parcel);
+        assertFalse(parcel.isLoaded());
+        assertTrue(parcel.getAreas().get(0).isLoaded());
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository.perf;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.flossola.common.services.repository.CommonRepositoryImpl;
+import org.flossola.common.services.repository.CommonSqlProvider;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import static org.junit.Assert.*;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Verifies the number of queries the repository executes to load a list of
+ * parent entities along with their child lists. Without batch child loading
+ * the repository executes one query for the parents and one query for each
+ * parent (N+1). With batch child loading the children are loaded with one
+ * query per {@linkplain CommonRepositoryImpl#BATCH_LOAD_SIZE} parents.
+ *
+ * @author soladev
+ */
+public class ChildLoadingQueryCountTest {
+
+    private static final int PARCELS = CommonRepositoryImpl.BATCH_LOAD_SIZE + 200;
+    private static final int AREAS_PER_PARCEL = 2;
+    private static PerfDatabase db;
+    private static CommonRepositoryImpl repository;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Assume.assumeTrue(PerfDatabase.isTestsEnabled());
+        db = new PerfDatabase("querycount");
+        db.createSchema();
+        db.generate(PARCELS, AREAS_PER_PARCEL);
+        repository = db.getRepository();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        if (db != null) {
+            db.shutdown();
+        }
+    }
+
+    private static List<PerfParcel> loadParcels(int count) {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(CommonSqlProvider.PARAM_WHERE_PART, "id < #{toId}");
+        params.put("toId", PerfDatabase.parcelId(count));
+        repository.resetQueryCount();
+        List<PerfParcel> parcels = repository.getEntityList(PerfParcel.class, params);
+        assertEquals(count, parcels.size());
+        for (PerfParcel parcel : parcels) {
+            assertEquals(AREAS_PER_PARCEL, parcel.getAreas().size());
+        }
+        return parcels;
+    }
+
+    @Test
+    public void testGetEntity() {
+        repository.setBatchChildLoading(false);
+        repository.resetQueryCount();
+        PerfParcel parcel = repository.getEntity(PerfParcel.class, PerfDatabase.parcelId(0));
+        assertEquals(AREAS_PER_PARCEL, parcel.getAreas().size());
+        assertEquals(2, repository.getQueryCount());
+    }
+
+    @Test
+    public void testGetEntityListNPlusOne() {
+        repository.setBatchChildLoading(false);
+        loadParcels(10);
+        assertEquals(1 + 10, repository.getQueryCount());
+    }
+
+    @Test
+    public void testGetEntityListBatchLoad() {
+        repository.setBatchChildLoading(true);
+        try {
+            loadParcels(10);
+            assertEquals(1 + 1, repository.getQueryCount());
+            // More parents than fit in one batch
+            loadParcels(PARCELS);
+            assertEquals(1 + 2, repository.getQueryCount());
+        } finally {
+            repository.setBatchChildLoading(false);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository.perf;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.flossola.common.services.LocalInfo;
+import org.flossola.common.services.repository.CommonRepositoryImpl;
+import org.flossola.common.services.repository.CommonSqlProvider;
+import org.flossola.common.utilities.constants.RolesConstants;
+import org.flossola.common.utilities.exceptions.SOLAException;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import static org.junit.Assert.*;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Verifies the count returned by
+ * {@linkplain CommonRepositoryImpl#getEntityListCount(Class, String, Map)}
+ * matches the number of entities returned by getEntityList when some of the
+ * rows have a security classification the user does not have clearance for.
+ *
+ * @author soladev
+ */
+public class EntityListCountTest {
+
+    private static final int PARCELS = 20;
+    private static PerfDatabase db;
+    private static CommonRepositoryImpl repository;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Assume.assumeTrue(PerfDatabase.isTestsEnabled());
+        db = new PerfDatabase("entitycount");
+        db.createSchema();
+        db.generate(PARCELS, 1);
+        db.execute(classify(RolesConstants.CLASSIFICATION_RESTRICTED, 0, 1, 2, 3),
+                classify(RolesConstants.CLASSIFICATION_SECRET, 4, 5),
+                classify(RolesConstants.CLASSIFICATION_SUPPRESSION_ORDER, 6),
+                classify("99SEC_Undeclared", 7),
+                classify("", 8),
+                classify(RolesConstants.CLASSIFICATION_UNRESTRICTED, 9));
+        repository = db.getRepository();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        if (db != null) {
+            db.shutdown();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        LocalInfo.clear();
+    }
+
+    private static String classify(String classificationCode, int... parcels) {
+        StringBuilder ids = new StringBuilder();
+        for (int i : parcels) {
+            ids.append(ids.length() == 0 ? "" : ", ").append("'").append(PerfDatabase.parcelId(i)).append("'");
+        }
+        return "UPDATE perf.parcel SET classification_code = '" + classificationCode
+                + "' WHERE id IN (" + ids + ")";
+    }
+
+    private static void setRoles(String... roles) {
+        LocalInfo.setSessionContext(PerfSessionContext.withRoles(roles));
+    }
+
+    private static void assertCount(long expected, String whereClause, Map<String, Object> params) {
+        long count = repository.getEntityListCount(PerfParcel.class, whereClause, params);
+        List<PerfParcel> parcels = repository.getEntityList(PerfParcel.class, whereClause, params);
+        assertEquals(parcels.size(), count);
+        assertEquals(expected, count);
+    }
+
+    @Test
+    public void testCountWithoutSessionContext() {
+        assertCount(PARCELS, null, new HashMap<String, Object>());
+    }
+
+    @Test
+    public void testCountTopSecret() {
+        setRoles(RolesConstants.CLASSIFICATION_TOPSECRET);
+        assertCount(PARCELS, null, new HashMap<String, Object>());
+    }
+
+    @Test
+    public void testCountRestricted() {
+        setRoles(RolesConstants.CLASSIFICATION_RESTRICTED);
+        // Secret, suppression order and undeclared classifications are hidden
+        assertCount(PARCELS - 4, null, new HashMap<String, Object>());
+    }
+
+    @Test
+    public void testCountSpecialtyClassification() {
+        setRoles(RolesConstants.CLASSIFICATION_SECRET,
+                RolesConstants.CLASSIFICATION_SUPPRESSION_ORDER);
+        // Only the undeclared classification is hidden
+        assertCount(PARCELS - 1, null, new HashMap<String, Object>());
+    }
+
+    @Test
+    public void testCountUnclassifiedUser() {
+        setRoles();
+        assertCount(PARCELS - 8, null, new HashMap<String, Object>());
+    }
+
+    @Test
+    public void testCountWithWhereClause() {
+        setRoles(RolesConstants.CLASSIFICATION_RESTRICTED);
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("toId", PerfDatabase.parcelId(8));
+        // Parcels 0 to 7 less secret, suppression order and undeclared
+        assertCount(4, "id < #{toId}", params);
+        params.put(CommonSqlProvider.PARAM_ORDER_BY_PART, "id");
+        assertCount(4, "id < #{toId}", params);
+    }
+
+    private static Map<String, Object> queryParams(String query) {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(CommonSqlProvider.PARAM_QUERY, query);
+        params.put("toId", PerfDatabase.parcelId(8));
+        return params;
+    }
+
+    @Test
+    public void testCountQuery() {
+        setRoles(RolesConstants.CLASSIFICATION_RESTRICTED);
+        // Parcels 0 to 7 less secret, suppression order and undeclared
+        assertCount(4, null, queryParams("SELECT id, name, classification_code "
+                + "FROM perf.parcel WHERE id < #{toId}"));
+    }
+
+    @Test(expected = SOLAException.class)
+    public void testCountQueryWithoutClassification() {
+        setRoles(RolesConstants.CLASSIFICATION_RESTRICTED);
+        repository.getEntityListCount(PerfParcel.class,
+                queryParams("SELECT id, name FROM perf.parcel WHERE id < #{toId}"));
+    }
+
+    @Test
+    public void testCountQueryTopSecret() {
+        setRoles(RolesConstants.CLASSIFICATION_TOPSECRET);
+        // No classification condition is required, so the column can be omitted
+        assertEquals(8, repository.getEntityListCount(PerfParcel.class,
+                queryParams("SELECT id, name FROM perf.parcel WHERE id < #{toId}")));
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository.perf;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.Column;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import org.flossola.common.services.LocalInfo;
+import org.flossola.common.services.repository.CommonRepositoryImpl;
+import org.flossola.common.services.repository.CommonSqlProvider;
+import org.flossola.common.services.repository.DefaultSorter;
+import org.flossola.common.services.repository.EntityPage;
+import org.flossola.common.services.repository.entities.AbstractReadOnlyEntity;
+import org.flossola.common.utilities.constants.RolesConstants;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import static org.junit.Assert.*;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Verifies that paging through a result with
+ * {@linkplain CommonRepositoryImpl#getEntityPage(Class, String, Map, int, String)}
+ * returns every entity exactly once and in the same order as a single query,
+ * including sorts with ties, descending columns and timestamps that differ by
+ * less than a millisecond.
+ *
+ * @author soladev
+ */
+public class KeysetPaginationTest {
+
+    private static final int PARCELS = 23;
+    private static final int EVENTS = 41;
+    private static PerfDatabase db;
+    private static CommonRepositoryImpl repository;
+
+    @Table(schema = "perf", name = "parcel_event")
+    @DefaultSorter(sortString = "priority DESC, event_time DESC")
+    public static class ParcelEvent extends AbstractReadOnlyEntity {
+
+        @Id
+        @Column(name = "id")
+        private String id;
+        @Column(name = "priority")
+        private Integer priority;
+        @Column(name = "event_time")
+        private Date eventTime;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public Integer getPriority() {
+            return priority;
+        }
+
+        public void setPriority(Integer priority) {
+            this.priority = priority;
+        }
+
+        public Date getEventTime() {
+            return eventTime;
+        }
+
+        public void setEventTime(Date eventTime) {
+            this.eventTime = eventTime;
+        }
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Assume.assumeTrue(PerfDatabase.isTestsEnabled());
+        db = new PerfDatabase("keyset");
+        db.createSchema();
+        db.generate(PARCELS, 1);
+        // Parcels 5 to 9 are hidden from users without Secret clearance
+        db.execute("UPDATE perf.parcel SET classification_code = '"
+                + RolesConstants.CLASSIFICATION_SECRET + "' WHERE id >= '" + PerfDatabase.parcelId(5)
+                + "' AND id < '" + PerfDatabase.parcelId(10) + "'",
+                "CREATE TABLE perf.parcel_event (id VARCHAR(40) PRIMARY KEY, "
+                + "priority INTEGER NOT NULL, event_time TIMESTAMP NOT NULL)");
+        Connection conn = db.getConnection();
+        try {
+            conn.setAutoCommit(false);
+            PreparedStatement insert = conn.prepareStatement(
+                    "INSERT INTO perf.parcel_event (id, priority, event_time) VALUES (?, ?, ?)");
+            long base = 1400000000000L;
+            for (int i = 0; i < EVENTS; i++) {
+                // Only three priorities and a few distinct times so the sort has many ties. 
+                // Some of the times differ by microseconds within the same millisecond. 
+                Timestamp eventTime = new Timestamp(base + (i % 3));
+                eventTime.setNanos(eventTime.getNanos() + (i % 2) * 1000);
+                insert.setString(1, String.format("e%03d", i));
+                insert.setInt(2, i % 3);
+                insert.setTimestamp(3, eventTime);
+                insert.executeUpdate();
+            }
+            insert.close();
+            conn.commit();
+        } finally {
+            conn.close();
+        }
+        repository = db.getRepository();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        if (db != null) {
+            db.shutdown();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        LocalInfo.clear();
+    }
+
+    /**
+     * Reads all pages and returns the ids of the entities in the order they
+     * were returned.
+     */
+    private static <T extends AbstractReadOnlyEntity> List<String> readAllPages(Class<T> entityClass,
+            int pageSize) {
+        List<String> ids = new ArrayList<String>();
+        String token = null;
+        int pages = 0;
+        do {
+            EntityPage<T> page = repository.getEntityPage(entityClass, null, null, pageSize, token);
+            assertTrue(page.getEntities().size() <= pageSize);
+            for (T entity : page.getEntities()) {
+                ids.add(entity.getEntityId());
+            }
+            token = page.getNextPageToken();
+            pages++;
+            assertTrue("Paging did not finish", pages <= 100);
+        } while (token != null);
+        return ids;
+    }
+
+    private static List<String> readAll(Class<? extends AbstractReadOnlyEntity> entityClass,
+            String orderBy) {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(CommonSqlProvider.PARAM_ORDER_BY_PART, orderBy);
+        List<String> ids = new ArrayList<String>();
+        for (AbstractReadOnlyEntity entity : repository.getEntityList(entityClass, params)) {
+            ids.add(entity.getEntityId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void testPagesWithTiesAndDescendingSort() {
+        List<String> expected = readAll(ParcelEvent.class, "priority DESC, event_time DESC, id ASC");
+        assertEquals(EVENTS, expected.size());
+        for (int pageSize : new int[]{1, 4, 7, EVENTS, EVENTS + 1}) {
+            assertEquals("Page size " + pageSize, expected, readAllPages(ParcelEvent.class, pageSize));
+        }
+    }
+
+    @Test
+    public void testPagesWithClassifiedRows() {
+        LocalInfo.setSessionContext(PerfSessionContext.withRoles(RolesConstants.CLASSIFICATION_RESTRICTED));
+        List<String> expected = readAll(PerfParcel.class, "id");
+        assertEquals(PARCELS - 5, expected.size());
+        // A page size of 5 returns a page where every row is hidden
+        for (int pageSize : new int[]{2, 5}) {
+            assertEquals("Page size " + pageSize, expected, readAllPages(PerfParcel.class, pageSize));
+        }
+    }
+}
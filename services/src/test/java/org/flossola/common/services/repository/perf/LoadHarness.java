@@ -0,0 +1,67 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository.perf;
+
+/**
+ * Executes a {@linkplain LoadScenario} for a fixed number of operations after
+ * a warm up period and reports the throughput and latency percentiles. The
+ * operations are executed sequentially on the calling thread so the results
+ * are repeatable for the same data set.
+ *
+ * @author soladev
+ */
+public class LoadHarness {
+
+    private final int warmupOperations;
+    private final int operations;
+
+    /**
+     * @param warmupOperations The number of operations to execute before the
+     * measurement starts. Allows the JIT, the SQL template cache and the
+     * database to warm up.
+     * @param operations The number of operations to measure.
+     */
+    public LoadHarness(int warmupOperations, int operations) {
+        this.warmupOperations = warmupOperations;
+        this.operations = operations;
+    }
+
+    public LoadReport run(LoadScenario scenario) throws Exception {
+        for (int i = 0; i < warmupOperations; i++) {
+            scenario.execute(i);
+        }
+        long[] latencies = new long[operations];
+        long start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            long opStart = System.nanoTime();
+            scenario.execute(warmupOperations + i);
+            latencies[i] = System.nanoTime() - opStart;
+        }
+        return new LoadReport(scenario.getName(), latencies, System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository.perf;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The throughput and latency percentiles measured by the
+ * {@linkplain LoadHarness} for one {@linkplain LoadScenario}.
+ *
+ * @author soladev
+ */
+public class LoadReport {
+
+    private final String scenario;
+    private final long[] latencies;
+    private final long elapsedNanos;
+
+    /**
+     * @param scenario The name of the scenario
+     * @param latencies The latency in nanoseconds of each operation
+     * @param elapsedNanos The total time taken to execute all operations
+     */
+    public LoadReport(String scenario, long[] latencies, long elapsedNanos) {
+        this.scenario = scenario;
+        this.latencies = latencies.clone();
+        this.elapsedNanos = elapsedNanos;
+        Arrays.sort(this.latencies);
+    }
+
+    public String getScenario() {
+        return scenario;
+    }
+
+    public int getOperations() {
+        return latencies.length;
+    }
+
+    /**
+     * @return The number of operations per second.
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : latencies.length * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Returns the latency percentile using the nearest rank method.
+     *
+     * @param percentile The percentile between 0 and 100
+     * @return The latency in microseconds.
+     */
+    public long getPercentileMicros(double percentile) {
+        if (latencies.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * latencies.length);
+        return TimeUnit.NANOSECONDS.toMicros(latencies[Math.min(latencies.length - 1,
+                Math.max(0, rank - 1))]);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-12s ops=%6d  %10.1f ops/s  p50=%6dus  p95=%6dus  p99=%6dus  max=%6dus",
+                scenario, getOperations(), getThroughput(), getPercentileMicros(50),
+                getPercentileMicros(95), getPercentileMicros(99), getPercentileMicros(100));
+    }
+}
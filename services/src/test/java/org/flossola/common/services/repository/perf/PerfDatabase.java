@@ -0,0 +1,287 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository.perf;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sql.DataSource;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.managed.ManagedTransactionFactory;
+import org.flossola.common.services.repository.CommonMapper;
+import org.flossola.common.services.repository.CommonRepositoryImpl;
+import org.flossola.common.services.repository.DatabaseConnectionManager;
+
+/**
+ * In memory HSQLDB database used to measure the repository end to end
+ * without a PostgreSQL server. The column names of query results are
+ * converted to lower case so that the column names returned to Mybatis match
+ * those returned by PostgreSQL. The SqlSessionFactory is built from a Mybatis
+ * Configuration with a managed transaction factory and the
+ * {@linkplain CommonMapper} is registered by the
+ * {@linkplain DatabaseConnectionManager} in the same way as for the JNDI data
+ * source used in production. As there is no JTA transaction to commit, the
+ * connections use auto commit so that saves are visible to later queries. The services test jar publishes this class so
+ * the benchmarks module can extend it with its own schemas.
+ * <p>
+ * The JDBC statements executed by the repository are counted so that tests
+ * can verify the number of database round trips, including the JDBC batches
+ * that are sent as one round trip.</p>
+ *
+ * @author soladev
+ */
+public class PerfDatabase {
+
+    /**
+     * System property that enables the unit tests that run against the in
+     * memory database, e.g. {@code mvn test -Dsola.hsqldb.tests=true}. The
+     * tests are skipped by default as they have not been verified with every
+     * build environment.
+     */
+    public static final String TESTS_PROPERTY = "sola.hsqldb.tests";
+    private static final String DRIVER = "org.hsqldb.jdbcDriver";
+    private final PooledDataSource dataSource;
+    private final CommonRepositoryImpl repository;
+    private final AtomicLong statementCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+
+    /**
+     * Creates a new in memory database.
+     *
+     * @param name The name of the database. Each name identifies a separate in
+     * memory database.
+     */
+    public PerfDatabase(String name) {
+        dataSource = new PooledDataSource(DRIVER, "jdbc:hsqldb:mem:" + name, "sa", "");
+        Configuration config = new Configuration(new Environment(name,
+                new ManagedTransactionFactory(), lowerCaseColumns(dataSource, DataSource.class)));
+        repository = new CommonRepositoryImpl(new DatabaseConnectionManager(
+                new SqlSessionFactoryBuilder().build(config), CommonMapper.class));
+    }
+
+    /**
+     * @return true if the {@value #TESTS_PROPERTY} system property is set to
+     * true. Tests that use the in memory database should use
+     * {@code Assume.assumeTrue(PerfDatabase.isTestsEnabled())} so that they are
+     * skipped unless they are enabled.
+     */
+    public static boolean isTestsEnabled() {
+        return Boolean.getBoolean(TESTS_PROPERTY);
+    }
+
+    public CommonRepositoryImpl getRepository() {
+        return repository;
+    }
+
+    public Connection getConnection() throws SQLException {
+        return dataSource.getConnection();
+    }
+
+    /**
+     * @return The number of statements the repository has executed since the
+     * database was created or the counts were reset. Each JDBC batch counts as
+     * one statement.
+     */
+    public long getStatementCount() {
+        return statementCount.get();
+    }
+
+    /**
+     * @return The number of JDBC batches the repository has executed since the
+     * database was created or the counts were reset.
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * Resets the statement and batch counts to zero.
+     */
+    public void resetStatementCounts() {
+        statementCount.set(0);
+        batchCount.set(0);
+    }
+
+    /**
+     * Wraps the JDBC object so that the column names and labels reported by
+     * any ResultSetMetaData obtained through it are in lower case. HSQLDB
+     * converts unquoted identifiers to upper case whereas PostgreSQL converts
+     * them to lower case. The JDBC objects returned by the wrapped object are
+     * also wrapped. Each statement executed through the wrapped objects is
+     * counted.
+     */
+    private <T> T lowerCaseColumns(final Object target, Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(PerfDatabase.class.getClassLoader(),
+                new Class<?>[]{type}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (target instanceof Statement && method.getName().startsWith("execute")) {
+                            statementCount.incrementAndGet();
+                            if ("executeBatch".equals(method.getName())) {
+                                batchCount.incrementAndGet();
+                            }
+                        }
+                        Object result;
+                        try {
+                            result = method.invoke(target, args);
+                        } catch (InvocationTargetException ex) {
+                            throw ex.getCause();
+                        }
+                        Class<?> returnType = method.getReturnType();
+                        if (result instanceof String && ("getColumnLabel".equals(method.getName())
+                                || "getColumnName".equals(method.getName()))) {
+                            result = ((String) result).toLowerCase(Locale.ENGLISH);
+                        } else if (result != null && returnType.isInterface()
+                                && returnType.getName().startsWith("java.sql.")) {
+                            result = lowerCaseColumns(result, returnType);
+                        }
+                        return result;
+                    }
+                }));
+    }
+
+    /**
+     * Executes each of the SQL statements in a single transaction.
+     *
+     * @param sql The SQL statements to execute.
+     * @throws SQLException
+     */
+    public void execute(String... sql) throws SQLException {
+        Connection conn = getConnection();
+        try {
+            conn.setAutoCommit(false);
+            Statement stmt = conn.createStatement();
+            for (String s : sql) {
+                stmt.execute(s);
+            }
+            stmt.close();
+            conn.commit();
+        } finally {
+            // The repository connections from the pool rely on auto commit
+            conn.setAutoCommit(true);
+            conn.close();
+        }
+    }
+
+    /**
+     * Creates the perf schema along with the parcel and parcel_area tables. The
+     * parcels are not classified unless classification_code is updated.
+     *
+     * @throws SQLException
+     */
+    public void createSchema() throws SQLException {
+        String versionColumns = ", rowidentifier VARCHAR(40), rowversion INTEGER DEFAULT 0, "
+                + "change_user VARCHAR(50)";
+        execute("CREATE SCHEMA perf AUTHORIZATION DBA",
+                "CREATE TABLE perf.parcel (id VARCHAR(40) PRIMARY KEY, name VARCHAR(255), "
+                + "status_code VARCHAR(20), classification_code VARCHAR(20)" + versionColumns + ")",
+                "CREATE TABLE perf.parcel_area (id VARCHAR(40) PRIMARY KEY, "
+                + "parcel_id VARCHAR(40), type_code VARCHAR(20), size NUMERIC(29,2)"
+                + versionColumns + ")",
+                "CREATE INDEX parcel_area_parcel_id_ind ON perf.parcel_area (parcel_id)");
+    }
+
+    /**
+     * Generates a synthetic entity graph of parcels and parcel areas. The ids
+     * are generated from the index of the parcel (see
+     * {@linkplain #parcelId(int)}) so the scenarios can select parcels without
+     * querying the database first.
+     *
+     * @param parcelCount The number of parcels to create
+     * @param areasPerParcel The number of parcel areas to create for each
+     * parcel
+     * @throws SQLException
+     */
+    public void generate(int parcelCount, int areasPerParcel) throws SQLException {
+        Connection conn = getConnection();
+        try {
+            conn.setAutoCommit(false);
+            PreparedStatement parcel = conn.prepareStatement("INSERT INTO perf.parcel "
+                    + "(id, name, status_code, rowidentifier) VALUES (?, ?, 'current', ?)");
+            PreparedStatement area = conn.prepareStatement("INSERT INTO perf.parcel_area "
+                    + "(id, parcel_id, type_code, size, rowidentifier) VALUES (?, ?, ?, ?, ?)");
+            for (int i = 0; i < parcelCount; i++) {
+                parcel.setString(1, parcelId(i));
+                parcel.setString(2, "Parcel " + i);
+                parcel.setString(3, parcelId(i));
+                parcel.addBatch();
+                for (int j = 0; j < areasPerParcel; j++) {
+                    String areaId = parcelId(i) + "-" + j;
+                    area.setString(1, areaId);
+                    area.setString(2, parcelId(i));
+                    area.setString(3, j == 0 ? "officialArea" : "calculatedArea");
+                    area.setBigDecimal(4, BigDecimal.valueOf(100 + (i * 7 + j) % 10000));
+                    area.setString(5, areaId);
+                    area.addBatch();
+                }
+                if (i % 1000 == 999) {
+                    parcel.executeBatch();
+                    area.executeBatch();
+                }
+            }
+            parcel.executeBatch();
+            area.executeBatch();
+            conn.commit();
+        } finally {
+            // The repository connections from the pool rely on auto commit
+            conn.setAutoCommit(true);
+            conn.close();
+        }
+    }
+
+    /**
+     * @return The id of the parcel with the specified index.
+     */
+    public static String parcelId(int i) {
+        return String.format("p%07d", i);
+    }
+
+    /**
+     * Closes the database and releases the memory it uses.
+     */
+    public void shutdown() throws SQLException {
+        try {
+            Statement stmt = getConnection().createStatement();
+            stmt.execute("SHUTDOWN");
+        } finally {
+            // Closes the connection used for the shutdown as well
+            dataSource.forceCloseAll();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository.perf;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * Transaction Synchronization Registry for a single transaction. Allows the
+ * transaction scoped behaviour of the repository to be tested outside of a
+ * JEE container (see
+ * {@linkplain org.flossola.common.services.LocalInfo#setTransactionRegistry(TransactionSynchronizationRegistry)}).
+ * The transaction is active until {@linkplain #complete(int)} is called.
+ *
+ * @author soladev
+ */
+public class PerfTransactionRegistry implements TransactionSynchronizationRegistry {
+
+    private final Map<Object, Object> resources = new HashMap<Object, Object>();
+    private final List<Synchronization> synchronizations = new ArrayList<Synchronization>();
+    private int status = Status.STATUS_ACTIVE;
+
+    @Override
+    public Object getTransactionKey() {
+        return this;
+    }
+
+    @Override
+    public void putResource(Object key, Object value) {
+        resources.put(key, value);
+    }
+
+    @Override
+    public Object getResource(Object key) {
+        return resources.get(key);
+    }
+
+    @Override
+    public void registerInterposedSynchronization(Synchronization sync) {
+        if (status != Status.STATUS_ACTIVE) {
+            throw new IllegalStateException("Transaction is not active");
+        }
+        synchronizations.add(sync);
+    }
+
+    @Override
+    public int getTransactionStatus() {
+        return status;
+    }
+
+    @Override
+    public void setRollbackOnly() {
+        status = Status.STATUS_MARKED_ROLLBACK;
+    }
+
+    @Override
+    public boolean getRollbackOnly() {
+        return status == Status.STATUS_MARKED_ROLLBACK;
+    }
+
+    /**
+     * @return The synchronizations registered with the transaction.
+     */
+    public List<Synchronization> getSynchronizations() {
+        return synchronizations;
+    }
+
+    /**
+     * Completes the transaction and notifies the registered synchronizations.
+     * Has no effect if the transaction has already completed.
+     *
+     * @param completionStatus The status to report to the synchronizations.
+     * e.g. Status.STATUS_COMMITTED
+     */
+    public void complete(int completionStatus) {
+        if (status == Status.STATUS_NO_TRANSACTION) {
+            return;
+        }
+        status = Status.STATUS_NO_TRANSACTION;
+        for (Synchronization sync : synchronizations) {
+            sync.afterCompletion(completionStatus);
+        }
+    }
+}
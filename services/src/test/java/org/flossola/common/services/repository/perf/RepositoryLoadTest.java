@@ -0,0 +1,188 @@
+/**
+ * ******************************************************************************************
+ * Copyright (C) 2015 - Food and Agriculture Organization of the United Nations (FAO).
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice,this list
+ *       of conditions and the following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice,this list
+ *       of conditions and the following disclaimer in the documentation and/or other
+ *       materials provided with the distribution.
+ *    3. Neither the name of FAO nor the names of its contributors may be used to endorse or
+ *       promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,PROCUREMENT
+ * OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,STRICT LIABILITY,OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+ * EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ * *********************************************************************************************
+ */
+package org.flossola.common.services.repository.perf;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import org.flossola.common.services.repository.CommonRepositoryImpl;
+import org.flossola.common.services.repository.CommonSqlProvider;
+import org.flossola.common.utilities.logging.LogUtility;
+import org.junit.AfterClass;
+import static org.junit.Assert.*;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Repeatable get, list, save and bulk update load scenarios executed against
+ * the {@linkplain PerfDatabase}. The scale of the synthetic data and the
+ * number of operations can be set with system properties, e.g.
+ * <pre>
+ * mvn test -Dtest=RepositoryLoadTest -Dsola.perf.parcels=100000 -Dsola.perf.operations=5000
+ * </pre>
+ * The scenarios are skipped unless at least one {@value #PROPERTY_PREFIX}
+ * system property is set, so they do not run as part of the normal build. Use
+ * {@code -Dsola.perf.enabled=true} to run them with the default scale. The
+ * report for each scenario is logged using {@linkplain LogUtility}.
+ *
+ * @author soladev
+ */
+public class RepositoryLoadTest {
+
+    private static final String PROPERTY_PREFIX = "sola.perf.";
+    private static final int PARCELS = Integer.getInteger("sola.perf.parcels", 2000);
+    private static final int AREAS_PER_PARCEL = Integer.getInteger("sola.perf.areas", 3);
+    private static final int OPERATIONS = Integer.getInteger("sola.perf.operations", 200);
+    private static final int PAGE_SIZE = 50;
+    private static PerfDatabase db;
+    private static CommonRepositoryImpl repository;
+    private static LoadHarness harness;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        Assume.assumeTrue(isEnabled());
+        db = new PerfDatabase("perf");
+        db.createSchema();
+        db.generate(PARCELS, AREAS_PER_PARCEL);
+        repository = db.getRepository();
+        repository.setBatchChildLoading(true);
+        harness = new LoadHarness(Math.max(10, OPERATIONS / 10), OPERATIONS);
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        if (db != null) {
+            db.shutdown();
+        }
+    }
+
+    /**
+     * @return true if any of the {@value #PROPERTY_PREFIX} system properties
+     * is set.
+     */
+    private static boolean isEnabled() {
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith(PROPERTY_PREFIX)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static LoadReport run(LoadScenario scenario) throws Exception {
+        LoadReport report = harness.run(scenario);
+        LogUtility.log(report.toString(), Level.INFO);
+        return report;
+    }
+
+    @Test
+    public void testGetEntity() throws Exception {
+        LoadReport report = run(new LoadScenario() {
+            @Override
+            public String getName() {
+                return "get";
+            }
+
+            @Override
+            public void execute(int iteration) {
+                PerfParcel parcel = repository.getEntity(PerfParcel.class,
+                        PerfDatabase.parcelId(iteration % PARCELS));
+                assertEquals(AREAS_PER_PARCEL, parcel.getAreas().size());
+            }
+        });
+        assertEquals(OPERATIONS, report.getOperations());
+    }
+
+    @Test
+    public void testGetEntityList() throws Exception {
+        LoadReport report = run(new LoadScenario() {
+            @Override
+            public String getName() {
+                return "list";
+            }
+
+            @Override
+            public void execute(int iteration) {
+                int from = (iteration * PAGE_SIZE) % Math.max(1, PARCELS - PAGE_SIZE);
+                Map<String, Object> params = new HashMap<String, Object>();
+                params.put(CommonSqlProvider.PARAM_WHERE_PART, "id >= #{fromId}");
+                params.put(CommonSqlProvider.PARAM_ORDER_BY_PART, "id");
+                params.put(CommonSqlProvider.PARAM_LIMIT_PART, PAGE_SIZE);
+                params.put("fromId", PerfDatabase.parcelId(from));
+                List<PerfParcel> parcels = repository.getEntityList(PerfParcel.class, params);
+                assertEquals(Math.min(PAGE_SIZE, PARCELS), parcels.size());
+            }
+        });
+        assertEquals(OPERATIONS, report.getOperations());
+    }
+
+    @Test
+    public void testSaveEntity() throws Exception {
+        LoadReport report = run(new LoadScenario() {
+            @Override
+            public String getName() {
+                return "save";
+            }
+
+            @Override
+            public void execute(int iteration) {
+                String id = PerfDatabase.parcelId(iteration % PARCELS);
+                PerfParcel parcel = repository.getEntity(PerfParcel.class, id);
+                parcel.setName("Parcel " + id + " v" + iteration);
+                parcel.getAreas().get(0).setTypeCode("surveyedArea");
+                repository.saveEntity(parcel);
+            }
+        });
+        assertEquals(OPERATIONS, report.getOperations());
+    }
+
+    @Test
+    public void testBulkUpdate() throws Exception {
+        LoadReport report = run(new LoadScenario() {
+            @Override
+            public String getName() {
+                return "bulkUpdate";
+            }
+
+            @Override
+            public void execute(int iteration) {
+                int from = (iteration * PAGE_SIZE) % Math.max(1, PARCELS - PAGE_SIZE);
+                Map<String, Object> params = new HashMap<String, Object>();
+                params.put(CommonSqlProvider.PARAM_QUERY, "UPDATE perf.parcel "
+                        + "SET status_code = #{status} WHERE id >= #{fromId} AND id < #{toId}");
+                params.put("status", iteration % 2 == 0 ? "current" : "historic");
+                params.put("fromId", PerfDatabase.parcelId(from));
+                params.put("toId", PerfDatabase.parcelId(from + PAGE_SIZE));
+                assertEquals(Math.min(PAGE_SIZE, PARCELS), repository.bulkUpdate(params));
+            }
+        });
+        assertEquals(OPERATIONS, report.getOperations());
+    }
+}